@@ -0,0 +1,73 @@
+package com.intive.patronage22.szczecin.retroboard.dto;
+
+import com.intive.patronage22.szczecin.retroboard.model.Board;
+import com.intive.patronage22.szczecin.retroboard.model.BoardCard;
+import com.intive.patronage22.szczecin.retroboard.model.BoardCardAction;
+import com.intive.patronage22.szczecin.retroboard.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoMappingBenchmark {
+
+    private Board board;
+    private BoardCard boardCard;
+    private List<BoardCardProjection> boardCardRows;
+
+    @Setup
+    public void setUp() {
+        final User user = new User("uid", "user@example.com", "user", false, Set.of(), Set.of());
+        board = Board.builder()
+                .id(1)
+                .name("Benchmark board")
+                .state(EnumStateDto.VOTING)
+                .creator(user)
+                .maximumNumberOfVotes(5)
+                .users(Set.of())
+                .build();
+        boardCard = new BoardCard(1, board, "benchmark card", BoardCardsColumn.SUCCESS, user,
+                List.of(new BoardCardAction(1, null, "first action"), new BoardCardAction(2, null, "second action")));
+        boardCardRows = List.of(
+                new BoardCardProjection(1, "benchmark card", BoardCardsColumn.SUCCESS, user.getEmail(),
+                        "first action", 3L),
+                new BoardCardProjection(1, "benchmark card", BoardCardsColumn.SUCCESS, user.getEmail(),
+                        "second action", 3L));
+    }
+
+    @Benchmark
+    public BoardCardDto boardCardDtoFromModel() {
+        return BoardCardDto.createFrom(boardCard, 3, 1);
+    }
+
+    @Benchmark
+    public BoardCardDto boardCardDtoFromRows() {
+        return BoardCardDto.createFrom(boardCardRows);
+    }
+
+    @Benchmark
+    public BoardDto boardDtoFromModel() {
+        return BoardDto.fromModel(board);
+    }
+
+    @Benchmark
+    public EnumStateDto nextState() {
+        return EnumStateDto.VOTING.next();
+    }
+}
@@ -0,0 +1,101 @@
+package com.intive.patronage22.szczecin.retroboard.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardProjection;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardsColumn;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardDataDto;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardDetailsDto;
+import com.intive.patronage22.szczecin.retroboard.dto.EnumStateDto;
+import com.intive.patronage22.szczecin.retroboard.model.Board;
+import com.intive.patronage22.szczecin.retroboard.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BoardAssemblyBenchmark {
+
+    private static final int USERS = 20;
+    private static final BoardCardsColumn[] COLUMNS = BoardCardsColumn.values();
+
+    @Param({"10", "100", "1000", "10000"})
+    private int cards;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Board board;
+    private User user;
+    private Collection<List<BoardCardProjection>> boardCardRows;
+    private BoardDataDto boardData;
+    private List<BoardDetailsDto> boardDetails;
+
+    @Setup
+    public void setUp() {
+        user = new User("uid", "user@example.com", "user", false, Set.of(), Set.of());
+        final Set<User> users = IntStream.range(0, USERS)
+                .mapToObj(i -> new User("uid" + i, "user" + i + "@example.com", "user" + i, false, Set.of(), Set.of()))
+                .collect(Collectors.toSet());
+        board = Board.builder()
+                .id(1)
+                .name("Benchmark board")
+                .state(EnumStateDto.VOTING)
+                .creator(user)
+                .maximumNumberOfVotes(5)
+                .users(users)
+                .build();
+
+        // every card has one action, every third card a second one
+        boardCardRows = IntStream.range(0, cards)
+                .boxed()
+                .flatMap(id -> IntStream.rangeClosed(0, id % 3 == 0 ? 1 : 0)
+                        .mapToObj(action -> new BoardCardProjection(id, "card number " + id, COLUMNS[id % 3],
+                                "user" + id % USERS + "@example.com", "action " + action, (long) id % 7)))
+                .collect(Collectors.groupingBy(BoardCardProjection::getId, LinkedHashMap::new, Collectors.toList()))
+                .values();
+
+        boardData = BoardService.prepareBoardData(board, user);
+        boardDetails = BoardService.createColumns(boardCardRows);
+    }
+
+    @Benchmark
+    public BoardDataDto prepareBoardData() {
+        return BoardService.prepareBoardData(board, user);
+    }
+
+    @Benchmark
+    public List<BoardDetailsDto> createColumns() {
+        return BoardService.createColumns(boardCardRows);
+    }
+
+    @Benchmark
+    public byte[] serializeBoardData() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(boardData);
+    }
+
+    @Benchmark
+    public byte[] serializeBoardDetails() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(boardDetails);
+    }
+}
@@ -0,0 +1,188 @@
+package com.intive.patronage22.szczecin.retroboard.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.firebase.auth.FirebaseToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Local stand-in for the Firebase endpoints the application talks to: the REST sign-in endpoint used by
+ * {@code FirebaseAuthenticationProvider} and the Identity Toolkit endpoints the Admin SDK calls in emulator mode
+ * (user lookup and creation). Issued ID tokens are unsigned JWTs, checked by {@link #verifyIdToken(String)} because
+ * the Admin SDK does not skip signature checks for emulators in this version.
+ */
+public class FakeFirebaseServer implements AutoCloseable {
+
+    static final String PROJECT_ID = "retroboard-load-test";
+    private static final Duration TOKEN_VALIDITY = Duration.ofHours(1);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Account> accountsByEmail = new ConcurrentHashMap<>();
+    private final Map<String, Account> accountsByUid = new ConcurrentHashMap<>();
+    private final Map<String, String> issuedTokens = new ConcurrentHashMap<>();
+    private final HttpServer server;
+
+    public FakeFirebaseServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/identitytoolkit.googleapis.com/v1/accounts:signInWithPassword", this::signIn);
+        server.createContext("/identitytoolkit.googleapis.com/v1/projects/" + PROJECT_ID + "/accounts:lookup",
+                this::lookup);
+        server.createContext("/identitytoolkit.googleapis.com/v1/projects/" + PROJECT_ID + "/accounts",
+                this::createAccount);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public String getHost() {
+        return "localhost:" + server.getAddress().getPort();
+    }
+
+    public String getSignInWithPasswordUrl() {
+        return "http://" + getHost() + "/identitytoolkit.googleapis.com/v1/accounts:signInWithPassword?key=";
+    }
+
+    public FirebaseToken verifyIdToken(final String idToken) throws ReflectiveOperationException, IOException {
+        final String uid = Optional.ofNullable(issuedTokens.get(idToken))
+                .orElseThrow(() -> new IllegalArgumentException("Unknown ID token"));
+        final String[] parts = idToken.split("\\.");
+        final Map<String, Object> claims = objectMapper.readValue(Base64.getUrlDecoder().decode(parts[1]), Map.class);
+        if (!uid.equals(claims.get("sub"))) {
+            throw new IllegalArgumentException("Malformed ID token");
+        }
+
+        final Constructor<FirebaseToken> constructor = FirebaseToken.class.getDeclaredConstructor(Map.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(claims);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void signIn(final HttpExchange exchange) throws IOException {
+        final Map<String, Object> request = readBody(exchange);
+        final Account account = accountsByEmail.get((String) request.get("email"));
+
+        if (account == null) {
+            sendError(exchange, "EMAIL_NOT_FOUND");
+        } else if (!account.getPassword().equals(request.get("password"))) {
+            sendError(exchange, "INVALID_PASSWORD");
+        } else {
+            final String idToken = issueToken(account);
+            send(exchange, 200, Map.of(
+                    "idToken", idToken,
+                    "email", account.getEmail(),
+                    "refreshToken", UUID.randomUUID().toString(),
+                    "expiresIn", String.valueOf(TOKEN_VALIDITY.toSeconds()),
+                    "localId", account.getUid(),
+                    "registered", true));
+        }
+    }
+
+    private void lookup(final HttpExchange exchange) throws IOException {
+        final Map<String, Object> request = readBody(exchange);
+        final List<Account> accounts = request.containsKey("email")
+                ? find(accountsByEmail, (List<String>) request.get("email"))
+                : find(accountsByUid, (List<String>) request.get("localId"));
+
+        if (accounts.isEmpty()) {
+            send(exchange, 200, Map.of("kind", "identitytoolkit#GetAccountInfoResponse"));
+        } else {
+            send(exchange, 200, Map.of("kind", "identitytoolkit#GetAccountInfoResponse",
+                    "users", accounts.stream().map(this::toUserInfo).collect(Collectors.toList())));
+        }
+    }
+
+    private void createAccount(final HttpExchange exchange) throws IOException {
+        final Map<String, Object> request = readBody(exchange);
+        final Account account = new Account(UUID.randomUUID().toString(), (String) request.get("email"),
+                (String) request.get("password"), (String) request.get("displayName"));
+
+        if (accountsByEmail.putIfAbsent(account.getEmail(), account) != null) {
+            sendError(exchange, "EMAIL_EXISTS");
+        } else {
+            accountsByUid.put(account.getUid(), account);
+            send(exchange, 200, Map.of("localId", account.getUid()));
+        }
+    }
+
+    private String issueToken(final Account account) throws IOException {
+        final Instant now = Instant.now();
+        final Map<String, Object> claims = Map.of(
+                "iss", "https://securetoken.google.com/" + PROJECT_ID,
+                "aud", PROJECT_ID,
+                "sub", account.getUid(),
+                "user_id", account.getUid(),
+                "email", account.getEmail(),
+                "name", account.getDisplayName(),
+                "iat", now.getEpochSecond(),
+                "exp", now.plus(TOKEN_VALIDITY).getEpochSecond());
+
+        final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        final String header = encoder.encodeToString("{\"alg\":\"none\",\"typ\":\"JWT\"}"
+                .getBytes(StandardCharsets.UTF_8));
+        final String idToken = header + "." + encoder.encodeToString(objectMapper.writeValueAsBytes(claims)) + ".";
+        issuedTokens.put(idToken, account.getUid());
+        return idToken;
+    }
+
+    private Map<String, Object> toUserInfo(final Account account) {
+        return Map.of(
+                "localId", account.getUid(),
+                "email", account.getEmail(),
+                "displayName", account.getDisplayName(),
+                "emailVerified", true,
+                "disabled", false);
+    }
+
+    private static List<Account> find(final Map<String, Account> accounts, final List<String> keys) {
+        return Optional.ofNullable(keys).orElse(List.of()).stream()
+                .map(accounts::get)
+                .filter(account -> account != null)
+                .collect(Collectors.toList());
+    }
+
+    private Map<String, Object> readBody(final HttpExchange exchange) throws IOException {
+        return objectMapper.readValue(exchange.getRequestBody(), Map.class);
+    }
+
+    private void sendError(final HttpExchange exchange, final String message) throws IOException {
+        send(exchange, 400, Map.of("error", Map.of("code", 400, "message", message)));
+    }
+
+    private void send(final HttpExchange exchange, final int status, final Object body) throws IOException {
+        final byte[] response = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(response);
+        }
+    }
+
+    @Value
+    private static class Account {
+
+        String uid;
+        String email;
+        String password;
+        String displayName;
+    }
+}
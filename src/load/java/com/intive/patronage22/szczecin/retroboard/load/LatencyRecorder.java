@@ -0,0 +1,66 @@
+package com.intive.patronage22.szczecin.retroboard.load;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects response times per endpoint and reports count, errors, throughput and p50/p95/p99 latency.
+ */
+public class LatencyRecorder {
+
+    private final Map<String, Queue<Long>> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+    public void record(final String endpoint, final long nanos, final boolean failed) {
+        latencies.computeIfAbsent(endpoint, e -> new ConcurrentLinkedQueue<>()).add(nanos);
+        if (failed) {
+            errors.computeIfAbsent(endpoint, e -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public long totalErrors() {
+        return errors.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    public String report(final Duration elapsed) {
+        final StringBuilder report = new StringBuilder(String.format("%-40s %8s %7s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms"));
+
+        latencies.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    final long[] sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+                    final long failed = errors.getOrDefault(entry.getKey(), new AtomicLong()).get();
+                    report.append(String.format("%-40s %8d %7d %9.1f %9.2f %9.2f %9.2f%n", entry.getKey(),
+                            sorted.length, failed, sorted.length / seconds(elapsed),
+                            millis(percentile(sorted, 50)), millis(percentile(sorted, 95)),
+                            millis(percentile(sorted, 99))));
+                });
+
+        final long total = latencies.values().stream().mapToLong(Queue::size).sum();
+        report.append(String.format("total: %d requests, %d errors, %.1f req/s in %.1f s%n",
+                total, totalErrors(), total / seconds(elapsed), seconds(elapsed)));
+        return report.toString();
+    }
+
+    // nearest-rank percentile
+    static long percentile(final long[] sorted, final int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    private static double seconds(final Duration duration) {
+        return Math.max(duration.toMillis(), 1) / 1000.0;
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.intive.patronage22.szczecin.retroboard.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Thin HTTP client for the retro board API that times every call under an endpoint template such as
+ * {@code POST /api/v1/cards/{id}/votes}.
+ */
+public class LoadClient {
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final LatencyRecorder latencyRecorder;
+
+    public LoadClient(final String baseUrl, final LatencyRecorder latencyRecorder) {
+        this.baseUrl = baseUrl;
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    public void register(final String email, final String password, final String displayName) {
+        send("POST /api/v1/register", request("/api/v1/register?" + form(Map.of(
+                "email", email, "password", password, "displayName", displayName)), null)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build());
+    }
+
+    public String login(final String email, final String password) {
+        final HttpResponse<String> response = send("POST /api/v1/login", request("/api/v1/login", null)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form(Map.of("email", email, "password", password))))
+                .build());
+        return response.headers().firstValue("Authorization")
+                .orElseThrow(() -> new IllegalStateException("Login of " + email + " returned no token"));
+    }
+
+    public JsonNode post(final String endpoint, final String path, final String token, final Object body) {
+        return json(send(endpoint, request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(body != null ? HttpRequest.BodyPublishers.ofString(write(body))
+                                   : HttpRequest.BodyPublishers.noBody())
+                .build()));
+    }
+
+    public JsonNode patch(final String endpoint, final String path, final String token, final Object body) {
+        return json(send(endpoint, request(path, token)
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(write(body)))
+                .build()));
+    }
+
+    public JsonNode get(final String endpoint, final String path, final String token) {
+        return json(send(endpoint, request(path, token).GET().build()));
+    }
+
+    private HttpRequest.Builder request(final String path, final String token) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path));
+        return token != null ? builder.header("Authorization", token) : builder;
+    }
+
+    private HttpResponse<String> send(final String endpoint, final HttpRequest request) {
+        final long start = System.nanoTime();
+        try {
+            final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            final boolean failed = response.statusCode() >= 400;
+            latencyRecorder.record(endpoint, System.nanoTime() - start, failed);
+            if (failed) {
+                throw new IllegalStateException(endpoint + " returned " + response.statusCode() + ": "
+                        + response.body());
+            }
+            return response;
+        } catch (final IOException e) {
+            latencyRecorder.record(endpoint, System.nanoTime() - start, true);
+            throw new IllegalStateException(endpoint + " failed", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(endpoint + " interrupted", e);
+        }
+    }
+
+    private JsonNode json(final HttpResponse<String> response) {
+        try {
+            return response.body().isEmpty() ? null : objectMapper.readTree(response.body());
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Response is not JSON: " + response.body(), e);
+        }
+    }
+
+    private String write(final Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (final JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static String form(final Map<String, String> parameters) {
+        return parameters.entrySet().stream()
+                .map(e -> e.getKey() + "=" + URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+    }
+}
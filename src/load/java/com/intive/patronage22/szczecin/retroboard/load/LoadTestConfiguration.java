@@ -0,0 +1,43 @@
+package com.intive.patronage22.szczecin.retroboard.load;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.auth.FirebaseAuth;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Instant;
+import java.util.Date;
+
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Replaces the Firebase beans so the Admin SDK talks to {@link FakeFirebaseServer} instead of Google.
+ */
+@TestConfiguration
+public class LoadTestConfiguration {
+
+    @Bean
+    public FirebaseApp firebaseApp() {
+        final AccessToken accessToken = new AccessToken("owner", Date.from(Instant.now().plusSeconds(86400)));
+        final FirebaseOptions options = FirebaseOptions.builder()
+                .setProjectId(FakeFirebaseServer.PROJECT_ID)
+                .setCredentials(GoogleCredentials.create(accessToken))
+                .build();
+        return FirebaseApp.initializeApp(options, "load-test");
+    }
+
+    @Bean
+    public FirebaseAuth firebaseAuth(final FirebaseApp firebaseApp) throws Exception {
+        final FakeFirebaseServer fakeFirebaseServer = RetroSessionLoadTest.fakeFirebaseServer();
+        final FirebaseAuth firebaseAuth = mock(FirebaseAuth.class, delegatesTo(FirebaseAuth.getInstance(firebaseApp)));
+        doAnswer(invocation -> fakeFirebaseServer.verifyIdToken(invocation.getArgument(0)))
+                .when(firebaseAuth).verifyIdToken(anyString());
+        return firebaseAuth;
+    }
+}
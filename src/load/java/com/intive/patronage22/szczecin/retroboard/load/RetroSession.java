@@ -0,0 +1,96 @@
+package com.intive.patronage22.szczecin.retroboard.load;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * One scripted retrospective: the owner creates a board and assigns everybody, all participants add cards, the
+ * board moves to voting, everybody spends all votes while watching the board, and the board moves to actions.
+ * Steps of different participants run in parallel on the given executor.
+ */
+@RequiredArgsConstructor
+public class RetroSession {
+
+    private static final String PASSWORD = "load-test-password";
+
+    private final LoadClient client;
+    private final Executor executor;
+    private final int participants;
+    private final int cardsPerParticipant;
+    private final int votesPerParticipant;
+
+    public void run(final String sessionId) {
+        final List<Participant> team = all(IntStream.range(0, participants)
+                .mapToObj(i -> (Supplier<Participant>) () -> join(sessionId, i))
+                .collect(Collectors.toList()));
+        final Participant owner = team.get(0);
+
+        final int boardId = client.post("POST /api/v1/boards", "/api/v1/boards", owner.getToken(),
+                Map.of("name", "Retro " + sessionId)).get("id").asInt();
+        final String boardPath = "/api/v1/boards/" + boardId;
+
+        client.patch("PATCH /api/v1/boards/{id}", boardPath, owner.getToken(),
+                Map.of("maximumNumberOfVotes", votesPerParticipant));
+        client.post("POST /api/v1/boards/{id}/users", boardPath + "/users", owner.getToken(),
+                team.stream().skip(1).map(Participant::getEmail).collect(Collectors.toList()));
+
+        final List<Integer> cardIds = all(team.stream()
+                .flatMap(participant -> IntStream.range(0, cardsPerParticipant)
+                        .mapToObj(card -> (Supplier<Integer>) () -> client.post("POST /api/v1/cards/boards/{id}",
+                                "/api/v1/cards/boards/" + boardId, participant.getToken(),
+                                Map.of("cardText", "Card " + card + " of " + participant.getEmail(),
+                                        "columnId", card % 3)).get("id").asInt()))
+                .collect(Collectors.toList()));
+
+        client.post("POST /api/v1/boards/{id}/nextState", boardPath + "/nextState", owner.getToken(), null);
+
+        all(team.stream()
+                .map(participant -> (Supplier<Void>) () -> {
+                    client.get("GET /api/v1/boards/{id}", boardPath, participant.getToken());
+                    for (int vote = 0; vote < votesPerParticipant; vote++) {
+                        final int cardId = cardIds.get(ThreadLocalRandom.current().nextInt(cardIds.size()));
+                        client.post("POST /api/v1/cards/{id}/votes", "/api/v1/cards/" + cardId + "/votes",
+                                participant.getToken(), null);
+                        client.get("GET /api/v1/boards/{id}/details", boardPath + "/details",
+                                participant.getToken());
+                    }
+                    return null;
+                })
+                .collect(Collectors.toList()));
+
+        client.post("POST /api/v1/boards/{id}/nextState", boardPath + "/nextState", owner.getToken(), null);
+        client.get("GET /api/v1/boards/{id}/details", boardPath + "/details", owner.getToken());
+    }
+
+    private Participant join(final String sessionId, final int number) {
+        final String email = "user" + number + "." + sessionId + "@example.com";
+        client.register(email, PASSWORD, "User " + number);
+        final String token = client.login(email, PASSWORD);
+        // the first authorized request creates the user in the database, so it can be assigned to boards
+        client.get("GET /api/v1/boards", "/api/v1/boards", token);
+        return new Participant(email, token);
+    }
+
+    private <T> List<T> all(final List<Supplier<T>> steps) {
+        final List<CompletableFuture<T>> futures = steps.stream()
+                .map(step -> CompletableFuture.supplyAsync(step, executor))
+                .collect(Collectors.toList());
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    @Value
+    private static class Participant {
+
+        String email;
+        String token;
+    }
+}
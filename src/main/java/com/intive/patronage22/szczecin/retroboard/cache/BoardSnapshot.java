@@ -0,0 +1,52 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardsColumn;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardsColumnDto;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardDataDto;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardDetailsDto;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserDto;
+import com.intive.patronage22.szczecin.retroboard.model.User;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Everything needed to answer the board data and board details requests of any user, taken at one board version.
+ * Only the votes of the requesting user are not part of it, they are merged in by {@link #toBoardDetails(Map)}.
+ */
+@Value
+public class BoardSnapshot {
+
+    private static final List<BoardCardsColumnDto> COLUMNS = List.of(
+            BoardCardsColumnDto.createFrom(BoardCardsColumn.SUCCESS),
+            BoardCardsColumnDto.createFrom(BoardCardsColumn.FAILURES),
+            BoardCardsColumnDto.createFrom(BoardCardsColumn.KUDOS));
+
+    long version;
+    BoardDto board;
+    List<UserDto> users;
+    List<BoardDetailsDto> columns;
+
+    public BoardDataDto toBoardData(final User user) {
+        final List<UserDto> boardUsers = new ArrayList<>(users);
+        boardUsers.add(UserDto.createFrom(user));
+
+        return BoardDataDto.createFrom(board, COLUMNS, boardUsers);
+    }
+
+    public List<BoardDetailsDto> toBoardDetails(final Map<Integer, Integer> userVotes) {
+        if (userVotes.isEmpty()) {
+            return columns;
+        }
+
+        return columns.stream()
+                .map(column -> BoardDetailsDto.createFrom(column.getId(), column.getBoardCards().stream()
+                        .map(card -> card.withUserVotes(userVotes.getOrDefault(card.getId(), 0)))
+                        .collect(Collectors.toList())))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,49 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.intive.patronage22.szczecin.retroboard.event.BoardChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Keeps the latest {@link BoardSnapshot} of recently read boards. A snapshot is only returned for the version it was
+ * taken at, and committed board changes drop it right away, so a stale snapshot is never served.
+ */
+@Component
+public class BoardSnapshotCache {
+
+    private final Cache<Integer, BoardSnapshot> cache;
+
+    public BoardSnapshotCache(@Value("${retroboard.board-snapshot-cache.max-size}") final long maxSize,
+                              @Value("${retroboard.board-snapshot-cache.idle-time}") final Duration idleTime,
+                              final MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(idleTime)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "boardSnapshots");
+    }
+
+    public Optional<BoardSnapshot> get(final Integer boardId, final long version) {
+        return Optional.ofNullable(cache.getIfPresent(boardId))
+                .filter(snapshot -> snapshot.getVersion() == version);
+    }
+
+    public void put(final Integer boardId, final BoardSnapshot snapshot) {
+        cache.asMap().merge(boardId, snapshot,
+                (cached, loaded) -> loaded.getVersion() >= cached.getVersion() ? loaded : cached);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBoardChanged(final BoardChangedEvent boardChangedEvent) {
+        cache.invalidate(boardChangedEvent.getBoardId());
+    }
+}
@@ -0,0 +1,104 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Keeps Firebase ID tokens that were already verified, so repeated requests with the same token skip the remote
+ * verification. Entries are keyed by the SHA-256 of the token and live until the token's {@code exp} claim.
+ */
+@Slf4j
+@Component
+public class FirebaseTokenCache {
+
+    private final Cache<String, VerifiedToken> cache;
+    private final Clock clock;
+
+    @Autowired
+    public FirebaseTokenCache(@Value("${retroboard.token-cache.max-size}") final long maxSize,
+                              final MeterRegistry meterRegistry) {
+        this(maxSize, meterRegistry, Clock.systemUTC());
+    }
+
+    FirebaseTokenCache(final long maxSize, final MeterRegistry meterRegistry, final Clock clock) {
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpires())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "firebaseTokens");
+    }
+
+    public Optional<VerifiedToken> get(final String token) {
+        return Optional.ofNullable(cache.getIfPresent(hash(token)))
+                .filter(verifiedToken -> verifiedToken.getExpiresAt().isAfter(clock.instant()));
+    }
+
+    public void put(final String token, final VerifiedToken verifiedToken) {
+        if (verifiedToken.getExpiresAt().isAfter(clock.instant())) {
+            cache.put(hash(token), verifiedToken);
+        }
+    }
+
+    public void revoke(final String token) {
+        cache.invalidate(hash(token));
+    }
+
+    public void revokeUsers(final Collection<String> emails) {
+        if (!emails.isEmpty()) {
+            cache.asMap().values().removeIf(verifiedToken -> emails.contains(verifiedToken.getPrincipal().getEmail()));
+            log.info("revoked cached tokens of {} users", emails.size());
+        }
+    }
+
+    public void revokeAll() {
+        cache.invalidateAll();
+    }
+
+    private static String hash(final String token) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private class UntilTokenExpires implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(final String key, final VerifiedToken value, final long currentTime) {
+            return Math.max(0, Duration.between(clock.instant(), value.getExpiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(final String key, final VerifiedToken value, final long currentTime,
+                                      final long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(final String key, final VerifiedToken value, final long currentTime,
+                                    final long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
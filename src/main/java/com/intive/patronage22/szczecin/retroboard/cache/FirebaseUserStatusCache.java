@@ -0,0 +1,88 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.firebase.auth.AuthErrorCode;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.UserRecord;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Remembers whether a Firebase user is active, disabled or deleted, so the authorization filter does not have to
+ * ask Firebase on every request. Filled by the user synchronization job, loaded from Firebase on a miss.
+ */
+@Component
+public class FirebaseUserStatusCache {
+
+    private final Cache<String, Status> cache;
+    private final FirebaseAuth firebaseAuth;
+
+    public FirebaseUserStatusCache(@Value("${retroboard.user-status-cache.max-size}") final long maxSize,
+                                   @Value("${retroboard.user-status-cache.ttl}") final Duration ttl,
+                                   final FirebaseAuth firebaseAuth,
+                                   final MeterRegistry meterRegistry) {
+        this.firebaseAuth = firebaseAuth;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "firebaseUserStatuses");
+    }
+
+    public void checkActive(final String email) throws FirebaseAuthException {
+        final Status cachedStatus = cache.getIfPresent(email);
+        final Status status = cachedStatus != null ? cachedStatus : load(email);
+
+        if (status == Status.DELETED) {
+            throw new UsernameNotFoundException("User not found.");
+        }
+        if (status == Status.DISABLED) {
+            throw new DisabledException("The user account has been disabled by an administrator.");
+        }
+    }
+
+    public void refresh(final Collection<? extends UserRecord> firebaseUsers) {
+        firebaseUsers.forEach(u -> cache.put(u.getEmail(), u.isDisabled() ? Status.DISABLED : Status.ACTIVE));
+    }
+
+    public void markDeleted(final Collection<String> emails) {
+        emails.forEach(email -> cache.put(email, Status.DELETED));
+    }
+
+    // the status is loaded from Firebase again on the next check
+    public void forget(final Collection<String> emails) {
+        cache.invalidateAll(emails);
+    }
+
+    public void forgetAll() {
+        cache.invalidateAll();
+    }
+
+    private Status load(final String email) throws FirebaseAuthException {
+        Status status;
+        try {
+            status = firebaseAuth.getUserByEmail(email).isDisabled() ? Status.DISABLED : Status.ACTIVE;
+        } catch (final FirebaseAuthException e) {
+            if (e.getAuthErrorCode() != AuthErrorCode.USER_NOT_FOUND) {
+                throw e;
+            }
+            status = Status.DELETED;
+        }
+        cache.put(email, status);
+        return status;
+    }
+
+    private enum Status {
+        ACTIVE, DISABLED, DELETED
+    }
+}
@@ -0,0 +1,113 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intive.patronage22.szczecin.retroboard.event.NotificationChannel;
+import com.intive.patronage22.szczecin.retroboard.event.NotificationListener;
+import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Carries revocations of cached users between the nodes of the application, so a user the synchronization job
+ * removes or changes on one node stops being served from the caches of every node. Revocations are sent as Postgres
+ * notifications in the job's transaction, so they go out when it commits, and every node, the sending one too, drops
+ * the cached tokens of the users. Removed users are then marked deleted, changed ones get their status loaded again.
+ * <p>
+ * Revocations sent while {@link NotificationListener} was not listening are lost, so when it starts listening again
+ * every cached token and status is dropped.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class UserRevocationRelay implements NotificationChannel {
+
+    private final UserRepository userRepository;
+    private final FirebaseTokenCache firebaseTokenCache;
+    private final FirebaseUserStatusCache firebaseUserStatusCache;
+    private final ObjectMapper objectMapper;
+
+    public void revokeRemoved(final Collection<String> emails) {
+        write(emails, true).forEach(userRepository::notifyUsersRevoked);
+    }
+
+    // for users whose cached principal or status went stale, like a re-keyed uid or a disabled account
+    public void revokeChanged(final Collection<String> emails) {
+        write(emails, false).forEach(userRepository::notifyUsersRevoked);
+    }
+
+    @Override
+    public String getName() {
+        return UserRepository.USER_REVOCATIONS_CHANNEL;
+    }
+
+    @Override
+    public void onNotification(final String revocation) {
+        try {
+            final JsonNode node = objectMapper.readTree(revocation);
+            final List<String> emails = new ArrayList<>();
+            node.get("emails").forEach(email -> emails.add(email.asText()));
+
+            firebaseTokenCache.revokeUsers(emails);
+            if (node.get("removed").asBoolean()) {
+                firebaseUserStatusCache.markDeleted(emails);
+            } else {
+                firebaseUserStatusCache.forget(emails);
+            }
+        } catch (final JsonProcessingException | RuntimeException e) {
+            log.warn("cannot read user revocation {}", revocation, e);
+        }
+    }
+
+    @Override
+    public void onListening() {
+        firebaseTokenCache.revokeAll();
+        firebaseUserStatusCache.forgetAll();
+    }
+
+    // as many notifications as it takes to keep each within the payload limit
+    List<String> write(final Collection<String> emails, final boolean removed) {
+        final List<String> revocations = new ArrayList<>();
+        final List<String> chunk = new ArrayList<>();
+        final int envelopeBytes = bytes(writeChunk(List.of(), removed));
+        int chunkBytes = envelopeBytes;
+        for (final String email : emails) {
+            final int emailBytes = bytes(writeValue(email)) + 1;
+            if (!chunk.isEmpty() && chunkBytes + emailBytes > MAX_PAYLOAD_BYTES) {
+                revocations.add(writeChunk(chunk, removed));
+                chunk.clear();
+                chunkBytes = envelopeBytes;
+            }
+            chunk.add(email);
+            chunkBytes += emailBytes;
+        }
+        if (!chunk.isEmpty()) {
+            revocations.add(writeChunk(chunk, removed));
+        }
+        return revocations;
+    }
+
+    private String writeChunk(final List<String> emails, final boolean removed) {
+        return writeValue(Map.of("removed", removed, "emails", emails));
+    }
+
+    private String writeValue(final Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Cannot write user revocation", e);
+        }
+    }
+
+    private static int bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,13 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+public class VerifiedToken {
+
+    UserPrincipal principal;
+    Instant expiresAt;
+}
@@ -0,0 +1,21 @@
+package com.intive.patronage22.szczecin.retroboard.configuration;
+
+import com.intive.patronage22.szczecin.retroboard.metrics.QueryCountFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class MetricsConfiguration {
+
+    // first in the chain, so statements issued by the security filters are counted too
+    @Bean
+    public FilterRegistrationBean<QueryCountFilter> queryCountFilter(final MeterRegistry meterRegistry) {
+        final FilterRegistrationBean<QueryCountFilter> registration =
+                new FilterRegistrationBean<>(new QueryCountFilter(meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
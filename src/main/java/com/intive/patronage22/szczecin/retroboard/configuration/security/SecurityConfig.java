@@ -1,12 +1,25 @@
 package com.intive.patronage22.szczecin.retroboard.configuration.security;
 
+import com.intive.patronage22.szczecin.retroboard.filter.LoginBulkhead;
 import com.intive.patronage22.szczecin.retroboard.provider.FirebaseAuthenticationProvider;
+import com.intive.patronage22.szczecin.retroboard.provider.LoginCircuitBreaker;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class SecurityConfig {
 
@@ -15,9 +28,59 @@ public class SecurityConfig {
         return new BCryptPasswordEncoder();
     }
 
+    // all logins go to a single host, so the pool size is also the limit per route
+    @Bean(destroyMethod = "close")
+    PoolingHttpClientConnectionManager loginConnectionManager(
+            @Value("${retroboard.login-http.max-connections}") final int maxConnections,
+            @Value("${retroboard.login-http.time-to-live}") final Duration timeToLive) {
+        final PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(timeToLive.toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        return connectionManager;
+    }
+
+    @Bean
+    MeterBinder loginConnectionPoolMetrics(final PoolingHttpClientConnectionManager loginConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(loginConnectionManager, "firebaseLogin");
+    }
+
+    // a bean, so the client and its idle connection evictor are closed with the context
+    @Bean
+    HttpComponentsClientHttpRequestFactory loginRequestFactory(
+            final PoolingHttpClientConnectionManager loginConnectionManager,
+            @Value("${retroboard.login-http.connect-timeout}") final Duration connectTimeout,
+            @Value("${retroboard.login-http.read-timeout}") final Duration readTimeout,
+            @Value("${retroboard.login-http.pool-timeout}") final Duration poolTimeout,
+            @Value("${retroboard.login-http.idle-timeout}") final Duration idleTimeout) {
+        final RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .setConnectionRequestTimeout((int) poolTimeout.toMillis())
+                .build();
+        return new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                .setConnectionManager(loginConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .build());
+    }
+
+    @Bean
+    RestTemplate restTemplate(final HttpComponentsClientHttpRequestFactory loginRequestFactory) {
+        return new RestTemplate(loginRequestFactory);
+    }
+
+    @Bean
+    LoginBulkhead loginBulkhead(@Value("${retroboard.login.threads}") final int threads,
+                                @Value("${retroboard.login.queue-size}") final int queueSize) {
+        return new LoginBulkhead(threads, queueSize);
+    }
+
     @Bean
-    RestTemplate restTemplate() {
-        return new RestTemplate();
+    LoginCircuitBreaker loginCircuitBreaker(
+            @Value("${retroboard.login.circuit-breaker.failure-threshold}") final int failureThreshold,
+            @Value("${retroboard.login.circuit-breaker.open-time}") final Duration openTime) {
+        return new LoginCircuitBreaker(failureThreshold, openTime, Clock.systemUTC());
     }
 
     @Bean
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.intive.patronage22.szczecin.retroboard.dto.ErrorResponse;
 import com.intive.patronage22.szczecin.retroboard.filter.CustomAuthenticationFilter;
 import com.intive.patronage22.szczecin.retroboard.filter.CustomAuthorizationFilter;
+import com.intive.patronage22.szczecin.retroboard.filter.LoginBulkhead;
 import com.intive.patronage22.szczecin.retroboard.provider.FirebaseAuthenticationProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -35,10 +36,14 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     private final CustomAuthorizationFilter customAuthorizationFilter;
     private final ObjectMapper objectMapper;
     private final FirebaseAuthenticationProvider authenticationProvider;
+    private final LoginBulkhead loginBulkhead;
 
     @Value("${retroboard.jwt.secret}")
     private String jwtSecret;
 
+    @Value("${management.server.port:#{null}}")
+    private Integer managementPort;
+
     @Override
     protected void configure(final AuthenticationManagerBuilder auth) throws Exception {
         auth.authenticationProvider(authenticationProvider);
@@ -50,6 +55,10 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         http.sessionManagement().sessionCreationPolicy(STATELESS);
         http.authorizeRequests().antMatchers(URL_REGISTER, URL_LOGIN, "/swagger-ui/**", "/v3/api-docs/**",
                 "/error", "/actuator/health").permitAll();
+        // metrics are only open on a separate management port, which is not exposed publicly
+        if (managementPort != null) {
+            http.authorizeRequests().requestMatchers(request -> request.getLocalPort() == managementPort).permitAll();
+        }
 
         http.addFilter(getCustomAuthenticationFilter());
         http.authorizeRequests().anyRequest().authenticated();
@@ -73,7 +82,8 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     }
 
     private CustomAuthenticationFilter getCustomAuthenticationFilter() throws Exception {
-        final var filter = new CustomAuthenticationFilter(authenticationManager(), objectMapper, jwtSecret);
+        final var filter = new CustomAuthenticationFilter(authenticationManager(), objectMapper, jwtSecret,
+                loginBulkhead);
         filter.setFilterProcessesUrl(URL_LOGIN);
         return filter;
     }
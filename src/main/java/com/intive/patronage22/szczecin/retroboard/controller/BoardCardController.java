@@ -3,6 +3,7 @@ package com.intive.patronage22.szczecin.retroboard.controller;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardActionDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardActionRequestDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
 import com.intive.patronage22.szczecin.retroboard.service.BoardCardService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -10,10 +11,14 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
 import java.util.Map;
 
 import static org.springframework.http.HttpStatus.CREATED;
@@ -22,9 +27,12 @@ import static org.springframework.http.HttpStatus.OK;
 @Slf4j
 @RequiredArgsConstructor
 @RestController
+@Validated
 @RequestMapping(value = "/api/v1/cards", produces = MediaType.APPLICATION_JSON_VALUE)
 public class BoardCardController {
 
+    static final int MAX_BULK_CARDS = 100;
+
     private final BoardCardService boardCardService;
 
     @PostMapping("/boards/{id}")
@@ -36,9 +44,26 @@ public class BoardCardController {
                     @ApiResponse(responseCode = "404", description = "Board not found")})
     public BoardCardDto addCardToTheBoard(@RequestBody @Valid final BoardCardDto boardCardDto,
                                           @PathVariable(name = "id") final Integer boardId,
-                                          final Authentication authentication) {
+                                          @AuthenticationPrincipal final UserPrincipal principal) {
+
+        return boardCardService.createBoardCard(boardCardDto, boardId, principal);
+    }
+
+    @PostMapping("/boards/{id}/bulk")
+    @ResponseStatus(CREATED)
+    @Operation(security = @SecurityRequirement(name = "tokenAuth"), summary = "Add many cards to the board at once.",
+            description = "Either all cards are created or none of them.",
+            responses = {@ApiResponse(responseCode = "201", description = "Board cards created for given board"),
+                    @ApiResponse(responseCode = "400", description = "User is not the owner/or not assigned to the "
+                            + "board, board state is not CREATED, no or more than " + MAX_BULK_CARDS + " cards are "
+                            + "posted or any of them is not valid."),
+                    @ApiResponse(responseCode = "404", description = "Board not found")})
+    public List<BoardCardDto> addCardsToTheBoard(
+            @RequestBody @NotEmpty @Size(max = MAX_BULK_CARDS) final List<@Valid BoardCardDto> boardCardDtos,
+            @PathVariable(name = "id") final Integer boardId,
+            @AuthenticationPrincipal final UserPrincipal principal) {
 
-        return boardCardService.createBoardCard(boardCardDto, boardId, authentication.getName());
+        return boardCardService.createBoardCards(boardCardDtos, boardId, principal);
     }
 
     @DeleteMapping("/{id}")
@@ -48,9 +73,9 @@ public class BoardCardController {
                     @ApiResponse(responseCode = "400", description = "User is not allowed to delete card"),
                     @ApiResponse(responseCode = "404", description = "Card not found")})
     public void removeCardFromTheBoard(@PathVariable(name = "id") final Integer cardId,
-                                       final Authentication authentication) {
+                                       @AuthenticationPrincipal final UserPrincipal principal) {
 
-        boardCardService.removeCard(cardId, authentication.getName());
+        boardCardService.removeCard(cardId, principal);
     }
 
     @PostMapping("/{id}/votes")
@@ -63,9 +88,9 @@ public class BoardCardController {
                                                   "User is not assigned to board nor owner."),
                        @ApiResponse(responseCode = "404", description = "Card not found")})
     public Map<String, Integer> addVote(@PathVariable(name = "id") final Integer cardId,
-                                        final Authentication authentication) {
+                                        @AuthenticationPrincipal final UserPrincipal principal) {
 
-        return boardCardService.addVote(cardId, authentication.getName());
+        return boardCardService.addVote(cardId, principal);
     }
 
     @DeleteMapping("/{id}/votes")
@@ -78,9 +103,9 @@ public class BoardCardController {
                                 description = "Card not exist")
     })
     public Map<String, Integer> removeVote(@PathVariable(name = "id") final Integer cardId,
-                                        final Authentication authentication) {
+                                        @AuthenticationPrincipal final UserPrincipal principal) {
 
-        return boardCardService.removeVote(cardId, authentication.getName());
+        return boardCardService.removeVote(cardId, principal);
     }
 
     @PostMapping("/{id}/actions")
@@ -95,8 +120,8 @@ public class BoardCardController {
     public BoardCardActionDto addCardAction(
             @PathVariable(name = "id") final Integer cardId,
             @RequestBody @Valid final BoardCardActionRequestDto boardCardActionText,
-            final Authentication authentication) {
-        return boardCardService.addCardAction(cardId, authentication.getName(), boardCardActionText);
+            @AuthenticationPrincipal final UserPrincipal principal) {
+        return boardCardService.addCardAction(cardId, principal, boardCardActionText);
     }
 
     @DeleteMapping("actions/{id}")
@@ -107,8 +132,8 @@ public class BoardCardController {
                             description = "No ownership or board's state is not ACTIONS"),
                     @ApiResponse(responseCode = "404", description = "Action not found")})
     public void removeActionFromTheCard(@PathVariable(name = "id") final Integer actionId,
-                                        final Authentication authentication) {
+                                        @AuthenticationPrincipal final UserPrincipal principal) {
 
-        boardCardService.removeAction(actionId, authentication.getName());
+        boardCardService.removeAction(actionId, principal);
     }
 }
\ No newline at end of file
@@ -4,6 +4,10 @@ import com.intive.patronage22.szczecin.retroboard.dto.BoardDataDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardDetailsDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardPatchDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
+import com.intive.patronage22.szczecin.retroboard.event.BoardEventStream;
+import com.intive.patronage22.szczecin.retroboard.event.BoardVersions;
+import com.intive.patronage22.szczecin.retroboard.service.BoardCardService;
 import com.intive.patronage22.szczecin.retroboard.service.BoardService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -13,62 +17,108 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import java.util.List;
+import java.util.Map;
 
 import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
 import static org.springframework.http.HttpStatus.OK;
 
 @Slf4j
 @RequiredArgsConstructor
 @RestController
+@Validated
 @RequestMapping(value = "/api/v1/boards", produces = MediaType.APPLICATION_JSON_VALUE)
 public class BoardController {
 
     private final BoardService boardService;
+    private final BoardCardService boardCardService;
+    private final BoardEventStream boardEventStream;
+    private final BoardVersions boardVersions;
 
     @GetMapping
     @ResponseStatus(OK)
     @Operation(security = @SecurityRequirement(name = "tokenAuth"), summary = "Get retro board for given user.",
+            description = "Boards are returned newest first. To get the next page, pass the id of the last board "
+                    + "returned as before.",
             responses = {@ApiResponse(responseCode = "200", description = "OK"),
                     @ApiResponse(responseCode = "400", description = "Bad request data"),
                     @ApiResponse(responseCode = "404", description = "User not found")})
-    public List<BoardDto> getUserBoards(final Authentication authentication) {
-        return boardService.getUserBoards(authentication.getName());
+    public List<BoardDto> getUserBoards(@RequestParam(required = false) final Integer before,
+                                        @RequestParam(defaultValue = "50") @Min(1) @Max(100) final int limit,
+                                        @AuthenticationPrincipal final UserPrincipal principal) {
+        return boardService.getUserBoards(principal, before, limit);
     }
 
     @GetMapping("/{id}/details")
-    @ResponseStatus(OK)
     @Operation(security = @SecurityRequirement(name = "tokenAuth"), summary = "Get retro board details for user by id",
+               responses = {@ApiResponse(responseCode = "200", description = "OK"),
+                       @ApiResponse(responseCode = "304", description = "Not modified since given ETag"),
+                       @ApiResponse(responseCode = "400", description = "User has no access to board."),
+                       @ApiResponse(responseCode = "404", description = "Board not found")})
+    public ResponseEntity<List<BoardDetailsDto>> getBoardDetailsById(
+            @PathVariable final Integer id,
+            @AuthenticationPrincipal final UserPrincipal principal,
+            final WebRequest webRequest) {
+        final long version = boardService.getBoardVersion(id, principal);
+        final String eTag = boardVersions.eTag(version, principal.getEmail());
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(boardService.getBoardDetailsById(id, principal, version));
+    }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(security = @SecurityRequirement(name = "tokenAuth"), summary = "Stream changes of the retro board",
                responses = {@ApiResponse(responseCode = "200", description = "OK"),
                        @ApiResponse(responseCode = "400", description = "User has no access to board."),
                        @ApiResponse(responseCode = "404", description = "Board not found")})
-    public List<BoardDetailsDto> getBoardDetailsById(@PathVariable final Integer id,
-                                                                  final Authentication authentication) {
+    public SseEmitter getBoardEvents(@PathVariable final Integer id,
+                                     @RequestHeader(value = "Last-Event-ID", required = false) final String lastEventId,
+                                     @AuthenticationPrincipal final UserPrincipal principal) {
 
-        return boardService.getBoardDetailsById(id, authentication.getName());
+        boardService.checkBoardAccess(id, principal);
+        return boardEventStream.subscribe(id, lastEventId);
     }
 
     @GetMapping("/{id}")
-    @ResponseStatus(OK)
     @Operation(security = @SecurityRequirement(name = "tokenAuth"), summary = "Get retro board data for user by id",
                responses = {@ApiResponse(responseCode = "200", description = "OK"),
+                       @ApiResponse(responseCode = "304", description = "Not modified since given ETag"),
                        @ApiResponse(responseCode = "400", description = "User has no access to board."),
                        @ApiResponse(responseCode = "404", description = "Board not found")})
-    public BoardDataDto getBoardDataById(@PathVariable final Integer id, final Authentication authentication) {
-
-        return boardService.getBoardDataById(id, authentication.getName());
+    public ResponseEntity<BoardDataDto> getBoardDataById(@PathVariable final Integer id,
+                                                         @AuthenticationPrincipal
+                                                         final UserPrincipal principal,
+                                                         final WebRequest webRequest) {
+        final long version = boardService.getBoardVersion(id, principal);
+        final String eTag = boardVersions.eTag(version, principal.getEmail());
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(boardService.getBoardDataById(id, principal, version));
     }
 
     @PostMapping
@@ -78,9 +128,9 @@ public class BoardController {
                     @ApiResponse(responseCode = "400", description = "User not found"),
                     @ApiResponse(responseCode = "400", description = "Board name not valid")})
     public BoardDto createBoard(@RequestBody @Valid final BoardDto boardDto,
-                                final Authentication authentication) {
+                                @AuthenticationPrincipal final UserPrincipal principal) {
 
-        return boardService.createBoard(boardDto.getName(), authentication.getName());
+        return boardService.createBoard(boardDto.getName(), principal);
     }
 
     @PostMapping("/{id}/users")
@@ -91,9 +141,10 @@ public class BoardController {
                        @ApiResponse(responseCode = "404", description = "Board/user not found")})
     public ResponseEntity<List<String>> assignUsersToBoard(@PathVariable final Integer id,
                                                            @RequestBody final List<String> usersEmails,
-                                                           final Authentication authentication) {
+                                                           @AuthenticationPrincipal
+                                                           final UserPrincipal principal) {
         return ResponseEntity.status(CREATED)
-                .body(boardService.assignUsersToBoard(id, usersEmails, authentication.getName()));
+                .body(boardService.assignUsersToBoard(id, usersEmails, principal));
     }
 
     @DeleteMapping("/{id}")
@@ -103,9 +154,9 @@ public class BoardController {
                     @ApiResponse(responseCode = "400", description = "User is not the board owner"),
                     @ApiResponse(responseCode = "404", description = "Board not found")})
     public void deleteBoard(@PathVariable(name = "id") final int id,
-                            final Authentication authentication) {
+                            @AuthenticationPrincipal final UserPrincipal principal) {
 
-        boardService.delete(id, authentication.getName());
+        boardService.delete(id, principal);
     }
 
     @PatchMapping("/{id}")
@@ -117,8 +168,8 @@ public class BoardController {
     })
     public ResponseEntity<BoardDto> update(@PathVariable("id") final Integer id,
                                            @RequestBody final BoardPatchDto boardPatchDto,
-                                           final Authentication authentication) {
-        final BoardDto boardDto = boardService.patchBoard(id, boardPatchDto, authentication.getName());
+                                           @AuthenticationPrincipal final UserPrincipal principal) {
+        final BoardDto boardDto = boardService.patchBoard(id, boardPatchDto, principal);
         return ResponseEntity.status(OK).body(boardDto);
     }
 
@@ -132,8 +183,8 @@ public class BoardController {
     })
     public void deleteAssignedUser(@PathVariable("uid") final String uid,
                                    @PathVariable("id") final Integer id,
-                                   final Authentication authentication) {
-        boardService.removeUserAssignedToTheBoard(uid, id, authentication.getName());
+                                   @AuthenticationPrincipal final UserPrincipal principal) {
+        boardService.removeUserAssignedToTheBoard(uid, id, principal);
     }
 
     @PostMapping("/{id}/nextState")
@@ -144,7 +195,24 @@ public class BoardController {
             @ApiResponse(responseCode = "404", description = "User not found"),
             @ApiResponse(responseCode = "406", description = "No more steps")
     })
-    public BoardDataDto setNextState(@PathVariable("id") final Integer id, final Authentication authentication) {
-        return boardService.setNextState(id, authentication.getName());
+    public BoardDataDto setNextState(@PathVariable("id") final Integer id,
+                                     @AuthenticationPrincipal final UserPrincipal principal) {
+        return boardService.setNextState(id, principal);
+    }
+
+    @PutMapping("/{id}/votes")
+    @Operation(security = @SecurityRequirement(name = "tokenAuth"), summary = "Set all votes of the user on the board.",
+            description = "The body maps card ids to the number of votes given to them. Votes on cards left out are "
+                    + "removed.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Votes set"),
+            @ApiResponse(responseCode = "400", description = "Too many or negative votes, board state is not VOTING "
+                    + "or user is not assigned to the board"),
+            @ApiResponse(responseCode = "404", description = "Board or card not found")
+    })
+    public Map<String, Integer> setVotes(@PathVariable("id") final Integer id,
+                                         @RequestBody final Map<Integer, Integer> votes,
+                                         @AuthenticationPrincipal final UserPrincipal principal) {
+        return boardCardService.setVotes(id, votes, principal);
     }
-}
\ No newline at end of file
+}
@@ -18,6 +18,8 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.constraints.Email;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Size;
@@ -66,8 +68,9 @@ public class UserController {
     @ResponseStatus(OK)
     @Operation(security = @SecurityRequirement(name = "tokenAuth"), summary= "Search for a user by email",
                responses = {@ApiResponse(responseCode = "200", description = "Get an emails for the given string"),
-                       @ApiResponse(responseCode = "400", description = "Incorrect email's length")})
-    public List<String> search(@RequestParam @NotBlank @Size(min = 3, max = 64) final String email) {
-        return userService.search(email);
+                       @ApiResponse(responseCode = "400", description = "Incorrect email's length or limit")})
+    public List<String> search(@RequestParam @NotBlank @Size(min = 3, max = 64) final String email,
+                               @RequestParam(defaultValue = "10") @Min(1) @Max(50) final int limit) {
+        return userService.search(email, limit);
     }
 }
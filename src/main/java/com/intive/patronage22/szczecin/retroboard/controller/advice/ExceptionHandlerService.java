@@ -4,12 +4,14 @@ import com.google.firebase.auth.FirebaseAuthException;
 import com.intive.patronage22.szczecin.retroboard.dto.ErrorResponse;
 import com.intive.patronage22.szczecin.retroboard.exception.*;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolationException;
 
 import static com.intive.patronage22.szczecin.retroboard.dto.ErrorResponse.buildErrorResponse;
@@ -22,13 +24,15 @@ public class ExceptionHandlerService {
 
     @ResponseStatus(NOT_FOUND)
     @ExceptionHandler(NotFoundException.class)
-    public ErrorResponse notFoundHandler(final NotFoundException exception) {
+    public ErrorResponse notFoundHandler(final NotFoundException exception, final HttpServletResponse response) {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
         return buildErrorResponse(exception);
     }
 
     @ResponseStatus(BAD_REQUEST)
     @ExceptionHandler(BadRequestException.class)
-    public ErrorResponse badRequestHandler(final BadRequestException exception) {
+    public ErrorResponse badRequestHandler(final BadRequestException exception, final HttpServletResponse response) {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
         return buildErrorResponse(exception);
     }
 
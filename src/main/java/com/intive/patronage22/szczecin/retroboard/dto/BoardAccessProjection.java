@@ -0,0 +1,14 @@
+package com.intive.patronage22.szczecin.retroboard.dto;
+
+import com.intive.patronage22.szczecin.retroboard.model.Board;
+import com.intive.patronage22.szczecin.retroboard.model.User;
+
+// a user, the board they ask for (null when it does not exist) and their role on it: CREATOR, MEMBER or NONE
+public interface BoardAccessProjection {
+
+    User getUser();
+
+    Board getBoard();
+
+    String getRole();
+}
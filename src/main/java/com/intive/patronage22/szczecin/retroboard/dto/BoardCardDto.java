@@ -6,6 +6,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
+import lombok.With;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
@@ -14,6 +15,7 @@ import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Builder
@@ -45,6 +47,7 @@ public class BoardCardDto {
     @Schema(description = "Sum of all votes for card")
     Integer votes;
 
+    @With
     @Schema(description = "Sum of all votes given by user for card")
     Integer userVotes;
 
@@ -62,4 +65,20 @@ public class BoardCardDto {
                 .userVotes(numberOfUserVotes)
                 .build();
     }
+
+    public static BoardCardDto createFrom(final List<BoardCardProjection> boardCardRows) {
+        final BoardCardProjection boardCard = boardCardRows.get(0);
+        return BoardCardDto.builder()
+                .id(boardCard.getId())
+                .cardText(boardCard.getText())
+                .columnId(boardCard.getColumn().getColumnId())
+                .boardCardCreator(boardCard.getCreatorEmail())
+                .actionTexts(boardCardRows.stream()
+                        .map(BoardCardProjection::getActionText)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()))
+                .votes(boardCard.getVotes().intValue())
+                .userVotes(0)
+                .build();
+    }
 }
@@ -0,0 +1,17 @@
+package com.intive.patronage22.szczecin.retroboard.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+// single row of the board details query - one row per card action (or one row for a card without actions)
+@Value
+@AllArgsConstructor
+public class BoardCardProjection {
+
+    Integer id;
+    String text;
+    BoardCardsColumn column;
+    String creatorEmail;
+    String actionText;
+    Long votes;
+}
@@ -0,0 +1,13 @@
+package com.intive.patronage22.szczecin.retroboard.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+// votes given by one user to one card of a board
+@Value
+@AllArgsConstructor
+public class BoardCardVotesProjection {
+
+    Integer cardId;
+    Integer votes;
+}
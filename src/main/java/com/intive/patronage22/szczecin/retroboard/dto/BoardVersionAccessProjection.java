@@ -0,0 +1,11 @@
+package com.intive.patronage22.szczecin.retroboard.dto;
+
+// the board a user asks for (null when it does not exist), their role on it (CREATOR, MEMBER or NONE) and its version
+public interface BoardVersionAccessProjection {
+
+    Integer getBoardId();
+
+    String getRole();
+
+    Long getVersion();
+}
@@ -0,0 +1,27 @@
+package com.intive.patronage22.szczecin.retroboard.dto;
+
+import com.intive.patronage22.szczecin.retroboard.model.User;
+import lombok.Value;
+
+import java.security.Principal;
+
+/**
+ * The authenticated user, resolved once per token by the authorization filter and passed to the services instead of
+ * the email. Its name is the email, so {@code Authentication#getName()} keeps returning it.
+ */
+@Value
+public class UserPrincipal implements Principal {
+
+    String uid;
+    String email;
+    boolean deleted;
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public boolean isSameUserAs(final User user) {
+        return user != null && uid.equals(user.getUid());
+    }
+}
@@ -0,0 +1,11 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import lombok.Value;
+
+@Value
+public class BoardChangedEvent {
+
+    Integer boardId;
+    BoardEventType type;
+    Object payload;
+}
@@ -0,0 +1,20 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Value;
+
+@Value
+public class BoardEvent {
+
+    @Schema(description = "Sequence number, sent as the SSE event id")
+    long sequence;
+
+    @Schema(description = "Board id")
+    Integer boardId;
+
+    @Schema(description = "Event type, sent as the SSE event name")
+    BoardEventType type;
+
+    @Schema(description = "Changed data, depends on the event type")
+    Object payload;
+}
@@ -0,0 +1,136 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Carries board changes between the nodes of the application. The changes of a transaction are sent as one Postgres
+ * notification just before it commits, so they go out only when it does, and every node, the sending one too, gets
+ * the notifications in commit order and passes them to its {@link BoardEventStream}. Changes too large for one
+ * notification, like a bulk of new cards, are sent as a {@link BoardEventType#RESYNC} event of each changed board,
+ * split over as many notifications as the boards need.
+ * <p>
+ * Changes sent while {@link NotificationListener} was not listening are lost, so when it starts listening again every
+ * board with subscribers gets a {@link BoardEventType#RESYNC} event.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class BoardEventRelay implements NotificationChannel {
+
+    private final BoardRepository boardRepository;
+    private final BoardEventStream boardEventStream;
+    private final ObjectMapper objectMapper;
+
+    @EventListener
+    public void onBoardChanged(final BoardChangedEvent boardChangedEvent) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(List.of(boardChangedEvent)).forEach(boardRepository::notifyBoardChanged);
+            return;
+        }
+        changedInTransaction().add(boardChangedEvent);
+    }
+
+    @Override
+    public String getName() {
+        return BoardRepository.BOARD_EVENTS_CHANNEL;
+    }
+
+    @Override
+    public void onNotification(final String events) {
+        try {
+            for (final JsonNode event : objectMapper.readTree(events)) {
+                boardEventStream.publish(new BoardChangedEvent(event.get("boardId").asInt(),
+                        BoardEventType.valueOf(event.get("type").asText()),
+                        objectMapper.treeToValue(event.get("payload"), Object.class)));
+            }
+        } catch (final JsonProcessingException | RuntimeException e) {
+            log.warn("cannot read board events {}", events, e);
+        }
+    }
+
+    @Override
+    public void onListening() {
+        boardEventStream.resync();
+    }
+
+    // one notification, or the resyncs of the changed boards in as many as it takes to keep each within the limit
+    List<String> write(final List<BoardChangedEvent> boardChangedEvents) {
+        final String events = writeValue(boardChangedEvents);
+        if (bytes(events) <= MAX_PAYLOAD_BYTES) {
+            return List.of(events);
+        }
+
+        final List<String> notifications = new ArrayList<>();
+        final List<BoardChangedEvent> chunk = new ArrayList<>();
+        int chunkBytes = bytes(writeValue(List.of()));
+        for (final Integer boardId : boardChangedEvents.stream()
+                .map(BoardChangedEvent::getBoardId)
+                .distinct()
+                .collect(Collectors.toList())) {
+            final BoardChangedEvent resync = new BoardChangedEvent(boardId, BoardEventType.RESYNC, null);
+            final int resyncBytes = bytes(writeValue(resync)) + 1;
+            if (!chunk.isEmpty() && chunkBytes + resyncBytes > MAX_PAYLOAD_BYTES) {
+                notifications.add(writeValue(chunk));
+                chunk.clear();
+                chunkBytes = bytes(writeValue(List.of()));
+            }
+            chunk.add(resync);
+            chunkBytes += resyncBytes;
+        }
+        if (!chunk.isEmpty()) {
+            notifications.add(writeValue(chunk));
+        }
+        return notifications;
+    }
+
+    private String writeValue(final Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Cannot write board events", e);
+        }
+    }
+
+    private static int bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // events of the current transaction, sent together right before it commits
+    @SuppressWarnings("unchecked")
+    private List<BoardChangedEvent> changedInTransaction() {
+        final List<BoardChangedEvent> changed = (List<BoardChangedEvent>) TransactionSynchronizationManager
+                .getResource(this);
+        if (changed != null) {
+            return changed;
+        }
+
+        final List<BoardChangedEvent> created = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(final boolean readOnly) {
+                write(created).forEach(boardRepository::notifyBoardChanged);
+            }
+
+            @Override
+            public void afterCompletion(final int status) {
+                TransactionSynchronizationManager.unbindResource(BoardEventRelay.this);
+            }
+        });
+        return created;
+    }
+}
@@ -0,0 +1,346 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Fans out committed board changes, relayed from every node by {@link BoardEventRelay}, to SSE subscribers. Every
+ * event gets a sequence number from one increasing counter, and its id is that number prefixed with the id of this
+ * node, drawn at start. The last events of each board are kept, so a client reconnecting with {@code Last-Event-ID}
+ * gets what it missed. When those events are no longer kept, or the id comes from another node or an earlier run, the
+ * client gets a {@link BoardEventType#RESYNC} event and should reload the board.
+ * <p>
+ * Publishing only queues the event for each subscriber, the events are sent from a bounded pool of threads, so a slow
+ * client never holds up the request that changed the board. A subscriber falling further behind than the kept events
+ * is dropped and resynchronizes when it reconnects. Boards without subscribers are forgotten after the idle time.
+ */
+@Slf4j
+@Component
+public class BoardEventStream implements MeterBinder, DisposableBean {
+
+    // ids of other nodes cannot be replayed, this is before every kept event, so they get a resync
+    private static final long UNKNOWN_SEQUENCE = -1;
+
+    private final String node = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Integer, Channel> channels = new ConcurrentHashMap<>();
+    private final int historySize;
+    private final Duration timeout;
+    private final Duration idleTime;
+    private final ExecutorService executor;
+    private final Clock clock;
+
+    @Autowired
+    public BoardEventStream(@Value("${retroboard.board-events.history-size}") final int historySize,
+                            @Value("${retroboard.board-events.timeout}") final Duration timeout,
+                            @Value("${retroboard.board-events.idle-time}") final Duration idleTime,
+                            @Value("${retroboard.board-events.threads}") final int threads,
+                            @Value("${retroboard.board-events.queue-size}") final int queueSize) {
+        this(historySize, timeout, idleTime, new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new CustomizableThreadFactory("board-events-")),
+                Clock.systemUTC());
+    }
+
+    BoardEventStream(final int historySize, final Duration timeout, final Duration idleTime,
+                     final ExecutorService executor, final Clock clock) {
+        this.historySize = historySize;
+        this.timeout = timeout;
+        this.idleTime = idleTime;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    // the channel is only used inside compute, so eviction cannot drop it between lookup and use
+    public void publish(final BoardChangedEvent boardChangedEvent) {
+        channels.compute(boardChangedEvent.getBoardId(), (boardId, channel) -> {
+            final Channel current = channel != null ? channel : new Channel(boardId);
+            current.publish(boardChangedEvent);
+
+            if (boardChangedEvent.getType() == BoardEventType.BOARD_DELETED) {
+                current.complete();
+                return null;
+            }
+            return current;
+        });
+    }
+
+    public SseEmitter subscribe(final Integer boardId, final String lastEventId) {
+        final SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        channels.compute(boardId, (id, channel) -> {
+            final Channel current = channel != null ? channel : new Channel(id);
+            current.subscribe(emitter, sequenceOf(lastEventId));
+            return current;
+        });
+        return emitter;
+    }
+
+    // for when events may have been missed, every board with subscribers is told to reload
+    public void resync() {
+        channels.keySet().forEach(boardId -> channels.computeIfPresent(boardId, (id, channel) -> {
+            channel.publish(new BoardChangedEvent(id, BoardEventType.RESYNC, null));
+            return channel;
+        }));
+    }
+
+    @Scheduled(fixedRate = 60000, initialDelay = 60000)
+    public void evictIdleChannels() {
+        final Instant idleSince = clock.instant().minus(idleTime);
+        channels.keySet().forEach(boardId ->
+                channels.computeIfPresent(boardId, (id, channel) -> channel.isIdleSince(idleSince) ? null : channel));
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        new ExecutorServiceMetrics(executor, "boardEvents", Tags.empty()).bindTo(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    long lastSequence() {
+        return sequence.get();
+    }
+
+    String eventId(final long sequence) {
+        return node + "-" + sequence;
+    }
+
+    Long sequenceOf(final String eventId) {
+        if (eventId == null) {
+            return null;
+        }
+        if (!eventId.startsWith(node + "-")) {
+            return UNKNOWN_SEQUENCE;
+        }
+        try {
+            return Long.parseLong(eventId.substring(node.length() + 1));
+        } catch (final NumberFormatException e) {
+            return UNKNOWN_SEQUENCE;
+        }
+    }
+
+    List<BoardEvent> eventsAfter(final Integer boardId, final Long lastEventId) {
+        final Channel channel = channels.computeIfAbsent(boardId, Channel::new);
+        return channel.eventsAfter(lastEventId);
+    }
+
+    int subscribers(final Integer boardId) {
+        final Channel channel = channels.get(boardId);
+        return channel != null ? channel.subscribers() : 0;
+    }
+
+    int channels() {
+        return channels.size();
+    }
+
+    private class Channel {
+
+        private final Integer boardId;
+        private final Deque<BoardEvent> history = new ArrayDeque<>();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private long replayableAfter;
+        private Instant lastActivity;
+
+        Channel(final Integer boardId) {
+            this.boardId = boardId;
+            this.replayableAfter = sequence.get();
+            this.lastActivity = clock.instant();
+        }
+
+        synchronized void publish(final BoardChangedEvent boardChangedEvent) {
+            final BoardEvent event = new BoardEvent(sequence.incrementAndGet(), boardId,
+                    boardChangedEvent.getType(), boardChangedEvent.getPayload());
+
+            if (history.size() == historySize) {
+                replayableAfter = history.removeFirst().getSequence();
+            }
+            history.addLast(event);
+            lastActivity = clock.instant();
+
+            final List<Subscriber> lagging = subscribers.stream()
+                    .filter(subscriber -> !subscriber.offer(List.of(event)))
+                    .collect(Collectors.toList());
+            subscribers.removeAll(lagging);
+            lagging.forEach(Subscriber::drop);
+        }
+
+        synchronized void subscribe(final SseEmitter emitter, final Long lastEventId) {
+            final Subscriber subscriber = new Subscriber(boardId, emitter);
+            lastActivity = clock.instant();
+            if (!subscriber.offer(eventsAfter(lastEventId))) {
+                subscriber.drop();
+                return;
+            }
+
+            subscribers.add(subscriber);
+            emitter.onCompletion(() -> remove(subscriber));
+            emitter.onTimeout(() -> remove(subscriber));
+            emitter.onError(e -> remove(subscriber));
+        }
+
+        synchronized List<BoardEvent> eventsAfter(final Long lastEventId) {
+            if (lastEventId == null) {
+                return List.of();
+            }
+
+            if (lastEventId < replayableAfter || lastEventId > sequence.get()) {
+                return List.of(new BoardEvent(sequence.get(), boardId, BoardEventType.RESYNC, null));
+            }
+
+            return history.stream()
+                    .filter(event -> event.getSequence() > lastEventId)
+                    .collect(Collectors.toList());
+        }
+
+        synchronized void complete() {
+            final List<Subscriber> completed = List.copyOf(subscribers);
+            subscribers.clear();
+            completed.forEach(Subscriber::complete);
+        }
+
+        synchronized boolean isIdleSince(final Instant idleSince) {
+            return subscribers.isEmpty() && lastActivity.isBefore(idleSince);
+        }
+
+        synchronized int subscribers() {
+            return subscribers.size();
+        }
+
+        private synchronized void remove(final Subscriber subscriber) {
+            subscribers.remove(subscriber);
+            lastActivity = clock.instant();
+        }
+    }
+
+    /**
+     * Events waiting to be sent to one client. At most one task of the pool sends them at a time, in order.
+     */
+    private class Subscriber implements Runnable {
+
+        private final Integer boardId;
+        private final SseEmitter emitter;
+        private final Deque<BoardEvent> pending = new ArrayDeque<>();
+        private boolean sending;
+        private boolean completing;
+        private boolean dropped;
+
+        Subscriber(final Integer boardId, final SseEmitter emitter) {
+            this.boardId = boardId;
+            this.emitter = emitter;
+        }
+
+        // false when the client fell too far behind or the pool cannot take it, it has to be dropped then
+        synchronized boolean offer(final List<BoardEvent> events) {
+            if (dropped || pending.size() + events.size() > historySize) {
+                return false;
+            }
+            pending.addAll(events);
+            return schedule();
+        }
+
+        void complete() {
+            if (!markCompleting()) {
+                drop();
+            }
+        }
+
+        void drop() {
+            markDropped();
+            log.debug("dropping subscriber of board {}", boardId);
+            emitter.complete();
+        }
+
+        @Override
+        public void run() {
+            BoardEvent event;
+            while ((event = next()) != null) {
+                if (!send(event)) {
+                    drop();
+                    return;
+                }
+            }
+            if (isCompleting()) {
+                emitter.complete();
+            }
+        }
+
+        private synchronized boolean markCompleting() {
+            completing = true;
+            return schedule();
+        }
+
+        private synchronized void markDropped() {
+            dropped = true;
+        }
+
+        private synchronized boolean isCompleting() {
+            return completing;
+        }
+
+        private synchronized boolean schedule() {
+            if (sending || (pending.isEmpty() && !completing)) {
+                return true;
+            }
+            try {
+                executor.execute(this);
+                sending = true;
+                return true;
+            } catch (final RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        private synchronized BoardEvent next() {
+            final BoardEvent event = pending.pollFirst();
+            if (event == null) {
+                sending = false;
+            }
+            return event;
+        }
+
+        private boolean send(final BoardEvent event) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(eventId(event.getSequence()))
+                        .name(event.getType().name())
+                        .data(event, MediaType.APPLICATION_JSON));
+                return true;
+            } catch (final IOException | IllegalStateException e) {
+                log.debug("cannot send to subscriber of board {}: {}", boardId, e.getMessage());
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+public enum BoardEventType {
+    CARD_CREATED,
+    CARD_REMOVED,
+    VOTE_CHANGED,
+    VOTES_CHANGED,
+    ACTION_ADDED,
+    ACTION_REMOVED,
+    STATE_CHANGED,
+    BOARD_UPDATED,
+    BOARD_DELETED,
+    USERS_ASSIGNED,
+    USER_REMOVED,
+    RESYNC
+}
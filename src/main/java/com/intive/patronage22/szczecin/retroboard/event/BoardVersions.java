@@ -0,0 +1,67 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Version of every board, kept in the database and bumped once in each transaction changing the board, so every node
+ * answers conditional reads and serves snapshots for the same version. The version is the sum of a few counter rows
+ * and each transaction bumps a random one of them, so writers of one board rarely wait on each other. Boards that do
+ * not exist are at version 0.
+ */
+@Component
+@RequiredArgsConstructor
+public class BoardVersions {
+
+    private static final int STRIPES = 8;
+
+    private final BoardRepository boardRepository;
+
+    @EventListener
+    @Transactional
+    public void onBoardChanged(final BoardChangedEvent boardChangedEvent) {
+        final Integer boardId = boardChangedEvent.getBoardId();
+        if (boardChangedEvent.getType() != BoardEventType.BOARD_DELETED && changedInTransaction().add(boardId)) {
+            boardRepository.incrementVersion(boardId, ThreadLocalRandom.current().nextInt(STRIPES));
+        }
+    }
+
+    // the user part keeps the representation of one user from matching another's, the digest keeps the email out
+    public String eTag(final long version, final String email) {
+        return "\"" + version + "-" + DigestUtils.md5DigestAsHex(email.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // boards already bumped in the current transaction, a batch of changes needs only one new version
+    @SuppressWarnings("unchecked")
+    private Set<Integer> changedInTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new HashSet<>();
+        }
+
+        final Set<Integer> changed = (Set<Integer>) TransactionSynchronizationManager.getResource(this);
+        if (changed != null) {
+            return changed;
+        }
+
+        final Set<Integer> created = new HashSet<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(final int status) {
+                TransactionSynchronizationManager.unbindResource(BoardVersions.this);
+            }
+        });
+        return created;
+    }
+}
@@ -0,0 +1,17 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+/**
+ * A Postgres notification channel the nodes of the application talk over, listened to by {@link NotificationListener}.
+ */
+public interface NotificationChannel {
+
+    // Postgres takes payloads shorter than 8000 bytes
+    int MAX_PAYLOAD_BYTES = 7999;
+
+    String getName();
+
+    void onNotification(String payload);
+
+    // notifications sent while no node was listening are lost, this is called each time listening starts again
+    void onListening();
+}
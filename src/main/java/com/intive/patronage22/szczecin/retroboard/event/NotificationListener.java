@@ -0,0 +1,129 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Listens to the {@link NotificationChannel}s on a connection of its own, outside the pool, and hands every
+ * notification to its channel in commit order. When the connection is lost it reconnects, and every channel is told
+ * it may have missed notifications.
+ */
+@Slf4j
+@Component
+public class NotificationListener implements SmartLifecycle {
+
+    private final Map<String, NotificationChannel> channels;
+    private final DataSource dataSource;
+    private final Duration pollTimeout;
+    private final Duration reconnectDelay;
+    private ExecutorService listener;
+    private volatile boolean running;
+
+    @Autowired
+    public NotificationListener(final List<NotificationChannel> channels, final DataSource dataSource,
+                                @Value("${retroboard.notifications.reconnect-delay}") final Duration reconnectDelay) {
+        this(channels, dataSource, Duration.ofSeconds(1), reconnectDelay);
+    }
+
+    NotificationListener(final List<NotificationChannel> channels, final DataSource dataSource,
+                         final Duration pollTimeout, final Duration reconnectDelay) {
+        this.channels = channels.stream()
+                .collect(Collectors.toMap(NotificationChannel::getName, Function.identity()));
+        this.dataSource = dataSource;
+        this.pollTimeout = pollTimeout;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        listener = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("notification-listener-"));
+        listener.execute(this::listen);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        listener.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    void deliver(final String channel, final String payload) {
+        final NotificationChannel notificationChannel = channels.get(channel);
+        if (notificationChannel == null) {
+            log.warn("notification on unknown channel {}", channel);
+            return;
+        }
+        try {
+            notificationChannel.onNotification(payload);
+        } catch (final RuntimeException e) {
+            log.warn("cannot handle notification on channel {}", channel, e);
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+                for (final String channel : channels.keySet()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                channels.values().forEach(NotificationChannel::onListening);
+
+                final PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    final PGNotification[] notifications =
+                            pgConnection.getNotifications((int) pollTimeout.toMillis());
+                    if (notifications != null) {
+                        for (final PGNotification notification : notifications) {
+                            deliver(notification.getName(), notification.getParameter());
+                        }
+                    }
+                }
+            } catch (final SQLException e) {
+                if (running) {
+                    log.warn("lost notification connection, reconnecting in {}", reconnectDelay, e);
+                    pause();
+                }
+            }
+        }
+    }
+
+    // the pool is small and a listening connection is never given back, so it is opened next to the pool
+    private Connection connect() throws SQLException {
+        final HikariDataSource pool = dataSource.unwrap(HikariDataSource.class);
+        return DriverManager.getConnection(pool.getJdbcUrl(), pool.getUsername(), pool.getPassword());
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(reconnectDelay.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.intive.patronage22.szczecin.retroboard.exception;
+
+import org.springframework.security.core.AuthenticationException;
+
+public class LoginUnavailableException extends AuthenticationException {
+
+    public LoginUnavailableException(final String msg) {
+        super(msg);
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.intive.patronage22.szczecin.retroboard.dto.ErrorResponse;
 import com.intive.patronage22.szczecin.retroboard.dto.FirebaseUserDto;
 import com.intive.patronage22.szczecin.retroboard.exception.EmailFormatException;
+import com.intive.patronage22.szczecin.retroboard.exception.LoginUnavailableException;
 import com.intive.patronage22.szczecin.retroboard.exception.MissingFieldException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,14 +15,21 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 
-import static org.springframework.http.HttpHeaders.*;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+import static org.springframework.http.HttpHeaders.EXPIRES;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
@@ -32,6 +40,37 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
     private final AuthenticationManager authenticationManager;
     private final ObjectMapper objectMapper;
     private final String jwtSecret;
+    private final LoginBulkhead loginBulkhead;
+
+    // the call to Firebase runs on the login bulkhead, the servlet thread is released while it is waited for
+    @Override
+    public void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse,
+                         final FilterChain chain) throws IOException, ServletException {
+
+        final HttpServletRequest request = (HttpServletRequest) servletRequest;
+        final HttpServletResponse response = (HttpServletResponse) servletResponse;
+        if (!requiresAuthentication(request, response) || !request.isAsyncSupported()) {
+            super.doFilter(request, response, chain);
+            return;
+        }
+
+        final AsyncContext asyncContext = request.startAsync();
+        try {
+            loginBulkhead.execute(() -> {
+                try {
+                    super.doFilter(request, response, chain);
+                } catch (final Exception exception) {
+                    log.error("Error logging in {}", exception.getMessage());
+                    response.setStatus(INTERNAL_SERVER_ERROR.value());
+                } finally {
+                    asyncContext.complete();
+                }
+            });
+        } catch (final RejectedExecutionException exception) {
+            unsuccessfulAuthentication(request, response, new LoginUnavailableException("Too many logins."));
+            asyncContext.complete();
+        }
+    }
 
     @Override
     public Authentication attemptAuthentication(final HttpServletRequest request, final HttpServletResponse response)
@@ -71,6 +110,8 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
             response.setStatus(BAD_REQUEST.value());
         } else if (failed instanceof EmailFormatException) {
             response.setStatus(BAD_REQUEST.value());
+        } else if (failed instanceof LoginUnavailableException) {
+            response.setStatus(SERVICE_UNAVAILABLE.value());
         } else {
             response.setStatus(UNAUTHORIZED.value());
         }
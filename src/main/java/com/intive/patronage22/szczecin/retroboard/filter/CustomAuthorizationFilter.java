@@ -2,12 +2,18 @@ package com.intive.patronage22.szczecin.retroboard.filter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.FirebaseToken;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseTokenCache;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseUserStatusCache;
+import com.intive.patronage22.szczecin.retroboard.cache.VerifiedToken;
 import com.intive.patronage22.szczecin.retroboard.dto.ErrorResponse;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
 import com.intive.patronage22.szczecin.retroboard.model.User;
 import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
@@ -18,6 +24,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
@@ -36,6 +43,8 @@ public class CustomAuthorizationFilter extends OncePerRequestFilter {
     private final ObjectMapper objectMapper;
     private final FirebaseAuth firebaseAuth;
     private final UserRepository userRepository;
+    private final FirebaseTokenCache firebaseTokenCache;
+    private final FirebaseUserStatusCache firebaseUserStatusCache;
 
     @SuppressWarnings("NullableProblems")
     @Override
@@ -50,25 +59,19 @@ public class CustomAuthorizationFilter extends OncePerRequestFilter {
             if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
                 try {
                     final String token = authorizationHeader.substring("Bearer " .length());
-                    final FirebaseToken firebaseToken = firebaseAuth.verifyIdToken(token);
+                    final Optional<VerifiedToken> cachedToken = firebaseTokenCache.get(token);
+                    final VerifiedToken verifiedToken =
+                            cachedToken.isPresent() ? cachedToken.get() : verifyToken(token);
+                    final UserPrincipal principal = verifiedToken.getPrincipal();
+
+                    firebaseUserStatusCache.checkActive(principal.getEmail());
 
                     final var authenticationToken =
                             new UsernamePasswordAuthenticationToken(
-                                    firebaseToken.getEmail(),
+                                    principal,
                                     null,
                                     new HashSet<>());
 
-                    firebaseAuth.getUserByEmail(authenticationToken.getName());
-
-                    final Optional<User> optionalUser = userRepository.findUserByEmail(firebaseToken.getEmail());
-
-                    if (optionalUser.isEmpty()) {
-                        final User user = new User(firebaseToken.getUid(),
-                                firebaseToken.getEmail(), firebaseToken.getName(), false, Set.of(), Set.of());
-                        userRepository.save(user);
-                        log.info("{} added to database", firebaseToken.getEmail());
-                    }
-
                     SecurityContextHolder.getContext().setAuthentication(authenticationToken);
 
                     filterChain.doFilter(request, response);
@@ -88,4 +91,37 @@ public class CustomAuthorizationFilter extends OncePerRequestFilter {
             }
         }
     }
-}
\ No newline at end of file
+
+    private VerifiedToken verifyToken(final String token) throws FirebaseAuthException {
+        final FirebaseToken firebaseToken = firebaseAuth.verifyIdToken(token);
+        final User user = findOrCreateUser(firebaseToken);
+
+        final Object expiration = firebaseToken.getClaims().get("exp");
+        final VerifiedToken verifiedToken = new VerifiedToken(
+                new UserPrincipal(user.getUid(), firebaseToken.getEmail(), user.isDeleted()),
+                expiration instanceof Number
+                        ? Instant.ofEpochSecond(((Number) expiration).longValue())
+                        : Instant.EPOCH);
+        firebaseTokenCache.put(token, verifiedToken);
+
+        return verifiedToken;
+    }
+
+    private User findOrCreateUser(final FirebaseToken firebaseToken) {
+        final Optional<User> optionalUser = userRepository.findUserByEmail(firebaseToken.getEmail());
+        if (optionalUser.isPresent()) {
+            return optionalUser.get();
+        }
+
+        final User user = new User(firebaseToken.getUid(),
+                firebaseToken.getEmail(), firebaseToken.getName(), false, Set.of(), Set.of());
+        try {
+            userRepository.save(user);
+            log.info("{} added to database", firebaseToken.getEmail());
+        } catch (final DataIntegrityViolationException e) {
+            // the first requests of a new user can race to insert it, the loser reads what the winner saved
+            return userRepository.findUserByEmail(firebaseToken.getEmail()).orElseThrow(() -> e);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,41 @@
+package com.intive.patronage22.szczecin.retroboard.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs logins on threads of their own with a bounded queue. A login finding both full is rejected at once, so a slow
+ * Firebase sign-in endpoint cannot take the servlet threads board requests need.
+ */
+public class LoginBulkhead implements MeterBinder, DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    public LoginBulkhead(final int threads, final int queueSize) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new CustomizableThreadFactory("login-"));
+    }
+
+    public void execute(final Runnable login) throws RejectedExecutionException {
+        executor.execute(login);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        new ExecutorServiceMetrics(executor, "login", Tags.empty()).bindTo(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
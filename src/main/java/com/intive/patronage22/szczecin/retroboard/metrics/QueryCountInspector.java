@@ -0,0 +1,36 @@
+package com.intive.patronage22.szczecin.retroboard.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread between {@link #start()} and {@link #stop()}.
+ * Registered through {@code hibernate.session_factory.statement_inspector}.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNTER = new ThreadLocal<>();
+
+    @Override
+    public String inspect(final String sql) {
+        final int[] counter = COUNTER.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+        return sql;
+    }
+
+    public static void start() {
+        COUNTER.set(new int[1]);
+    }
+
+    public static int count() {
+        final int[] counter = COUNTER.get();
+        return counter != null ? counter[0] : 0;
+    }
+
+    public static int stop() {
+        final int count = count();
+        COUNTER.remove();
+        return count;
+    }
+}
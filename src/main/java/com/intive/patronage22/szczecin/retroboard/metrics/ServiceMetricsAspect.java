@@ -0,0 +1,44 @@
+package com.intive.patronage22.szczecin.retroboard.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every public method of the board, board card and user services. Each call is recorded in the
+ * {@code retroboard.service} timer, tagged with the class, method, outcome and the exception thrown (if any).
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ServiceMetricsAspect {
+
+    static final String METRIC_NAME = "retroboard.service";
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("execution(public * com.intive.patronage22.szczecin.retroboard.service.BoardService.*(..)) || " +
+            "execution(public * com.intive.patronage22.szczecin.retroboard.service.BoardCardService.*(..)) || " +
+            "execution(public * com.intive.patronage22.szczecin.retroboard.service.UserService.*(..))")
+    public Object timeServiceMethod(final ProceedingJoinPoint joinPoint) throws Throwable {
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (final Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .tag("class", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("outcome", "none".equals(exception) ? "SUCCESS" : "ERROR")
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+}
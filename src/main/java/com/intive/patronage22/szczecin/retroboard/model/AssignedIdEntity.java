@@ -0,0 +1,30 @@
+package com.intive.patronage22.szczecin.retroboard.model;
+
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.MappedSuperclass;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Transient;
+
+/**
+ * Base of entities whose ids are assigned by the application, like Firebase uids. It tells Spring Data which
+ * entities are new, so they are persisted and their inserts batched instead of being merged with a SELECT each.
+ */
+@MappedSuperclass
+public abstract class AssignedIdEntity implements Persistable<String> {
+
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
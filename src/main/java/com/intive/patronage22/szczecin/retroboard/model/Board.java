@@ -17,7 +17,8 @@ import java.util.Set;
 @Table(schema = "retro", name = "board")
 public class Board implements Serializable {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "board_id")
+    @SequenceGenerator(name = "board_id", schema = "retro", sequenceName = "board_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "name", length = 32, nullable = false)
@@ -18,6 +18,7 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import java.io.Serializable;
 import java.util.List;
@@ -31,8 +32,12 @@ import java.util.List;
 @Table(schema = "retro", name = "board_card")
 public class BoardCard implements Serializable {
 
+    // ids come from the SERIAL sequence in blocks, so inserts of many cards can be batched; Hibernate takes the
+    // block size from the sequence increment, allocationSize is only its default
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "board_card_id")
+    @SequenceGenerator(name = "board_card_id", schema = "retro", sequenceName = "board_card_id_seq",
+            allocationSize = 50)
     private Integer id;
 
     @ManyToOne
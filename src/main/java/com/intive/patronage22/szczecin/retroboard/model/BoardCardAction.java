@@ -17,7 +17,9 @@ import java.io.Serializable;
 public class BoardCardAction implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "board_card_action_id")
+    @SequenceGenerator(name = "board_card_action_id", schema = "retro", sequenceName = "board_card_action_id_seq",
+            allocationSize = 50)
     private Integer id;
 
     @ManyToOne
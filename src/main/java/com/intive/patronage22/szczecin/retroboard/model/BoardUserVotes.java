@@ -0,0 +1,25 @@
+package com.intive.patronage22.szczecin.retroboard.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(schema = "retro", name = "board_user_votes")
+@Data
+public class BoardUserVotes implements Serializable {
+
+    @EmbeddedId
+    private BoardUserVotesKey id;
+
+    @Column(name = "used", nullable = false)
+    private Integer used;
+}
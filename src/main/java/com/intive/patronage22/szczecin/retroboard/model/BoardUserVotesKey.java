@@ -0,0 +1,22 @@
+package com.intive.patronage22.szczecin.retroboard.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+@Data
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+public class BoardUserVotesKey implements Serializable {
+
+    @Column(name = "board_id", nullable = false)
+    Integer boardId;
+
+    @Column(name = "voter_uid", nullable = false)
+    String voter;
+}
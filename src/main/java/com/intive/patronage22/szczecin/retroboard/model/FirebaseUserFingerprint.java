@@ -0,0 +1,38 @@
+package com.intive.patronage22.szczecin.retroboard.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(schema = "retro", name = "firebase_user_fingerprint")
+public class FirebaseUserFingerprint extends AssignedIdEntity implements Serializable {
+
+    @Id
+    @Column(name = "uid", length = 128, nullable = false)
+    private String uid;
+
+    @Column(name = "fingerprint", length = 64, nullable = false)
+    private String fingerprint;
+
+    @Column(name = "sync_run", nullable = false)
+    private Long syncRun;
+
+    @Override
+    public String getId() {
+        return uid;
+    }
+}
@@ -0,0 +1,35 @@
+package com.intive.patronage22.szczecin.retroboard.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(schema = "retro", name = "scheduled_job_lock")
+public class ScheduledJobLock implements Serializable {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    @Column(name = "fencing_token", nullable = false)
+    private Long fencingToken;
+
+    @Column(name = "lease_until", nullable = false)
+    private Instant leaseUntil;
+}
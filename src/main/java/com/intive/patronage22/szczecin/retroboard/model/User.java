@@ -23,7 +23,7 @@ import java.util.Set;
 @Setter
 @Entity
 @Table(schema = "retro", name = "user_data")
-public class User implements Serializable {
+public class User extends AssignedIdEntity implements Serializable {
     @Id
     @Column(name = "uid", length = 128, nullable = false, unique = true)
     private String uid;
@@ -42,4 +42,9 @@ public class User implements Serializable {
 
     @OneToMany(mappedBy = "creator")
     private Set<Board> createdBoards;
+
+    @Override
+    public String getId() {
+        return uid;
+    }
 }
@@ -0,0 +1,35 @@
+package com.intive.patronage22.szczecin.retroboard.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(schema = "retro", name = "user_sync_checkpoint")
+public class UserSyncCheckpoint implements Serializable {
+
+    @Id
+    private Integer id;
+
+    @Column(name = "sync_run", nullable = false)
+    private Long syncRun;
+
+    @Column(name = "page_token", length = 1024)
+    private String pageToken;
+
+    @Column(name = "completed", nullable = false)
+    private boolean completed;
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.intive.patronage22.szczecin.retroboard.dto.FirebaseUserDto;
 import com.intive.patronage22.szczecin.retroboard.dto.UserLoginRequestDto;
+import com.intive.patronage22.szczecin.retroboard.exception.LoginUnavailableException;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,6 +16,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
@@ -35,6 +38,9 @@ public class FirebaseAuthenticationProvider implements AuthenticationProvider {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private LoginCircuitBreaker loginCircuitBreaker;
+
     @Override
     public boolean supports(Class<?> authentication) {
         return authentication.equals(UsernamePasswordAuthenticationToken.class);
@@ -44,11 +50,18 @@ public class FirebaseAuthenticationProvider implements AuthenticationProvider {
     public Authentication authenticate(Authentication authentication) throws AuthenticationException {
         final String email = (String)authentication.getPrincipal();
         final String password = (String)authentication.getCredentials();
+        loginCircuitBreaker.acquirePermission();
         try {
             final FirebaseUserDto userDto = restTemplate.postForObject(firebaseUrl + apiKey,
                     new UserLoginRequestDto(email, password), FirebaseUserDto.class);
+            loginCircuitBreaker.onSuccess();
             return new UsernamePasswordAuthenticationToken(userDto, password, new HashSet<>());
+        } catch (final HttpServerErrorException | ResourceAccessException e) {
+            loginCircuitBreaker.onFailure();
+            throw new LoginUnavailableException("Login is temporarily unavailable.");
         } catch (final RestClientResponseException e) {
+            // the endpoint answered, rejecting the credentials is not a failure of it
+            loginCircuitBreaker.onSuccess();
             try {
                 final Map<String, Map<String, Object>> result = new ObjectMapper()
                         .readValue(e.getResponseBodyAsString(), HashMap.class);
@@ -66,6 +79,10 @@ public class FirebaseAuthenticationProvider implements AuthenticationProvider {
             } catch(final JsonProcessingException e1) {
                 throw e;
             }
+        } catch (final RuntimeException e) {
+            // any other outcome has to be recorded as well, a probe left without one would keep the circuit open
+            loginCircuitBreaker.onFailure();
+            throw e;
         }
     }
 }
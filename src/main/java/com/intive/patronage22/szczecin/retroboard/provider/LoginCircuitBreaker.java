@@ -0,0 +1,67 @@
+package com.intive.patronage22.szczecin.retroboard.provider;
+
+import com.intive.patronage22.szczecin.retroboard.exception.LoginUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Stops calling the Firebase sign-in endpoint after it failed a number of times in a row, so logins fail fast while
+ * it is down. Once the open time is over a single login is let through to probe it, its outcome closes the circuit
+ * or opens it again.
+ */
+public class LoginCircuitBreaker implements MeterBinder {
+
+    private final int failureThreshold;
+    private final Duration openTime;
+    private final Clock clock;
+
+    private int consecutiveFailures;
+    private Instant openUntil;
+    private boolean probing;
+
+    public LoginCircuitBreaker(final int failureThreshold, final Duration openTime, final Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openTime = openTime;
+        this.clock = clock;
+    }
+
+    public synchronized void acquirePermission() {
+        if (openUntil == null) {
+            return;
+        }
+        if (probing || clock.instant().isBefore(openUntil)) {
+            throw new LoginUnavailableException("Login is temporarily unavailable.");
+        }
+        probing = true;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        openUntil = null;
+        probing = false;
+    }
+
+    public synchronized void onFailure() {
+        probing = false;
+        consecutiveFailures++;
+        if (consecutiveFailures >= failureThreshold) {
+            openUntil = clock.instant().plus(openTime);
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return openUntil != null;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("retroboard.login.circuit.open", this, breaker -> breaker.isOpen() ? 1 : 0)
+                .description("Whether logins fail fast because the Firebase sign-in endpoint keeps failing")
+                .register(registry);
+    }
+}
@@ -1,7 +1,11 @@
 package com.intive.patronage22.szczecin.retroboard.repository;
 
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardProjection;
+import com.intive.patronage22.szczecin.retroboard.model.Board;
 import com.intive.patronage22.szczecin.retroboard.model.BoardCard;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,5 +13,12 @@ import java.util.List;
 @Repository
 public interface BoardCardsRepository extends CrudRepository<BoardCard, Integer> {
 
-    List<BoardCard> findAllByBoardIdOrderByIdAsc(final Integer id);
+    @Query(value = "SELECT new com.intive.patronage22.szczecin.retroboard.dto.BoardCardProjection(" +
+                   "bc.id, bc.text, bc.column, c.email, a.text, COALESCE(SUM(bcv.votes), 0L)) " +
+                   "FROM BoardCard bc LEFT JOIN bc.creator c LEFT JOIN bc.boardCardActions a " +
+                   "LEFT JOIN BoardCardVotes bcv ON bcv.card = bc " +
+                   "WHERE bc.board = :board " +
+                   "GROUP BY bc.id, bc.text, bc.column, c.email, a.id, a.text " +
+                   "ORDER BY bc.id ASC, a.id ASC")
+    List<BoardCardProjection> findAllWithVotesByBoard(@Param("board") final Board board);
 }
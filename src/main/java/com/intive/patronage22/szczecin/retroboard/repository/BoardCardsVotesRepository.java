@@ -1,34 +1,61 @@
 package com.intive.patronage22.szczecin.retroboard.repository;
 
-import com.intive.patronage22.szczecin.retroboard.model.Board;
-import com.intive.patronage22.szczecin.retroboard.model.BoardCard;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardVotesProjection;
 import com.intive.patronage22.szczecin.retroboard.model.BoardCardVotes;
 import com.intive.patronage22.szczecin.retroboard.model.BoardCardVotesKey;
-import com.intive.patronage22.szczecin.retroboard.model.User;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Repository
 public interface BoardCardsVotesRepository extends CrudRepository<BoardCardVotes, BoardCardVotesKey> {
 
-    Optional<BoardCardVotes> findByCardAndVoter(final BoardCard card, final User user);
+    @Modifying
+    @Query(value = "INSERT INTO retro.board_card_votes(card_id, voter_uid, count) VALUES (:cardId, :voter, 1) " +
+                   "ON CONFLICT (card_id, voter_uid) DO UPDATE SET count = board_card_votes.count + 1",
+           nativeQuery = true)
+    void addVote(@Param("cardId") final Integer cardId, @Param("voter") final String voter);
 
-    @Query(value = "SELECT bcv.votes FROM BoardCardVotes bcv JOIN BoardCard bc ON bcv.card.id = bc.id WHERE bc.board " +
-                   "= :board AND bcv.voter=:user")
-    List<Integer> getVotesByBoardAndUser(@Param("board") final Board board, @Param("user") final User user);
+    @Query(value = "UPDATE retro.board_card_votes SET count = count - 1 " +
+                   "WHERE card_id = :cardId AND voter_uid = :voter AND count > 0 RETURNING count", nativeQuery = true)
+    Optional<Integer> removeVote(@Param("cardId") final Integer cardId, @Param("voter") final String voter);
 
-    @Query(value = "SELECT bcv.votes FROM BoardCardVotes bcv JOIN BoardCard bc ON bcv.card.id = bc.id WHERE bc.board " +
-                   "= :board AND bc=:card AND bcv.voter=:user")
-    Optional<Integer> getVotesByBoardAndCardAndUser(@Param("board") final Board board,
-                                                    @Param("card") final BoardCard card,
-                                                    @Param("user") final User user);
+    @Modifying
+    @Query(value = "DELETE FROM retro.board_card_votes WHERE card_id = :cardId AND voter_uid = :voter AND count = 0",
+           nativeQuery = true)
+    void deleteIfEmpty(@Param("cardId") final Integer cardId, @Param("voter") final String voter);
 
-    @Query(value = "SELECT SUM(bcv.votes) FROM BoardCardVotes bcv JOIN BoardCard bc ON bcv.card.id = bc.id " +
-                   "WHERE bc.board= :board AND bc=:card")
-    Optional<Integer> getVotesByBoardAndCard(@Param("board") final Board board, @Param("card") final BoardCard card);
-}
\ No newline at end of file
+    @Query(value = "SELECT new com.intive.patronage22.szczecin.retroboard.dto.BoardCardVotesProjection(" +
+                   "bcv.id.cardId, bcv.votes) " +
+                   "FROM BoardCardVotes bcv WHERE bcv.card.board.id = :boardId AND bcv.id.voter = :voter")
+    List<BoardCardVotesProjection> findAllByBoardAndVoter(@Param("boardId") final Integer boardId,
+                                                         @Param("voter") final String voter);
+
+    // sets the voter's votes on cards of the board in one statement, cards of other boards are skipped
+    default int setVotes(final Integer boardId, final String voter, final Map<Integer, Integer> votes) {
+        return upsertVotes(boardId, voter, votes.entrySet().stream()
+                .map(vote -> "\"" + vote.getKey() + "\":" + vote.getValue())
+                .collect(Collectors.joining(",", "{", "}")));
+    }
+
+    @Modifying
+    @Query(value = "INSERT INTO retro.board_card_votes(card_id, voter_uid, count) " +
+                   "SELECT bc.id, :voter, CAST(v.value AS INTEGER) FROM json_each_text(CAST(:votes AS JSON)) v " +
+                   "JOIN retro.board_card bc ON bc.id = CAST(v.key AS INTEGER) AND bc.board_id = :boardId " +
+                   "ON CONFLICT (card_id, voter_uid) DO UPDATE SET count = EXCLUDED.count", nativeQuery = true)
+    int upsertVotes(@Param("boardId") final Integer boardId, @Param("voter") final String voter,
+                    @Param("votes") final String votes);
+
+    @Modifying
+    @Query(value = "DELETE FROM retro.board_card_votes WHERE voter_uid = :voter AND card_id IN (:cardIds)",
+           nativeQuery = true)
+    void deleteVotes(@Param("voter") final String voter, @Param("cardIds") final Collection<Integer> cardIds);
+}
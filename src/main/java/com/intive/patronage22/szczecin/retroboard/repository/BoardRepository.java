@@ -1,22 +1,77 @@
 package com.intive.patronage22.szczecin.retroboard.repository;
 
+import com.intive.patronage22.szczecin.retroboard.dto.BoardAccessProjection;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardDto;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardVersionAccessProjection;
 import com.intive.patronage22.szczecin.retroboard.model.Board;
 import com.intive.patronage22.szczecin.retroboard.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface BoardRepository extends CrudRepository<Board, Integer> {
 
-    @Query(value = "SELECT b FROM Board b WHERE b.id=:id AND (b.creator=:user OR :user IN elements(b.users))")
-    Optional<Board> findBoardByIdAndCreatorOrAssignedUser(@Param("id") final Integer id,
-                                                          @Param("user") final User user);
+    String BOARD_EVENTS_CHANNEL = "retro_board_events";
+
+    @Query(value = "SELECT u AS user, b AS board, CASE WHEN b.creator = u THEN 'CREATOR' "
+            + "WHEN u IN (SELECT m FROM Board mb JOIN mb.users m WHERE mb.id = :id) THEN 'MEMBER' "
+            + "ELSE 'NONE' END AS role "
+            + "FROM User u LEFT JOIN Board b ON b.id = :id LEFT JOIN FETCH b.creator WHERE u.uid = :uid")
+    Optional<BoardAccessProjection> findBoardAccess(@Param("id") final Integer id, @Param("uid") final String uid);
 
     @Query(value = "SELECT b FROM Board b WHERE (b.creator=:user or :user IN elements(b.users))")
     Optional<List<Board>> findBoardByCreatorOrAssignedUser(@Param("user") final User user);
+
+    @Query(value = "SELECT new com.intive.patronage22.szczecin.retroboard.dto.BoardDto(b.id, b.state, b.name, "
+            + "b.maximumNumberOfVotes) FROM Board b "
+            + "WHERE b.id < :before AND (b.creator=:user OR :user IN elements(b.users)) ORDER BY b.id DESC")
+    List<BoardDto> findPageByCreatorOrAssignedUser(@Param("user") final User user,
+                                                   @Param("before") final Integer before,
+                                                   final Pageable pageable);
+
+    // versions live in retro.board_version, one board has a few counter rows, see V16_0__board_version_stripes.sql;
+    // the same roles as findBoardAccess, without loading the user and the board
+    @Query(value = "SELECT b.id AS boardId, CASE WHEN b.creator_uid = u.uid THEN 'CREATOR' "
+            + "WHEN EXISTS (SELECT 1 FROM retro.users_boards ub WHERE ub.board_id = b.id AND ub.user_uid = u.uid) "
+            + "THEN 'MEMBER' ELSE 'NONE' END AS role, "
+            + "(SELECT CAST(COALESCE(SUM(v.version), 0) AS BIGINT) FROM retro.board_version v "
+            + "WHERE v.board_id = b.id) AS version "
+            + "FROM retro.user_data u LEFT JOIN retro.board b ON b.id = :id WHERE u.uid = :uid",
+           nativeQuery = true)
+    Optional<BoardVersionAccessProjection> findBoardVersionAccess(@Param("id") final Integer id,
+                                                                  @Param("uid") final String uid);
+
+    @Modifying
+    @Query(value = "INSERT INTO retro.board_version (board_id, stripe, version) VALUES (:id, :stripe, 1) "
+            + "ON CONFLICT (board_id, stripe) DO UPDATE SET version = retro.board_version.version + 1",
+           nativeQuery = true)
+    void incrementVersion(@Param("id") final Integer id, @Param("stripe") final int stripe);
+
+    @Modifying
+    @Query(value = "DELETE FROM retro.board_version WHERE board_id IN (:ids)", nativeQuery = true)
+    void deleteVersionsByBoardIdIn(@Param("ids") final Collection<Integer> ids);
+
+    // the notification is delivered to the listening nodes only when the transaction commits
+    @Query(value = "SELECT 1 FROM pg_notify('" + BOARD_EVENTS_CHANNEL + "', :event)", nativeQuery = true)
+    Integer notifyBoardChanged(@Param("event") final String event);
+
+    @Query(value = "SELECT b.id FROM Board b WHERE b.creator.uid IN :uids")
+    List<Integer> findIdsByCreatorUidIn(@Param("uids") final Collection<String> uids);
+
+    @Query(value = "SELECT DISTINCT m.uid FROM Board b JOIN b.users m WHERE m.uid IN :uids")
+    List<String> findMemberUidsIn(@Param("uids") final Collection<String> uids);
+
+    // cards with their actions and votes, members and vote counters go with the boards through ON DELETE CASCADE,
+    // nothing is loaded into the session
+    @Modifying
+    @Query(value = "DELETE FROM retro.board WHERE id IN (:ids)", nativeQuery = true)
+    void deleteByIdIn(@Param("ids") final Collection<Integer> ids);
 }
@@ -0,0 +1,37 @@
+package com.intive.patronage22.szczecin.retroboard.repository;
+
+import com.intive.patronage22.szczecin.retroboard.model.BoardUserVotes;
+import com.intive.patronage22.szczecin.retroboard.model.BoardUserVotesKey;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BoardUserVotesRepository extends CrudRepository<BoardUserVotes, BoardUserVotesKey> {
+
+    @Modifying
+    @Query(value = "INSERT INTO retro.board_user_votes(board_id, voter_uid, used) VALUES (:boardId, :voter, 0) " +
+                   "ON CONFLICT (board_id, voter_uid) DO NOTHING", nativeQuery = true)
+    void createIfAbsent(@Param("boardId") final Integer boardId, @Param("voter") final String voter);
+
+    @Modifying
+    @Query(value = "INSERT INTO retro.board_user_votes(board_id, voter_uid, used) VALUES (:boardId, :voter, :used) " +
+                   "ON CONFLICT (board_id, voter_uid) DO UPDATE SET used = EXCLUDED.used", nativeQuery = true)
+    void setUsedVotes(@Param("boardId") final Integer boardId, @Param("voter") final String voter,
+                      @Param("used") final int used);
+
+    @Query(value = "UPDATE retro.board_user_votes SET used = used + 1 " +
+                   "WHERE board_id = :boardId AND voter_uid = :voter AND used < :maximumNumberOfVotes " +
+                   "RETURNING used", nativeQuery = true)
+    Optional<Integer> useVote(@Param("boardId") final Integer boardId, @Param("voter") final String voter,
+                              @Param("maximumNumberOfVotes") final int maximumNumberOfVotes);
+
+    @Query(value = "UPDATE retro.board_user_votes SET used = used - 1 " +
+                   "WHERE board_id = :boardId AND voter_uid = :voter AND used > 0 " +
+                   "RETURNING used", nativeQuery = true)
+    Optional<Integer> returnVote(@Param("boardId") final Integer boardId, @Param("voter") final String voter);
+}
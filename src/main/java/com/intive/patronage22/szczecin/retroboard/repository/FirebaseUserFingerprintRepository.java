@@ -0,0 +1,25 @@
+package com.intive.patronage22.szczecin.retroboard.repository;
+
+import com.intive.patronage22.szczecin.retroboard.model.FirebaseUserFingerprint;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FirebaseUserFingerprintRepository extends CrudRepository<FirebaseUserFingerprint, String> {
+
+    List<FirebaseUserFingerprint> findAllByUidIn(final Collection<String> uids);
+
+    @Modifying
+    @Query("UPDATE FirebaseUserFingerprint f SET f.syncRun = :syncRun WHERE f.uid IN :uids")
+    void markSynchronized(@Param("uids") final Collection<String> uids, @Param("syncRun") final Long syncRun);
+
+    @Modifying
+    @Query("DELETE FROM FirebaseUserFingerprint f WHERE f.syncRun <> :syncRun")
+    void deleteAllNotSynchronizedIn(@Param("syncRun") final Long syncRun);
+}
@@ -0,0 +1,35 @@
+package com.intive.patronage22.szczecin.retroboard.repository;
+
+import com.intive.patronage22.szczecin.retroboard.model.ScheduledJobLock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ScheduledJobLockRepository extends CrudRepository<ScheduledJobLock, String> {
+
+    // takes the lock when it is free or its lease expired, every take gets a higher fencing token
+    @Query(value = "INSERT INTO retro.scheduled_job_lock(name, owner, fencing_token, lease_until) " +
+                   "VALUES (:name, :owner, 1, now() + make_interval(secs => :leaseSeconds)) " +
+                   "ON CONFLICT (name) DO UPDATE SET owner = EXCLUDED.owner, lease_until = EXCLUDED.lease_until, " +
+                   "fencing_token = scheduled_job_lock.fencing_token + 1 " +
+                   "WHERE scheduled_job_lock.lease_until < now() " +
+                   "RETURNING fencing_token", nativeQuery = true)
+    Optional<Long> acquire(@Param("name") final String name, @Param("owner") final String owner,
+                           @Param("leaseSeconds") final long leaseSeconds);
+
+    @Modifying
+    @Query(value = "UPDATE retro.scheduled_job_lock SET lease_until = now() + make_interval(secs => :leaseSeconds) " +
+                   "WHERE name = :name AND fencing_token = :fencingToken", nativeQuery = true)
+    int renew(@Param("name") final String name, @Param("fencingToken") final long fencingToken,
+              @Param("leaseSeconds") final long leaseSeconds);
+
+    @Modifying
+    @Query(value = "UPDATE retro.scheduled_job_lock SET lease_until = now() " +
+                   "WHERE name = :name AND fencing_token = :fencingToken", nativeQuery = true)
+    void release(@Param("name") final String name, @Param("fencingToken") final long fencingToken);
+}
@@ -1,25 +1,62 @@
 package com.intive.patronage22.szczecin.retroboard.repository;
 
 import com.intive.patronage22.szczecin.retroboard.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends CrudRepository<User, String> {
+public interface UserRepository extends JpaRepository<User, String> {
 
-    Optional<User> findUserByEmail(final String email);
+    String USER_REVOCATIONS_CHANNEL = "retro_user_revocations";
 
-    List<User> findAllByEmailIn(List<String> emails);
+    Optional<User> findUserByEmail(final String email);
 
     @Query("SELECT u FROM User u WHERE u.email IN :emails AND u.deleted IS NOT TRUE")
     List<User> findAllNotDeactivatedByEmailIn(List<String> emails);
 
-    List<User> findAllByEmailNotIn(List<String> emails);
-
-    @Query("SELECT u.email FROM User u WHERE u.email LIKE %:email%")
-    List<String> searchByEmailLike(final String email);
+    @Query("SELECT u FROM User u WHERE u.email IN :emails AND u.uid NOT IN :uids")
+    List<User> findAllByEmailInAndUidNotIn(@Param("emails") final Collection<String> emails,
+                                           @Param("uids") final Collection<String> uids);
+
+    // boards, cards, votes and memberships of the user follow the new uid through ON UPDATE CASCADE
+    @Modifying
+    @Query(value = "UPDATE retro.user_data SET uid = :newUid, deleted = false WHERE uid = :uid", nativeQuery = true)
+    void reassignUid(@Param("uid") final String uid, @Param("newUid") final String newUid);
+
+    // the notification is delivered to the listening nodes only when the transaction commits
+    @Query(value = "SELECT 1 FROM pg_notify('" + USER_REVOCATIONS_CHANNEL + "', :revocation)", nativeQuery = true)
+    Integer notifyUsersRevoked(@Param("revocation") final String revocation);
+
+    @Query("SELECT u FROM User u WHERE (u.deleted IS NOT TRUE OR u.userBoards IS EMPTY) AND u.uid NOT IN " +
+           "(SELECT f.uid FROM FirebaseUserFingerprint f WHERE f.syncRun = :syncRun)")
+    List<User> findAllNotSynchronizedIn(@Param("syncRun") final Long syncRun);
+
+    // served by the pg_trgm index on email, emails starting with the pattern come first
+    @Query(value = "SELECT u.email FROM retro.user_data u " +
+                   "WHERE u.email ILIKE '%' || :pattern || '%' AND u.deleted IS NOT TRUE " +
+                   "ORDER BY u.email ILIKE :pattern || '%' DESC, u.email", nativeQuery = true)
+    List<String> searchByEmail(@Param("pattern") final String pattern, final Pageable pageable);
+
+    // same results as searchByEmail on any database, without an index
+    @Query("SELECT u.email FROM User u " +
+           "WHERE LOWER(u.email) LIKE CONCAT('%', LOWER(:pattern), '%') ESCAPE '\\' AND u.deleted IS NOT TRUE " +
+           "ORDER BY CASE WHEN LOWER(u.email) LIKE CONCAT(LOWER(:pattern), '%') ESCAPE '\\' THEN 0 ELSE 1 END, " +
+           "u.email")
+    List<String> searchByEmailWithoutIndex(@Param("pattern") final String pattern, final Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.uid IN :uids")
+    void deleteAllByUidIn(@Param("uids") final Collection<String> uids);
+
+    @Modifying
+    @Query("UPDATE User u SET u.deleted = true WHERE u.uid IN :uids")
+    void deactivateAllByUidIn(@Param("uids") final Collection<String> uids);
 }
@@ -0,0 +1,9 @@
+package com.intive.patronage22.szczecin.retroboard.repository;
+
+import com.intive.patronage22.szczecin.retroboard.model.UserSyncCheckpoint;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserSyncCheckpointRepository extends CrudRepository<UserSyncCheckpoint, Integer> {
+}
@@ -0,0 +1,21 @@
+package com.intive.patronage22.szczecin.retroboard.service;
+
+import com.intive.patronage22.szczecin.retroboard.model.Board;
+import com.intive.patronage22.szczecin.retroboard.model.User;
+import lombok.Value;
+
+@Value
+public class BoardAccess {
+
+    public enum Role {
+        CREATOR, MEMBER, NONE
+    }
+
+    User user;
+    Board board;
+    Role role;
+
+    public boolean isGranted() {
+        return role != Role.NONE;
+    }
+}
@@ -0,0 +1,63 @@
+package com.intive.patronage22.szczecin.retroboard.service;
+
+import com.intive.patronage22.szczecin.retroboard.dto.BoardAccessProjection;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardVersionAccessProjection;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
+import com.intive.patronage22.szczecin.retroboard.exception.BadRequestException;
+import com.intive.patronage22.szczecin.retroboard.exception.NotFoundException;
+import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Resolves the user, the board and the user's role on it with a single query, for services that authorize board
+ * requests.
+ */
+@Service
+@RequiredArgsConstructor
+public class BoardAccessService {
+
+    private final BoardRepository boardRepository;
+
+    @Transactional(readOnly = true)
+    public BoardAccess getBoardAccess(final Integer boardId, final UserPrincipal principal) {
+        final BoardAccessProjection boardAccess = boardRepository.findBoardAccess(boardId, principal.getUid())
+                .orElseThrow(() -> new BadRequestException("User not found"));
+
+        if (boardAccess.getBoard() == null) {
+            throw new NotFoundException("Board not found");
+        }
+
+        return new BoardAccess(boardAccess.getUser(), boardAccess.getBoard(),
+                BoardAccess.Role.valueOf(boardAccess.getRole()));
+    }
+
+    @Transactional(readOnly = true)
+    public BoardAccess getGrantedBoardAccess(final Integer boardId, final UserPrincipal principal) {
+        final BoardAccess boardAccess = getBoardAccess(boardId, principal);
+
+        if (!boardAccess.isGranted()) {
+            throw new BadRequestException("User has no access to board");
+        }
+
+        return boardAccess;
+    }
+
+    // checks access like getGrantedBoardAccess and returns the board version, with one query loading no entities
+    @Transactional(readOnly = true)
+    public long getGrantedBoardVersion(final Integer boardId, final UserPrincipal principal) {
+        final BoardVersionAccessProjection boardAccess = boardRepository.findBoardVersionAccess(boardId,
+                principal.getUid()).orElseThrow(() -> new BadRequestException("User not found"));
+
+        if (boardAccess.getBoardId() == null) {
+            throw new NotFoundException("Board not found");
+        }
+
+        if (BoardAccess.Role.valueOf(boardAccess.getRole()) == BoardAccess.Role.NONE) {
+            throw new BadRequestException("User has no access to board");
+        }
+
+        return boardAccess.getVersion();
+    }
+}
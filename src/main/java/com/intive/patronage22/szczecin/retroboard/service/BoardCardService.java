@@ -1,16 +1,21 @@
 package com.intive.patronage22.szczecin.retroboard.service;
 
 import com.intive.patronage22.szczecin.retroboard.dto.*;
+import com.intive.patronage22.szczecin.retroboard.event.BoardChangedEvent;
+import com.intive.patronage22.szczecin.retroboard.event.BoardEventType;
 import com.intive.patronage22.szczecin.retroboard.exception.BadRequestException;
 import com.intive.patronage22.szczecin.retroboard.exception.NotFoundException;
 import com.intive.patronage22.szczecin.retroboard.model.*;
 import com.intive.patronage22.szczecin.retroboard.repository.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -18,71 +23,82 @@ public class BoardCardService {
 
     private final BoardCardsRepository boardCardsRepository;
     private final BoardRepository boardRepository;
-    private final UserRepository userRepository;
     private final BoardCardsVotesRepository boardCardsVotesRepository;
+    private final BoardUserVotesRepository boardUserVotesRepository;
     private final BoardCardsActionsRepository boardCardsActionsRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final BoardAccessService boardAccessService;
 
     @Transactional
-    public BoardCardDto createBoardCard(final BoardCardDto boardCardDto, final Integer boardId, final String email) {
+    public BoardCardDto createBoardCard(final BoardCardDto boardCardDto, final Integer boardId,
+                                        final UserPrincipal principal) {
 
-        final User user = userRepository
-                .findUserByEmail(email).orElseThrow(() -> new BadRequestException("User not found"));
+        return createBoardCards(List.of(boardCardDto), boardId, principal).get(0);
+    }
 
-        if (!boardRepository.existsById(boardId)) {
-            throw new NotFoundException("Board not found");
-        }
+    /**
+     * Creates all given cards or none of them. The card ids are allocated in blocks, so the cards are inserted in
+     * JDBC batches.
+     */
+    @Transactional
+    public List<BoardCardDto> createBoardCards(final List<BoardCardDto> boardCardDtos, final Integer boardId,
+                                               final UserPrincipal principal) {
 
-        final Board board = boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)
-                .orElseThrow(() -> new BadRequestException("User has no access to board"));
+        final BoardAccess boardAccess = boardAccessService.getGrantedBoardAccess(boardId, principal);
+        final User user = boardAccess.getUser();
+        final Board board = boardAccess.getBoard();
 
         if (!board.getState().equals(EnumStateDto.CREATED)) {
             throw new BadRequestException("Board state is not CREATED");
         }
 
-        final BoardCard boardCard = BoardCard.builder()
-                .board(board)
-                .column(BoardCardsColumn.columnIdToBoardCardsColumn(boardCardDto.getColumnId()))
-                .text(boardCardDto.getCardText())
-                .creator(user)
-                .boardCardActions(List.of())
-                .build();
-
-        boardCardsRepository.save(boardCard);
-
-        return BoardCardDto.createFrom(boardCard, 0, 0);
+        final List<BoardCard> boardCards = boardCardDtos.stream()
+                .map(boardCardDto -> BoardCard.builder()
+                        .board(board)
+                        .column(BoardCardsColumn.columnIdToBoardCardsColumn(boardCardDto.getColumnId()))
+                        .text(boardCardDto.getCardText())
+                        .creator(user)
+                        .boardCardActions(List.of())
+                        .build())
+                .collect(Collectors.toList());
+
+        boardCardsRepository.saveAll(boardCards);
+
+        final List<BoardCardDto> createdBoardCardDtos = boardCards.stream()
+                .map(boardCard -> BoardCardDto.createFrom(boardCard, 0, 0))
+                .collect(Collectors.toList());
+        createdBoardCardDtos.forEach(createdBoardCardDto ->
+                publishEvent(boardId, BoardEventType.CARD_CREATED, createdBoardCardDto));
+
+        return createdBoardCardDtos;
     }
 
     @Transactional
-    public void removeCard(final Integer cardId, final String email) {
+    public void removeCard(final Integer cardId, final UserPrincipal principal) {
 
         final BoardCard boardCard = boardCardsRepository.findById(cardId)
                 .orElseThrow(() -> new NotFoundException("Card not found"));
 
-        final User user = userRepository
-                .findUserByEmail(email).orElseThrow(() -> new BadRequestException("User not found"));
-
-        if (!user.equals(boardCard.getCreator())
-                && !user.equals(boardCard.getBoard().getCreator()))
+        if (!principal.isSameUserAs(boardCard.getCreator())
+                && !principal.isSameUserAs(boardCard.getBoard().getCreator()))
             throw new BadRequestException("User is not allowed to delete card");
 
         if (!EnumStateDto.CREATED.equals(boardCard.getBoard().getState()))
             throw new BadRequestException("User is not allowed to delete card");
 
         boardCardsRepository.deleteById(cardId);
+        publishEvent(boardCard.getBoard().getId(), BoardEventType.CARD_REMOVED, Map.of("cardId", cardId));
     }
 
     @Transactional
-    public Map<String, Integer> addVote(final Integer cardId, final String email) {
-        final User user =
-                userRepository.findUserByEmail(email).orElseThrow(() -> new BadRequestException("User not found"));
-
+    public Map<String, Integer> addVote(final Integer cardId, final UserPrincipal principal) {
         final BoardCard card =
                 boardCardsRepository.findById(cardId).orElseThrow(() -> new NotFoundException("Card not found"));
 
         final Board board = boardRepository.findById(card.getBoard().getId())
                 .orElseThrow(() -> new BadRequestException("Board not exist"));
 
-        if (!board.getUsers().contains(user) && !board.getCreator().equals(user)) {
+        if (!isAssignedToBoard(principal, board)) {
             throw new BadRequestException("User not assigned to board");
         }
 
@@ -90,37 +106,24 @@ public class BoardCardService {
             throw new BadRequestException("Wrong state of board");
         }
 
-        final int addedUserVotes =
-                boardCardsVotesRepository.getVotesByBoardAndUser(board, user)
-                        .stream()
-                        .reduce(0, Integer::sum);
-
-        final int remainingUserVotes = board.getMaximumNumberOfVotes() - addedUserVotes;
-        if (remainingUserVotes == 0) {
-            throw new BadRequestException("No more votes");
-        }
+        boardUserVotesRepository.createIfAbsent(board.getId(), principal.getUid());
+        final int usedUserVotes = boardUserVotesRepository
+                .useVote(board.getId(), principal.getUid(), board.getMaximumNumberOfVotes())
+                .orElseThrow(() -> new BadRequestException("No more votes"));
 
-        boardCardsVotesRepository.findByCardAndVoter(card, user).ifPresentOrElse(vote -> {
-            vote.setVotes(vote.getVotes() + 1);
-            boardCardsVotesRepository.save(vote);
-        }, () -> {
-            final BoardCardVotesKey key = new BoardCardVotesKey(card.getId(), user.getUid());
-            boardCardsVotesRepository.save(new BoardCardVotes(key, card, user, 1));
-        });
+        boardCardsVotesRepository.addVote(card.getId(), principal.getUid());
+        publishEvent(board.getId(), BoardEventType.VOTE_CHANGED, Map.of("cardId", card.getId(), "delta", 1));
 
-        return Map.of("remainingVotes", remainingUserVotes - 1);
+        return Map.of("remainingVotes", board.getMaximumNumberOfVotes() - usedUserVotes);
     }
 
     @Transactional
-    public Map<String, Integer> removeVote(final Integer cardId, final String email) {
-
-        final User user = userRepository.findUserByEmail(email)
-                .orElseThrow(() -> new BadRequestException("User not found"));
+    public Map<String, Integer> removeVote(final Integer cardId, final UserPrincipal principal) {
 
         final BoardCard card = boardCardsRepository.findById(cardId)
                 .orElseThrow(() -> new NotFoundException("Card not found"));
 
-        if (!card.getBoard().getUsers().contains(user) && !card.getBoard().getCreator().equals(user)) {
+        if (!isAssignedToBoard(principal, card.getBoard())) {
             throw new BadRequestException("User not assigned to board");
         }
 
@@ -128,27 +131,86 @@ public class BoardCardService {
             throw new BadRequestException("Wrong state of board");
         }
 
-        final BoardCardVotes vote = boardCardsVotesRepository.findByCardAndVoter(card, user)
+        final Board board = card.getBoard();
+        final int usedUserVotes = boardUserVotesRepository.returnVote(board.getId(), principal.getUid())
                 .orElseThrow(() -> new BadRequestException("User has no votes to remove"));
 
-        if ((vote.getVotes()-1) == 0) {
-            boardCardsVotesRepository.delete(vote);
+        final int cardVotes = boardCardsVotesRepository.removeVote(card.getId(), principal.getUid())
+                .orElseThrow(() -> new BadRequestException("User has no votes to remove"));
+        if (cardVotes == 0) {
+            boardCardsVotesRepository.deleteIfEmpty(card.getId(), principal.getUid());
         }
-        vote.setVotes(vote.getVotes() - 1);
-        return Map.of("remainingVotes", card.getBoard().getMaximumNumberOfVotes()-vote.getVotes());
+        publishEvent(board.getId(), BoardEventType.VOTE_CHANGED, Map.of("cardId", card.getId(), "delta", -1));
+
+        return Map.of("remainingVotes", board.getMaximumNumberOfVotes() - usedUserVotes);
     }
 
+    /**
+     * Replaces all votes of the user on the board with the given allocation of votes per card id. Cards left out of
+     * the allocation lose the user's votes.
+     */
     @Transactional
-    public BoardCardActionDto addCardAction
-            (final Integer cardId, final String email, final BoardCardActionRequestDto boardCardActionText) {
+    public Map<String, Integer> setVotes(final Integer boardId, final Map<Integer, Integer> votes,
+                                         final UserPrincipal principal) {
+
+        final Board board = boardAccessService.getGrantedBoardAccess(boardId, principal).getBoard();
 
-        final User user = userRepository.findUserByEmail(email)
-                .orElseThrow(() -> new NotFoundException("User not found"));
+        if (!EnumStateDto.VOTING.equals(board.getState())) {
+            throw new BadRequestException("Wrong state of board");
+        }
+
+        if (votes.values().stream().anyMatch(count -> count == null || count < 0)) {
+            throw new BadRequestException("Number of votes must not be negative");
+        }
+
+        final long usedUserVotes = votes.values().stream().mapToLong(Integer::longValue).sum();
+        if (usedUserVotes > board.getMaximumNumberOfVotes()) {
+            throw new BadRequestException("No more votes");
+        }
+
+        // locks the user's votes on the board first, so concurrent votes of the same user wait for this allocation
+        boardUserVotesRepository.setUsedVotes(boardId, principal.getUid(), (int) usedUserVotes);
+
+        final Map<Integer, Integer> currentVotes = boardCardsVotesRepository
+                .findAllByBoardAndVoter(boardId, principal.getUid())
+                .stream()
+                .collect(Collectors.toMap(BoardCardVotesProjection::getCardId, BoardCardVotesProjection::getVotes));
+
+        final Map<Integer, Integer> changedVotes = votes.entrySet().stream()
+                .filter(vote -> vote.getValue() > 0 && !vote.getValue().equals(currentVotes.get(vote.getKey())))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        final List<Integer> removedCardIds = currentVotes.keySet().stream()
+                .filter(cardId -> votes.getOrDefault(cardId, 0) == 0)
+                .collect(Collectors.toList());
+
+        if (!changedVotes.isEmpty()) {
+            final int savedVotes = boardCardsVotesRepository.setVotes(boardId, principal.getUid(), changedVotes);
+            if (savedVotes != changedVotes.size()) {
+                throw new NotFoundException("Card not found");
+            }
+        }
+        if (!removedCardIds.isEmpty()) {
+            boardCardsVotesRepository.deleteVotes(principal.getUid(), removedCardIds);
+        }
+
+        final Map<Integer, Integer> deltas = new HashMap<>();
+        changedVotes.forEach((cardId, count) -> deltas.put(cardId, count - currentVotes.getOrDefault(cardId, 0)));
+        removedCardIds.forEach(cardId -> deltas.put(cardId, -currentVotes.get(cardId)));
+        if (!deltas.isEmpty()) {
+            publishEvent(boardId, BoardEventType.VOTES_CHANGED, deltas);
+        }
+
+        return Map.of("remainingVotes", board.getMaximumNumberOfVotes() - (int) usedUserVotes);
+    }
+
+    @Transactional
+    public BoardCardActionDto addCardAction
+            (final Integer cardId, final UserPrincipal principal, final BoardCardActionRequestDto boardCardActionText) {
 
         final BoardCard card = boardCardsRepository.findById(cardId)
                 .orElseThrow(() -> new NotFoundException("Card not found"));
 
-        if (!card.getBoard().getCreator().equals(user)) {
+        if (!principal.isSameUserAs(card.getBoard().getCreator())) {
             throw new BadRequestException("User is not the board owner");
         }
 
@@ -161,27 +223,38 @@ public class BoardCardService {
 
             boardCardsActionsRepository.save(boardCardAction);
 
-            return BoardCardActionDto.createFrom(boardCardAction);
+            final BoardCardActionDto boardCardActionDto = BoardCardActionDto.createFrom(boardCardAction);
+            publishEvent(card.getBoard().getId(), BoardEventType.ACTION_ADDED, boardCardActionDto);
+
+            return boardCardActionDto;
         } else {
             throw new BadRequestException("State is not actions");
         }
     }
 
     @Transactional
-    public void removeAction(final Integer actionId, final String email) {
+    public void removeAction(final Integer actionId, final UserPrincipal principal) {
 
         final BoardCardAction boardCardAction = boardCardsActionsRepository.findById(actionId)
                 .orElseThrow(() -> new NotFoundException("Action not found"));
 
-        final User user = userRepository
-                .findUserByEmail(email).orElseThrow(() -> new BadRequestException("User not found"));
-
-        if (!user.equals(boardCardAction.getCard().getBoard().getCreator()))
+        if (!principal.isSameUserAs(boardCardAction.getCard().getBoard().getCreator()))
             throw new BadRequestException("You are not owner");
 
         if (!EnumStateDto.ACTIONS.equals(boardCardAction.getCard().getBoard().getState()))
             throw new BadRequestException("Wrong board's state");
 
         boardCardsActionsRepository.deleteById(actionId);
+        publishEvent(boardCardAction.getCard().getBoard().getId(), BoardEventType.ACTION_REMOVED,
+                Map.of("actionId", actionId, "cardId", boardCardAction.getCard().getId()));
+    }
+
+    private static boolean isAssignedToBoard(final UserPrincipal principal, final Board board) {
+        return principal.isSameUserAs(board.getCreator())
+                || board.getUsers().stream().anyMatch(principal::isSameUserAs);
+    }
+
+    private void publishEvent(final Integer boardId, final BoardEventType type, final Object payload) {
+        applicationEventPublisher.publishEvent(new BoardChangedEvent(boardId, type, payload));
     }
 }
\ No newline at end of file
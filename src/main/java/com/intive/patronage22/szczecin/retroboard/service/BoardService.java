@@ -1,6 +1,10 @@
 package com.intive.patronage22.szczecin.retroboard.service;
 
+import com.intive.patronage22.szczecin.retroboard.cache.BoardSnapshot;
+import com.intive.patronage22.szczecin.retroboard.cache.BoardSnapshotCache;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardDto;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardProjection;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardVotesProjection;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardsColumn;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardsColumnDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardDataDto;
@@ -9,11 +13,13 @@ import com.intive.patronage22.szczecin.retroboard.dto.BoardDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardPatchDto;
 import com.intive.patronage22.szczecin.retroboard.dto.EnumStateDto;
 import com.intive.patronage22.szczecin.retroboard.dto.UserDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
+import com.intive.patronage22.szczecin.retroboard.event.BoardChangedEvent;
+import com.intive.patronage22.szczecin.retroboard.event.BoardEventType;
 import com.intive.patronage22.szczecin.retroboard.exception.BadRequestException;
 import com.intive.patronage22.szczecin.retroboard.exception.NotAcceptableException;
 import com.intive.patronage22.szczecin.retroboard.exception.NotFoundException;
 import com.intive.patronage22.szczecin.retroboard.model.Board;
-import com.intive.patronage22.szczecin.retroboard.model.BoardCard;
 import com.intive.patronage22.szczecin.retroboard.model.User;
 import com.intive.patronage22.szczecin.retroboard.repository.BoardCardsRepository;
 import com.intive.patronage22.szczecin.retroboard.repository.BoardCardsVotesRepository;
@@ -21,16 +27,19 @@ import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
 import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
 import com.intive.patronage22.szczecin.retroboard.validation.BoardValidator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
@@ -44,63 +53,50 @@ public class BoardService {
     private final BoardCardsRepository boardCardsRepository;
     private final BoardCardsVotesRepository boardCardsVotesRepository;
     private final BoardValidator boardValidator;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final BoardSnapshotCache boardSnapshotCache;
+    private final BoardAccessService boardAccessService;
 
     @Transactional(readOnly = true)
-    public BoardDataDto getBoardDataById(final Integer boardId, final String email) {
-        final User user =
-                userRepository.findUserByEmail(email).orElseThrow(() -> new BadRequestException("User not found"));
-
-        boardRepository.findById(boardId).orElseThrow(() -> new NotFoundException("Board not found"));
-
-        final Board board = boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)
-                .orElseThrow(() -> new BadRequestException("User has no access to board"));
-
-        return prepareBoardData(board, user);
+    public void checkBoardAccess(final Integer boardId, final UserPrincipal principal) {
+        boardAccessService.getGrantedBoardAccess(boardId, principal);
     }
 
+    // answers conditional reads, the access is checked before the version is revealed
     @Transactional(readOnly = true)
-    public List<BoardDetailsDto> getBoardDetailsById(final Integer boardId, final String email) {
-        final User user =
-                userRepository.findUserByEmail(email).orElseThrow(() -> new BadRequestException("User not found"));
+    public long getBoardVersion(final Integer boardId, final UserPrincipal principal) {
+        return boardAccessService.getGrantedBoardVersion(boardId, principal);
+    }
 
-        boardRepository.findById(boardId).orElseThrow(() -> new NotFoundException("Board not found"));
+    // the version is read by the caller before loading, so a change committed meanwhile makes the snapshot outdated
+    @Transactional(readOnly = true)
+    public BoardDataDto getBoardDataById(final Integer boardId, final UserPrincipal principal, final long version) {
+        final BoardAccess boardAccess = boardAccessService.getGrantedBoardAccess(boardId, principal);
 
-        final Board board = boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)
-                .orElseThrow(() -> new BadRequestException("User has no access to board"));
+        return getSnapshot(boardAccess.getBoard(), version).toBoardData(boardAccess.getUser());
+    }
 
-        final List<BoardCard> boardCards = boardCardsRepository.findAllByBoardIdOrderByIdAsc(boardId);
+    @Transactional(readOnly = true)
+    public List<BoardDetailsDto> getBoardDetailsById(final Integer boardId, final UserPrincipal principal,
+                                                     final long version) {
+        final BoardAccess boardAccess = boardAccessService.getGrantedBoardAccess(boardId, principal);
 
-        final List<BoardCardDto> successBoardCardsDtos = new ArrayList<>();
-        final List<BoardCardDto> failuresBoardCardsDtos = new ArrayList<>();
-        final List<BoardCardDto> kudosBoardCardsDtos = new ArrayList<>();
+        final BoardSnapshot snapshot = getSnapshot(boardAccess.getBoard(), version);
 
-        boardCards.forEach(boardCard -> {
-            final int numberOfVotes = boardCardsVotesRepository.getVotesByBoardAndCard(board, boardCard).orElse(0);
-            final int numberOfUserVotes =
-                    boardCardsVotesRepository.getVotesByBoardAndCardAndUser(board, boardCard, user).orElse(0);
-            if (boardCard.getColumn().equals(BoardCardsColumn.SUCCESS)) {
-                successBoardCardsDtos.add(BoardCardDto.createFrom(boardCard, numberOfVotes, numberOfUserVotes));
-            } else if (boardCard.getColumn().equals(BoardCardsColumn.FAILURES)) {
-                failuresBoardCardsDtos.add(BoardCardDto.createFrom(boardCard, numberOfVotes, numberOfUserVotes));
-            } else {
-                kudosBoardCardsDtos.add(BoardCardDto.createFrom(boardCard, numberOfVotes, numberOfUserVotes));
-            }
-        });
+        final Map<Integer, Integer> userVotes = boardCardsVotesRepository
+                .findAllByBoardAndVoter(boardId, principal.getUid())
+                .stream()
+                .collect(Collectors.toMap(BoardCardVotesProjection::getCardId, BoardCardVotesProjection::getVotes));
 
-        return List.of(BoardDetailsDto.createFrom(BoardCardsColumn.SUCCESS.getColumnId(), successBoardCardsDtos),
-                BoardDetailsDto.createFrom(BoardCardsColumn.FAILURES.getColumnId(), failuresBoardCardsDtos),
-                BoardDetailsDto.createFrom(BoardCardsColumn.KUDOS.getColumnId(), kudosBoardCardsDtos));
+        return snapshot.toBoardDetails(userVotes);
     }
 
     @Transactional
-    public BoardDto createBoard(final String boardName, final String email) {
-        final User user = userRepository.findUserByEmail(email)
-                .orElseThrow(() -> new BadRequestException("User not found"));
-
+    public BoardDto createBoard(final String boardName, final UserPrincipal principal) {
         final Board newBoard = Board.builder()
                 .name(boardName)
                 .state(EnumStateDto.CREATED)
-                .creator(user)
+                .creator(userRepository.getById(principal.getUid()))
                 .maximumNumberOfVotes(0)
                 .users(Set.of()).build();
 
@@ -108,7 +104,7 @@ public class BoardService {
     }
 
     @Transactional
-    public BoardDto patchBoard(final Integer id, final BoardPatchDto boardPatchDto, final String email) {
+    public BoardDto patchBoard(final Integer id, final BoardPatchDto boardPatchDto, final UserPrincipal principal) {
         boardValidator.validateBoardParameters(boardPatchDto);
         final Board boardReturn;
         final Optional<Board> board = boardRepository.findById(id);
@@ -116,7 +112,7 @@ public class BoardService {
         boardReturn = board.map(b -> {
             if (b.getState() == EnumStateDto.CREATED) {
                 Optional.ofNullable(b.getCreator())
-                        .filter(creator -> creator.getEmail().equals(email))
+                        .filter(principal::isSameUserAs)
                         .orElseThrow(() -> new BadRequestException("Not a board owner!"));
             } else {
                 throw new BadRequestException("State of board does not allow to change number of votes!");
@@ -133,48 +129,45 @@ public class BoardService {
             return b;
         }).orElseThrow(() -> new NotFoundException("Board not found!"));
 
-        return BoardDto.fromModel(boardReturn);
+        final BoardDto boardDto = BoardDto.fromModel(boardReturn);
+        publishEvent(id, BoardEventType.BOARD_UPDATED, boardDto);
+
+        return boardDto;
     }
 
+    /**
+     * Returns boards created by or assigned to the user, newest first. The next page starts before the id of the
+     * last board returned.
+     */
     @Transactional(readOnly = true)
-    public List<BoardDto> getUserBoards(final String email) {
-        final User user = userRepository.findUserByEmail(email)
-                .orElseThrow(() -> new BadRequestException("User not found"));
-        final List<BoardDto> assignedBoards = user
-                .getUserBoards().stream().map(BoardDto::fromModel).collect(Collectors.toList());
-        final List<BoardDto> createdBoards = user
-                .getCreatedBoards().stream().map(BoardDto::fromModel).collect(Collectors.toList());
-
-        return Stream.concat(createdBoards.stream(), assignedBoards.stream())
-                .distinct()
-                .sorted(Comparator.comparingLong(BoardDto::getId).reversed())
-                .collect(Collectors.toList());
+    public List<BoardDto> getUserBoards(final UserPrincipal principal, final Integer before, final int limit) {
+        return boardRepository.findPageByCreatorOrAssignedUser(userRepository.getById(principal.getUid()),
+                isNull(before) ? Integer.MAX_VALUE : before, PageRequest.of(0, limit));
     }
 
     @Transactional
-    public void delete(final int boardId, final String email) {
+    public void delete(final int boardId, final UserPrincipal principal) {
 
         final Board board = boardRepository.findById(boardId)
                 .orElseThrow(() -> new NotFoundException("Board not found"));
 
-        if (!(email.equals(board.getCreator().getEmail()))) {
+        if (!principal.isSameUserAs(board.getCreator())) {
             throw new BadRequestException("User is not owner");
         } else {
-            boardRepository.deleteById(boardId);
+            boardRepository.deleteByIdIn(List.of(boardId));
+            boardRepository.deleteVersionsByBoardIdIn(List.of(boardId));
+            publishEvent(boardId, BoardEventType.BOARD_DELETED, null);
         }
     }
 
     @Transactional
     public List<String> assignUsersToBoard(final Integer boardId, final List<String> emailsToAssign,
-                                           final String email) {
-
-        final User boardOwner =
-                userRepository.findUserByEmail(email).orElseThrow(() -> new NotFoundException("User is not found"));
+                                           final UserPrincipal principal) {
 
         final Board board =
                 boardRepository.findById(boardId).orElseThrow(() -> new NotFoundException("Board is not found."));
 
-        if (!board.getCreator().equals(boardOwner)) {
+        if (!principal.isSameUserAs(board.getCreator())) {
             throw new BadRequestException("User is not the board owner.");
         }
 
@@ -183,6 +176,11 @@ public class BoardService {
         board.getUsers().addAll(users);
         boardRepository.save(board);
 
+        if (!users.isEmpty()) {
+            publishEvent(boardId, BoardEventType.USERS_ASSIGNED,
+                    users.stream().map(UserDto::createFrom).collect(Collectors.toList()));
+        }
+
         final List<String> existingEmails = users.stream()
                 .map(User::getEmail)
                 .collect(Collectors.toList());
@@ -193,7 +191,8 @@ public class BoardService {
     }
 
     @Transactional
-    public void removeUserAssignedToTheBoard(final String uid, final Integer boardId, final String email) {
+    public void removeUserAssignedToTheBoard(final String uid, final Integer boardId,
+                                             final UserPrincipal principal) {
 
         final User user = userRepository.findById(uid)
                 .orElseThrow(() -> new NotFoundException("User is not found"));
@@ -209,8 +208,9 @@ public class BoardService {
             throw new NotFoundException("User is not assigned to the Board.");
         }
 
-        if (email.equals(user.getEmail()) || email.equals(board.getCreator().getEmail())) {
+        if (principal.isSameUserAs(user) || principal.isSameUserAs(board.getCreator())) {
             board.getUsers().remove(user);
+            publishEvent(boardId, BoardEventType.USER_REMOVED, Map.of("uid", uid));
         } else {
             throw new BadRequestException
                     ("Currently logged user is not board owner or user tries to delete other user");
@@ -218,15 +218,12 @@ public class BoardService {
     }
 
     @Transactional
-    public BoardDataDto setNextState(final Integer boardId, final String email) {
-
-        final User user =
-                userRepository.findUserByEmail(email).orElseThrow(() -> new NotFoundException("User not found"));
+    public BoardDataDto setNextState(final Integer boardId, final UserPrincipal principal) {
 
         final Board board =
                 boardRepository.findById(boardId).orElseThrow(() -> new NotFoundException("Board not found"));
 
-        if (!board.getCreator().equals(user)) {
+        if (!principal.isSameUserAs(board.getCreator())) {
             throw new NotFoundException("User is not the board owner.");
         }
 
@@ -239,12 +236,62 @@ public class BoardService {
         } else {
             board.setState(board.getState().next());
             boardRepository.save(board);
+            publishEvent(boardId, BoardEventType.STATE_CHANGED, Map.of("state", board.getState()));
         }
 
-        return prepareBoardData(board, user);
+        return prepareBoardData(board, board.getCreator());
+    }
+
+    private void publishEvent(final Integer boardId, final BoardEventType type, final Object payload) {
+        applicationEventPublisher.publishEvent(new BoardChangedEvent(boardId, type, payload));
+    }
+
+    private BoardSnapshot getSnapshot(final Board board, final long version) {
+        return boardSnapshotCache.get(board.getId(), version).orElseGet(() -> {
+            final BoardSnapshot loadedSnapshot = takeSnapshot(board, version);
+            boardSnapshotCache.put(board.getId(), loadedSnapshot);
+            return loadedSnapshot;
+        });
+    }
+
+    private BoardSnapshot takeSnapshot(final Board board, final long version) {
+        final Collection<List<BoardCardProjection>> boardCardRows = boardCardsRepository
+                .findAllWithVotesByBoard(board)
+                .stream()
+                .collect(Collectors.groupingBy(BoardCardProjection::getId, LinkedHashMap::new, Collectors.toList()))
+                .values();
+
+        final List<UserDto> users = board.getUsers().stream()
+                .map(UserDto::createFrom)
+                .collect(Collectors.toUnmodifiableList());
+
+        return new BoardSnapshot(version, BoardDto.fromModel(board), users, createColumns(boardCardRows));
+    }
+
+    static List<BoardDetailsDto> createColumns(final Collection<List<BoardCardProjection>> boardCardRows) {
+        final List<BoardCardDto> successBoardCardsDtos = new ArrayList<>();
+        final List<BoardCardDto> failuresBoardCardsDtos = new ArrayList<>();
+        final List<BoardCardDto> kudosBoardCardsDtos = new ArrayList<>();
+
+        boardCardRows.forEach(rows -> {
+            final BoardCardDto boardCardDto = BoardCardDto.createFrom(rows);
+            if (rows.get(0).getColumn().equals(BoardCardsColumn.SUCCESS)) {
+                successBoardCardsDtos.add(boardCardDto);
+            } else if (rows.get(0).getColumn().equals(BoardCardsColumn.FAILURES)) {
+                failuresBoardCardsDtos.add(boardCardDto);
+            } else {
+                kudosBoardCardsDtos.add(boardCardDto);
+            }
+        });
+
+        return List.of(
+                BoardDetailsDto.createFrom(BoardCardsColumn.SUCCESS.getColumnId(), List.copyOf(successBoardCardsDtos)),
+                BoardDetailsDto.createFrom(BoardCardsColumn.FAILURES.getColumnId(),
+                        List.copyOf(failuresBoardCardsDtos)),
+                BoardDetailsDto.createFrom(BoardCardsColumn.KUDOS.getColumnId(), List.copyOf(kudosBoardCardsDtos)));
     }
 
-    private BoardDataDto prepareBoardData(final Board board, final User user) {
+    static BoardDataDto prepareBoardData(final Board board, final User user) {
 
         final List<BoardCardsColumnDto> boardCardsColumnDtos =
                 List.of(BoardCardsColumnDto.createFrom(BoardCardsColumn.SUCCESS),
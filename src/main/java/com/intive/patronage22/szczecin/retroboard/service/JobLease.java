@@ -0,0 +1,10 @@
+package com.intive.patronage22.szczecin.retroboard.service;
+
+import lombok.Value;
+
+@Value
+public class JobLease {
+
+    String job;
+    long fencingToken;
+}
@@ -0,0 +1,66 @@
+package com.intive.patronage22.szczecin.retroboard.service;
+
+import com.intive.patronage22.szczecin.retroboard.repository.ScheduledJobLockRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Lets a scheduled job run on one node of the cluster at a time, through leases on rows of the
+ * {@code scheduled_job_lock} table. A node that held a lease for too long without renewing it loses the job to
+ * another one, and its fencing token stops matching, so its later writes are rolled back.
+ */
+@Slf4j
+@Service
+public class JobLeaseService {
+
+    static final String METRIC_NAME = "retroboard.scheduled.job.runs";
+
+    private final ScheduledJobLockRepository scheduledJobLockRepository;
+    private final MeterRegistry meterRegistry;
+    private final String node;
+    private final Duration leaseTime;
+
+    public JobLeaseService(final ScheduledJobLockRepository scheduledJobLockRepository,
+                           final MeterRegistry meterRegistry,
+                           @Value("${retroboard.scheduling.node}") final String node,
+                           @Value("${retroboard.scheduling.lease-time}") final Duration leaseTime) {
+        this.scheduledJobLockRepository = scheduledJobLockRepository;
+        this.meterRegistry = meterRegistry;
+        this.node = node.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : node;
+        this.leaseTime = leaseTime;
+    }
+
+    @Transactional
+    public Optional<JobLease> tryAcquire(final String job) {
+        final Optional<JobLease> lease = scheduledJobLockRepository.acquire(job, node, leaseTime.toSeconds())
+                .map(fencingToken -> new JobLease(job, fencingToken));
+
+        meterRegistry.counter(METRIC_NAME, "job", job, "node", node, "result", lease.isPresent() ? "run" : "skipped")
+                .increment();
+        lease.ifPresentOrElse(l -> log.info("node {} runs job {} with fencing token {}", node, job,
+                l.getFencingToken()), () -> log.info("job {} is run by another node", job));
+
+        return lease;
+    }
+
+    // called in every write transaction of the job, which then commits only while the lease is still held
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void renew(final JobLease lease) {
+        if (scheduledJobLockRepository.renew(lease.getJob(), lease.getFencingToken(), leaseTime.toSeconds()) == 0) {
+            throw new IllegalStateException("Lease of job " + lease.getJob() + " was taken by another node");
+        }
+    }
+
+    @Transactional
+    public void release(final JobLease lease) {
+        scheduledJobLockRepository.release(lease.getJob(), lease.getFencingToken());
+    }
+}
@@ -1,25 +1,46 @@
 package com.intive.patronage22.szczecin.retroboard.service;
 
+import com.google.api.core.ApiFuture;
+import com.google.firebase.auth.AuthErrorCode;
 import com.google.firebase.auth.ExportedUserRecord;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.ListUsersPage;
 import com.google.firebase.auth.UserRecord;
-import com.intive.patronage22.szczecin.retroboard.model.Board;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseUserStatusCache;
+import com.intive.patronage22.szczecin.retroboard.cache.UserRevocationRelay;
+import com.intive.patronage22.szczecin.retroboard.event.BoardChangedEvent;
+import com.intive.patronage22.szczecin.retroboard.event.BoardEventType;
+import com.intive.patronage22.szczecin.retroboard.model.FirebaseUserFingerprint;
 import com.intive.patronage22.szczecin.retroboard.model.User;
+import com.intive.patronage22.szczecin.retroboard.model.UserSyncCheckpoint;
 import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import com.intive.patronage22.szczecin.retroboard.repository.FirebaseUserFingerprintRepository;
 import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
+import com.intive.patronage22.szczecin.retroboard.repository.UserSyncCheckpointRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Predicate;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @EnableScheduling
@@ -28,91 +49,325 @@ import java.util.stream.StreamSupport;
 @Component
 public class SynchronizeWithFirebaseScheduler {
 
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int CHECKPOINT_ID = 1;
+    static final String JOB_NAME = "synchronize-users";
+
     private final UserRepository userRepository;
     private final BoardRepository boardRepository;
+    private final FirebaseUserFingerprintRepository firebaseUserFingerprintRepository;
+    private final UserSyncCheckpointRepository userSyncCheckpointRepository;
     private final FirebaseAuth firebaseAuth;
+    private final FirebaseUserStatusCache firebaseUserStatusCache;
+    private final UserRevocationRelay userRevocationRelay;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final JobLeaseService jobLeaseService;
 
+    // fires on every node, only the one getting the lease runs the job
     @Scheduled(fixedRate = 900000, initialDelay = 60000)
-    @Transactional
     public void synchronizeUsers() throws FirebaseAuthException {
+        final Optional<JobLease> lease = jobLeaseService.tryAcquire(JOB_NAME);
+        if (lease.isEmpty()) {
+            return;
+        }
+
+        try {
+            synchronizeUsers(lease.get());
+        } finally {
+            jobLeaseService.release(lease.get());
+        }
+    }
+
+    private void synchronizeUsers(final JobLease lease) throws FirebaseAuthException {
         log.info("starting the job");
 
-        final Iterable<ExportedUserRecord> pagination = firebaseAuth
-                .listUsers(null, 20)
-                .iterateAll();
+        final UserSyncCheckpoint checkpoint = transactionTemplate.execute(status -> {
+            jobLeaseService.renew(lease);
+            return startRun();
+        });
+
+        ListUsersPage page = firebaseAuth.listUsers(checkpoint.getPageToken(), MAX_PAGE_SIZE);
+        while (page != null) {
+            // the next page is fetched while the current one is written, so at most two pages are held at once
+            final ApiFuture<ListUsersPage> nextPage = page.hasNextPage()
+                    ? firebaseAuth.listUsersAsync(page.getNextPageToken(), MAX_PAGE_SIZE)
+                    : null;
+
+            synchronizePage(page, checkpoint, lease);
+
+            page = nextPage != null ? awaitPage(nextPage) : null;
+        }
+
+        transactionTemplate.execute(status -> {
+            jobLeaseService.renew(lease);
+            removeUsersMissingInFirebase(checkpoint);
+            return null;
+        });
+
+        log.info("finishing the job");
+    }
+
+    private UserSyncCheckpoint startRun() {
+        final UserSyncCheckpoint checkpoint = userSyncCheckpointRepository.findById(CHECKPOINT_ID)
+                .orElseGet(() -> UserSyncCheckpoint.builder()
+                        .id(CHECKPOINT_ID)
+                        .syncRun(0L)
+                        .completed(true)
+                        .build());
+
+        if (checkpoint.isCompleted()) {
+            checkpoint.setSyncRun(checkpoint.getSyncRun() + 1);
+            checkpoint.setPageToken(null);
+            checkpoint.setCompleted(false);
+            userSyncCheckpointRepository.save(checkpoint);
+            log.info("starting synchronization run {}", checkpoint.getSyncRun());
+        } else {
+            log.info("resuming synchronization run {}", checkpoint.getSyncRun());
+        }
+
+        return checkpoint;
+    }
 
-        final List<ExportedUserRecord> allFirebaseUsers = StreamSupport
-                .stream(pagination.spliterator(), false)
+    private void synchronizePage(final ListUsersPage page, final UserSyncCheckpoint checkpoint,
+                                 final JobLease lease) {
+        final List<ExportedUserRecord> firebaseUsers = StreamSupport
+                .stream(page.getValues().spliterator(), false)
                 .collect(Collectors.toList());
 
-        final List<String> firebaseUsersEmails = allFirebaseUsers.stream()
-                .map(UserRecord::getEmail)
+        firebaseUserStatusCache.refresh(firebaseUsers);
+
+        transactionTemplate.execute(status -> {
+            jobLeaseService.renew(lease);
+
+            final List<String> uids = firebaseUsers.stream()
+                    .map(UserRecord::getUid)
+                    .collect(Collectors.toList());
+
+            final Map<String, FirebaseUserFingerprint> knownFingerprints = firebaseUserFingerprintRepository
+                    .findAllByUidIn(uids)
+                    .stream()
+                    .collect(Collectors.toMap(FirebaseUserFingerprint::getUid, Function.identity()));
+
+            final Map<Boolean, List<ExportedUserRecord>> usersPartition = firebaseUsers.stream()
+                    .collect(Collectors.partitioningBy(u -> knownFingerprints.containsKey(u.getUid())
+                            && fingerprint(u).equals(knownFingerprints.get(u.getUid()).getFingerprint())));
+
+            final List<String> unchangedUids = usersPartition.get(true).stream()
+                    .map(UserRecord::getUid)
+                    .collect(Collectors.toList());
+
+            if (!unchangedUids.isEmpty()) {
+                firebaseUserFingerprintRepository.markSynchronized(unchangedUids, checkpoint.getSyncRun());
+            }
+
+            saveChangedUsers(usersPartition.get(false), knownFingerprints, checkpoint.getSyncRun());
+
+            checkpoint.setPageToken(page.hasNextPage() ? page.getNextPageToken() : null);
+            userSyncCheckpointRepository.save(checkpoint);
+
+            return null;
+        });
+    }
+
+    private void saveChangedUsers(final List<ExportedUserRecord> changedFirebaseUsers,
+                                  final Map<String, FirebaseUserFingerprint> knownFingerprints, final Long syncRun) {
+        if (changedFirebaseUsers.isEmpty()) {
+            return;
+        }
+
+        final List<String> uids = changedFirebaseUsers.stream()
+                .map(UserRecord::getUid)
                 .collect(Collectors.toList());
 
-        final List<String> alreadyExistingEmails = userRepository.findAllByEmailIn(firebaseUsersEmails)
-                .stream()
-                .map(User::getEmail)
+        final Map<String, User> existingUsers = findAllById(uids);
+        final Map<String, User> reassignedUsers =
+                reassignUsersRecreatedInFirebase(changedFirebaseUsers, existingUsers.keySet());
+        existingUsers.putAll(reassignedUsers);
+        revokeChangedUsers(reassignedUsers.values(), changedFirebaseUsers);
+
+        final List<User> usersToSave = changedFirebaseUsers.stream()
+                .map(u -> {
+                    final User user = existingUsers.getOrDefault(u.getUid(), User.builder()
+                            .uid(u.getUid())
+                            .deleted(false)
+                            .build());
+                    user.setEmail(u.getEmail());
+                    user.setDisplayName(u.getDisplayName());
+                    return user;
+                })
                 .collect(Collectors.toList());
 
-        final List<User> firebaseUsersToCreate = allFirebaseUsers.stream()
-                .filter(u -> !alreadyExistingEmails.contains(u.getEmail()))
-                .map(u -> User.builder()
-                        .email(u.getEmail())
-                        .displayName(u.getDisplayName())
-                        .uid(u.getUid())
-                        .deleted(false)
-                        .build())
+        // fingerprints loaded for the page are already in the session and only updated, new ones are persisted
+        final List<FirebaseUserFingerprint> fingerprints = changedFirebaseUsers.stream()
+                .map(u -> {
+                    final FirebaseUserFingerprint fingerprint = knownFingerprints.getOrDefault(u.getUid(),
+                            FirebaseUserFingerprint.builder()
+                                    .uid(u.getUid())
+                                    .build());
+                    fingerprint.setFingerprint(fingerprint(u));
+                    fingerprint.setSyncRun(syncRun);
+                    return fingerprint;
+                })
                 .collect(Collectors.toList());
 
-        final List<User> createdUsers = (List<User>) userRepository.saveAll(firebaseUsersToCreate);
+        userRepository.saveAll(usersToSave);
+        firebaseUserFingerprintRepository.saveAll(fingerprints);
 
-        log.info("created users count: {}", createdUsers.size());
+        log.info("created users count: {}, updated users count: {}",
+                usersToSave.size() - existingUsers.size(), existingUsers.size());
+    }
 
-        final Predicate<User> canUserBeDeleted = u -> u.getUserBoards().isEmpty();
+    // an account deleted and created again in Firebase with the same email keeps the user, under its new uid; the
+    // email alone proves nothing, the old account may have moved to another email and be on a later page
+    private Map<String, User> reassignUsersRecreatedInFirebase(final List<ExportedUserRecord> changedFirebaseUsers,
+                                                               final Set<String> existingUids) {
+        final Map<String, String> newUidsByEmail = changedFirebaseUsers.stream()
+                .filter(u -> !existingUids.contains(u.getUid()) && u.getEmail() != null)
+                .collect(Collectors.toMap(UserRecord::getEmail, UserRecord::getUid, (uid, otherUid) -> uid));
 
-        final Map<Boolean, List<User>> usersPartition = userRepository.findAllByEmailNotIn(firebaseUsersEmails)
-                .stream()
-                .collect(Collectors.partitioningBy(canUserBeDeleted));
+        if (newUidsByEmail.isEmpty()) {
+            return Map.of();
+        }
 
-        final List<User> usersToDeleteInDb = usersPartition.get(true);
-        final List<User> usersToDeactivateInDb = usersPartition.get(false);
+        final List<User> recreatedUsers = userRepository.findAllByEmailInAndUidNotIn(newUidsByEmail.keySet(),
+                List.copyOf(newUidsByEmail.values()));
+        final Set<String> newUids = new HashSet<>();
+        for (final User user : recreatedUsers) {
+            final String newUid = newUidsByEmail.get(user.getEmail());
+            if (!newUids.contains(newUid) && isMissingInFirebase(user.getUid())) {
+                userRepository.reassignUid(user.getUid(), newUid);
+                newUids.add(newUid);
+            }
+        }
 
-        deleteUsersByEmail(usersToDeleteInDb);
-        deactivateUsersByEmail(usersToDeactivateInDb);
+        log.info("reassigned users count: {}", newUids.size());
+        return newUids.isEmpty() ? Map.of() : findAllById(newUids);
+    }
 
-        log.info("finishing the job");
+    // every node may still serve a re-keyed user under the old uid, or a newly disabled user as active
+    private void revokeChangedUsers(final Collection<User> reassignedUsers,
+                                    final List<ExportedUserRecord> changedFirebaseUsers) {
+        final List<String> emails = Stream.concat(
+                        reassignedUsers.stream().map(User::getEmail),
+                        changedFirebaseUsers.stream().filter(UserRecord::isDisabled).map(UserRecord::getEmail))
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (!emails.isEmpty()) {
+            userRevocationRelay.revokeChanged(emails);
+        }
     }
 
-    @Transactional
-    private void deleteUsersByEmail(final List<User> usersToDelete) {
-        log.info("delete users");
+    private boolean isMissingInFirebase(final String uid) {
+        try {
+            firebaseAuth.getUser(uid);
+            return false;
+        } catch (final FirebaseAuthException e) {
+            if (e.getAuthErrorCode() == AuthErrorCode.USER_NOT_FOUND) {
+                return true;
+            }
+            throw new IllegalStateException("Cannot check user " + uid + " in Firebase", e);
+        }
+    }
+
+    private Map<String, User> findAllById(final Collection<String> uids) {
+        return StreamSupport
+                .stream(userRepository.findAllById(uids).spliterator(), false)
+                .collect(Collectors.toMap(User::getUid, Function.identity()));
+    }
+
+    private void removeUsersMissingInFirebase(final UserSyncCheckpoint checkpoint) {
+        final List<User> usersMissingInFirebase = userRepository.findAllNotSynchronizedIn(checkpoint.getSyncRun());
+
+        if (!usersMissingInFirebase.isEmpty()) {
+            final Set<String> memberUids =
+                    new HashSet<>(boardRepository.findMemberUidsIn(uids(usersMissingInFirebase)));
+            final Map<Boolean, List<User>> usersPartition = usersMissingInFirebase.stream()
+                    .collect(Collectors.partitioningBy(u -> !memberUids.contains(u.getUid())));
+
+            deleteBoardsCreatedByUsers(usersMissingInFirebase);
+            deleteUsersByEmail(usersPartition.get(true));
+            deactivateUsersByEmail(usersPartition.get(false));
+        }
+
+        firebaseUserFingerprintRepository.deleteAllNotSynchronizedIn(checkpoint.getSyncRun());
+
+        checkpoint.setCompleted(true);
+        checkpoint.setPageToken(null);
+        userSyncCheckpointRepository.save(checkpoint);
+    }
 
-        deleteBoardsCreatedByUsers(usersToDelete);
-        userRepository.deleteAll(usersToDelete);
+    // users who are not members of any board are removed, the others stay deactivated for the boards they are on
+    private void deleteUsersByEmail(final List<User> usersToDelete) {
+        if (!usersToDelete.isEmpty()) {
+            userRepository.deleteAllByUidIn(uids(usersToDelete));
+            revokeUsers(usersToDelete);
+        }
 
         log.info("deleted users count: {}", usersToDelete.size());
     }
 
-    @Transactional
     private void deactivateUsersByEmail(final List<User> usersToDeactivate) {
-        log.info("deactivate users");
-
-        deleteBoardsCreatedByUsers(usersToDeactivate);
-        usersToDeactivate.forEach(u -> u.setDeleted(true));
-        userRepository.saveAll(usersToDeactivate);
+        if (!usersToDeactivate.isEmpty()) {
+            userRepository.deactivateAllByUidIn(uids(usersToDeactivate));
+            revokeUsers(usersToDeactivate);
+        }
 
         log.info("deactivated users count: {}", usersToDeactivate.size());
     }
 
-    @Transactional
     private void deleteBoardsCreatedByUsers(final List<User> users) {
-        final List<Board> boardsToDelete = users.stream()
-                .map(User::getCreatedBoards)
-                .flatMap(Collection::stream)
+        final List<Integer> boardIds = boardRepository.findIdsByCreatorUidIn(uids(users));
+
+        if (!boardIds.isEmpty()) {
+            boardRepository.deleteByIdIn(boardIds);
+            boardRepository.deleteVersionsByBoardIdIn(boardIds);
+            boardIds.forEach(boardId -> applicationEventPublisher.publishEvent(
+                    new BoardChangedEvent(boardId, BoardEventType.BOARD_DELETED, null)));
+        }
+
+        log.info("deleted boards count: {}", boardIds.size());
+    }
+
+    private static List<String> uids(final List<User> users) {
+        return users.stream()
+                .map(User::getUid)
+                .collect(Collectors.toList());
+    }
+
+    private void revokeUsers(final List<User> users) {
+        final List<String> emails = users.stream()
+                .map(User::getEmail)
                 .collect(Collectors.toList());
 
-        boardRepository.deleteAll(boardsToDelete);
+        userRevocationRelay.revokeRemoved(emails);
+    }
+
+    private ListUsersPage awaitPage(final ApiFuture<ListUsersPage> page) throws FirebaseAuthException {
+        try {
+            return page.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Users synchronization interrupted", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof FirebaseAuthException) {
+                throw (FirebaseAuthException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot fetch users page", e.getCause());
+        }
+    }
 
-        log.info("deleted boards count: {}", boardsToDelete.size());
+    static String fingerprint(final UserRecord firebaseUser) {
+        final String userData = firebaseUser.getEmail() + '\n' + firebaseUser.getDisplayName() + '\n'
+                + firebaseUser.isDisabled();
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(userData.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
@@ -5,8 +5,10 @@ import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.UserRecord;
 import com.intive.patronage22.szczecin.retroboard.exception.UserAlreadyExistException;
 import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -17,16 +19,35 @@ import java.util.List;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class UserService {
 
     private final PasswordEncoder passwordEncoder;
     private final FirebaseAuth firebaseAuth;
     private final UserRepository userRepository;
+    // the trigram index needs PostgreSQL with pg_trgm, other databases can turn it off
+    private final boolean trigramIndex;
 
+    public UserService(final PasswordEncoder passwordEncoder, final FirebaseAuth firebaseAuth,
+                       final UserRepository userRepository,
+                       @Value("${retroboard.user-search.trigram-index}") final boolean trigramIndex) {
+        this.passwordEncoder = passwordEncoder;
+        this.firebaseAuth = firebaseAuth;
+        this.userRepository = userRepository;
+        this.trigramIndex = trigramIndex;
+    }
+
+    /**
+     * Finds emails of users not deleted that contain the given text, ignoring case. Emails starting with it come
+     * first.
+     */
     @Transactional(readOnly = true)
-    public List<String> search(final String email) {
-        return userRepository.searchByEmailLike(email);
+    public List<String> search(final String email, final int limit) {
+        final String pattern = email.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        final Pageable pageable = PageRequest.of(0, limit);
+
+        return trigramIndex
+                ? userRepository.searchByEmail(pattern, pageable)
+                : userRepository.searchByEmailWithoutIndex(pattern, pageable);
     }
 
     public UserDetails register(final String email, final String password, final String displayName)
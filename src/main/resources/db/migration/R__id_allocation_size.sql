@@ -0,0 +1,5 @@
+-- ids are allocated by the application in blocks of retroboard.id-allocation-size, Flyway runs this again whenever
+-- the setting changes; the new increment applies to the next block, so ids handed out before never overlap
+ALTER SEQUENCE retro.board_id_seq INCREMENT BY ${id-allocation-size};
+ALTER SEQUENCE retro.board_card_id_seq INCREMENT BY ${id-allocation-size};
+ALTER SEQUENCE retro.board_card_action_id_seq INCREMENT BY ${id-allocation-size};
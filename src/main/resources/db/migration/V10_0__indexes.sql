@@ -0,0 +1,14 @@
+-- users_boards never had a primary key, duplicated assignments are dropped before adding it
+DELETE FROM retro.users_boards WHERE board_id IS NULL OR user_uid IS NULL;
+DELETE FROM retro.users_boards a USING retro.users_boards b
+WHERE a.ctid < b.ctid AND a.board_id = b.board_id AND a.user_uid = b.user_uid;
+ALTER TABLE retro.users_boards ADD PRIMARY KEY(board_id, user_uid);
+CREATE INDEX IF NOT EXISTS users_boards_user_uid_idx ON retro.users_boards(user_uid, board_id);
+
+CREATE INDEX IF NOT EXISTS board_creator_uid_idx ON retro.board(creator_uid, id);
+CREATE INDEX IF NOT EXISTS board_card_board_id_idx ON retro.board_card(board_id);
+CREATE INDEX IF NOT EXISTS board_card_creator_uid_idx ON retro.board_card(creator_uid);
+CREATE INDEX IF NOT EXISTS board_card_action_card_id_idx ON retro.board_card_action(card_id);
+CREATE INDEX IF NOT EXISTS board_card_votes_voter_uid_idx ON retro.board_card_votes(voter_uid);
+CREATE INDEX IF NOT EXISTS board_user_votes_voter_uid_idx ON retro.board_user_votes(voter_uid);
+CREATE INDEX IF NOT EXISTS user_data_email_idx ON retro.user_data(email);
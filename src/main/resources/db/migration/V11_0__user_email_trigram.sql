@@ -0,0 +1,4 @@
+-- lets the user search match any part of an email through an index, deleted users are never searched
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS user_data_email_trgm_idx ON retro.user_data USING gin (email gin_trgm_ops)
+    WHERE deleted IS NOT TRUE;
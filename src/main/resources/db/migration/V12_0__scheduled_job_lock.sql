@@ -0,0 +1,8 @@
+-- one row per scheduled job, the node holding an unexpired lease is the only one running it
+CREATE TABLE IF NOT EXISTS retro.scheduled_job_lock (
+    name VARCHAR(64) NOT NULL,
+    owner VARCHAR(255) NOT NULL,
+    fencing_token BIGINT NOT NULL,
+    lease_until TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY(name)
+);
@@ -0,0 +1,10 @@
+-- deleting a board removes its cards, their actions and votes, and its members in the database;
+-- every referencing column is indexed (V10_0), so the cascades are index scans
+ALTER TABLE retro.board_card DROP CONSTRAINT board_card_board_id_fkey,
+    ADD FOREIGN KEY(board_id) REFERENCES retro.board(id) ON DELETE CASCADE;
+ALTER TABLE retro.board_card_action DROP CONSTRAINT board_card_action_card_id_fkey,
+    ADD FOREIGN KEY(card_id) REFERENCES retro.board_card(id) ON DELETE CASCADE;
+ALTER TABLE retro.board_card_votes DROP CONSTRAINT board_card_votes_card_id_fkey,
+    ADD FOREIGN KEY(card_id) REFERENCES retro.board_card(id) ON DELETE CASCADE;
+ALTER TABLE retro.users_boards DROP CONSTRAINT users_boards_board_id_fkey,
+    ADD FOREIGN KEY(board_id) REFERENCES retro.board(id) ON DELETE CASCADE;
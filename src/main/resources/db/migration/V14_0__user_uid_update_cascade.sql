@@ -0,0 +1,12 @@
+-- a Firebase account re-created with the same email gets a new uid, the user row is re-keyed to it and everything
+-- referencing the user follows
+ALTER TABLE retro.board DROP CONSTRAINT board_creator_uid_fkey,
+    ADD FOREIGN KEY(creator_uid) REFERENCES retro.user_data(uid) ON UPDATE CASCADE;
+ALTER TABLE retro.board_card DROP CONSTRAINT board_card_creator_uid_fkey,
+    ADD FOREIGN KEY(creator_uid) REFERENCES retro.user_data(uid) ON UPDATE CASCADE;
+ALTER TABLE retro.board_card_votes DROP CONSTRAINT board_card_votes_voter_uid_fkey,
+    ADD FOREIGN KEY(voter_uid) REFERENCES retro.user_data(uid) ON UPDATE CASCADE;
+ALTER TABLE retro.users_boards DROP CONSTRAINT users_boards_user_uid_fkey,
+    ADD FOREIGN KEY(user_uid) REFERENCES retro.user_data(uid) ON UPDATE CASCADE;
+ALTER TABLE retro.board_user_votes DROP CONSTRAINT board_user_votes_voter_uid_fkey,
+    ADD FOREIGN KEY(voter_uid) REFERENCES retro.user_data(uid) ON DELETE CASCADE ON UPDATE CASCADE;
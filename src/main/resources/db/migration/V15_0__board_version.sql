@@ -0,0 +1,2 @@
+-- bumped in the transaction of every board change, so all nodes see the same board versions
+ALTER TABLE retro.board ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,13 @@
+-- a board version is the sum of a few counter rows, a writer bumps one of them, so writers of one board rarely wait
+-- on each other; there is no foreign key to the board, so deleting a board never waits on a writer's counter row
+CREATE TABLE IF NOT EXISTS retro.board_version (
+    board_id INTEGER NOT NULL,
+    stripe SMALLINT NOT NULL,
+    version BIGINT NOT NULL,
+    PRIMARY KEY(board_id, stripe)
+);
+
+INSERT INTO retro.board_version (board_id, stripe, version)
+    SELECT id, 0, version FROM retro.board WHERE version > 0;
+
+ALTER TABLE retro.board DROP COLUMN version;
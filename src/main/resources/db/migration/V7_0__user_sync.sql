@@ -0,0 +1,16 @@
+CREATE TABLE IF NOT EXISTS retro.firebase_user_fingerprint (
+    uid VARCHAR(128) NOT NULL,
+    fingerprint VARCHAR(64) NOT NULL,
+    sync_run BIGINT NOT NULL,
+    PRIMARY KEY(uid)
+);
+
+CREATE INDEX IF NOT EXISTS firebase_user_fingerprint_sync_run_idx ON retro.firebase_user_fingerprint(sync_run);
+
+CREATE TABLE IF NOT EXISTS retro.user_sync_checkpoint (
+    id INTEGER NOT NULL,
+    sync_run BIGINT NOT NULL,
+    page_token VARCHAR(1024),
+    completed BOOLEAN NOT NULL,
+    PRIMARY KEY(id)
+);
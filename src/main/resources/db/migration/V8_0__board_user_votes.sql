@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS retro.board_user_votes (
+    board_id INTEGER NOT NULL,
+    voter_uid VARCHAR(128) NOT NULL,
+    used INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY(board_id, voter_uid),
+    FOREIGN KEY(board_id) REFERENCES retro.board(id) ON DELETE CASCADE,
+    FOREIGN KEY(voter_uid) REFERENCES retro.user_data(uid) ON DELETE CASCADE
+);
+
+INSERT INTO retro.board_user_votes(board_id, voter_uid, used)
+SELECT bc.board_id, bcv.voter_uid, SUM(bcv.count)
+FROM retro.board_card_votes bcv
+JOIN retro.board_card bc ON bc.id = bcv.card_id
+GROUP BY bc.board_id, bcv.voter_uid;
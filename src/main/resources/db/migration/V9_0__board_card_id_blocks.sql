@@ -0,0 +1,2 @@
+-- card ids are allocated by the application in blocks of 50, see BoardCard
+ALTER SEQUENCE retro.board_card_id_seq INCREMENT BY 50;
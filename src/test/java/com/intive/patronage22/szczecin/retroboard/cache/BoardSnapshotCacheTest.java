@@ -0,0 +1,66 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.intive.patronage22.szczecin.retroboard.dto.BoardDto;
+import com.intive.patronage22.szczecin.retroboard.dto.EnumStateDto;
+import com.intive.patronage22.szczecin.retroboard.event.BoardChangedEvent;
+import com.intive.patronage22.szczecin.retroboard.event.BoardEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoardSnapshotCacheTest {
+
+    private final BoardSnapshotCache boardSnapshotCache =
+            new BoardSnapshotCache(10, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @Test
+    void getShouldReturnSnapshotOnlyForItsVersion() {
+        // given
+        final BoardSnapshot snapshot = snapshot(1, 5L);
+
+        // when
+        boardSnapshotCache.put(1, snapshot);
+
+        // then
+        assertEquals(Optional.of(snapshot), boardSnapshotCache.get(1, 5L));
+        assertTrue(boardSnapshotCache.get(1, 6L).isEmpty());
+        assertTrue(boardSnapshotCache.get(2, 5L).isEmpty());
+    }
+
+    @Test
+    void putShouldKeepNewerSnapshotWhenOlderOneIsPutLater() {
+        // given
+        final BoardSnapshot newerSnapshot = snapshot(1, 6L);
+
+        // when
+        boardSnapshotCache.put(1, newerSnapshot);
+        boardSnapshotCache.put(1, snapshot(1, 5L));
+
+        // then
+        assertEquals(Optional.of(newerSnapshot), boardSnapshotCache.get(1, 6L));
+    }
+
+    @Test
+    void onBoardChangedShouldDropSnapshotOfChangedBoard() {
+        // given
+        boardSnapshotCache.put(1, snapshot(1, 5L));
+        boardSnapshotCache.put(2, snapshot(2, 5L));
+
+        // when
+        boardSnapshotCache.onBoardChanged(new BoardChangedEvent(1, BoardEventType.CARD_CREATED, null));
+
+        // then
+        assertTrue(boardSnapshotCache.get(1, 5L).isEmpty());
+        assertTrue(boardSnapshotCache.get(2, 5L).isPresent());
+    }
+
+    private BoardSnapshot snapshot(final int boardId, final long version) {
+        return new BoardSnapshot(version, new BoardDto(boardId, EnumStateDto.CREATED, "My first board.", 5), List.of(), List.of());
+    }
+}
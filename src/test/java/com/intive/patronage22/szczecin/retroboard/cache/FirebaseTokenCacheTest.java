@@ -0,0 +1,102 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FirebaseTokenCacheTest {
+
+    private static final Instant NOW = Instant.parse("2022-04-01T10:00:00Z");
+    private static final UserPrincipal USER1 = new UserPrincipal("uid1", "test1@test.pl", false);
+    private static final UserPrincipal USER2 = new UserPrincipal("uid2", "test2@test.pl", false);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FirebaseTokenCache firebaseTokenCache =
+            new FirebaseTokenCache(10, meterRegistry, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void getShouldReturnVerifiedTokenWhenTokenWasPutBefore() {
+        // given
+        final VerifiedToken verifiedToken = new VerifiedToken(USER1, NOW.plusSeconds(3600));
+
+        // when
+        firebaseTokenCache.put("token", verifiedToken);
+
+        // then
+        assertEquals(verifiedToken, firebaseTokenCache.get("token").orElseThrow());
+        assertTrue(firebaseTokenCache.get("otherToken").isEmpty());
+    }
+
+    @Test
+    void putShouldSkipTokenWhenItIsAlreadyExpired() {
+        // given
+        final VerifiedToken verifiedToken = new VerifiedToken(USER1, NOW.minusSeconds(1));
+
+        // when
+        firebaseTokenCache.put("token", verifiedToken);
+
+        // then
+        assertTrue(firebaseTokenCache.get("token").isEmpty());
+    }
+
+    @Test
+    void revokeShouldRemoveGivenToken() {
+        // given
+        firebaseTokenCache.put("token", new VerifiedToken(USER1, NOW.plusSeconds(3600)));
+
+        // when
+        firebaseTokenCache.revoke("token");
+
+        // then
+        assertTrue(firebaseTokenCache.get("token").isEmpty());
+    }
+
+    @Test
+    void revokeUsersShouldRemoveOnlyTokensOfGivenUsers() {
+        // given
+        firebaseTokenCache.put("token1", new VerifiedToken(USER1, NOW.plusSeconds(3600)));
+        firebaseTokenCache.put("token2", new VerifiedToken(USER1, NOW.plusSeconds(3600)));
+        firebaseTokenCache.put("token3", new VerifiedToken(USER2, NOW.plusSeconds(3600)));
+
+        // when
+        firebaseTokenCache.revokeUsers(List.of("test1@test.pl"));
+
+        // then
+        assertTrue(firebaseTokenCache.get("token1").isEmpty());
+        assertTrue(firebaseTokenCache.get("token2").isEmpty());
+        assertTrue(firebaseTokenCache.get("token3").isPresent());
+    }
+
+    @Test
+    void revokeAllShouldRemoveEveryToken() {
+        // given
+        firebaseTokenCache.put("token1", new VerifiedToken(USER1, NOW.plusSeconds(3600)));
+        firebaseTokenCache.put("token2", new VerifiedToken(USER2, NOW.plusSeconds(3600)));
+
+        // when
+        firebaseTokenCache.revokeAll();
+
+        // then
+        assertTrue(firebaseTokenCache.get("token1").isEmpty());
+        assertTrue(firebaseTokenCache.get("token2").isEmpty());
+    }
+
+    @Test
+    void cacheShouldRegisterMetrics() {
+        // when
+        firebaseTokenCache.get("token");
+
+        // then
+        assertNotNull(meterRegistry.find("cache.gets").tag("cache", "firebaseTokens").tag("result", "miss")
+                .functionCounter());
+    }
+}
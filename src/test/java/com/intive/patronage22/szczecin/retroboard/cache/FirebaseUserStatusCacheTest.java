@@ -0,0 +1,123 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.google.firebase.auth.AuthErrorCode;
+import com.google.firebase.auth.ExportedUserRecord;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.UserRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FirebaseUserStatusCacheTest {
+
+    private static final String email = "test1@test.pl";
+
+    private final FirebaseAuth firebaseAuth = mock(FirebaseAuth.class);
+    private final FirebaseUserStatusCache firebaseUserStatusCache =
+            new FirebaseUserStatusCache(10, Duration.ofMinutes(5), firebaseAuth, new SimpleMeterRegistry());
+
+    @Test
+    void checkActiveShouldAskFirebaseOnlyOnceWhenUserIsActive() throws FirebaseAuthException {
+        // given
+        final UserRecord userRecord = mock(UserRecord.class);
+
+        // when
+        when(firebaseAuth.getUserByEmail(email)).thenReturn(userRecord);
+
+        // then
+        assertDoesNotThrow(() -> firebaseUserStatusCache.checkActive(email));
+        assertDoesNotThrow(() -> firebaseUserStatusCache.checkActive(email));
+        verify(firebaseAuth, times(1)).getUserByEmail(email);
+    }
+
+    @Test
+    void checkActiveShouldThrowDisabledWhenUserIsDisabledInFirebase() throws FirebaseAuthException {
+        // given
+        final UserRecord userRecord = mock(UserRecord.class);
+
+        // when
+        when(userRecord.isDisabled()).thenReturn(true);
+        when(firebaseAuth.getUserByEmail(email)).thenReturn(userRecord);
+
+        // then
+        assertThrows(DisabledException.class, () -> firebaseUserStatusCache.checkActive(email));
+    }
+
+    @Test
+    void checkActiveShouldCacheNegativeEntryWhenUserIsNotFoundInFirebase() throws FirebaseAuthException {
+        // given
+        final FirebaseAuthException userNotFound = mock(FirebaseAuthException.class);
+
+        // when
+        when(userNotFound.getAuthErrorCode()).thenReturn(AuthErrorCode.USER_NOT_FOUND);
+        when(firebaseAuth.getUserByEmail(email)).thenThrow(userNotFound);
+
+        // then
+        assertThrows(UsernameNotFoundException.class, () -> firebaseUserStatusCache.checkActive(email));
+        assertThrows(UsernameNotFoundException.class, () -> firebaseUserStatusCache.checkActive(email));
+        verify(firebaseAuth, times(1)).getUserByEmail(email);
+    }
+
+    @Test
+    void checkActiveShouldRethrowWhenFirebaseFailsForOtherReason() throws FirebaseAuthException {
+        // given
+        final FirebaseAuthException firebaseError = mock(FirebaseAuthException.class);
+
+        // when
+        when(firebaseError.getAuthErrorCode()).thenReturn(AuthErrorCode.CONFIGURATION_NOT_FOUND);
+        when(firebaseAuth.getUserByEmail(email)).thenThrow(firebaseError);
+
+        // then
+        assertThrows(FirebaseAuthException.class, () -> firebaseUserStatusCache.checkActive(email));
+    }
+
+    @Test
+    void checkActiveShouldNotAskFirebaseWhenUsersWereRefreshedBySynchronization() throws FirebaseAuthException {
+        // given
+        final ExportedUserRecord activeUser = mock(ExportedUserRecord.class);
+        final ExportedUserRecord disabledUser = mock(ExportedUserRecord.class);
+
+        // when
+        when(activeUser.getEmail()).thenReturn(email);
+        when(disabledUser.getEmail()).thenReturn("test2@test.pl");
+        when(disabledUser.isDisabled()).thenReturn(true);
+        firebaseUserStatusCache.refresh(List.of(activeUser, disabledUser));
+        firebaseUserStatusCache.markDeleted(List.of("test3@test.pl"));
+
+        // then
+        assertDoesNotThrow(() -> firebaseUserStatusCache.checkActive(email));
+        assertThrows(DisabledException.class, () -> firebaseUserStatusCache.checkActive("test2@test.pl"));
+        assertThrows(UsernameNotFoundException.class, () -> firebaseUserStatusCache.checkActive("test3@test.pl"));
+        verify(firebaseAuth, never()).getUserByEmail(any());
+    }
+
+    @Test
+    void checkActiveShouldAskFirebaseAgainWhenStatusWasForgotten() throws FirebaseAuthException {
+        // given
+        final UserRecord userRecord = mock(UserRecord.class);
+        firebaseUserStatusCache.markDeleted(List.of(email));
+
+        // when
+        when(userRecord.isDisabled()).thenReturn(true);
+        when(firebaseAuth.getUserByEmail(email)).thenReturn(userRecord);
+        firebaseUserStatusCache.forget(List.of(email));
+
+        // then
+        assertThrows(DisabledException.class, () -> firebaseUserStatusCache.checkActive(email));
+        verify(firebaseAuth).getUserByEmail(email);
+    }
+}
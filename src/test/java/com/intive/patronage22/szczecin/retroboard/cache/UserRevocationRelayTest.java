@@ -0,0 +1,93 @@
+package com.intive.patronage22.szczecin.retroboard.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intive.patronage22.szczecin.retroboard.event.NotificationChannel;
+import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class UserRevocationRelayTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final FirebaseTokenCache firebaseTokenCache = mock(FirebaseTokenCache.class);
+    private final FirebaseUserStatusCache firebaseUserStatusCache = mock(FirebaseUserStatusCache.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserRevocationRelay userRevocationRelay = new UserRevocationRelay(userRepository,
+            firebaseTokenCache, firebaseUserStatusCache, objectMapper);
+
+    @Test
+    void revokeRemovedShouldNotifyRevocationWhichMarksUsersDeleted() {
+        // given
+        final ArgumentCaptor<String> revocationCaptor = ArgumentCaptor.forClass(String.class);
+
+        // when
+        userRevocationRelay.revokeRemoved(List.of("test1@test.pl", "test2@test.pl"));
+        verify(userRepository).notifyUsersRevoked(revocationCaptor.capture());
+        userRevocationRelay.onNotification(revocationCaptor.getValue());
+
+        // then
+        verify(firebaseTokenCache).revokeUsers(List.of("test1@test.pl", "test2@test.pl"));
+        verify(firebaseUserStatusCache).markDeleted(List.of("test1@test.pl", "test2@test.pl"));
+        verify(firebaseUserStatusCache, never()).forget(any());
+    }
+
+    @Test
+    void revokeChangedShouldNotifyRevocationWhichForgetsUserStatus() {
+        // given
+        final ArgumentCaptor<String> revocationCaptor = ArgumentCaptor.forClass(String.class);
+
+        // when
+        userRevocationRelay.revokeChanged(List.of("test1@test.pl"));
+        verify(userRepository).notifyUsersRevoked(revocationCaptor.capture());
+        userRevocationRelay.onNotification(revocationCaptor.getValue());
+
+        // then
+        verify(firebaseTokenCache).revokeUsers(List.of("test1@test.pl"));
+        verify(firebaseUserStatusCache).forget(List.of("test1@test.pl"));
+        verify(firebaseUserStatusCache, never()).markDeleted(any());
+    }
+
+    @Test
+    void writeShouldSplitRevocationsToFitNotificationPayload() throws JsonProcessingException {
+        // given
+        final List<String> emails = IntStream.range(0, 1000)
+                .mapToObj(i -> "user" + i + "@example.com")
+                .collect(Collectors.toList());
+
+        // when
+        final List<String> revocations = userRevocationRelay.write(emails, true);
+
+        // then
+        assertTrue(revocations.size() > 1);
+        final List<String> revokedEmails = new ArrayList<>();
+        for (final String revocation : revocations) {
+            assertTrue(revocation.getBytes(StandardCharsets.UTF_8).length <= NotificationChannel.MAX_PAYLOAD_BYTES);
+            objectMapper.readTree(revocation).get("emails").forEach(email -> revokedEmails.add(email.asText()));
+        }
+        assertEquals(emails, revokedEmails);
+    }
+
+    @Test
+    void onListeningShouldDropEveryCachedTokenAndStatus() {
+        // when
+        userRevocationRelay.onListening();
+
+        // then
+        verify(firebaseTokenCache).revokeAll();
+        verify(firebaseUserStatusCache).forgetAll();
+    }
+}
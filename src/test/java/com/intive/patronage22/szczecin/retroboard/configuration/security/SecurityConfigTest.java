@@ -0,0 +1,109 @@
+package com.intive.patronage22.szczecin.retroboard.configuration.security;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SecurityConfigTest {
+
+    private final SecurityConfig securityConfig = new SecurityConfig();
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private HttpComponentsClientHttpRequestFactory requestFactory;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/login", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            final byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(1000);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+
+        connectionManager = securityConfig.loginConnectionManager(2, Duration.ofMinutes(1));
+        requestFactory = securityConfig.loginRequestFactory(connectionManager, Duration.ofSeconds(1),
+                Duration.ofMillis(200), Duration.ofSeconds(1), Duration.ofSeconds(30));
+        restTemplate = securityConfig.restTemplate(requestFactory);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        requestFactory.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    void loginRequestsShouldReuseOneConnection() {
+        // when
+        restTemplate.postForObject(url("/login"), "{}", String.class);
+        restTemplate.postForObject(url("/login"), "{}", String.class);
+
+        // then
+        assertEquals(2, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+        assertEquals(1, connectionManager.getTotalStats().getAvailable());
+    }
+
+    @Test
+    void loginRequestShouldFailWhenResponseTakesLongerThanReadTimeout() {
+        // when
+        assertThrows(ResourceAccessException.class, () -> restTemplate.postForObject(url("/slow"), "{}", String.class));
+
+        // then
+        assertEquals(0, connectionManager.getTotalStats().getLeased());
+    }
+
+    @Test
+    void connectionPoolShouldBeMeasured() {
+        // given
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        // when
+        securityConfig.loginConnectionPoolMetrics(connectionManager).bindTo(meterRegistry);
+        restTemplate.postForObject(url("/login"), "{}", String.class);
+
+        // then
+        assertEquals(2, meterRegistry.get("httpcomponents.httpclient.pool.route.max.default")
+                .tag("httpclient", "firebaseLogin").gauge().value());
+        assertEquals(1, meterRegistry.get("httpcomponents.httpclient.pool.total.connections")
+                .tags("httpclient", "firebaseLogin", "state", "available").gauge().value());
+    }
+
+    private String url(final String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+}
@@ -2,10 +2,13 @@ package com.intive.patronage22.szczecin.retroboard.controller;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseToken;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseTokenCache;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseUserStatusCache;
 import com.intive.patronage22.szczecin.retroboard.configuration.security.SecurityConfig;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardActionDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardActionRequestDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
 import com.intive.patronage22.szczecin.retroboard.exception.BadRequestException;
 import com.intive.patronage22.szczecin.retroboard.exception.NotFoundException;
 import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
@@ -25,12 +28,18 @@ import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -49,6 +58,12 @@ class BoardCardControllerTest {
     @MockBean
     private FirebaseAuth firebaseAuth;
 
+    @MockBean
+    private FirebaseTokenCache firebaseTokenCache;
+
+    @MockBean
+    private FirebaseUserStatusCache firebaseUserStatusCache;
+
     @MockBean
     private UserRepository userRepository;
 
@@ -80,7 +95,7 @@ class BoardCardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardCardService.createBoardCard(requestDto, boardId, email)).thenReturn(responseDto);
+        when(boardCardService.createBoardCard(eq(requestDto), eq(boardId), principal())).thenReturn(responseDto);
 
         //then
         mockMvc.perform(post(url + "/boards/" + boardId)
@@ -213,7 +228,7 @@ class BoardCardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardCardService.createBoardCard(requestDto, boardId, email))
+        when(boardCardService.createBoardCard(eq(requestDto), eq(boardId), principal()))
                 .thenThrow(new BadRequestException(expectedExceptionMessage));
 
         //then
@@ -243,7 +258,7 @@ class BoardCardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardCardService.createBoardCard(requestDto, boardId, email))
+        when(boardCardService.createBoardCard(eq(requestDto), eq(boardId), principal()))
                 .thenThrow(new NotFoundException(expectedExceptionMessage));
 
         //then
@@ -258,6 +273,80 @@ class BoardCardControllerTest {
                         assertTrue(result.getResolvedException().getMessage().contains(expectedExceptionMessage)));
     }
 
+    @Test
+    void addCardsToTheBoardShouldReturnCreated() throws Exception {
+        //given
+        final Integer boardId = 1;
+        final List<BoardCardDto> requestDtos = List.of(
+                BoardCardDto.builder().cardText("first card").columnId(0).build(),
+                BoardCardDto.builder().cardText("second card").columnId(1).build());
+        final List<BoardCardDto> responseDtos = List.of(
+                BoardCardDto.builder().id(10).cardText("first card").columnId(0).boardCardCreator(email).build(),
+                BoardCardDto.builder().id(11).cardText("second card").columnId(1).boardCardCreator(email).build());
+
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+
+        //when
+        when(firebaseToken.getEmail()).thenReturn(email);
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+        when(boardCardService.createBoardCards(eq(requestDtos), eq(boardId), principal())).thenReturn(responseDtos);
+
+        //then
+        mockMvc.perform(post(url + "/boards/" + boardId + "/bulk")
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"cardText\":\"first card\",\"columnId\":0}," +
+                                "{\"cardText\":\"second card\",\"columnId\":1}]"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].id").value(11));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"[]",
+            "[{\"cardText\":\"first card\",\"columnId\":0},{\"cardText\":\"bad\",\"columnId\":0}]",
+            "[{\"cardText\":\"first card\",\"columnId\":3}]"})
+    void addCardsToTheBoardShouldReturnBadRequestWhenCardsAreNotValid(final String content) throws Exception {
+        //given
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+
+        //when
+        when(firebaseToken.getEmail()).thenReturn(email);
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+
+        //then
+        mockMvc.perform(post(url + "/boards/1/bulk")
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(content))
+                .andExpect(status().isBadRequest());
+
+        verify(boardCardService, never()).createBoardCards(any(), any(), any());
+    }
+
+    @Test
+    void addCardsToTheBoardShouldReturnBadRequestWhenTooManyCardsArePosted() throws Exception {
+        //given
+        final String card = "{\"cardText\":\"some card\",\"columnId\":0}";
+        final String content = Stream.generate(() -> card)
+                .limit(BoardCardController.MAX_BULK_CARDS + 1)
+                .collect(Collectors.joining(",", "[", "]"));
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+
+        //when
+        when(firebaseToken.getEmail()).thenReturn(email);
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+
+        //then
+        mockMvc.perform(post(url + "/boards/1/bulk")
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(content))
+                .andExpect(status().isBadRequest());
+
+        verify(boardCardService, never()).createBoardCards(any(), any(), any());
+    }
+
     @Test
     void addVoteShouldReturnCreated() throws Exception {
         //given
@@ -273,7 +362,7 @@ class BoardCardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
 
-        when(boardCardService.addVote(cardId, email)).thenReturn(response);
+        when(boardCardService.addVote(eq(cardId), principal())).thenReturn(response);
 
         //then
         mockMvc.perform(post(voteUrl).header(AUTHORIZATION, "Bearer " + providedAccessToken))
@@ -303,7 +392,7 @@ class BoardCardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
 
-        when(boardCardService.addVote(cardId, email)).thenThrow(new BadRequestException(exceptionMessage));
+        when(boardCardService.addVote(eq(cardId), principal())).thenThrow(new BadRequestException(exceptionMessage));
 
         //then
         mockMvc.perform(
@@ -324,7 +413,7 @@ class BoardCardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
 
-        when(boardCardService.addVote(cardId, email)).thenThrow(new NotFoundException(exceptionMessage));
+        when(boardCardService.addVote(eq(cardId), principal())).thenThrow(new NotFoundException(exceptionMessage));
 
         //then
         mockMvc.perform(
@@ -347,7 +436,7 @@ class BoardCardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardCardService.removeVote(cardId, email)).thenReturn(response);
+        when(boardCardService.removeVote(eq(cardId), principal())).thenReturn(response);
 
         //then
         mockMvc.perform(delete(voteUrl).header(AUTHORIZATION, "Bearer " + providedAccessToken))
@@ -366,7 +455,7 @@ class BoardCardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardCardService.removeVote(cardId, email)).thenThrow(new NotFoundException(exceptionMessage));
+        when(boardCardService.removeVote(eq(cardId), principal())).thenThrow(new NotFoundException(exceptionMessage));
 
         //then
         mockMvc.perform(delete(voteUrl).header(AUTHORIZATION, "Bearer " + providedAccessToken))
@@ -390,7 +479,7 @@ class BoardCardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardCardService.removeVote(cardId, email)).thenThrow(new BadRequestException(exceptionMessage));
+        when(boardCardService.removeVote(eq(cardId), principal())).thenThrow(new BadRequestException(exceptionMessage));
 
         //then
         mockMvc.perform(delete(voteUrl).header(AUTHORIZATION, "Bearer " + providedAccessToken))
@@ -411,7 +500,7 @@ class BoardCardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardCardService.addCardAction(cardId, email, cardActionText)).thenReturn(new BoardCardActionDto(1,cardId,text));
+        when(boardCardService.addCardAction(eq(cardId), principal(), eq(cardActionText))).thenReturn(new BoardCardActionDto(1,cardId,text));
 
         //then
         mockMvc.perform(post(addCardActionUrl)
@@ -433,10 +522,14 @@ class BoardCardControllerTest {
         // when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        doNothing().when(boardCardService).removeAction(actionId, email);
+        doNothing().when(boardCardService).removeAction(eq(actionId), principal());
 
         // then
         mockMvc.perform(delete(actionsUrl).header(AUTHORIZATION, "Bearer " + providedAccessToken))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    private static UserPrincipal principal() {
+        return argThat(principal -> email.equals(principal.getEmail()));
+    }
+}
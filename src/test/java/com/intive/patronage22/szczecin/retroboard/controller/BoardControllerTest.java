@@ -2,12 +2,19 @@ package com.intive.patronage22.szczecin.retroboard.controller;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseToken;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseTokenCache;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseUserStatusCache;
+import com.intive.patronage22.szczecin.retroboard.cache.VerifiedToken;
 import com.intive.patronage22.szczecin.retroboard.configuration.security.SecurityConfig;
 import com.intive.patronage22.szczecin.retroboard.dto.*;
+import com.intive.patronage22.szczecin.retroboard.event.BoardEventStream;
+import com.intive.patronage22.szczecin.retroboard.event.BoardVersions;
 import com.intive.patronage22.szczecin.retroboard.exception.BadRequestException;
 import com.intive.patronage22.szczecin.retroboard.exception.NotFoundException;
 import com.intive.patronage22.szczecin.retroboard.model.User;
+import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
 import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
+import com.intive.patronage22.szczecin.retroboard.service.BoardCardService;
 import com.intive.patronage22.szczecin.retroboard.service.BoardService;
 import org.json.JSONArray;
 import org.junit.jupiter.api.DisplayName;
@@ -18,15 +25,21 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
@@ -34,24 +47,44 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest({BoardController.class, SecurityConfig.class})
+@WebMvcTest({BoardController.class, SecurityConfig.class, BoardVersions.class})
 class BoardControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private BoardVersions boardVersions;
+
     @MockBean
     private BoardService boardService;
 
+    @MockBean
+    private BoardCardService boardCardService;
+
+    @MockBean
+    private BoardEventStream boardEventStream;
+
     @MockBean
     private FirebaseAuth firebaseAuth;
 
+    @MockBean
+    private FirebaseTokenCache firebaseTokenCache;
+
+    @MockBean
+    private FirebaseUserStatusCache firebaseUserStatusCache;
+
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private BoardRepository boardRepository;
+
     private static final String email = "test22@test.com";
     private static final String providedAccessToken = "eyJ0eXAiOiJKV1QiLCJhbGciOiJIUzI1NiJ9" +
             ".eyJzdWIiOiJzb21ldXNlciIsInJvbGVzIjpbIlJPTEVfVVNFUiJdLCJpc3MiOiJodHRwOi8vbG9jYWxob3N0OjgwODAvbG9naW4ifQ.vDeQLA7Y8zTXaJW8bF08lkWzzwGi9Ll44HeMbOc22_o";
@@ -70,7 +103,7 @@ class BoardControllerTest {
         // when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.getUserBoards(email)).thenReturn(dtoList);
+        when(boardService.getUserBoards(principal(), isNull(), eq(50))).thenReturn(dtoList);
 
         // then
         mockMvc.perform(get(boardDataUrl)
@@ -80,6 +113,84 @@ class BoardControllerTest {
                 .andExpect(jsonPath("$.*", hasSize(2)));
     }
 
+    @Test
+    void getUserBoardsShouldPassPageParametersToService() throws Exception {
+        // given
+        final VerifiedToken verifiedToken =
+                new VerifiedToken(new UserPrincipal("uid", email, false), Instant.now().plusSeconds(3600));
+
+        // when
+        when(firebaseTokenCache.get(providedAccessToken)).thenReturn(Optional.of(verifiedToken));
+        when(boardService.getUserBoards(principal(), eq(40), eq(10)))
+                .thenReturn(List.of(new BoardDto(39, EnumStateDto.CREATED, "test1", 1)));
+
+        // then
+        mockMvc.perform(get(boardDataUrl)
+                        .param("before", "40")
+                        .param("limit", "10")
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(39));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "101"})
+    void getUserBoardsShouldReturnBadRequestWhenLimitIsOutOfRange(final String limit) throws Exception {
+        // given
+        final VerifiedToken verifiedToken =
+                new VerifiedToken(new UserPrincipal("uid", email, false), Instant.now().plusSeconds(3600));
+
+        // when
+        when(firebaseTokenCache.get(providedAccessToken)).thenReturn(Optional.of(verifiedToken));
+
+        // then
+        mockMvc.perform(get(boardDataUrl)
+                        .param("limit", limit)
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken))
+                .andExpect(status().isBadRequest());
+
+        verify(boardService, never()).getUserBoards(any(), any(), anyInt());
+    }
+
+    @Test
+    void getUserBoardsShouldSkipFirebaseVerificationWhenTokenIsCached() throws Exception {
+        // given
+        final VerifiedToken verifiedToken =
+                new VerifiedToken(new UserPrincipal("uid", email, false), Instant.now().plusSeconds(3600));
+
+        // when
+        when(firebaseTokenCache.get(providedAccessToken)).thenReturn(Optional.of(verifiedToken));
+        when(boardService.getUserBoards(principal(), isNull(), eq(50))).thenReturn(List.of());
+
+        // then
+        mockMvc.perform(get(boardDataUrl)
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken))
+                .andExpect(status().isOk());
+
+        verify(firebaseAuth, never()).verifyIdToken(any());
+        verify(firebaseAuth, never()).getUserByEmail(any());
+        verify(userRepository, never()).findUserByEmail(any());
+    }
+
+    @Test
+    void getUserBoardsShouldReturnForbiddenWhenUserIsDisabledInFirebase() throws Exception {
+        // given
+        final VerifiedToken verifiedToken =
+                new VerifiedToken(new UserPrincipal("uid", email, false), Instant.now().plusSeconds(3600));
+
+        // when
+        when(firebaseTokenCache.get(providedAccessToken)).thenReturn(Optional.of(verifiedToken));
+        doThrow(new DisabledException("The user account has been disabled by an administrator."))
+                .when(firebaseUserStatusCache).checkActive(email);
+
+        // then
+        mockMvc.perform(get(boardDataUrl)
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken))
+                .andExpect(status().isForbidden());
+
+        verify(boardService, never()).getUserBoards(any(), any(), anyInt());
+    }
+
     @Test
     void getUserBoardsShouldReturnBadRequestWhenUserDoesNotExist() throws Exception {
         // given
@@ -88,7 +199,7 @@ class BoardControllerTest {
         // when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.getUserBoards(email)).thenThrow(BadRequestException.class);
+        when(boardService.getUserBoards(principal(), isNull(), eq(50))).thenThrow(BadRequestException.class);
 
         // then
         mockMvc.perform(get(boardDataUrl)
@@ -113,7 +224,7 @@ class BoardControllerTest {
         // when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.createBoard(boardName, email)).thenReturn(boardDto);
+        when(boardService.createBoard(eq(boardName), principal())).thenReturn(boardDto);
 
         // then
         mockMvc.perform(post(boardDataUrl)
@@ -136,7 +247,7 @@ class BoardControllerTest {
         // when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.createBoard(boardName, email)).thenThrow(new BadRequestException("User not found"));
+        when(boardService.createBoard(eq(boardName), principal())).thenThrow(new BadRequestException("User not found"));
 
         // then
         mockMvc.perform(post(boardDataUrl)
@@ -168,7 +279,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
 
-        when(boardService.getBoardDataById(boardId, email)).thenReturn(boardDataDto);
+        when(boardService.getBoardDataById(eq(boardId), principal(), anyLong())).thenReturn(boardDataDto);
 
         //then
         this.mockMvc.perform(get(boardDataUrl + "/" + boardId).header(AUTHORIZATION, "Bearer " + providedAccessToken))
@@ -192,6 +303,56 @@ class BoardControllerTest {
                         .contains(boardDataDto.getUsers().get(1).getId())));
     }
 
+    @Test
+    void getBoardDataByIdShouldReturnNotModifiedWithoutLoadingBoardWhenETagMatches() throws Exception {
+        //given
+        final int boardId = 1;
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+
+        //when
+        when(firebaseToken.getEmail()).thenReturn(email);
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+        when(boardService.getBoardDataById(eq(boardId), principal(), anyLong())).thenReturn(
+                new BoardDataDto(new BoardDto(1, EnumStateDto.CREATED, "board name", 5), List.of(), List.of()));
+
+        final String eTag = mockMvc.perform(get(boardDataUrl + "/" + boardId)
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(ETAG);
+
+        //then
+        mockMvc.perform(get(boardDataUrl + "/" + boardId)
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .header(IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(ETAG, eTag))
+                .andExpect(content().string(""));
+
+        verify(boardService, times(1)).getBoardDataById(eq(boardId), principal(), anyLong());
+    }
+
+    @Test
+    void getBoardDetailsByIdShouldReturnOkWhenBoardChangedSinceETag() throws Exception {
+        //given
+        final int boardId = 1;
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+        final String eTag = boardVersions.eTag(1L, email);
+
+        //when
+        when(firebaseToken.getEmail()).thenReturn(email);
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+        when(boardService.getBoardDetailsById(eq(boardId), principal(), anyLong())).thenReturn(List.of());
+        // changed on any node, the version comes from the database
+        when(boardService.getBoardVersion(eq(boardId), principal())).thenReturn(2L);
+
+        //then
+        mockMvc.perform(get(boardDataUrl + "/" + boardId + "/details")
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .header(IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ETAG, boardVersions.eTag(2L, email)));
+    }
+
     @Test
     @DisplayName("getBoardDataById should return 400 when user has no permission to view board data")
     void getBoardDataByIdShouldThrowBadRequestWhenUserDoesntHavePermissions() throws Exception {
@@ -205,7 +366,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
 
-        when(boardService.getBoardDataById(boardId, email)).thenThrow(new BadRequestException(exceptionMessage));
+        when(boardService.getBoardVersion(eq(boardId), principal())).thenThrow(new BadRequestException(exceptionMessage));
 
         //then
         this.mockMvc.perform(get(boardDataUrl + "/" + boardId).header(AUTHORIZATION, "Bearer " + providedAccessToken))
@@ -214,6 +375,28 @@ class BoardControllerTest {
                 .andExpect(result -> assertTrue(result.getResolvedException().getMessage().contains(exceptionMessage)));
     }
 
+    @Test
+    void getBoardDataByIdShouldReturnBadRequestInsteadOfNotModifiedWhenUserHasNoAccess() throws Exception {
+        //given
+        final int boardId = 1;
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+
+        //when
+        when(firebaseToken.getEmail()).thenReturn(email);
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+        when(boardService.getBoardVersion(eq(boardId), principal()))
+                .thenThrow(new BadRequestException("User has no access to board"));
+
+        //then
+        mockMvc.perform(get(boardDataUrl + "/" + boardId)
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .header(IF_NONE_MATCH, boardVersions.eTag(0L, email)))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist(ETAG));
+
+        verify(boardService, never()).getBoardDataById(anyInt(), any(), anyLong());
+    }
+
     @Test
     @DisplayName("getBoardDataById should return 404 when board does not exist")
     void getBoardDataByIdShouldThrowNotFoundWhenBoardDoesNotExist() throws Exception {
@@ -226,7 +409,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
 
-        when(boardService.getBoardDataById(boardId, email)).thenThrow(new NotFoundException(exceptionMessage));
+        when(boardService.getBoardVersion(eq(boardId), principal())).thenThrow(new NotFoundException(exceptionMessage));
 
         //then
         this.mockMvc.perform(get(boardDataUrl + "/" + boardId)
@@ -236,6 +419,48 @@ class BoardControllerTest {
                 .andExpect(result -> assertTrue(result.getResolvedException().getMessage().contains(exceptionMessage)));
     }
 
+    @Test
+    void getBoardEventsShouldSubscribeFromLastEventIdWhenUserHasAccess() throws Exception {
+        //given
+        final int boardId = 1;
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+
+        //when
+        when(firebaseToken.getEmail()).thenReturn(email);
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+        when(boardEventStream.subscribe(boardId, "42")).thenReturn(new SseEmitter());
+
+        //then
+        mockMvc.perform(get(boardDataUrl + "/" + boardId + "/events")
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .header("Last-Event-ID", "42")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+
+        verify(boardService).checkBoardAccess(eq(boardId), principal());
+    }
+
+    @Test
+    void getBoardEventsShouldReturnNotFoundWhenBoardDoesNotExist() throws Exception {
+        //given
+        final int boardId = 1;
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+
+        //when
+        when(firebaseToken.getEmail()).thenReturn(email);
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+        doThrow(new NotFoundException("Board not found")).when(boardService).checkBoardAccess(eq(boardId), principal());
+
+        //then
+        mockMvc.perform(get(boardDataUrl + "/" + boardId + "/events")
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isNotFound());
+
+        verify(boardEventStream, never()).subscribe(any(), any());
+    }
+
     @Test
     @DisplayName("getBoardDetailsById should return 200 when board details is collected")
     void getBoardDetailsByIdShouldReturnOk() throws Exception {
@@ -259,7 +484,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
 
-        when(boardService.getBoardDetailsById(boardId, email)).thenReturn(boardDetailsDtos);
+        when(boardService.getBoardDetailsById(eq(boardId), principal(), anyLong())).thenReturn(boardDetailsDtos);
 
         //then
         this.mockMvc.perform(get(boardDataUrl + "/" + boardId + "/details").header(AUTHORIZATION, "Bearer " + providedAccessToken))
@@ -322,7 +547,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
 
-        when(boardService.getBoardDetailsById(boardId, email)).thenThrow(new BadRequestException(exceptionMessage));
+        when(boardService.getBoardVersion(eq(boardId), principal())).thenThrow(new BadRequestException(exceptionMessage));
 
         //then
         this.mockMvc.perform(get(boardDataUrl + "/" + boardId + "/details").header(AUTHORIZATION, "Bearer " + providedAccessToken))
@@ -343,7 +568,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
 
-        when(boardService.getBoardDetailsById(boardId, email)).thenThrow(new NotFoundException(exceptionMessage));
+        when(boardService.getBoardVersion(eq(boardId), principal())).thenThrow(new NotFoundException(exceptionMessage));
 
         //then
         this.mockMvc.perform(get(boardDataUrl + "/" + boardId + "/details")
@@ -415,7 +640,7 @@ class BoardControllerTest {
         // when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.patchBoard(eq(1), any(BoardPatchDto.class), anyString()))
+        when(boardService.patchBoard(eq(1), any(BoardPatchDto.class), any(UserPrincipal.class)))
                 .thenThrow(new NotFoundException("Board not found!"));
 
         // then
@@ -446,7 +671,7 @@ class BoardControllerTest {
         // when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.patchBoard(eq(1), any(BoardPatchDto.class), anyString()))
+        when(boardService.patchBoard(eq(1), any(BoardPatchDto.class), any(UserPrincipal.class)))
                 .thenReturn(boardDto);
 
         // then
@@ -471,7 +696,7 @@ class BoardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.assignUsersToBoard(boardId, usersEmails, email)).thenReturn(failedEmails);
+        when(boardService.assignUsersToBoard(eq(boardId), eq(usersEmails), principal())).thenReturn(failedEmails);
 
         //then
         this.mockMvc.perform(post(assignUsersUrl)
@@ -496,7 +721,7 @@ class BoardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.assignUsersToBoard(boardId, usersEmails, email)).thenThrow(
+        when(boardService.assignUsersToBoard(eq(boardId), eq(usersEmails), principal())).thenThrow(
                 new BadRequestException(exceptionMessage));
 
         //then
@@ -522,7 +747,7 @@ class BoardControllerTest {
         // when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.assignUsersToBoard(boardId, usersEmails, email)).thenThrow(
+        when(boardService.assignUsersToBoard(eq(boardId), eq(usersEmails), principal())).thenThrow(
                 new NotFoundException(exceptionMessage));
 
         //then
@@ -548,7 +773,7 @@ class BoardControllerTest {
         // when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.assignUsersToBoard(boardId, usersEmails, email)).thenThrow(
+        when(boardService.assignUsersToBoard(eq(boardId), eq(usersEmails), principal())).thenThrow(
                 new NotFoundException(exceptionMessage));
 
         //then
@@ -575,7 +800,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(userRepository.findUserByEmail(firebaseToken.getEmail())).thenReturn(Optional.of(user));
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.getUserBoards(email)).thenReturn(dtoList);
+        when(boardService.getUserBoards(principal(), isNull(), eq(50))).thenReturn(dtoList);
 
         // then
         mockMvc.perform(get(boardDataUrl)
@@ -600,7 +825,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(userRepository.findUserByEmail(firebaseToken.getEmail())).thenReturn(Optional.empty());
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.getUserBoards(email)).thenReturn(dtoList);
+        when(boardService.getUserBoards(principal(), isNull(), eq(50))).thenReturn(dtoList);
 
         // then
         mockMvc.perform(get(boardDataUrl)
@@ -612,6 +837,26 @@ class BoardControllerTest {
                 .andExpect(result -> verify(userRepository, times(1)).save(any()));
     }
 
+    @Test
+    void getUserBoardsShouldUseUserSavedByConcurrentRequestWhenInsertFails() throws Exception {
+        // given
+        final User user = new User("uid", email, "test", false, Set.of(), Set.of());
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+
+        // when
+        when(firebaseToken.getEmail()).thenReturn(email);
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+        when(userRepository.findUserByEmail(email)).thenReturn(Optional.empty()).thenReturn(Optional.of(user));
+        when(userRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(boardService.getUserBoards(new UserPrincipal("uid", email, false), null, 50)).thenReturn(List.of());
+
+        // then
+        mockMvc.perform(get(boardDataUrl)
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(0)));
+    }
+
     @Test
     void createBoardShouldReturnCreatedWhenUserExistsInDatabaseAndBoardNameIsValid() throws Exception {
         // given
@@ -630,7 +875,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(userRepository.findUserByEmail(firebaseToken.getEmail())).thenReturn(Optional.of(user));
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.createBoard(boardName, email)).thenReturn(boardDto);
+        when(boardService.createBoard(eq(boardName), principal())).thenReturn(boardDto);
 
         // then
         mockMvc.perform(post(boardDataUrl)
@@ -661,7 +906,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(userRepository.findUserByEmail(firebaseToken.getEmail())).thenReturn(Optional.of(user));
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.createBoard(boardName, email)).thenReturn(boardDto);
+        when(boardService.createBoard(eq(boardName), principal())).thenReturn(boardDto);
 
         // then
         mockMvc.perform(post(boardDataUrl)
@@ -689,7 +934,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(userRepository.findUserByEmail(firebaseToken.getEmail())).thenReturn(Optional.of(user));
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.assignUsersToBoard(boardId, usersEmails, email)).thenReturn(failedEmails);
+        when(boardService.assignUsersToBoard(eq(boardId), eq(usersEmails), principal())).thenReturn(failedEmails);
 
         //then
         this.mockMvc.perform(post(assignUsersUrl)
@@ -716,7 +961,7 @@ class BoardControllerTest {
         when(firebaseToken.getEmail()).thenReturn(email);
         when(userRepository.findUserByEmail(firebaseToken.getEmail())).thenReturn(Optional.of(user));
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.assignUsersToBoard(boardId, usersEmails, email)).thenReturn(failedEmails);
+        when(boardService.assignUsersToBoard(eq(boardId), eq(usersEmails), principal())).thenReturn(failedEmails);
 
         //then
         this.mockMvc.perform(post(assignUsersUrl)
@@ -746,7 +991,7 @@ class BoardControllerTest {
         //when
         when(firebaseToken.getEmail()).thenReturn(email);
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(boardService.setNextState(boardDto.getId(), email)).thenReturn(boardDataDto);
+        when(boardService.setNextState(eq(boardDto.getId()), principal())).thenReturn(boardDataDto);
 
         //then
         mockMvc.perform(post(boardDataUrl)
@@ -754,4 +999,49 @@ class BoardControllerTest {
                 .andExpect(status().isOk()).andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.*", hasSize(3)));
     }
+
+    @Test
+    @DisplayName("setVotes should return 200 - OK - and the remaining votes")
+    void setVotesShouldReturnOkAndRemainingVotes() throws Exception {
+        //given
+        final VerifiedToken verifiedToken =
+                new VerifiedToken(new UserPrincipal("uid", email, false), Instant.now().plusSeconds(3600));
+
+        //when
+        when(firebaseTokenCache.get(providedAccessToken)).thenReturn(Optional.of(verifiedToken));
+        when(boardCardService.setVotes(eq(1), eq(Map.of(10, 2, 11, 0)), principal()))
+                .thenReturn(Map.of("remainingVotes", 3));
+
+        //then
+        mockMvc.perform(put(boardDataUrl + "/1/votes")
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"10\": 2, \"11\": 0}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.remainingVotes").value(3));
+    }
+
+    @Test
+    @DisplayName("setVotes should return 400 - Bad request - when the votes exceed the maximum")
+    void setVotesShouldReturnBadRequestWhenServiceRejectsVotes() throws Exception {
+        //given
+        final VerifiedToken verifiedToken =
+                new VerifiedToken(new UserPrincipal("uid", email, false), Instant.now().plusSeconds(3600));
+
+        //when
+        when(firebaseTokenCache.get(providedAccessToken)).thenReturn(Optional.of(verifiedToken));
+        when(boardCardService.setVotes(eq(1), eq(Map.of(10, 20)), principal()))
+                .thenThrow(new BadRequestException("No more votes"));
+
+        //then
+        mockMvc.perform(put(boardDataUrl + "/1/votes")
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"10\": 20}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static UserPrincipal principal() {
+        return argThat(principal -> email.equals(principal.getEmail()));
+    }
 }
@@ -0,0 +1,400 @@
+package com.intive.patronage22.szczecin.retroboard.controller;
+
+import com.intive.patronage22.szczecin.retroboard.RetroboardApplication;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseTokenCache;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseUserStatusCache;
+import com.intive.patronage22.szczecin.retroboard.cache.VerifiedToken;
+import com.intive.patronage22.szczecin.retroboard.configuration.EmbeddedDatabase;
+import com.intive.patronage22.szczecin.retroboard.configuration.FirebaseTestConfiguration;
+import com.intive.patronage22.szczecin.retroboard.dto.EnumStateDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
+import com.intive.patronage22.szczecin.retroboard.metrics.StatementCounter;
+import com.intive.patronage22.szczecin.retroboard.service.SynchronizeWithFirebaseScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Holds every endpoint backed by the database to a fixed number of SQL statements, measured against an embedded
+ * PostgreSQL. Each budget is checked with small and large data, so an N+1 query fails the build.
+ */
+@SpringBootTest(classes = {RetroboardApplication.class, FirebaseTestConfiguration.class},
+                properties = "FIREBASE_API_KEY=test")
+@AutoConfigureMockMvc
+class QueryBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FirebaseTokenCache firebaseTokenCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private FirebaseUserStatusCache firebaseUserStatusCache;
+
+    @MockBean
+    private SynchronizeWithFirebaseScheduler synchronizeWithFirebaseScheduler;
+
+    // board reads include the board version, every board change bumps it with one more statement and sends its
+    // events to the other nodes with one more, and deleting a board deletes its version
+    private StatementCounter statementCounter;
+    private String prefix;
+    private String uid;
+
+    @DynamicPropertySource
+    static void properties(final DynamicPropertyRegistry registry) {
+        EmbeddedDatabase.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        statementCounter = new StatementCounter(entityManagerFactory);
+        prefix = UUID.randomUUID().toString().substring(0, 8);
+        uid = createUsers("owner", 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void getUserBoardsShouldStayWithinBudget(final int boards) throws Exception {
+        for (int i = 0; i < boards; i++) {
+            createBoard(EnumStateDto.CREATED, createUsers("member" + i, 1));
+        }
+
+        statementCounter.assertStatements(1, () -> perform(get("/api/v1/boards"), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void getUserBoardsPageShouldStayWithinBudget(final int boards) throws Exception {
+        final List<Integer> boardIds = new ArrayList<>();
+        for (int i = 0; i < boards; i++) {
+            boardIds.add(createBoard(EnumStateDto.CREATED, createUsers("member" + i, 1)));
+        }
+        final int before = boardIds.get(boards - 1);
+
+        statementCounter.assertStatements(1, () -> perform(get("/api/v1/boards")
+                .param("before", String.valueOf(before))
+                .param("limit", "2"), 200)
+                .andExpect(jsonPath("$[*].id", contains(boardIds.get(boards - 2), boardIds.get(boards - 3)))));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void getBoardDetailsShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.VOTING, createUsers("member", cards));
+        createCards(boardId, cards);
+        createVotes(boardId);
+
+        statementCounter.assertStatements(5, () -> perform(get("/api/v1/boards/" + boardId + "/details"), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void getBoardDataShouldStayWithinBudget(final int members) throws Exception {
+        final int boardId = createBoard(EnumStateDto.CREATED, createUsers("member", members));
+
+        statementCounter.assertStatements(4, () -> perform(get("/api/v1/boards/" + boardId), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void getBoardDataShouldRejectUserWithoutAccessWithinBudget(final int members) throws Exception {
+        final String memberUid = createUsers("member", members);
+        final int boardId = createBoard(EnumStateDto.CREATED, memberUid);
+        jdbcTemplate.update("UPDATE retro.board SET creator_uid = ? WHERE id = ?", memberUid, boardId);
+
+        // any ETag matches, the access is still checked first
+        statementCounter.assertStatements(1,
+                () -> perform(get("/api/v1/boards/" + boardId).header(IF_NONE_MATCH, "*"), 400));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void getBoardDataShouldRejectMissingBoardWithinBudget(final int boards) throws Exception {
+        for (int i = 0; i < boards; i++) {
+            createBoard(EnumStateDto.CREATED, createUsers("member" + i, 1));
+        }
+
+        statementCounter.assertStatements(1, () -> perform(get("/api/v1/boards/0").header(IF_NONE_MATCH, "*"), 404));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void getBoardEventsShouldStayWithinBudget(final int members) throws Exception {
+        final int boardId = createBoard(EnumStateDto.CREATED, createUsers("member", members));
+
+        statementCounter.assertStatements(1, () -> perform(get("/api/v1/boards/" + boardId + "/events"), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void createBoardShouldStayWithinBudget(final int boards) throws Exception {
+        for (int i = 0; i < boards; i++) {
+            createBoard(EnumStateDto.CREATED, createUsers("member" + i, 1));
+        }
+
+        statementCounter.assertStatements(1, 1, () -> perform(post("/api/v1/boards")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"new board\"}"), 201));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void assignUsersToBoardShouldStayWithinBudget(final int members) throws Exception {
+        final int boardId = createBoard(EnumStateDto.CREATED, createUsers("member", members));
+        createUsers("new", 2);
+
+        statementCounter.assertStatements(6, () -> perform(post("/api/v1/boards/" + boardId + "/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"" + email("new", 0) + "\", \"" + email("new", 1) + "\"]"), 201));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void patchBoardShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.CREATED, createUsers("member", cards));
+        createCards(boardId, cards);
+        createVotes(boardId);
+
+        statementCounter.assertStatements(4, () -> perform(patch("/api/v1/boards/" + boardId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"renamed board\", \"maximumNumberOfVotes\": 5}"), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void removeAssignedUserShouldStayWithinBudget(final int members) throws Exception {
+        final String memberUid = createUsers("member", members);
+        final int boardId = createBoard(EnumStateDto.CREATED, memberUid);
+
+        statementCounter.assertStatements(6,
+                () -> perform(delete("/api/v1/boards/" + boardId + "/users/" + memberUid), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void setNextStateShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.VOTING, createUsers("member", cards));
+        createCards(boardId, cards);
+        createVotes(boardId);
+
+        statementCounter.assertStatements(5, () -> perform(post("/api/v1/boards/" + boardId + "/nextState"), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 1000})
+    void deleteBoardShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.VOTING, createUsers("member", cards));
+        createCards(boardId, cards);
+        createVotes(boardId);
+
+        statementCounter.assertStatements(4, () -> perform(delete("/api/v1/boards/" + boardId), 200));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM retro.board_card WHERE board_id = ?",
+                Integer.class, boardId));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void addCardShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.CREATED, createUsers("member", cards));
+        createCards(boardId, cards);
+
+        statementCounter.assertStatements(3, 1, () -> perform(post("/api/v1/cards/boards/" + boardId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"cardText\": \"new card\", \"columnId\": 1}"), 201));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 100})
+    void addCardsShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.CREATED, createUsers("member", 5));
+        final String content = IntStream.range(0, cards)
+                .mapToObj(i -> "{\"cardText\": \"new card " + i + "\", \"columnId\": 1}")
+                .collect(Collectors.joining(",", "[", "]"));
+
+        // the cards are inserted in batches of 50, with a block of 50 ids fetched whenever the current one runs out
+        final long batches = (cards + 49) / 50;
+        statementCounter.assertStatements(2 + batches, batches + 1, () -> perform(post("/api/v1/cards/boards/"
+                + boardId + "/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(content), 201)
+                .andExpect(jsonPath("$.length()").value(cards)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void removeCardShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.CREATED, createUsers("member", cards));
+        final int cardId = createCards(boardId, cards);
+
+        statementCounter.assertStatements(6, () -> perform(delete("/api/v1/cards/" + cardId), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void addVoteShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.VOTING, createUsers("member", cards));
+        final int cardId = createCards(boardId, cards);
+        createVotes(boardId);
+
+        statementCounter.assertStatements(6, () -> perform(post("/api/v1/cards/" + cardId + "/votes"), 201));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void removeVoteShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.VOTING, createUsers("member", cards));
+        final int cardId = createCards(boardId, cards);
+        createVotes(boardId);
+
+        statementCounter.assertStatements(6, () -> perform(delete("/api/v1/cards/" + cardId + "/votes"), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void setVotesShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.VOTING, createUsers("member", cards));
+        final int cardId = createCards(boardId, cards);
+        createVotes(boardId);
+
+        // one card gets more votes and the votes on every other card are dropped
+        statementCounter.assertStatements(7, () -> perform(put("/api/v1/boards/" + boardId + "/votes")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"" + cardId + "\": 3, \"" + (cardId + 1) + "\": 0}"), 200)
+                .andExpect(jsonPath("$.remainingVotes").value(997)));
+
+        final Integer votes = jdbcTemplate.queryForObject("SELECT SUM(count) FROM retro.board_card_votes bcv "
+                + "JOIN retro.board_card bc ON bc.id = bcv.card_id WHERE bc.board_id = ?", Integer.class, boardId);
+        assertEquals(3, votes);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void addCardActionShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.ACTIONS, createUsers("member", cards));
+        final int cardId = createCards(boardId, cards);
+
+        statementCounter.assertStatements(4, 1, () -> perform(post("/api/v1/cards/" + cardId + "/actions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"text\": \"new action\"}"), 201));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void removeCardActionShouldStayWithinBudget(final int cards) throws Exception {
+        final int boardId = createBoard(EnumStateDto.ACTIONS, createUsers("member", cards));
+        final int cardId = createCards(boardId, cards);
+        final int actionId = jdbcTemplate.queryForObject(
+                "SELECT id FROM retro.board_card_action WHERE card_id = ?", Integer.class, cardId);
+
+        statementCounter.assertStatements(4,
+                () -> perform(delete("/api/v1/cards/actions/" + actionId), 200));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {5, 500})
+    void searchUsersShouldStayWithinBudget(final int users) throws Exception {
+        createUsers("found", users);
+
+        statementCounter.assertStatements(1,
+                () -> perform(get("/api/v1/users").param("email", prefix + "-found"), 200));
+    }
+
+    private ResultActions perform(final MockHttpServletRequestBuilder request, final int expectedStatus)
+            throws Exception {
+        return mockMvc.perform(request.header(AUTHORIZATION, "Bearer " + prefix))
+                .andExpect(status().is(expectedStatus));
+    }
+
+    /**
+     * Creates users named {@code <prefix>-<name><i>} and returns the uid of the first one. Requests are sent as the
+     * first user created in a test.
+     */
+    private String createUsers(final String name, final int count) {
+        jdbcTemplate.update("INSERT INTO retro.user_data(uid, email, display_name, deleted) "
+                        + "SELECT ? || n, ? || n || '@example.com', ? || n, false FROM generate_series(0, ? - 1) n",
+                prefix + "-" + name, prefix + "-" + name, name, count);
+
+        final String firstUid = prefix + "-" + name + 0;
+        if (uid == null) {
+            firebaseTokenCache.put(prefix, new VerifiedToken(new UserPrincipal(firstUid, email(name, 0), false),
+                    Instant.now().plus(1, ChronoUnit.HOURS)));
+        }
+        return firstUid;
+    }
+
+    private String email(final String name, final int index) {
+        return prefix + "-" + name + index + "@example.com";
+    }
+
+    /**
+     * Creates a board of the current user and assigns the given member with every user created under the same name.
+     */
+    private int createBoard(final EnumStateDto state, final String memberUid) {
+        final Integer boardId = jdbcTemplate.queryForObject("INSERT INTO retro.board"
+                        + "(name, state, creator_uid, maximum_number_of_votes) VALUES ('board', ?, ?, 1000) "
+                        + "RETURNING id",
+                Integer.class, state.name(), uid);
+        final String memberPrefix = memberUid.substring(0, memberUid.length() - 1);
+        jdbcTemplate.update("INSERT INTO retro.users_boards(board_id, user_uid) "
+                + "SELECT ?, uid FROM retro.user_data WHERE uid LIKE ? || '%'", boardId, memberPrefix);
+        return boardId;
+    }
+
+    /**
+     * Creates cards of the current user, each with an action, and returns the first card id.
+     */
+    private int createCards(final int boardId, final int count) {
+        jdbcTemplate.update("INSERT INTO retro.board_card(board_id, text, board_column, creator_uid) "
+                + "SELECT ?, 'card ' || n, 'SUCCESS', ? FROM generate_series(1, ?) n", boardId, uid, count);
+        jdbcTemplate.update("INSERT INTO retro.board_card_action(card_id, text) "
+                + "SELECT id, 'action' FROM retro.board_card WHERE board_id = ?", boardId);
+        return jdbcTemplate.queryForObject("SELECT MIN(id) FROM retro.board_card WHERE board_id = ?",
+                Integer.class, boardId);
+    }
+
+    private void createVotes(final int boardId) {
+        jdbcTemplate.update("INSERT INTO retro.board_card_votes(card_id, voter_uid, count) "
+                + "SELECT id, ?, 1 FROM retro.board_card WHERE board_id = ?", uid, boardId);
+        jdbcTemplate.update("INSERT INTO retro.board_user_votes(board_id, voter_uid, used) "
+                + "SELECT ?, ?, COUNT(*) FROM retro.board_card WHERE board_id = ?", boardId, uid, boardId);
+    }
+}
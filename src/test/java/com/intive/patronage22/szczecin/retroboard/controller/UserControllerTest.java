@@ -2,12 +2,16 @@ package com.intive.patronage22.szczecin.retroboard.controller;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseToken;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseTokenCache;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseUserStatusCache;
 import com.intive.patronage22.szczecin.retroboard.configuration.security.SecurityConfig;
 import com.intive.patronage22.szczecin.retroboard.exception.MissingFieldException;
 import com.intive.patronage22.szczecin.retroboard.exception.UserAlreadyExistException;
+import com.intive.patronage22.szczecin.retroboard.filter.LoginBulkhead;
 import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
 import com.intive.patronage22.szczecin.retroboard.service.UserService;
 import org.hamcrest.core.IsNull;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -37,17 +41,22 @@ import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.Path;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Stream;
 
 import static com.intive.patronage22.szczecin.retroboard.configuration.security.WebSecurityConfig.URL_LOGIN;
 import static com.intive.patronage22.szczecin.retroboard.configuration.security.WebSecurityConfig.URL_REGISTER;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withBadRequest;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -68,12 +77,21 @@ class UserControllerTest {
     @MockBean
     private FirebaseAuth firebaseAuth;
 
+    @MockBean
+    private FirebaseTokenCache firebaseTokenCache;
+
+    @MockBean
+    private FirebaseUserStatusCache firebaseUserStatusCache;
+
     @MockBean
     private AuthenticationManager authenticationManager;
 
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private LoginBulkhead loginBulkhead;
+
     @Autowired
     private RestTemplate restTemplate;
 
@@ -88,6 +106,15 @@ class UserControllerTest {
         firebaseRestServiceServer = MockRestServiceServer.createServer(restTemplate);
     }
 
+    // logins run on the calling thread, so the response is complete when MockMvc returns
+    @BeforeEach
+    void runLoginsInline() {
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(loginBulkhead).execute(any());
+    }
+
     @Test
     void registerShouldReturnCreatedWhenUserInputsAreValid() throws Exception {
         // given
@@ -228,6 +255,47 @@ class UserControllerTest {
                 .andExpect(header().string(AUTHORIZATION, "Bearer [ID_TOKEN]"));
     }
 
+    @Test
+    void loginShouldReturnServiceUnavailableWhenFirebaseFails() throws Exception {
+        // given
+        final String email = "someuser@test.com";
+        final String password = "1234";
+        firebaseRestServiceServer.expect(method(HttpMethod.POST)).andRespond(withServerError());
+
+        //then
+        mockMvc
+                .perform(post(URL_LOGIN)
+                        .param("email", email)
+                        .param("password", password)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error_message").value("Login is temporarily unavailable."));
+    }
+
+    @Test
+    void loginShouldReturnServiceUnavailableWhenTooManyLoginsAreInProgress() throws Exception {
+        // when
+        doThrow(new RejectedExecutionException()).when(loginBulkhead).execute(any());
+
+        //then
+        mockMvc
+                .perform(post(URL_LOGIN)
+                        .param("email", "someuser@test.com")
+                        .param("password", "1234")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error_message").value("Too many logins."));
+        firebaseRestServiceServer.verify();
+    }
+
+    @Test
+    void prometheusShouldReturnForbiddenWithoutToken() throws Exception {
+        mockMvc
+                .perform(get("/actuator/prometheus"))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.error_message").value("Access Denied"));
+    }
+
     @Test
     void loginShouldReturnUnauthorizedWhenUserNotFound() throws Exception {
         // given
@@ -379,7 +447,7 @@ class UserControllerTest {
 
         // when
         when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
-        when(userService.search(providedEmail)).thenReturn(emails);
+        when(userService.search(providedEmail, 10)).thenReturn(emails);
 
         // then
         mockMvc
@@ -446,4 +514,24 @@ class UserControllerTest {
                         .param("email", providedEmail))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    void searchShouldReturnBadRequestWhenLimitIsMoreThan50() throws Exception {
+        // given
+        final String url = "/api/v1/users";
+        final String providedEmail = "test";
+
+        final FirebaseToken firebaseToken = mock(FirebaseToken.class);
+
+        // when
+        when(firebaseAuth.verifyIdToken(providedAccessToken)).thenReturn(firebaseToken);
+
+        // then
+        mockMvc
+                .perform(get(url)
+                        .header(AUTHORIZATION, "Bearer " + providedAccessToken)
+                        .param("email", providedEmail)
+                        .param("limit", "51"))
+                .andExpect(status().isBadRequest());
+    }
+}
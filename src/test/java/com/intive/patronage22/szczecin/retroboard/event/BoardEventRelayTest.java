@@ -0,0 +1,114 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class BoardEventRelayTest {
+
+    private final BoardRepository boardRepository = mock(BoardRepository.class);
+    private final BoardEventStream boardEventStream = mock(BoardEventStream.class);
+    private final BoardEventRelay boardEventRelay =
+            new BoardEventRelay(boardRepository, boardEventStream, new ObjectMapper());
+
+    @Test
+    void onBoardChangedShouldNotifyEventOutsideTransactionWhichIsDeliveredUnchanged() {
+        // given
+        final ArgumentCaptor<String> eventCaptor = ArgumentCaptor.forClass(String.class);
+        final ArgumentCaptor<BoardChangedEvent> deliveredCaptor = ArgumentCaptor.forClass(BoardChangedEvent.class);
+
+        // when
+        boardEventRelay.onBoardChanged(new BoardChangedEvent(1, BoardEventType.VOTE_CHANGED,
+                Map.of("cardId", 2, "delta", 1)));
+        verify(boardRepository).notifyBoardChanged(eventCaptor.capture());
+        boardEventRelay.onNotification(eventCaptor.getValue());
+
+        // then
+        verify(boardEventStream).publish(deliveredCaptor.capture());
+        assertEquals(new BoardChangedEvent(1, BoardEventType.VOTE_CHANGED, Map.of("cardId", 2, "delta", 1)),
+                deliveredCaptor.getValue());
+    }
+
+    @Test
+    void writeShouldTurnEventsTooLargeForNotificationIntoResyncOfEachBoard() {
+        // given
+        final ArgumentCaptor<BoardChangedEvent> deliveredCaptor = ArgumentCaptor.forClass(BoardChangedEvent.class);
+        final String text = "x".repeat(NotificationChannel.MAX_PAYLOAD_BYTES / 2);
+
+        // when
+        boardEventRelay.write(List.of(
+                new BoardChangedEvent(1, BoardEventType.CARD_CREATED, Map.of("text", text)),
+                new BoardChangedEvent(1, BoardEventType.CARD_CREATED, Map.of("text", text)),
+                new BoardChangedEvent(2, BoardEventType.CARD_CREATED, Map.of("text", "short"))))
+                .forEach(boardEventRelay::onNotification);
+
+        // then
+        verify(boardEventStream, times(2)).publish(deliveredCaptor.capture());
+        assertEquals(List.of(new BoardChangedEvent(1, BoardEventType.RESYNC, null),
+                new BoardChangedEvent(2, BoardEventType.RESYNC, null)), deliveredCaptor.getAllValues());
+    }
+
+    @Test
+    void writeShouldKeepEventsFittingNotificationInOrder() {
+        // given
+        final ArgumentCaptor<BoardChangedEvent> deliveredCaptor = ArgumentCaptor.forClass(BoardChangedEvent.class);
+        final List<BoardChangedEvent> events = List.of(
+                new BoardChangedEvent(1, BoardEventType.CARD_CREATED, Map.of("text", "first")),
+                new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 1)));
+
+        // when
+        boardEventRelay.write(events).forEach(boardEventRelay::onNotification);
+
+        // then
+        verify(boardEventStream, times(2)).publish(deliveredCaptor.capture());
+        assertEquals(events, deliveredCaptor.getAllValues());
+    }
+
+    @Test
+    void writeShouldSplitResyncsOfManyBoardsToFitNotificationPayload() {
+        // given
+        final ArgumentCaptor<BoardChangedEvent> deliveredCaptor = ArgumentCaptor.forClass(BoardChangedEvent.class);
+        final List<BoardChangedEvent> events = IntStream.range(0, 1000)
+                .mapToObj(boardId -> new BoardChangedEvent(boardId, BoardEventType.STATE_CHANGED, Map.of("state", "x")))
+                .collect(Collectors.toList());
+
+        // when
+        final List<String> notifications = boardEventRelay.write(events);
+        notifications.forEach(boardEventRelay::onNotification);
+
+        // then
+        assertTrue(notifications.size() > 1);
+        for (final String notification : notifications) {
+            assertTrue(notification.getBytes(StandardCharsets.UTF_8).length <= NotificationChannel.MAX_PAYLOAD_BYTES);
+        }
+        verify(boardEventStream, times(1000)).publish(deliveredCaptor.capture());
+        assertEquals(IntStream.range(0, 1000)
+                        .mapToObj(boardId -> new BoardChangedEvent(boardId, BoardEventType.RESYNC, null))
+                        .collect(Collectors.toList()),
+                deliveredCaptor.getAllValues());
+    }
+
+    @Test
+    void onNotificationShouldSkipUnreadableEvent() {
+        // when
+        boardEventRelay.onNotification("[{\"boardId\":1,\"type\":\"UNKNOWN\"}]");
+
+        // then
+        verify(boardEventStream, never()).publish(any());
+    }
+}
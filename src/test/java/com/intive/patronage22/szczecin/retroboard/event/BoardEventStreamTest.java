@@ -0,0 +1,181 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BoardEventStreamTest {
+
+    private static final Instant NOW = Instant.parse("2022-04-01T10:00:00Z");
+
+    // takes the sending tasks without running them, like a pool busy with a stalled client
+    private final ExecutorService executor = mock(ExecutorService.class);
+    private final Clock clock = mock(Clock.class);
+    private final BoardEventStream boardEventStream =
+            new BoardEventStream(2, Duration.ofMinutes(1), Duration.ofMinutes(10), executor, clock);
+
+    @BeforeEach
+    void setUp() {
+        when(clock.instant()).thenReturn(NOW);
+    }
+
+    @Test
+    void eventsAfterShouldReturnNothingWhenClientConnectsForTheFirstTime() {
+        // when
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 1)));
+
+        // then
+        assertTrue(boardEventStream.eventsAfter(1, null).isEmpty());
+    }
+
+    @Test
+    void eventsAfterShouldReturnMissedEventsOfGivenBoardInOrder() {
+        // given
+        boardEventStream.subscribe(1, null);
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 1)));
+        final long lastEventId = boardEventStream.lastSequence();
+
+        // when
+        boardEventStream.publish(new BoardChangedEvent(2, BoardEventType.CARD_REMOVED, Map.of("cardId", 7)));
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.VOTE_CHANGED,
+                Map.of("cardId", 2, "delta", 1)));
+
+        // then
+        final List<BoardEvent> events = boardEventStream.eventsAfter(1, lastEventId);
+        assertEquals(1, events.size());
+        assertEquals(BoardEventType.VOTE_CHANGED, events.get(0).getType());
+        assertEquals(lastEventId + 2, events.get(0).getSequence());
+    }
+
+    @Test
+    void eventsAfterShouldReturnResyncWhenMissedEventsAreNoLongerKept() {
+        // given
+        boardEventStream.subscribe(1, null);
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 1)));
+        final long lastEventId = boardEventStream.lastSequence();
+
+        // when
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 2)));
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 3)));
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 4)));
+
+        // then
+        assertEquals(List.of(BoardEventType.RESYNC), types(boardEventStream.eventsAfter(1, lastEventId)));
+        assertEquals(List.of(BoardEventType.CARD_REMOVED, BoardEventType.CARD_REMOVED),
+                types(boardEventStream.eventsAfter(1, lastEventId + 1)));
+    }
+
+    @Test
+    void eventsAfterShouldReturnResyncWhenLastEventIdIsUnknown() {
+        // when
+        boardEventStream.subscribe(1, null);
+
+        // then
+        assertEquals(List.of(BoardEventType.RESYNC), types(boardEventStream.eventsAfter(1, 5L)));
+        assertEquals(List.of(BoardEventType.RESYNC),
+                types(boardEventStream.eventsAfter(1, boardEventStream.lastSequence() + 1)));
+        assertTrue(boardEventStream.eventsAfter(1, boardEventStream.lastSequence()).isEmpty());
+    }
+
+    @Test
+    void sequenceOfShouldReturnResyncingSequenceForIdsOfOtherNodes() {
+        // given
+        boardEventStream.subscribe(1, null);
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 1)));
+        final long lastSequence = boardEventStream.lastSequence();
+        final String otherNodeEventId = new BoardEventStream(2, Duration.ofMinutes(1), Duration.ofMinutes(10),
+                executor, clock).eventId(lastSequence);
+
+        // when
+        final Long otherNodeSequence = boardEventStream.sequenceOf(otherNodeEventId);
+
+        // then
+        assertNull(boardEventStream.sequenceOf(null));
+        assertEquals(lastSequence, boardEventStream.sequenceOf(boardEventStream.eventId(lastSequence)));
+        assertEquals(List.of(BoardEventType.RESYNC), types(boardEventStream.eventsAfter(1, otherNodeSequence)));
+        assertEquals(List.of(BoardEventType.RESYNC),
+                types(boardEventStream.eventsAfter(1, boardEventStream.sequenceOf("42"))));
+    }
+
+    @Test
+    void resyncShouldSendResyncToSubscribedBoards() {
+        // given
+        boardEventStream.subscribe(1, null);
+        final long lastEventId = boardEventStream.lastSequence();
+
+        // when
+        boardEventStream.resync();
+
+        // then
+        assertEquals(List.of(BoardEventType.RESYNC), types(boardEventStream.eventsAfter(1, lastEventId)));
+    }
+
+    @Test
+    void subscribeShouldReturnEmitterAfterBoardWasDeleted() {
+        // when
+        boardEventStream.subscribe(1, null);
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.BOARD_DELETED, null));
+
+        // then
+        assertNotNull(boardEventStream.subscribe(1, null));
+    }
+
+    @Test
+    void publishShouldQueueEventsAndDropSubscriberFallingTooFarBehind() {
+        // given
+        boardEventStream.subscribe(1, null);
+
+        // when
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 1)));
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 2)));
+
+        // then
+        verify(executor).execute(any());
+        assertEquals(1, boardEventStream.subscribers(1));
+
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 3)));
+        assertEquals(0, boardEventStream.subscribers(1));
+    }
+
+    @Test
+    void evictIdleChannelsShouldForgetBoardsWithoutSubscribersAfterIdleTime() {
+        // given
+        boardEventStream.subscribe(1, null);
+        boardEventStream.publish(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, Map.of("cardId", 1)));
+        boardEventStream.publish(new BoardChangedEvent(2, BoardEventType.CARD_REMOVED, Map.of("cardId", 2)));
+        final long lastEventId = boardEventStream.lastSequence();
+
+        // when
+        when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(5)));
+        boardEventStream.evictIdleChannels();
+        final int channelsBeforeIdleTime = boardEventStream.channels();
+        when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(11)));
+        boardEventStream.evictIdleChannels();
+
+        // then
+        assertEquals(2, channelsBeforeIdleTime);
+        assertEquals(1, boardEventStream.channels());
+        assertEquals(1, boardEventStream.subscribers(1));
+        assertEquals(List.of(BoardEventType.RESYNC), types(boardEventStream.eventsAfter(2, lastEventId - 1)));
+    }
+
+    private List<BoardEventType> types(final List<BoardEvent> events) {
+        return events.stream().map(BoardEvent::getType).collect(Collectors.toList());
+    }
+}
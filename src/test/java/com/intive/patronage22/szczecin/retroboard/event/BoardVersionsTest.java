@@ -0,0 +1,73 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class BoardVersionsTest {
+
+    private final BoardRepository boardRepository = mock(BoardRepository.class);
+    private final BoardVersions boardVersions = new BoardVersions(boardRepository);
+
+    @Test
+    void onBoardChangedShouldIncrementVersionOfChangedBoard() {
+        // when
+        boardVersions.onBoardChanged(new BoardChangedEvent(1, BoardEventType.CARD_REMOVED, null));
+
+        // then
+        verify(boardRepository).incrementVersion(eq(1), anyInt());
+    }
+
+    @Test
+    void onBoardChangedShouldIncrementVersionOnceInTransaction() {
+        // given
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // when
+            boardVersions.onBoardChanged(new BoardChangedEvent(1, BoardEventType.CARD_CREATED, null));
+            boardVersions.onBoardChanged(new BoardChangedEvent(1, BoardEventType.CARD_CREATED, null));
+            boardVersions.onBoardChanged(new BoardChangedEvent(2, BoardEventType.CARD_CREATED, null));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(
+                            TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // then
+        verify(boardRepository).incrementVersion(eq(1), anyInt());
+        verify(boardRepository).incrementVersion(eq(2), anyInt());
+        assertTrue(TransactionSynchronizationManager.getResourceMap().isEmpty());
+    }
+
+    @Test
+    void onBoardChangedShouldNotIncrementVersionOfDeletedBoard() {
+        // when
+        boardVersions.onBoardChanged(new BoardChangedEvent(1, BoardEventType.BOARD_DELETED, null));
+
+        // then
+        verify(boardRepository, never()).incrementVersion(anyInt(), anyInt());
+    }
+
+    @Test
+    void eTagShouldDependOnBoardVersionAndUser() {
+        // given
+        final String eTag = boardVersions.eTag(7L, "test1@test.pl");
+
+        // then
+        assertTrue(eTag.startsWith("\"") && eTag.endsWith("\""));
+        assertEquals(eTag, boardVersions.eTag(7L, "test1@test.pl"));
+        assertNotEquals(eTag, boardVersions.eTag(7L, "test2@test.pl"));
+        assertNotEquals(eTag, boardVersions.eTag(8L, "test1@test.pl"));
+    }
+}
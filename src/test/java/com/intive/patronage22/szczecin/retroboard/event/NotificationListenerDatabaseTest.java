@@ -0,0 +1,185 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.firebase.auth.FirebaseAuth;
+import com.intive.patronage22.szczecin.retroboard.RetroboardApplication;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseTokenCache;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseUserStatusCache;
+import com.intive.patronage22.szczecin.retroboard.cache.UserRevocationRelay;
+import com.intive.patronage22.szczecin.retroboard.cache.VerifiedToken;
+import com.intive.patronage22.szczecin.retroboard.configuration.EmbeddedDatabase;
+import com.intive.patronage22.szczecin.retroboard.configuration.FirebaseTestConfiguration;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
+import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
+import com.intive.patronage22.szczecin.retroboard.service.SynchronizeWithFirebaseScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs a second node next to the application context, with a listener, stream and caches of its own on the same
+ * database, to check that what one node commits reaches every node.
+ */
+@SpringBootTest(classes = {RetroboardApplication.class, FirebaseTestConfiguration.class},
+                properties = "FIREBASE_API_KEY=test")
+class NotificationListenerDatabaseTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    @Autowired
+    private BoardEventStream boardEventStream;
+
+    @Autowired
+    private BoardRepository boardRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserRevocationRelay userRevocationRelay;
+
+    // the scheduled bean is replaced, so it cannot run on its own during the tests
+    @MockBean
+    private SynchronizeWithFirebaseScheduler synchronizeWithFirebaseScheduler;
+
+    private final Integer boardId = ThreadLocalRandom.current().nextInt(1_000_000, Integer.MAX_VALUE);
+    private final BoardEventStream otherNodeStream = new BoardEventStream(10, Duration.ofMinutes(1),
+            Duration.ofMinutes(10), mock(ExecutorService.class), Clock.systemUTC());
+    private final FirebaseTokenCache otherNodeTokenCache = new FirebaseTokenCache(10, new SimpleMeterRegistry());
+    private final FirebaseUserStatusCache otherNodeStatusCache = new FirebaseUserStatusCache(10,
+            Duration.ofMinutes(5), mock(FirebaseAuth.class), new SimpleMeterRegistry());
+    private NotificationListener otherNodeListener;
+
+    @DynamicPropertySource
+    static void properties(final DynamicPropertyRegistry registry) {
+        EmbeddedDatabase.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        boardEventStream.subscribe(boardId, null);
+        otherNodeStream.subscribe(boardId, null);
+        otherNodeListener = new NotificationListener(List.of(
+                new BoardEventRelay(boardRepository, otherNodeStream, objectMapper),
+                new UserRevocationRelay(userRepository, otherNodeTokenCache, otherNodeStatusCache, objectMapper)),
+                dataSource, Duration.ofMillis(100), Duration.ofMillis(100));
+        otherNodeListener.start();
+
+        // subscribed boards are resynced once the listener listens
+        awaitTypes(otherNodeStream, 0, List.of(BoardEventType.RESYNC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        otherNodeListener.stop();
+    }
+
+    @Test
+    void committedBoardChangeShouldReachSubscribersOfEveryNode() throws InterruptedException {
+        // given
+        final long lastEventId = boardEventStream.lastSequence();
+        final long otherNodeLastEventId = otherNodeStream.lastSequence();
+
+        // when
+        transactionTemplate.executeWithoutResult(status -> {
+            applicationEventPublisher.publishEvent(
+                    new BoardChangedEvent(boardId, BoardEventType.CARD_CREATED, Map.of("cardId", 1)));
+            applicationEventPublisher.publishEvent(
+                    new BoardChangedEvent(boardId, BoardEventType.CARD_REMOVED, Map.of("cardId", 1)));
+        });
+
+        // then
+        awaitTypes(boardEventStream, lastEventId, List.of(BoardEventType.CARD_CREATED, BoardEventType.CARD_REMOVED));
+        awaitTypes(otherNodeStream, otherNodeLastEventId,
+                List.of(BoardEventType.CARD_CREATED, BoardEventType.CARD_REMOVED));
+    }
+
+    @Test
+    void rolledBackBoardChangeShouldReachNoSubscriber() throws InterruptedException {
+        // given
+        final long otherNodeLastEventId = otherNodeStream.lastSequence();
+
+        // when
+        transactionTemplate.executeWithoutResult(status -> {
+            applicationEventPublisher.publishEvent(
+                    new BoardChangedEvent(boardId, BoardEventType.CARD_REMOVED, Map.of("cardId", 1)));
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status -> applicationEventPublisher.publishEvent(
+                new BoardChangedEvent(boardId, BoardEventType.CARD_REMOVED, Map.of("cardId", 2))));
+
+        // then
+        awaitTypes(otherNodeStream, otherNodeLastEventId, List.of(BoardEventType.CARD_REMOVED));
+        assertEquals(Map.of("cardId", 2), otherNodeStream.eventsAfter(boardId, otherNodeLastEventId).get(0)
+                .getPayload());
+    }
+
+    @Test
+    void committedUserRevocationShouldDropCachedTokensOnEveryNode() throws InterruptedException {
+        // given
+        final String email = boardId + "@example.com";
+        otherNodeTokenCache.put("token", new VerifiedToken(new UserPrincipal("uid", email, false),
+                Instant.now().plus(Duration.ofHours(1))));
+
+        // when
+        transactionTemplate.executeWithoutResult(status -> userRevocationRelay.revokeRemoved(List.of(email)));
+
+        // then
+        final long deadline = System.nanoTime() + WAIT.toNanos();
+        while (otherNodeTokenCache.get("token").isPresent() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(otherNodeTokenCache.get("token").isEmpty());
+        assertThrows(UsernameNotFoundException.class, () -> otherNodeStatusCache.checkActive(email));
+    }
+
+    private void awaitTypes(final BoardEventStream stream, final long lastEventId, final List<BoardEventType> types)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + WAIT.toNanos();
+        while (!types.equals(types(stream.eventsAfter(boardId, lastEventId))) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(types, types(stream.eventsAfter(boardId, lastEventId)));
+    }
+
+    private List<BoardEventType> types(final List<BoardEvent> events) {
+        return events.stream().map(BoardEvent::getType).collect(Collectors.toList());
+    }
+}
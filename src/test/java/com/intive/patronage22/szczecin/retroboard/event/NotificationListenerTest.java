@@ -0,0 +1,49 @@
+package com.intive.patronage22.szczecin.retroboard.event;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationListenerTest {
+
+    private final NotificationChannel boards = channel("boards");
+    private final NotificationChannel users = channel("users");
+    private final NotificationListener notificationListener = new NotificationListener(List.of(boards, users),
+            mock(DataSource.class), Duration.ofMillis(100), Duration.ofMillis(100));
+
+    @Test
+    void deliverShouldHandNotificationToItsChannelOnly() {
+        // when
+        notificationListener.deliver("users", "payload");
+
+        // then
+        verify(users).onNotification("payload");
+        verify(boards, never()).onNotification(any());
+    }
+
+    @Test
+    void deliverShouldKeepListeningWhenChannelFails() {
+        // given
+        doThrow(new IllegalStateException("failed")).when(boards).onNotification("payload");
+
+        // then
+        assertDoesNotThrow(() -> notificationListener.deliver("boards", "payload"));
+        assertDoesNotThrow(() -> notificationListener.deliver("unknown", "payload"));
+    }
+
+    private static NotificationChannel channel(final String name) {
+        final NotificationChannel channel = mock(NotificationChannel.class);
+        when(channel.getName()).thenReturn(name);
+        return channel;
+    }
+}
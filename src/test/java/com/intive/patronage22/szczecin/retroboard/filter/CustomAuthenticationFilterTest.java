@@ -0,0 +1,152 @@
+package com.intive.patronage22.szczecin.retroboard.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intive.patronage22.szczecin.retroboard.dto.FirebaseUserDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.intive.patronage22.szczecin.retroboard.configuration.security.WebSecurityConfig.URL_LOGIN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+/**
+ * Runs the login filter on a real {@link LoginBulkhead}, so the login goes to another thread and the response is
+ * only complete once the async context is.
+ */
+class CustomAuthenticationFilterTest {
+
+    private static final long WAIT_SECONDS = 10;
+
+    private final AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+    private final LoginBulkhead loginBulkhead = new LoginBulkhead(1, 1);
+    private final CustomAuthenticationFilter filter =
+            new CustomAuthenticationFilter(authenticationManager, new ObjectMapper(), "secret", loginBulkhead);
+    private final CountDownLatch releaseLogins = new CountDownLatch(1);
+
+    CustomAuthenticationFilterTest() {
+        filter.setFilterProcessesUrl(URL_LOGIN);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseLogins.countDown();
+        loginBulkhead.destroy();
+    }
+
+    @Test
+    void doFilterShouldCompleteResponseFromLoginThread() throws Exception {
+        // given
+        final CountDownLatch completed = new CountDownLatch(1);
+        final MockHttpServletRequest request = loginRequest(completed);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final AtomicReference<String> loginThread = new AtomicReference<>();
+        final FirebaseUserDto user = new FirebaseUserDto();
+        user.setIdToken("idToken");
+        user.setExpiresIn("3600");
+
+        // when
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            loginThread.set(Thread.currentThread().getName());
+            return new UsernamePasswordAuthenticationToken(user, null);
+        });
+        filter.doFilter(request, response, new MockFilterChain());
+
+        // then
+        assertTrue(completed.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(loginThread.get().startsWith("login-"));
+        assertEquals(200, response.getStatus());
+        assertEquals("Bearer idToken", response.getHeader(AUTHORIZATION));
+        assertFalse(request.isAsyncStarted());
+    }
+
+    @Test
+    void doFilterShouldWriteServiceUnavailableAfterAsyncStartWhenBulkheadIsFull() throws Exception {
+        // given
+        final CountDownLatch completed = new CountDownLatch(1);
+        final MockHttpServletRequest request = loginRequest(completed);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final CountDownLatch loginStarted = new CountDownLatch(1);
+
+        // the only login thread is busy and the one queue slot is taken
+        loginBulkhead.execute(() -> {
+            loginStarted.countDown();
+            awaitRelease();
+        });
+        assertTrue(loginStarted.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        loginBulkhead.execute(this::awaitRelease);
+
+        // when
+        filter.doFilter(request, response, new MockFilterChain());
+
+        // then
+        assertEquals(0, completed.getCount());
+        assertFalse(request.isAsyncStarted());
+        assertEquals(503, response.getStatus());
+        assertEquals("{\"error_message\":\"Too many logins.\"}", response.getContentAsString());
+        verify(authenticationManager, never()).authenticate(any());
+    }
+
+    // counts down the latch when the filter completes the async context it started
+    private MockHttpServletRequest loginRequest(final CountDownLatch completed) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", URL_LOGIN) {
+            @Override
+            public AsyncContext startAsync(final ServletRequest servletRequest,
+                                           final ServletResponse servletResponse) {
+                final AsyncContext asyncContext = super.startAsync(servletRequest, servletResponse);
+                asyncContext.addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(final AsyncEvent event) {
+                        completed.countDown();
+                    }
+
+                    @Override
+                    public void onTimeout(final AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(final AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(final AsyncEvent event) {
+                    }
+                });
+                return asyncContext;
+            }
+        };
+        request.setServletPath(URL_LOGIN);
+        request.setAsyncSupported(true);
+        request.setParameter("email", "someuser@test.com");
+        request.setParameter("password", "1234");
+        return request;
+    }
+
+    private void awaitRelease() {
+        try {
+            releaseLogins.await(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.intive.patronage22.szczecin.retroboard.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryCountFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final QueryCountFilter queryCountFilter = new QueryCountFilter(meterRegistry);
+    private final QueryCountInspector queryCountInspector = new QueryCountInspector();
+
+    @Test
+    void doFilterShouldRecordStatementsIssuedByRequest() throws Exception {
+        // given
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/boards/1");
+
+        // when
+        queryCountFilter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            queryCountInspector.inspect("select 1");
+            queryCountInspector.inspect("select 2");
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/boards/{id}");
+        });
+
+        // then
+        final DistributionSummary summary = meterRegistry.get(QueryCountFilter.METRIC_NAME)
+                .tags("method", "GET", "uri", "/api/v1/boards/{id}")
+                .summary();
+        assertEquals(1, summary.count());
+        assertEquals(2, summary.totalAmount());
+        assertEquals(0, QueryCountInspector.count());
+    }
+}
@@ -0,0 +1,64 @@
+package com.intive.patronage22.szczecin.retroboard.metrics;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
+import com.intive.patronage22.szczecin.retroboard.service.UserService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ServiceMetricsAspectTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserService userService = proxy(new UserService(mock(PasswordEncoder.class),
+            mock(FirebaseAuth.class), userRepository, true));
+
+    @Test
+    void serviceMethodShouldBeTimedWithSuccessOutcome() {
+        // given
+        when(userRepository.searchByEmail(eq("test"), any())).thenReturn(List.of("test@test.pl"));
+
+        // when
+        userService.search("test", 10);
+
+        // then
+        final Timer timer = meterRegistry.get(ServiceMetricsAspect.METRIC_NAME)
+                .tags("class", "UserService", "method", "search", "outcome", "SUCCESS", "exception", "none")
+                .timer();
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    void serviceMethodShouldBeTimedWithExceptionTypeWhenItThrows() {
+        // given
+        when(userRepository.searchByEmail(eq("test"), any())).thenThrow(new IllegalStateException());
+
+        // when
+        assertThrows(IllegalStateException.class, () -> userService.search("test", 10));
+
+        // then
+        final Timer timer = meterRegistry.get(ServiceMetricsAspect.METRIC_NAME)
+                .tags("method", "search", "outcome", "ERROR", "exception", "IllegalStateException")
+                .timer();
+        assertEquals(1, timer.count());
+    }
+
+    private UserService proxy(final UserService target) {
+        final AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new ServiceMetricsAspect(meterRegistry));
+        return proxyFactory.getProxy();
+    }
+}
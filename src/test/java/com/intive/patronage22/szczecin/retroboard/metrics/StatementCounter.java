@@ -0,0 +1,49 @@
+package com.intive.patronage22.szczecin.retroboard.metrics;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Counts the SQL statements Hibernate prepares while an action runs, so tests can hold an endpoint to a fixed
+ * statement budget. Relies on {@code hibernate.generate_statistics} and expects nothing else to use the database
+ * meanwhile.
+ */
+public class StatementCounter {
+
+    private final Statistics statistics;
+
+    public StatementCounter(final EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public long count(final Action action) throws Exception {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    public void assertStatements(final long budget, final Action action) throws Exception {
+        assertEquals(budget, count(action), "number of SQL statements");
+    }
+
+    /**
+     * Like {@link #assertStatements(long, Action)}, for actions whose ids come from pooled sequences: fetching the
+     * next block of ids costs one more statement, but only when the current block runs out.
+     */
+    public void assertStatements(final long budget, final long maxIdBlocks, final Action action) throws Exception {
+        final long statements = count(action);
+        assertTrue(statements >= budget && statements <= budget + maxIdBlocks,
+                "number of SQL statements " + statements + " not within " + budget + " + " + maxIdBlocks);
+    }
+
+    @FunctionalInterface
+    public interface Action {
+
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,73 @@
+package com.intive.patronage22.szczecin.retroboard.provider;
+
+import com.intive.patronage22.szczecin.retroboard.dto.FirebaseUserDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserLoginRequestDto;
+import com.intive.patronage22.szczecin.retroboard.exception.LoginUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.UnknownContentTypeException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FirebaseAuthenticationProviderTest {
+
+    private static final Instant NOW = Instant.parse("2022-04-01T10:00:00Z");
+
+    private final Clock clock = mock(Clock.class);
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final LoginCircuitBreaker loginCircuitBreaker = new LoginCircuitBreaker(1, Duration.ofSeconds(30), clock);
+    private final FirebaseAuthenticationProvider firebaseAuthenticationProvider = new FirebaseAuthenticationProvider();
+
+    private final UsernamePasswordAuthenticationToken token =
+            new UsernamePasswordAuthenticationToken("someuser@test.com", "1234");
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(firebaseAuthenticationProvider, "apiKey", "key");
+        ReflectionTestUtils.setField(firebaseAuthenticationProvider, "firebaseUrl", "http://firebase/");
+        ReflectionTestUtils.setField(firebaseAuthenticationProvider, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(firebaseAuthenticationProvider, "loginCircuitBreaker", loginCircuitBreaker);
+    }
+
+    @Test
+    void authenticateShouldLetNextProbeThroughWhenProbeFailsUnexpectedly() {
+        // given
+        when(clock.instant()).thenReturn(NOW);
+        when(restTemplate.postForObject(anyString(), any(UserLoginRequestDto.class), eq(FirebaseUserDto.class)))
+                .thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThrows(LoginUnavailableException.class, () -> firebaseAuthenticationProvider.authenticate(token));
+
+        // when
+        when(clock.instant()).thenReturn(NOW.plusSeconds(30));
+        when(restTemplate.postForObject(anyString(), any(UserLoginRequestDto.class), eq(FirebaseUserDto.class)))
+                .thenThrow(new UnknownContentTypeException(FirebaseUserDto.class, MediaType.TEXT_HTML, 200, "OK",
+                        new HttpHeaders(), new byte[0]));
+        assertThrows(UnknownContentTypeException.class, () -> firebaseAuthenticationProvider.authenticate(token));
+
+        // then
+        assertTrue(loginCircuitBreaker.isOpen());
+        when(clock.instant()).thenReturn(NOW.plusSeconds(60));
+        when(restTemplate.postForObject(anyString(), any(UserLoginRequestDto.class), eq(FirebaseUserDto.class)))
+                .thenReturn(new FirebaseUserDto());
+        firebaseAuthenticationProvider.authenticate(token);
+        assertFalse(loginCircuitBreaker.isOpen());
+    }
+}
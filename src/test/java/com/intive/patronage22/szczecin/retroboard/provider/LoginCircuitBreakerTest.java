@@ -0,0 +1,107 @@
+package com.intive.patronage22.szczecin.retroboard.provider;
+
+import com.intive.patronage22.szczecin.retroboard.exception.LoginUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LoginCircuitBreakerTest {
+
+    private static final Instant NOW = Instant.parse("2022-04-01T10:00:00Z");
+
+    private final Clock clock = mock(Clock.class);
+    private final LoginCircuitBreaker loginCircuitBreaker = new LoginCircuitBreaker(3, Duration.ofSeconds(30), clock);
+
+    @Test
+    void acquirePermissionShouldPassUntilFailureThresholdIsReached() {
+        // given
+        when(clock.instant()).thenReturn(NOW);
+
+        // when
+        loginCircuitBreaker.onFailure();
+        loginCircuitBreaker.onFailure();
+        loginCircuitBreaker.onSuccess();
+        loginCircuitBreaker.onFailure();
+        loginCircuitBreaker.onFailure();
+
+        // then
+        assertFalse(loginCircuitBreaker.isOpen());
+        assertDoesNotThrow(loginCircuitBreaker::acquirePermission);
+    }
+
+    @Test
+    void acquirePermissionShouldThrowWhenCircuitIsOpen() {
+        // given
+        when(clock.instant()).thenReturn(NOW);
+
+        // when
+        tripCircuit();
+
+        // then
+        assertTrue(loginCircuitBreaker.isOpen());
+        assertThrows(LoginUnavailableException.class, loginCircuitBreaker::acquirePermission);
+    }
+
+    @Test
+    void acquirePermissionShouldLetOneProbeThroughAfterOpenTime() {
+        // given
+        when(clock.instant()).thenReturn(NOW);
+        tripCircuit();
+
+        // when
+        when(clock.instant()).thenReturn(NOW.plusSeconds(30));
+
+        // then
+        assertDoesNotThrow(loginCircuitBreaker::acquirePermission);
+        assertThrows(LoginUnavailableException.class, loginCircuitBreaker::acquirePermission);
+    }
+
+    @Test
+    void onSuccessShouldCloseCircuitWhenProbeSucceeds() {
+        // given
+        when(clock.instant()).thenReturn(NOW);
+        tripCircuit();
+        when(clock.instant()).thenReturn(NOW.plusSeconds(30));
+        loginCircuitBreaker.acquirePermission();
+
+        // when
+        loginCircuitBreaker.onSuccess();
+
+        // then
+        assertFalse(loginCircuitBreaker.isOpen());
+        assertDoesNotThrow(loginCircuitBreaker::acquirePermission);
+        assertDoesNotThrow(loginCircuitBreaker::acquirePermission);
+    }
+
+    @Test
+    void onFailureShouldOpenCircuitAgainWhenProbeFails() {
+        // given
+        when(clock.instant()).thenReturn(NOW);
+        tripCircuit();
+        when(clock.instant()).thenReturn(NOW.plusSeconds(30));
+        loginCircuitBreaker.acquirePermission();
+
+        // when
+        loginCircuitBreaker.onFailure();
+
+        // then
+        assertThrows(LoginUnavailableException.class, loginCircuitBreaker::acquirePermission);
+        when(clock.instant()).thenReturn(NOW.plusSeconds(60));
+        assertDoesNotThrow(loginCircuitBreaker::acquirePermission);
+    }
+
+    private void tripCircuit() {
+        loginCircuitBreaker.onFailure();
+        loginCircuitBreaker.onFailure();
+        loginCircuitBreaker.onFailure();
+    }
+}
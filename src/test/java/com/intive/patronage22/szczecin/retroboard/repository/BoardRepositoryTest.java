@@ -0,0 +1,149 @@
+package com.intive.patronage22.szczecin.retroboard.repository;
+
+import com.intive.patronage22.szczecin.retroboard.RetroboardApplication;
+import com.intive.patronage22.szczecin.retroboard.configuration.EmbeddedDatabase;
+import com.intive.patronage22.szczecin.retroboard.configuration.FirebaseTestConfiguration;
+import com.intive.patronage22.szczecin.retroboard.service.SynchronizeWithFirebaseScheduler;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(classes = {RetroboardApplication.class, FirebaseTestConfiguration.class},
+                properties = "FIREBASE_API_KEY=test")
+class BoardRepositoryTest {
+
+    @Autowired
+    private BoardRepository boardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private SynchronizeWithFirebaseScheduler synchronizeWithFirebaseScheduler;
+
+    private final String uid = UUID.randomUUID().toString();
+
+    @DynamicPropertySource
+    static void properties(final DynamicPropertyRegistry registry) {
+        EmbeddedDatabase.register(registry);
+    }
+
+    @Test
+    void deleteByIdInShouldRemoveBoardsWithEverythingUnderThemAndKeepOtherBoards() {
+        // given
+        createUser(uid);
+        final List<Integer> boardIds = List.of(createBoard(), createBoard(), createBoard());
+
+        // when
+        transactionTemplate.executeWithoutResult(status ->
+                boardRepository.deleteByIdIn(boardIds.subList(0, 2)));
+
+        // then
+        assertEquals(List.of(boardIds.get(2)), boardRepository.findIdsByCreatorUidIn(List.of(uid)));
+        assertEquals(List.of(0, 0, 0, 0, 0), countRows(boardIds.get(0)));
+        assertEquals(List.of(0, 0, 0, 0, 0), countRows(boardIds.get(1)));
+        assertEquals(List.of(3, 3, 3, 1, 1), countRows(boardIds.get(2)));
+    }
+
+    @Test
+    void findBoardVersionAccessShouldSumCounterRowsOfBoard() {
+        // given
+        createUser(uid);
+        final Integer boardId = createBoard();
+        final Integer otherBoardId = createBoard();
+
+        // when
+        transactionTemplate.executeWithoutResult(status -> {
+            boardRepository.incrementVersion(boardId, 0);
+            boardRepository.incrementVersion(boardId, 0);
+            boardRepository.incrementVersion(boardId, 5);
+            boardRepository.incrementVersion(otherBoardId, 5);
+        });
+
+        // then
+        assertEquals(3L, version(boardId));
+        assertEquals(1L, version(otherBoardId));
+
+        // when
+        transactionTemplate.executeWithoutResult(status ->
+                boardRepository.deleteVersionsByBoardIdIn(List.of(boardId)));
+
+        // then
+        assertEquals(0L, version(boardId));
+        assertEquals(1L, version(otherBoardId));
+    }
+
+    @Test
+    void findBoardVersionAccessShouldResolveRoleOfUserWithoutRevealingMissingBoards() {
+        // given
+        createUser(uid);
+        createUser(uid + "-member");
+        createUser(uid + "-other");
+        final Integer boardId = createBoard();
+        jdbcTemplate.update("INSERT INTO retro.users_boards(board_id, user_uid) VALUES (?, ?)", boardId, uid + "-member");
+
+        // then
+        assertEquals("CREATOR", boardRepository.findBoardVersionAccess(boardId, uid).orElseThrow().getRole());
+        assertEquals("MEMBER",
+                boardRepository.findBoardVersionAccess(boardId, uid + "-member").orElseThrow().getRole());
+        assertEquals("NONE", boardRepository.findBoardVersionAccess(boardId, uid + "-other").orElseThrow().getRole());
+        assertEquals(boardId, boardRepository.findBoardVersionAccess(boardId, uid).orElseThrow().getBoardId());
+        assertNull(boardRepository.findBoardVersionAccess(0, uid).orElseThrow().getBoardId());
+        assertTrue(boardRepository.findBoardVersionAccess(boardId, uid + "-missing").isEmpty());
+    }
+
+    private void createUser(final String uid) {
+        jdbcTemplate.update("INSERT INTO retro.user_data(uid, email, display_name, deleted) VALUES (?, ?, 'user', false)",
+                uid, uid + "@example.com");
+    }
+
+    private long version(final Integer boardId) {
+        return boardRepository.findBoardVersionAccess(boardId, uid).orElseThrow().getVersion();
+    }
+
+    private Integer createBoard() {
+        final Integer boardId = jdbcTemplate.queryForObject("INSERT INTO retro.board(name, state, creator_uid, "
+                + "maximum_number_of_votes) VALUES ('board', 'VOTING', ?, 10) RETURNING id", Integer.class, uid);
+        jdbcTemplate.update("INSERT INTO retro.board_card(board_id, text, board_column, creator_uid) "
+                + "SELECT ?, 'card', 'SUCCESS', ? FROM generate_series(1, 3)", boardId, uid);
+        jdbcTemplate.update("INSERT INTO retro.board_card_action(card_id, text) "
+                + "SELECT id, 'action' FROM retro.board_card WHERE board_id = ?", boardId);
+        jdbcTemplate.update("INSERT INTO retro.board_card_votes(card_id, voter_uid, count) "
+                + "SELECT id, ?, 1 FROM retro.board_card WHERE board_id = ?", uid, boardId);
+        jdbcTemplate.update("INSERT INTO retro.users_boards(board_id, user_uid) VALUES (?, ?)", boardId, uid);
+        jdbcTemplate.update("INSERT INTO retro.board_user_votes(board_id, voter_uid, used) VALUES (?, ?, 3)",
+                boardId, uid);
+        return boardId;
+    }
+
+    // cards, actions, votes, members and vote counters of the board
+    private List<Integer> countRows(final Integer boardId) {
+        return List.of(
+                count("SELECT COUNT(*) FROM retro.board_card WHERE board_id = ?", boardId),
+                count("SELECT COUNT(*) FROM retro.board_card_action a JOIN retro.board_card c ON c.id = a.card_id "
+                        + "WHERE c.board_id = ?", boardId),
+                count("SELECT COUNT(*) FROM retro.board_card_votes v JOIN retro.board_card c ON c.id = v.card_id "
+                        + "WHERE c.board_id = ?", boardId),
+                count("SELECT COUNT(*) FROM retro.users_boards WHERE board_id = ?", boardId),
+                count("SELECT COUNT(*) FROM retro.board_user_votes WHERE board_id = ?", boardId));
+    }
+
+    private int count(final String sql, final Integer boardId) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, boardId);
+    }
+}
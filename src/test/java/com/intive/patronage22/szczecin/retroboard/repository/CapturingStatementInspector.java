@@ -0,0 +1,34 @@
+package com.intive.patronage22.szczecin.retroboard.repository;
+
+import com.intive.patronage22.szczecin.retroboard.metrics.QueryCountInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the SQL Hibernate prepares on the current thread between {@link #startCapture()} and
+ * {@link #stopCapture()}, on top of counting it.
+ */
+public class CapturingStatementInspector extends QueryCountInspector {
+
+    private static final ThreadLocal<List<String>> STATEMENTS = new ThreadLocal<>();
+
+    @Override
+    public String inspect(final String sql) {
+        final List<String> statements = STATEMENTS.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return super.inspect(sql);
+    }
+
+    public static void startCapture() {
+        STATEMENTS.set(new ArrayList<>());
+    }
+
+    public static List<String> stopCapture() {
+        final List<String> statements = STATEMENTS.get();
+        STATEMENTS.remove();
+        return statements;
+    }
+}
@@ -0,0 +1,275 @@
+package com.intive.patronage22.szczecin.retroboard.repository;
+
+import com.intive.patronage22.szczecin.retroboard.RetroboardApplication;
+import com.intive.patronage22.szczecin.retroboard.configuration.EmbeddedDatabase;
+import com.intive.patronage22.szczecin.retroboard.configuration.FirebaseTestConfiguration;
+import com.intive.patronage22.szczecin.retroboard.model.Board;
+import com.intive.patronage22.szczecin.retroboard.model.User;
+import com.intive.patronage22.szczecin.retroboard.service.SynchronizeWithFirebaseScheduler;
+import com.intive.patronage22.szczecin.retroboard.service.UserService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks on a seeded embedded PostgreSQL that the queries of the repositories are served by indexes. The SQL
+ * Hibernate sends is captured and explained with a generic plan, the plan used for any parameter values. The user
+ * search is explained with its parameter values instead, as the trigram index can only be chosen for a known pattern.
+ * <p>
+ * Not covered, as they read every row on purpose: {@link UserRepository#findAllNotSynchronizedIn},
+ * {@link UserRepository#searchByEmailWithoutIndex} and
+ * {@link FirebaseUserFingerprintRepository#deleteAllNotSynchronizedIn}.
+ */
+@SpringBootTest(classes = {RetroboardApplication.class, FirebaseTestConfiguration.class},
+                properties = {"FIREBASE_API_KEY=test", "spring.jpa.properties.hibernate.session_factory"
+                        + ".statement_inspector=" + "com.intive.patronage22.szczecin.retroboard.repository"
+                        + ".CapturingStatementInspector"})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RepositoryIndexUsageTest {
+
+    private static final int USERS = 5000;
+    private static final int BOARDS = 2000;
+    private static final int CARDS_PER_BOARD = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BoardRepository boardRepository;
+
+    @Autowired
+    private BoardCardsRepository boardCardsRepository;
+
+    @Autowired
+    private BoardCardsVotesRepository boardCardsVotesRepository;
+
+    @Autowired
+    private BoardUserVotesRepository boardUserVotesRepository;
+
+    @Autowired
+    private FirebaseUserFingerprintRepository firebaseUserFingerprintRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @MockBean
+    private SynchronizeWithFirebaseScheduler synchronizeWithFirebaseScheduler;
+
+    private final String prefix = UUID.randomUUID().toString().substring(0, 8);
+    private int boardId;
+    private int cardId;
+
+    @DynamicPropertySource
+    static void properties(final DynamicPropertyRegistry registry) {
+        EmbeddedDatabase.register(registry);
+    }
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO retro.user_data(uid, email, display_name, deleted) "
+                + "SELECT ? || n, ? || n || '@example.com', 'user' || n, false FROM generate_series(0, ? - 1) n",
+                prefix, prefix, USERS);
+        jdbcTemplate.update("INSERT INTO retro.user_data(uid, email, display_name, deleted) VALUES "
+                + "(? || '-contains', 'other-' || UPPER(?) || '4999@example.com', 'contains', false), "
+                + "(? || '-deleted', ? || '4999-deleted@example.com', 'deleted', true), "
+                + "(? || '-underscore', ? || '_9@example.com', 'underscore', false)",
+                prefix, prefix, prefix, prefix, prefix, prefix);
+        // emails unlike each other, as real ones are, for the search to be selective on the trigram index
+        jdbcTemplate.update("INSERT INTO retro.user_data(uid, email, display_name, deleted) "
+                + "SELECT ? || '-random' || n, md5(? || n) || '@example.com', 'random', false "
+                + "FROM generate_series(0, ? - 1) n", prefix, prefix, USERS);
+        jdbcTemplate.update("INSERT INTO retro.board(name, state, creator_uid, maximum_number_of_votes) "
+                + "SELECT 'board', 'VOTING', ? || (n % ?), 10 FROM generate_series(0, ? - 1) n",
+                prefix, USERS, BOARDS);
+        jdbcTemplate.update("INSERT INTO retro.users_boards(board_id, user_uid) "
+                + "SELECT b.id, ? || ((b.id + m) % ?) FROM retro.board b, generate_series(1, 5) m "
+                + "WHERE b.creator_uid LIKE ? || '%'", prefix, USERS, prefix);
+        jdbcTemplate.update("INSERT INTO retro.board_card(board_id, text, board_column, creator_uid) "
+                + "SELECT b.id, 'card', 'SUCCESS', b.creator_uid FROM retro.board b, generate_series(1, ?) n "
+                + "WHERE b.creator_uid LIKE ? || '%'", CARDS_PER_BOARD, prefix);
+        jdbcTemplate.update("INSERT INTO retro.board_card_action(card_id, text) "
+                + "SELECT bc.id, 'action' FROM retro.board_card bc WHERE bc.creator_uid LIKE ? || '%'", prefix);
+        jdbcTemplate.update("INSERT INTO retro.board_card_votes(card_id, voter_uid, count) "
+                + "SELECT bc.id, bc.creator_uid, 1 FROM retro.board_card bc WHERE bc.creator_uid LIKE ? || '%'",
+                prefix);
+        jdbcTemplate.update("INSERT INTO retro.board_user_votes(board_id, voter_uid, used) "
+                + "SELECT b.id, b.creator_uid, ? FROM retro.board b WHERE b.creator_uid LIKE ? || '%'",
+                CARDS_PER_BOARD, prefix);
+        jdbcTemplate.update("INSERT INTO retro.board_version(board_id, stripe, version) "
+                + "SELECT b.id, s, 1 FROM retro.board b, generate_series(0, 7) s WHERE b.creator_uid LIKE ? || '%'",
+                prefix);
+        jdbcTemplate.update("INSERT INTO retro.firebase_user_fingerprint(uid, fingerprint, sync_run) "
+                + "SELECT ? || n, 'fingerprint', 1 FROM generate_series(0, ? - 1) n", prefix, USERS);
+        // the vacuum moves the new rows out of the pending list of the trigram index, which is planned as read in full
+        jdbcTemplate.execute("VACUUM ANALYZE");
+
+        boardId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM retro.board WHERE creator_uid = ?",
+                Integer.class, uid(0));
+        cardId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM retro.board_card WHERE board_id = ?",
+                Integer.class, boardId);
+    }
+
+    @Test
+    void userQueriesShouldUseIndexes() {
+        assertIndexScans(() -> userRepository.findUserByEmail(prefix + "1@example.com"));
+        assertIndexScans(() -> userRepository.findAllNotDeactivatedByEmailIn(
+                List.of(prefix + "1@example.com", prefix + "2@example.com")));
+        assertIndexScans(() -> userRepository.findById(uid(1)));
+        assertIndexScans(() -> userRepository.deactivateAllByUidIn(List.of(uid(1), uid(2))));
+        assertIndexScans(() -> userRepository.findAllByEmailInAndUidNotIn(List.of(prefix + "1@example.com"),
+                List.of(uid(2))));
+        assertIndexScans(() -> userRepository.reassignUid(uid(1), uid(1) + "-new"));
+        final String pattern = jdbcTemplate.queryForObject("SELECT substr(md5(? || 1), 5, 8)", String.class, prefix);
+        assertIndexScans(List.of("'" + pattern + "'", "'" + pattern + "'", "10"),
+                () -> userRepository.searchByEmail(pattern, PageRequest.of(0, 10)));
+    }
+
+    @Test
+    void userSearchShouldRankPrefixMatchesFirstAndSkipDeletedUsers() {
+        final List<String> expected = List.of(prefix + "4999@example.com",
+                "other-" + prefix.toUpperCase() + "4999@example.com");
+
+        assertEquals(expected, userService.search(prefix + "4999", 10));
+        assertEquals(expected, userRepository.searchByEmailWithoutIndex(prefix + "4999", PageRequest.of(0, 10)));
+        assertEquals(List.of(prefix + "_9@example.com"), userService.search(prefix + "_9", 10));
+        assertEquals(5, userService.search(prefix, 5).size());
+    }
+
+    @Test
+    void boardQueriesShouldUseIndexes() {
+        final User user = userRepository.getById(uid(0));
+
+        assertIndexScans(() -> boardRepository.findBoardAccess(boardId, uid(0)));
+        assertIndexScans(() -> boardRepository.findPageByCreatorOrAssignedUser(user, Integer.MAX_VALUE,
+                PageRequest.of(0, 50)));
+        assertIndexScans(() -> boardRepository.findById(boardId).map(Board::getUsers).map(List::copyOf));
+        assertIndexScans(() -> boardRepository.findIdsByCreatorUidIn(List.of(uid(0), uid(1))));
+        assertIndexScans(() -> boardRepository.findMemberUidsIn(List.of(uid(0), uid(1))));
+        assertIndexScans(() -> boardRepository.deleteByIdIn(List.of(boardId)));
+        assertIndexScans(() -> boardRepository.findBoardVersionAccess(boardId, uid(0)));
+        assertIndexScans(() -> boardRepository.incrementVersion(boardId, 0));
+        assertIndexScans(() -> boardRepository.deleteVersionsByBoardIdIn(List.of(boardId)));
+    }
+
+    @Test
+    void boardCardQueriesShouldUseIndexes() {
+        final Board board = boardRepository.findById(boardId).orElseThrow();
+
+        assertIndexScans(() -> boardCardsRepository.findAllWithVotesByBoard(board));
+    }
+
+    @Test
+    void voteQueriesShouldUseIndexes() {
+        assertIndexScans(() -> boardCardsVotesRepository.findAllByBoardAndVoter(boardId, uid(0)));
+        assertIndexScans(() -> boardCardsVotesRepository.addVote(cardId, uid(0)));
+        assertIndexScans(() -> boardCardsVotesRepository.removeVote(cardId, uid(0)));
+        assertIndexScans(() -> boardCardsVotesRepository.deleteIfEmpty(cardId, uid(0)));
+        assertIndexScans(() -> boardCardsVotesRepository.setVotes(boardId, uid(0), Map.of(cardId, 2)));
+        assertIndexScans(() -> boardCardsVotesRepository.deleteVotes(uid(0), List.of(cardId)));
+        assertIndexScans(() -> boardUserVotesRepository.createIfAbsent(boardId, uid(0)));
+        assertIndexScans(() -> boardUserVotesRepository.setUsedVotes(boardId, uid(0), 2));
+        assertIndexScans(() -> boardUserVotesRepository.useVote(boardId, uid(0), 10));
+        assertIndexScans(() -> boardUserVotesRepository.returnVote(boardId, uid(0)));
+    }
+
+    @Test
+    void fingerprintQueriesShouldUseIndexes() {
+        assertIndexScans(() -> firebaseUserFingerprintRepository.findAllByUidIn(List.of(uid(1), uid(2))));
+        assertIndexScans(() -> firebaseUserFingerprintRepository.markSynchronized(List.of(uid(1), uid(2)), 2L));
+    }
+
+    private String uid(final int index) {
+        return prefix + index;
+    }
+
+    /**
+     * Runs the repository call in a transaction that is rolled back and checks that no statement it sent reads a
+     * whole table.
+     */
+    private void assertIndexScans(final Runnable repositoryCall) {
+        assertIndexScans(null, repositoryCall);
+    }
+
+    /**
+     * Same as {@link #assertIndexScans(Runnable)}, with each statement explained for the given SQL literals as its
+     * parameters, or with a generic plan when they are null.
+     */
+    private void assertIndexScans(final List<String> parameterValues, final Runnable repositoryCall) {
+        CapturingStatementInspector.startCapture();
+        final List<String> statements;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                repositoryCall.run();
+                status.setRollbackOnly();
+            });
+        } finally {
+            statements = CapturingStatementInspector.stopCapture();
+        }
+
+        assertFalse(statements.isEmpty(), "no SQL statement was sent");
+        for (final String sql : statements) {
+            final String plan = String.join("\n", explain(sql, parameterValues));
+            assertFalse(plan.contains("Seq Scan"), () -> "sequential scan in plan of\n" + sql + "\n" + plan);
+        }
+    }
+
+    private List<String> explain(final String sql, final List<String> parameterValues) {
+        final StringBuilder numberedSql = new StringBuilder();
+        int parameters = 0;
+        for (final char c : sql.toCharArray()) {
+            if (c == '?') {
+                numberedSql.append('$').append(++parameters);
+            } else {
+                numberedSql.append(c);
+            }
+        }
+        final List<String> values = parameterValues == null ? Collections.nCopies(parameters, "NULL") : parameterValues;
+        final String execute = parameters == 0
+                ? "EXPLAIN EXECUTE explained"
+                : "EXPLAIN EXECUTE explained(" + String.join(", ", values) + ")";
+        final String planCacheMode = parameterValues == null ? "force_generic_plan" : "force_custom_plan";
+
+        return jdbcTemplate.execute((ConnectionCallback<List<String>>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET plan_cache_mode = " + planCacheMode);
+                statement.execute("PREPARE explained AS " + numberedSql);
+                try (ResultSet resultSet = statement.executeQuery(execute)) {
+                    final List<String> plan = new ArrayList<>();
+                    while (resultSet.next()) {
+                        plan.add(resultSet.getString(1));
+                    }
+                    return plan;
+                } finally {
+                    statement.execute("DEALLOCATE explained");
+                    statement.execute("RESET plan_cache_mode");
+                }
+            }
+        });
+    }
+}
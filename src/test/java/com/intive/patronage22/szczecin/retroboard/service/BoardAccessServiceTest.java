@@ -0,0 +1,87 @@
+package com.intive.patronage22.szczecin.retroboard.service;
+
+import com.intive.patronage22.szczecin.retroboard.dto.EnumStateDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
+import com.intive.patronage22.szczecin.retroboard.exception.BadRequestException;
+import com.intive.patronage22.szczecin.retroboard.exception.NotFoundException;
+import com.intive.patronage22.szczecin.retroboard.model.Board;
+import com.intive.patronage22.szczecin.retroboard.model.User;
+import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = BoardAccessService.class)
+class BoardAccessServiceTest {
+
+    private static final int boardId = 1;
+    private static final String email = "member@test.pl";
+
+    @Autowired
+    private BoardAccessService boardAccessService;
+
+    @MockBean
+    private BoardRepository boardRepository;
+
+    private final User user = new User("123", email, "member", false, Set.of(), Set.of());
+    private final User creator = new User("1234", "creator@test.pl", "creator", false, Set.of(), Set.of());
+    private final UserPrincipal principal = TestUtils.buildPrincipal(user);
+
+    @Test
+    void getGrantedBoardAccessShouldReturnMemberRoleWhenUserIsAssignedToBoard() {
+        // given
+        final Board board = TestUtils.buildBoard(boardId, EnumStateDto.CREATED, creator, Set.of(user), 5);
+
+        // when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+        final BoardAccess boardAccess = boardAccessService.getGrantedBoardAccess(boardId, principal);
+
+        // then
+        assertSame(user, boardAccess.getUser());
+        assertSame(board, boardAccess.getBoard());
+        assertEquals(BoardAccess.Role.MEMBER, boardAccess.getRole());
+    }
+
+    @Test
+    void getGrantedBoardAccessShouldThrowBadRequestWhenUserHasNoAccessToBoard() {
+        // given
+        final Board board = TestUtils.buildBoard(boardId, EnumStateDto.CREATED, creator, Set.of(), 5);
+
+        // when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+
+        // then
+        assertEquals(BoardAccess.Role.NONE, boardAccessService.getBoardAccess(boardId, principal).getRole());
+        assertThrows(BadRequestException.class, () -> boardAccessService.getGrantedBoardAccess(boardId, principal));
+    }
+
+    @Test
+    void getBoardAccessShouldThrowNotFoundWhenBoardDoesNotExist() {
+        // when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, null)));
+
+        // then
+        assertThrows(NotFoundException.class, () -> boardAccessService.getBoardAccess(boardId, principal));
+    }
+
+    @Test
+    void getBoardAccessShouldThrowBadRequestWhenUserDoesNotExist() {
+        // when
+        when(boardRepository.findBoardAccess(boardId, user.getUid())).thenReturn(Optional.empty());
+
+        // then
+        assertThrows(BadRequestException.class, () -> boardAccessService.getBoardAccess(boardId, principal));
+    }
+}
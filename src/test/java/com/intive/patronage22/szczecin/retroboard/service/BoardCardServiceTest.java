@@ -1,6 +1,8 @@
 package com.intive.patronage22.szczecin.retroboard.service;
 
 import com.intive.patronage22.szczecin.retroboard.dto.*;
+import com.intive.patronage22.szczecin.retroboard.event.BoardChangedEvent;
+import com.intive.patronage22.szczecin.retroboard.event.BoardEventType;
 import com.intive.patronage22.szczecin.retroboard.exception.BadRequestException;
 import com.intive.patronage22.szczecin.retroboard.exception.NotFoundException;
 import com.intive.patronage22.szczecin.retroboard.model.*;
@@ -15,8 +17,11 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -24,15 +29,21 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@SpringBootTest(classes = BoardCardService.class)
+@SpringBootTest(classes = {BoardCardService.class, BoardAccessService.class})
+@RecordApplicationEvents
 class BoardCardServiceTest {
 
     @Autowired
     private BoardCardService boardCardService;
 
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
     @MockBean
     private BoardCardsRepository boardCardsRepository;
 
@@ -40,10 +51,10 @@ class BoardCardServiceTest {
     private BoardRepository boardRepository;
 
     @MockBean
-    private UserRepository userRepository;
+    private BoardCardsVotesRepository boardCardsVotesRepository;
 
     @MockBean
-    private BoardCardsVotesRepository boardCardsVotesRepository;
+    private BoardUserVotesRepository boardUserVotesRepository;
 
     @MockBean
     private BoardCardsActionsRepository boardCardsActionsRepository;
@@ -71,18 +82,18 @@ class BoardCardServiceTest {
         final Board board = buildBoard(boardId, EnumStateDto.CREATED, 5, user, Set.of(), Set.of());
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.existsById(boardId)).thenReturn(true);
-        when(boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)).thenReturn(Optional.of(board));
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
 
         //then
         final BoardCardDto responseDto = boardCardService
-                .createBoardCard(requestDto, boardId, email);
+                .createBoardCard(requestDto, boardId, TestUtils.buildPrincipal(user));
 
-        final ArgumentCaptor<BoardCard> boardCardCaptor = ArgumentCaptor.forClass(BoardCard.class);
-        Mockito.verify(boardCardsRepository).save(boardCardCaptor.capture());
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<List<BoardCard>> boardCardsCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(boardCardsRepository).saveAll(boardCardsCaptor.capture());
 
-        final BoardCard savedBoardCard = boardCardCaptor.getValue();
+        final BoardCard savedBoardCard = boardCardsCaptor.getValue().get(0);
 
         assertEquals(responseDto.getCardText(), savedBoardCard.getText());
         assertEquals(responseDto.getCardText(), requestDto.getCardText());
@@ -93,6 +104,54 @@ class BoardCardServiceTest {
         assertEquals(responseDto.getBoardCardCreator(), email);
     }
 
+    @Test
+    @DisplayName("createBoardCards should save all cards at once and publish an event for each of them")
+    void createBoardCardsShouldSaveAllCardsAndPublishEvents() {
+        // given
+        final Integer boardId = 1;
+        final User user = new User("1234", "test22@test.com", "john14", false, Set.of(), Set.of());
+        final Board board = buildBoard(boardId, EnumStateDto.CREATED, 5, user, Set.of(), Set.of());
+        final List<BoardCardDto> requestDtos = List.of(
+                BoardCardDto.builder().cardText("first card").columnId(0).build(),
+                BoardCardDto.builder().cardText("second card").columnId(2).build());
+
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+        final List<BoardCardDto> responseDtos =
+                boardCardService.createBoardCards(requestDtos, boardId, TestUtils.buildPrincipal(user));
+
+        //then
+        assertEquals(List.of("first card", "second card"),
+                responseDtos.stream().map(BoardCardDto::getCardText).collect(Collectors.toList()));
+        assertEquals(List.of(0, 2), responseDtos.stream().map(BoardCardDto::getColumnId).collect(Collectors.toList()));
+        verify(boardCardsRepository).saveAll(any());
+        verify(boardCardsRepository, never()).save(any());
+        assertEquals(2, applicationEvents.stream(BoardChangedEvent.class)
+                .filter(event -> event.getType() == BoardEventType.CARD_CREATED)
+                .count());
+    }
+
+    @Test
+    @DisplayName("createBoardCards should save no card when board state is not CREATED")
+    void createBoardCardsShouldThrowBadRequestWhenBoardStateIsNotCreated() {
+        // given
+        final Integer boardId = 1;
+        final User user = new User("1234", "test22@test.com", "john14", false, Set.of(), Set.of());
+        final Board board = buildBoard(boardId, EnumStateDto.VOTING, 5, user, Set.of(), Set.of());
+        final List<BoardCardDto> requestDtos = List.of(
+                BoardCardDto.builder().cardText("first card").columnId(0).build());
+
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+
+        //then
+        assertThrows(BadRequestException.class,
+                () -> boardCardService.createBoardCards(requestDtos, boardId, TestUtils.buildPrincipal(user)));
+        verify(boardCardsRepository, never()).saveAll(any());
+    }
+
     @Test
     void createBoardCardShouldThrowBadRequestExceptionWhenUserIsNotFound() {
         // given
@@ -104,11 +163,11 @@ class BoardCardServiceTest {
         final String email = "test22@test.com";
 
         //when
-        when(userRepository.findUserByEmail(email)).thenThrow(BadRequestException.class);
+        when(boardRepository.findBoardAccess(boardId, "1234")).thenReturn(Optional.empty());
 
         //then
         assertThrows(BadRequestException.class, () -> boardCardService
-                .createBoardCard(requestDto, boardId, email));
+                .createBoardCard(requestDto, boardId, new UserPrincipal("1234", email, false)));
     }
 
     @Test
@@ -124,12 +183,12 @@ class BoardCardServiceTest {
         final User user = new User(uid, email, "john14", false, Set.of(), Set.of());
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.findById(boardId)).thenThrow(NotFoundException.class);
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, null)));
 
         //then
         assertThrows(NotFoundException.class, () -> boardCardService
-                .createBoardCard(requestDto, boardId, email));
+                .createBoardCard(requestDto, boardId, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -143,15 +202,16 @@ class BoardCardServiceTest {
         final String email = "test22@test.com";
         final String uid = "1234";
         final User user = new User(uid, email, "john14", false, Set.of(), Set.of());
+        final User creator = new User("4321", "creator@test.com", "creator", false, Set.of(), Set.of());
+        final Board board = buildBoard(boardId, EnumStateDto.CREATED, 5, creator, Set.of(), Set.of());
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.existsById(boardId)).thenReturn(true);
-        when(boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)).thenThrow(BadRequestException.class);
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
 
         //then
         assertThrows(BadRequestException.class, () -> boardCardService
-                .createBoardCard(requestDto, boardId, email));
+                .createBoardCard(requestDto, boardId, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -168,12 +228,12 @@ class BoardCardServiceTest {
         final Board board = buildBoard(boardId, EnumStateDto.VOTING, 5, user, Set.of(), Set.of());
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.existsById(boardId)).thenReturn(true);
-        when(boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)).thenReturn(Optional.of(board));
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
 
         //then
-        assertThrows(BadRequestException.class, () -> boardCardService.createBoardCard(requestDto, boardId, email));
+        assertThrows(BadRequestException.class,
+                () -> boardCardService.createBoardCard(requestDto, boardId, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -187,11 +247,10 @@ class BoardCardServiceTest {
         final BoardCard boardCard = buildBoardCard(cardId, board, BoardCardsColumn.SUCCESS, user, List.of());
 
         // when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(boardCard));
 
         //then
-        boardCardService.removeCard(cardId, email);
+        boardCardService.removeCard(cardId, TestUtils.buildPrincipal(user));
         verify(boardCardsRepository).deleteById(cardId);
     }
 
@@ -206,11 +265,10 @@ class BoardCardServiceTest {
         final BoardCard boardCard = buildBoardCard(cardId, board, BoardCardsColumn.SUCCESS, user, List.of());
 
         // when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(boardOwner));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(boardCard));
 
         //then
-        boardCardService.removeCard(cardId, email);
+        boardCardService.removeCard(cardId, TestUtils.buildPrincipal(boardOwner));
         verify(boardCardsRepository).deleteById(cardId);
     }
 
@@ -225,11 +283,11 @@ class BoardCardServiceTest {
         final BoardCard boardCard = buildBoardCard(cardId, board, BoardCardsColumn.SUCCESS, user, List.of());
 
         // when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(boardCard));
 
         //then
-        assertThrows(BadRequestException.class, () -> boardCardService.removeCard(cardId, email));
+        assertThrows(BadRequestException.class,
+                () -> boardCardService.removeCard(cardId, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -243,11 +301,11 @@ class BoardCardServiceTest {
         final BoardCard boardCard = buildBoardCard(cardId, board, BoardCardsColumn.SUCCESS, owner, List.of());
 
         // when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(boardCard));
 
         //then
-        assertThrows(BadRequestException.class, () -> boardCardService.removeCard(cardId, email));
+        assertThrows(BadRequestException.class,
+                () -> boardCardService.removeCard(cardId, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -259,28 +317,11 @@ class BoardCardServiceTest {
         final User user = new User(uid, email, "john14", false, Set.of(), Set.of());
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.empty());
 
         //then
-        assertThrows(NotFoundException.class, () -> boardCardService.removeCard(cardId, email));
-    }
-
-    @Test
-    @DisplayName("addVote should throw Bad Request when user not exists")
-    void addVoteShouldThrowBadRequestWhenUserIsNotFound() {
-        // given
-        final Integer cardId = 1;
-        final String email = "test@example.com";
-        final String expectedExceptionMessage = "User not found";
-
-        //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.empty());
-
-        //then
-        final BadRequestException exception =
-                assertThrows(BadRequestException.class, () -> boardCardService.addVote(cardId, email));
-        assertEquals(expectedExceptionMessage, exception.getMessage());
+        assertThrows(NotFoundException.class,
+                () -> boardCardService.removeCard(cardId, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -293,12 +334,12 @@ class BoardCardServiceTest {
         final String expectedExceptionMessage = "Card not found";
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.empty());
 
         //then
         final NotFoundException exception =
-                assertThrows(NotFoundException.class, () -> boardCardService.addVote(cardId, email));
+                assertThrows(NotFoundException.class,
+                        () -> boardCardService.addVote(cardId, TestUtils.buildPrincipal(user)));
         assertEquals(expectedExceptionMessage, exception.getMessage());
     }
 
@@ -314,13 +355,13 @@ class BoardCardServiceTest {
         final String expectedExceptionMessage = "Board not exist";
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(boardRepository.findById(card.getBoard().getId())).thenReturn(Optional.empty());
 
         //then
         final BadRequestException exception =
-                assertThrows(BadRequestException.class, () -> boardCardService.addVote(cardId, email));
+                assertThrows(BadRequestException.class,
+                        () -> boardCardService.addVote(cardId, TestUtils.buildPrincipal(user)));
         assertEquals(expectedExceptionMessage, exception.getMessage());
     }
 
@@ -337,13 +378,13 @@ class BoardCardServiceTest {
         final String expectedExceptionMessage = "User not assigned to board";
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(boardRepository.findById(card.getBoard().getId())).thenReturn(Optional.of(board));
 
         //then
         final BadRequestException exception =
-                assertThrows(BadRequestException.class, () -> boardCardService.addVote(cardId, email));
+                assertThrows(BadRequestException.class,
+                        () -> boardCardService.addVote(cardId, TestUtils.buildPrincipal(user)));
         assertEquals(expectedExceptionMessage, exception.getMessage());
     }
 
@@ -360,13 +401,13 @@ class BoardCardServiceTest {
         final String expectedExceptionMessage = "Wrong state of board";
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(boardRepository.findById(card.getBoard().getId())).thenReturn(Optional.of(board));
 
         //then
         final BadRequestException exception =
-                assertThrows(BadRequestException.class, () -> boardCardService.addVote(cardId, email));
+                assertThrows(BadRequestException.class,
+                        () -> boardCardService.addVote(cardId, TestUtils.buildPrincipal(user)));
         assertEquals(expectedExceptionMessage, exception.getMessage());
     }
 
@@ -380,26 +421,24 @@ class BoardCardServiceTest {
         final Board board = buildBoard(2, EnumStateDto.VOTING, 5, user, Set.of(user), new HashSet<>());
         final BoardCard card = buildBoardCard(cardId, board, BoardCardsColumn.SUCCESS, user, List.of());
         board.setBoardCards(Set.of(card));
-        final BoardCardVotesKey key = new BoardCardVotesKey(cardId, user.getUid());
-        final BoardCardVotes boardCardVotes = new BoardCardVotes(key, card, user, 5);
         final String expectedExceptionMessage = "No more votes";
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(boardRepository.findById(card.getBoard().getId())).thenReturn(Optional.of(board));
-        when(boardCardsVotesRepository.getVotesByBoardAndUser(board, user)).thenReturn(
-                List.of(boardCardVotes.getVotes()));
+        when(boardUserVotesRepository.useVote(board.getId(), user.getUid(), 5)).thenReturn(Optional.empty());
 
         //then
         final BadRequestException exception =
-                assertThrows(BadRequestException.class, () -> boardCardService.addVote(cardId, email));
+                assertThrows(BadRequestException.class,
+                        () -> boardCardService.addVote(cardId, TestUtils.buildPrincipal(user)));
         assertEquals(expectedExceptionMessage, exception.getMessage());
+        verify(boardCardsVotesRepository, never()).addVote(any(), any());
     }
 
     @Test
-    @DisplayName("addVote should update value of votes when BoardCardVotes already exists")
-    void addVoteShouldUpdateVotesNumberWhenBoardCardVoteExists() {
+    @DisplayName("addVote should use a vote from the board counter and upsert the card votes")
+    void addVoteShouldUseVoteAndUpsertCardVotes() {
         // given
         final Integer cardId = 1;
         final String email = "test@example.com";
@@ -407,22 +446,16 @@ class BoardCardServiceTest {
         final Board board = buildBoard(2, EnumStateDto.VOTING, 5, user, Set.of(user), new HashSet<>());
         final BoardCard card = buildBoardCard(cardId, board, BoardCardsColumn.SUCCESS, user, List.of());
         board.setBoardCards(Set.of(card));
-        final BoardCardVotesKey key = new BoardCardVotesKey(cardId, user.getUid());
-        final BoardCardVotes boardCardVotes = new BoardCardVotes(key, card, user, 4);
-        final int votesToCheck = boardCardVotes.getVotes() + 1;
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(boardRepository.findById(card.getBoard().getId())).thenReturn(Optional.of(board));
-        when(boardCardsVotesRepository.getVotesByBoardAndUser(board, user)).thenReturn(
-                List.of(boardCardVotes.getVotes()));
-        when(boardCardsVotesRepository.findByCardAndVoter(card, user)).thenReturn(Optional.of(boardCardVotes));
-        boardCardService.addVote(cardId, email);
+        when(boardUserVotesRepository.useVote(board.getId(), user.getUid(), 5)).thenReturn(Optional.of(5));
+        boardCardService.addVote(cardId, TestUtils.buildPrincipal(user));
 
         //then
-        verify(boardCardsVotesRepository).save(any(BoardCardVotes.class));
-        assertEquals(boardCardVotes.getVotes(), votesToCheck);
+        verify(boardUserVotesRepository).createIfAbsent(board.getId(), user.getUid());
+        verify(boardCardsVotesRepository).addVote(cardId, user.getUid());
     }
 
     @Test
@@ -435,23 +468,20 @@ class BoardCardServiceTest {
         final Board board = buildBoard(2, EnumStateDto.VOTING, 10, user, Set.of(user), new HashSet<>());
         final BoardCard card = buildBoardCard(cardId, board, BoardCardsColumn.FAILURES, user, List.of());
         board.setBoardCards(Set.of(card));
-        final BoardCardVotesKey key = new BoardCardVotesKey(cardId, user.getUid());
-        final BoardCardVotes boardCardVotes = new BoardCardVotes(key, card, user, 4);
-        final int remainingVotes = board.getMaximumNumberOfVotes() - boardCardVotes.getVotes() - 1;
+        final int remainingVotes = 5;
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
         when(boardRepository.findById(card.getBoard().getId())).thenReturn(Optional.of(board));
-        when(boardCardsVotesRepository.getVotesByBoardAndUser(board, user)).thenReturn(
-                List.of(boardCardVotes.getVotes()));
-        when(boardCardsVotesRepository.findByCardAndVoter(card, user)).thenReturn(Optional.empty());
-        final Map<String, Integer> remainingVotesMap = boardCardService.addVote(cardId, email);
+        when(boardUserVotesRepository.useVote(board.getId(), user.getUid(), 10)).thenReturn(Optional.of(5));
+        final Map<String, Integer> remainingVotesMap = boardCardService.addVote(cardId, TestUtils.buildPrincipal(user));
 
         //then
-        verify(boardCardsVotesRepository).save(any(BoardCardVotes.class));
         assertTrue(remainingVotesMap.containsKey("remainingVotes"));
         assertTrue(remainingVotesMap.containsValue(remainingVotes));
+        assertEquals(List.of(new BoardChangedEvent(board.getId(), BoardEventType.VOTE_CHANGED,
+                        Map.of("cardId", cardId, "delta", 1))),
+                applicationEvents.stream(BoardChangedEvent.class).collect(Collectors.toList()));
     }
 
     @Test
@@ -468,12 +498,11 @@ class BoardCardServiceTest {
         board.setBoardCards(Set.of(card));
 
         //when
-        when(userRepository.findUserByEmail(fakeEmail)).thenReturn(Optional.of(fakeUser));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
 
         //then
-        final BadRequestException exception = assertThrows(
-                BadRequestException.class, () -> boardCardService.removeVote(cardId, fakeEmail));
+        final BadRequestException exception = assertThrows( BadRequestException.class,
+                () -> boardCardService.removeVote(cardId, TestUtils.buildPrincipal(fakeUser)));
         assertEquals("User not assigned to board", exception.getMessage());
     }
 
@@ -489,12 +518,11 @@ class BoardCardServiceTest {
         board.setBoardCards(Set.of(card));
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.empty());
 
         //then
         final NotFoundException exception = assertThrows(
-                NotFoundException.class, () -> boardCardService.removeVote(cardId, email));
+                NotFoundException.class, () -> boardCardService.removeVote(cardId, TestUtils.buildPrincipal(user)));
         assertEquals("Card not found", exception.getMessage());
     }
 
@@ -510,12 +538,11 @@ class BoardCardServiceTest {
         board.setBoardCards(Set.of(card));
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
 
         //then
         final BadRequestException exception = assertThrows(
-                BadRequestException.class, () -> boardCardService.removeVote(cardId, email));
+                BadRequestException.class, () -> boardCardService.removeVote(cardId, TestUtils.buildPrincipal(user)));
         assertEquals("Wrong state of board", exception.getMessage());
     }
 
@@ -531,12 +558,11 @@ class BoardCardServiceTest {
         board.setBoardCards(Set.of(card));
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
 
         //then
         final BadRequestException exception = assertThrows(
-                BadRequestException.class, () -> boardCardService.removeVote(cardId, email));
+                BadRequestException.class, () -> boardCardService.removeVote(cardId, TestUtils.buildPrincipal(user)));
         assertEquals("User has no votes to remove", exception.getMessage());
     }
 
@@ -550,17 +576,16 @@ class BoardCardServiceTest {
         final Board board = buildBoard(2, EnumStateDto.VOTING, 10, user, Set.of(user), new HashSet<>());
         final BoardCard card = buildBoardCard(cardId, board, BoardCardsColumn.FAILURES, user, List.of());
         board.setBoardCards(Set.of(card));
-        final BoardCardVotesKey key = new BoardCardVotesKey(cardId, user.getUid());
-        final BoardCardVotes boardCardVotes = new BoardCardVotes(key, card, user, 4);
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
-        when(boardCardsVotesRepository.findByCardAndVoter(card, user)).thenReturn(Optional.of(boardCardVotes));
-        final Map<String, Integer> removeVote = boardCardService.removeVote(cardId, email);
+        when(boardUserVotesRepository.returnVote(board.getId(), user.getUid())).thenReturn(Optional.of(3));
+        when(boardCardsVotesRepository.removeVote(cardId, user.getUid())).thenReturn(Optional.of(2));
+        final Map<String, Integer> removeVote = boardCardService.removeVote(cardId, TestUtils.buildPrincipal(user));
 
         //then
         assertEquals(removeVote.get("remainingVotes"),7);
+        verify(boardCardsVotesRepository, never()).deleteIfEmpty(any(), any());
     }
 
     @Test
@@ -573,29 +598,114 @@ class BoardCardServiceTest {
         final Board board = buildBoard(2, EnumStateDto.VOTING, 4, user, Set.of(user), new HashSet<>());
         final BoardCard card = buildBoardCard(cardId, board, BoardCardsColumn.FAILURES, user, List.of());
         board.setBoardCards(Set.of(card));
-        final BoardCardVotesKey key = new BoardCardVotesKey(cardId, user.getUid());
-        final BoardCardVotes boardCardVotes = new BoardCardVotes(key, card, user, 1);
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(cardId)).thenReturn(Optional.of(card));
-        when(boardCardsVotesRepository.findByCardAndVoter(card, user)).thenReturn(Optional.of(boardCardVotes));
+        when(boardUserVotesRepository.returnVote(board.getId(), user.getUid())).thenReturn(Optional.of(0));
+        when(boardCardsVotesRepository.removeVote(cardId, user.getUid())).thenReturn(Optional.of(0));
 
         //then
-        assertEquals(Map.of("remainingVotes", 4), boardCardService.removeVote(cardId, email));
-        verify(boardCardsVotesRepository).delete(any());
+        assertEquals(Map.of("remainingVotes", 4), boardCardService.removeVote(cardId, TestUtils.buildPrincipal(user)));
+        verify(boardCardsVotesRepository).deleteIfEmpty(cardId, user.getUid());
     }
 
     @Test
-    @DisplayName("When addCardAction() is called and the user is not found -> Not found Exception is thrown.")
-    void addCardActionThrowsUserNotFoundIfUserIsNotProvided() {
-        //given
-        when(userRepository.findUserByEmail(any())).thenReturn(Optional.empty());
+    @DisplayName("setVotes should upsert changed votes, delete dropped votes and publish the deltas")
+    void setVotesShouldUpsertChangedAndDeleteDroppedVotes() {
+        // given
+        final Integer boardId = 2;
+        final User user = new User("1234", "test@example.com", "somename", false, Set.of(), Set.of());
+        final Board board = buildBoard(boardId, EnumStateDto.VOTING, 10, user, Set.of(user), new HashSet<>());
+        final Map<Integer, Integer> votes = Map.of(1, 3, 2, 2, 3, 0);
 
-        //when & then
-        final NotFoundException exception = assertThrows(
-                NotFoundException.class, () -> boardCardService.addCardAction(null, null, null));
-        assertEquals("User not found", exception.getMessage());
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+        when(boardCardsVotesRepository.findAllByBoardAndVoter(boardId, user.getUid())).thenReturn(List.of(
+                new BoardCardVotesProjection(1, 1), new BoardCardVotesProjection(2, 2),
+                new BoardCardVotesProjection(3, 4)));
+        when(boardCardsVotesRepository.setVotes(boardId, user.getUid(), Map.of(1, 3))).thenReturn(1);
+
+        //then
+        assertEquals(Map.of("remainingVotes", 5),
+                boardCardService.setVotes(boardId, votes, TestUtils.buildPrincipal(user)));
+        verify(boardUserVotesRepository).setUsedVotes(boardId, user.getUid(), 5);
+        verify(boardCardsVotesRepository).deleteVotes(user.getUid(), List.of(3));
+        assertEquals(List.of(new BoardChangedEvent(boardId, BoardEventType.VOTES_CHANGED, Map.of(1, 2, 3, -4))),
+                applicationEvents.stream(BoardChangedEvent.class).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("setVotes should throw BadRequest when the allocation exceeds the maximum number of votes")
+    void setVotesShouldThrowBadRequestWhenVotesExceedMaximum() {
+        // given
+        final Integer boardId = 2;
+        final User user = new User("1234", "test@example.com", "somename", false, Set.of(), Set.of());
+        final Board board = buildBoard(boardId, EnumStateDto.VOTING, 3, user, Set.of(user), new HashSet<>());
+
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+
+        //then
+        final BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> boardCardService.setVotes(boardId, Map.of(1, 2, 2, 2), TestUtils.buildPrincipal(user)));
+        assertEquals("No more votes", exception.getMessage());
+        verify(boardUserVotesRepository, never()).setUsedVotes(any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("setVotes should throw BadRequest when a card gets a negative number of votes")
+    void setVotesShouldThrowBadRequestWhenVotesAreNegative() {
+        // given
+        final Integer boardId = 2;
+        final User user = new User("1234", "test@example.com", "somename", false, Set.of(), Set.of());
+        final Board board = buildBoard(boardId, EnumStateDto.VOTING, 3, user, Set.of(user), new HashSet<>());
+
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+
+        //then
+        assertThrows(BadRequestException.class,
+                () -> boardCardService.setVotes(boardId, Map.of(1, 4, 2, -2), TestUtils.buildPrincipal(user)));
+        verify(boardUserVotesRepository, never()).setUsedVotes(any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("setVotes should throw BadRequest when board is in different state than voting")
+    void setVotesShouldThrowBadRequestWhenBoardIsNotInStateVoting() {
+        // given
+        final Integer boardId = 2;
+        final User user = new User("1234", "test@example.com", "somename", false, Set.of(), Set.of());
+        final Board board = buildBoard(boardId, EnumStateDto.ACTIONS, 3, user, Set.of(user), new HashSet<>());
+
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+
+        //then
+        final BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> boardCardService.setVotes(boardId, Map.of(1, 1), TestUtils.buildPrincipal(user)));
+        assertEquals("Wrong state of board", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("setVotes should throw NotFound when a card does not belong to the board")
+    void setVotesShouldThrowNotFoundWhenCardIsNotOnBoard() {
+        // given
+        final Integer boardId = 2;
+        final User user = new User("1234", "test@example.com", "somename", false, Set.of(), Set.of());
+        final Board board = buildBoard(boardId, EnumStateDto.VOTING, 5, user, Set.of(user), new HashSet<>());
+
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+        when(boardCardsVotesRepository.setVotes(boardId, user.getUid(), Map.of(1, 1, 99, 1))).thenReturn(1);
+
+        //then
+        assertThrows(NotFoundException.class,
+                () -> boardCardService.setVotes(boardId, Map.of(1, 1, 99, 1), TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -603,12 +713,11 @@ class BoardCardServiceTest {
     void addCardActionThrowsCardNotFoundIfCardDoesNotExist() {
         //given
         final User user = new User("1234", "test@example.com", "somename", false, Set.of(), Set.of());
-        when(userRepository.findUserByEmail(user.getEmail())).thenReturn(Optional.of(user));
         when(boardCardsRepository.findById(any())).thenReturn(Optional.empty());
 
         //when & then
         final NotFoundException exception = assertThrows(
-                NotFoundException.class, () -> boardCardService.addCardAction(1, user.getEmail(), null));
+                NotFoundException.class, () -> boardCardService.addCardAction(1, TestUtils.buildPrincipal(user), null));
         assertEquals("Card not found", exception.getMessage());
     }
 
@@ -623,13 +732,12 @@ class BoardCardServiceTest {
                 .cardId(1)
                 .text("test")
                 .build();
-        when(userRepository.findUserByEmail(user.getEmail())).thenReturn(Optional.of(user));
         when(boardRepository.findById(card.getBoard().getId())).thenReturn(Optional.of(board));
         when(boardCardsRepository.findById(card.getId())).thenReturn(Optional.of(card));
 
         //when
         final BoardCardActionDto responseDto = boardCardService
-                .addCardAction(1, "test@example.com", new BoardCardActionRequestDto("test"));
+                .addCardAction(1, TestUtils.buildPrincipal(user), new BoardCardActionRequestDto("test"));
 
         //then
         verify(boardCardsActionsRepository).save(any(BoardCardAction.class));
@@ -643,14 +751,13 @@ class BoardCardServiceTest {
         final User user = new User("1234", "test@example.com", "somename", false, Set.of(), Set.of());
         final Board board = buildBoard(1, EnumStateDto.VOTING, 4, user, Set.of(user), new HashSet<>());
         final BoardCard card = buildBoardCard(1, board, BoardCardsColumn.FAILURES, user, List.of());
-        when(userRepository.findUserByEmail(user.getEmail())).thenReturn(Optional.of(user));
         when(boardRepository.findById(card.getBoard().getId())).thenReturn(Optional.of(board));
         when(boardCardsRepository.findById(card.getId())).thenReturn(Optional.of(card));
 
         //when & then
         final BadRequestException exception = assertThrows(
                 BadRequestException.class, () -> boardCardService.addCardAction
-                        (1, user.getEmail(), new BoardCardActionRequestDto("test")));
+                        (1, TestUtils.buildPrincipal(user), new BoardCardActionRequestDto("test")));
         assertEquals("State is not actions", exception.getMessage());
     }
 
@@ -667,11 +774,10 @@ class BoardCardServiceTest {
         final BoardCardAction action = new BoardCardAction(actionId, boardCard, "sometext");
 
         // when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsActionsRepository.findById(actionId)).thenReturn(Optional.of(action));
 
         // then
-        boardCardService.removeAction(actionId, email);
+        boardCardService.removeAction(actionId, TestUtils.buildPrincipal(user));
 
         final ArgumentCaptor<Integer> actionIdCaptor = ArgumentCaptor.forClass(Integer.class);
         verify(boardCardsActionsRepository).deleteById(actionIdCaptor.capture());
@@ -691,12 +797,11 @@ class BoardCardServiceTest {
         final String expectedMessage = "Wrong board's state";
 
         // when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsActionsRepository.findById(actionId)).thenReturn(Optional.of(action));
 
         // then
         final BadRequestException e = assertThrows(BadRequestException.class,
-                () -> boardCardService.removeAction(actionId, email));
+                () -> boardCardService.removeAction(actionId, TestUtils.buildPrincipal(user)));
         assertEquals(expectedMessage, e.getMessage());
     }
 
@@ -713,12 +818,11 @@ class BoardCardServiceTest {
         final String expectedMessage = "You are not owner";
 
         // when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardCardsActionsRepository.findById(actionId)).thenReturn(Optional.of(action));
 
         // then
         final BadRequestException e = assertThrows(BadRequestException.class,
-                () -> boardCardService.removeAction(actionId, email));
+                () -> boardCardService.removeAction(actionId, TestUtils.buildPrincipal(user)));
         assertEquals(expectedMessage, e.getMessage());
     }
 
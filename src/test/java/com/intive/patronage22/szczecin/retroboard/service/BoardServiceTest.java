@@ -1,11 +1,19 @@
 package com.intive.patronage22.szczecin.retroboard.service;
 
+import com.intive.patronage22.szczecin.retroboard.cache.BoardSnapshot;
+import com.intive.patronage22.szczecin.retroboard.cache.BoardSnapshotCache;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardDto;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardVotesProjection;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardCardsColumn;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardDataDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardDetailsDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardDto;
 import com.intive.patronage22.szczecin.retroboard.dto.BoardPatchDto;
 import com.intive.patronage22.szczecin.retroboard.dto.EnumStateDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
+import com.intive.patronage22.szczecin.retroboard.event.BoardChangedEvent;
+import com.intive.patronage22.szczecin.retroboard.event.BoardEventType;
 import com.intive.patronage22.szczecin.retroboard.exception.BadRequestException;
 import com.intive.patronage22.szczecin.retroboard.exception.NotAcceptableException;
 import com.intive.patronage22.szczecin.retroboard.exception.NotFoundException;
@@ -30,12 +38,16 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
@@ -45,15 +57,21 @@ import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@SpringBootTest(classes = BoardService.class)
+@SpringBootTest(classes = {BoardService.class, BoardAccessService.class})
+@RecordApplicationEvents
 class BoardServiceTest {
 
     @Autowired
     private BoardService boardService;
 
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
     @MockBean
     private UserRepository userRepository;
 
@@ -67,98 +85,106 @@ class BoardServiceTest {
     BoardCardsRepository boardCardsRepository;
 
     @MockBean
-    UserService userService;
+    BoardCardsVotesRepository boardCardsVotesRepository;
 
     @MockBean
-    BoardCardsVotesRepository boardCardsVotesRepository;
+    BoardSnapshotCache boardSnapshotCache;
+
+    @MockBean
+    UserService userService;
+
 
     @Test
-    void getUserBoardsShouldReturnSortedListByIdWhenUserExists() {
+    void getUserBoardsShouldReturnFirstPageWhenBeforeIsNotGiven() {
         //given
         final String uid = "1234";
         final String email = "John@test.pl";
         final User user = new User(uid, email, "john14", false, Set.of(), Set.of());
-        final var board = TestUtils.buildBoard(10, EnumStateDto.CREATED, user, Set.of(), 0);
-        final var board1 = TestUtils.buildBoard(20, EnumStateDto.CREATED, user, Set.of(), 0);
-        user.setUserBoards(Set.of(board, board1));
+        final List<BoardDto> page = List.of(new BoardDto(20, EnumStateDto.CREATED, "board1", 0),
+                new BoardDto(10, EnumStateDto.CREATED, "board2", 0));
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        final List<BoardDto> boards = boardService.getUserBoards(email);
+        when(userRepository.getById(uid)).thenReturn(user);
+        when(boardRepository.findPageByCreatorOrAssignedUser(user, Integer.MAX_VALUE, PageRequest.of(0, 50)))
+                .thenReturn(page);
+        final List<BoardDto> boards = boardService.getUserBoards(TestUtils.buildPrincipal(user), null, 50);
 
         //then
-        assertEquals(boards.get(0).getId(), board1.getId());
-        assertEquals(boards.get(0).getName(), board1.getName());
-        assertEquals(boards.get(0).getState(), board1.getState());
-
-        assertEquals(boards.get(1).getId(), board.getId());
-        assertEquals(boards.get(1).getName(), board.getName());
-        assertEquals(boards.get(1).getState(), board.getState());
+        assertEquals(page, boards);
     }
 
     @Test
-    void getUserBoardsShouldThrowBadRequestWhenEmailIsBlank() {
-        //given
-        final String email = "";
+    void createBoardShouldReturnBoardDtoWhenUserExistsAndBoardNameIsValid() {
+        // given
+        final String uid = "uid101";
+        final String email = "Josef@test.pl";
+        final String boardName = "My first board.";
 
-        //then
-        assertThrows(BadRequestException.class, () -> boardService.getUserBoards(email));
+        final User user = new User(uid, email, "josef14", false, Set.of(), Set.of());
+
+        final Board board = TestUtils.buildBoard(10, EnumStateDto.CREATED, user, Set.of(), 5);
+
+        // when
+        when(boardRepository.save(any(Board.class))).thenReturn(board);
+        final BoardDto boardDtoResult = boardService.createBoard(boardName, TestUtils.buildPrincipal(user));
+
+        // then
+        assertEquals(BoardDto.fromModel(board), boardDtoResult);
+        verify(boardRepository).save(any(Board.class));
     }
 
     @Test
-    void getUserBoardsShouldThrowBadRequestWhenEmailIsNull() {
-        //given
-        final String email = null;
+    void getBoardVersionShouldThrowBadRequestWhenUserDoesNotExist() {
+        // when
+        when(boardRepository.findBoardVersionAccess(1, "123")).thenReturn(Optional.empty());
 
-        //then
-        assertThrows(BadRequestException.class, () -> boardService.getUserBoards(email));
+        // then
+        assertThrows(BadRequestException.class,
+                () -> boardService.getBoardVersion(1, new UserPrincipal("123", "testemail@example.com", false)));
     }
 
     @Test
-    void getUserBoardsShouldThrowBadRequestWhenUserDoesNotExist() {
-        //given
-        final String email = "some@test.com";
+    void getBoardVersionShouldThrowNotFoundWhenBoardDoesNotExist() {
+        // given
+        final User user = new User("123", "testemail@example.com", "test", false, Set.of(), Set.of());
 
-        //when
-        when(userRepository.findUserByEmail(email)).thenThrow(BadRequestException.class);
+        // when
+        when(boardRepository.findBoardVersionAccess(1, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardVersionAccessProjection(user, null, 0L)));
 
-        //then
-        assertThrows(BadRequestException.class, () -> boardService.getUserBoards(email));
+        // then
+        assertThrows(NotFoundException.class, () -> boardService.getBoardVersion(1, TestUtils.buildPrincipal(user)));
     }
 
     @Test
-    void createBoardShouldReturnBoardDtoWhenUserExistsAndBoardNameIsValid() {
+    void getBoardVersionShouldThrowBadRequestWhenUserHasNoAccessToBoard() {
         // given
-        final String uid = "uid101";
-        final String email = "Josef@test.pl";
-        final String boardName = "My first board.";
-
-        final User user = new User(uid, email, "josef14", false, Set.of(), Set.of());
-
-        final Board board = TestUtils.buildBoard(10, EnumStateDto.CREATED, user, Set.of(), 5);
+        final User user = new User("123", "testemail@example.com", "test", false, Set.of(), Set.of());
+        final User creator = new User("1234", "creator@example.com", "creator", false, Set.of(), Set.of());
+        final Board board = TestUtils.buildBoard(1, EnumStateDto.CREATED, creator, Set.of(), 5);
 
         // when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.save(any(Board.class))).thenReturn(board);
-        final BoardDto boardDtoResult = boardService.createBoard(boardName, email);
+        when(boardRepository.findBoardVersionAccess(1, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardVersionAccessProjection(user, board, 7L)));
 
         // then
-        assertEquals(BoardDto.fromModel(board), boardDtoResult);
-        verify(userRepository).findUserByEmail(email);
-        verify(boardRepository).save(any(Board.class));
+        assertThrows(BadRequestException.class, () -> boardService.getBoardVersion(1, TestUtils.buildPrincipal(user)));
     }
 
     @Test
-    void createBoardShouldReturnBadRequestWhenUserDoesNotExist() {
+    void getBoardVersionShouldReturnVersionWhenUserIsBoardMember() {
         // given
-        final String email = "some@test.com";
-        final String boardName = "My first board.";
+        final User user = new User("123", "testemail@example.com", "test", false, Set.of(), Set.of());
+        final User creator = new User("1234", "creator@example.com", "creator", false, Set.of(), Set.of());
+        final Board board = TestUtils.buildBoard(1, EnumStateDto.CREATED, creator, Set.of(user), 5);
 
         // when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.empty());
+        when(boardRepository.findBoardVersionAccess(1, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardVersionAccessProjection(user, board, 7L)));
 
         // then
-        assertThrows(BadRequestException.class, () -> boardService.createBoard(boardName, email));
+        assertEquals(7L, boardService.getBoardVersion(1, TestUtils.buildPrincipal(user)));
+        verify(boardRepository, never()).findBoardAccess(anyInt(), any());
     }
 
     @Test
@@ -169,10 +195,11 @@ class BoardServiceTest {
         final String email = "testemail@example.com";
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.empty());
+        when(boardRepository.findBoardAccess(boardId, "123")).thenReturn(Optional.empty());
 
         //then
-        assertThrows(BadRequestException.class, () -> boardService.getBoardDataById(boardId, email));
+        assertThrows(BadRequestException.class,
+                () -> boardService.getBoardDataById(boardId, new UserPrincipal("123", email, false), 0L));
     }
 
     @Test
@@ -185,11 +212,12 @@ class BoardServiceTest {
         final User user = new User("123", email, displayName, false, Set.of(), Set.of());
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.findById(boardId)).thenReturn(Optional.empty());
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, null)));
 
         //then
-        assertThrows(NotFoundException.class, () -> boardService.getBoardDataById(boardId, email));
+        assertThrows(NotFoundException.class,
+                () -> boardService.getBoardDataById(boardId, TestUtils.buildPrincipal(user), 0L));
     }
 
     @Test
@@ -201,15 +229,15 @@ class BoardServiceTest {
         final String displayName = "test12";
         final User user = new User("123", email, displayName, false, Set.of(), Set.of());
         final User assignUser = new User("1234", "assignUser@test.pl", "test1", false, Set.of(), Set.of());
-        final Board board = TestUtils.buildBoard(boardId, EnumStateDto.CREATED, user, Set.of(assignUser), 5);
+        final Board board = TestUtils.buildBoard(boardId, EnumStateDto.CREATED, assignUser, Set.of(), 5);
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
-        when(boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)).thenReturn(Optional.empty());
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
 
         //then
-        assertThrows(BadRequestException.class, () -> boardService.getBoardDataById(boardId, email));
+        assertThrows(BadRequestException.class,
+                () -> boardService.getBoardDataById(boardId, TestUtils.buildPrincipal(user), 0L));
     }
 
     @Test
@@ -229,11 +257,10 @@ class BoardServiceTest {
         boardCard.setBoardCardActions(List.of(boardCardAction));
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
-        when(boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)).thenReturn(Optional.of(board));
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
 
-        final BoardDataDto boardDataDto = boardService.getBoardDataById(boardId, email);
+        final BoardDataDto boardDataDto = boardService.getBoardDataById(boardId, TestUtils.buildPrincipal(user), 0L);
 
         //then
         assertEquals(board.getId(), boardDataDto.getBoard().getId());
@@ -258,10 +285,11 @@ class BoardServiceTest {
         final String email = "testemail@example.com";
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.empty());
+        when(boardRepository.findBoardAccess(boardId, "123")).thenReturn(Optional.empty());
 
         //then
-        assertThrows(BadRequestException.class, () -> boardService.getBoardDetailsById(boardId, email));
+        assertThrows(BadRequestException.class,
+                () -> boardService.getBoardDetailsById(boardId, new UserPrincipal("123", email, false), 0L));
     }
 
     @Test
@@ -274,11 +302,12 @@ class BoardServiceTest {
         final User user = new User("123", email, displayName, false, Set.of(), Set.of());
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.findById(boardId)).thenReturn(Optional.empty());
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, null)));
 
         //then
-        assertThrows(NotFoundException.class, () -> boardService.getBoardDetailsById(boardId, email));
+        assertThrows(NotFoundException.class,
+                () -> boardService.getBoardDetailsById(boardId, TestUtils.buildPrincipal(user), 0L));
     }
 
     @Test
@@ -290,15 +319,15 @@ class BoardServiceTest {
         final String displayName = "test12";
         final User user = new User("123", email, displayName, false, Set.of(), Set.of());
         final User assignUser = new User("1234", "assignUser@test.pl", "test1", false, Set.of(), Set.of());
-        final Board board = TestUtils.buildBoard(boardId, EnumStateDto.CREATED, user, Set.of(assignUser), 5);
+        final Board board = TestUtils.buildBoard(boardId, EnumStateDto.CREATED, assignUser, Set.of(), 5);
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
-        when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
-        when(boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)).thenReturn(Optional.empty());
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
 
         //then
-        assertThrows(BadRequestException.class, () -> boardService.getBoardDetailsById(boardId, email));
+        assertThrows(BadRequestException.class,
+                () -> boardService.getBoardDetailsById(boardId, TestUtils.buildPrincipal(user), 0L));
     }
 
     @Test
@@ -336,17 +365,18 @@ class BoardServiceTest {
                         successBoardCard, assignedUser, numberOfUserVotes);
 
         //when
-        when(userRepository.findUserByEmail(userEmail)).thenReturn(Optional.of(user));
-        when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
-        when(boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)).thenReturn(Optional.of(board));
-        when(boardCardsRepository.findAllByBoardIdOrderByIdAsc(boardId)).thenReturn(
-                List.of(successBoardCard, failureBoardCard, kudosBoardCard));
-        when(boardCardsVotesRepository.getVotesByBoardAndCard(board, successBoardCard)).thenReturn(
-                Optional.of(successBoardCardVotes.getVotes() + assignedUserSuccessCardVotes.getVotes()));
-        when(boardCardsVotesRepository.getVotesByBoardAndCardAndUser(board, successBoardCard, user)).thenReturn(
-                Optional.of(successBoardCardVotes.getVotes()));
-
-        final List<BoardDetailsDto> boardDetailsDto = boardService.getBoardDetailsById(boardId, userEmail);
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+        when(boardCardsRepository.findAllWithVotesByBoard(board)).thenReturn(List.of(
+                TestUtils.buildBoardCardProjection(successBoardCard, successAction.getText(),
+                        successBoardCardVotes.getVotes() + assignedUserSuccessCardVotes.getVotes()),
+                TestUtils.buildBoardCardProjection(failureBoardCard, failureAction.getText(), 0),
+                TestUtils.buildBoardCardProjection(kudosBoardCard, kudosAction.getText(), 0)));
+        when(boardCardsVotesRepository.findAllByBoardAndVoter(boardId, user.getUid())).thenReturn(List.of(
+                new BoardCardVotesProjection(successBoardCard.getId(), successBoardCardVotes.getVotes())));
+
+        final List<BoardDetailsDto> boardDetailsDto =
+                boardService.getBoardDetailsById(boardId, TestUtils.buildPrincipal(user), 0L);
 
         //then
         assertEquals(BoardCardsColumn.SUCCESS.getColumnId(), boardDetailsDto.get(0).getId());
@@ -415,17 +445,19 @@ class BoardServiceTest {
                         user, numberOfUserVotes);
 
         //when
-        when(userRepository.findUserByEmail(userEmail)).thenReturn(Optional.of(user));
-        when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
-        when(boardRepository.findBoardByIdAndCreatorOrAssignedUser(boardId, user)).thenReturn(Optional.of(board));
-        when(boardCardsRepository.findAllByBoardIdOrderByIdAsc(boardId)).thenReturn(
-                List.of(successBoardCard, assignedUserCard, failureBoardCard, kudosBoardCard));
-        when(boardCardsVotesRepository.getVotesByBoardAndCard(board, failureBoardCard)).thenReturn(
-                Optional.of(failureBoardCardVotes.getVotes()));
-        when(boardCardsVotesRepository.getVotesByBoardAndCardAndUser(board, failureBoardCard, user)).thenReturn(
-                Optional.of(failureBoardCardVotes.getVotes()));
-
-        final List<BoardDetailsDto> boardDetailsDto = boardService.getBoardDetailsById(boardId, userEmail);
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+        when(boardCardsRepository.findAllWithVotesByBoard(board)).thenReturn(List.of(
+                TestUtils.buildBoardCardProjection(successBoardCard, successAction.getText(), 0),
+                TestUtils.buildBoardCardProjection(assignedUserCard, null, 0),
+                TestUtils.buildBoardCardProjection(failureBoardCard, failureAction.getText(),
+                        failureBoardCardVotes.getVotes()),
+                TestUtils.buildBoardCardProjection(kudosBoardCard, kudosAction.getText(), 0)));
+        when(boardCardsVotesRepository.findAllByBoardAndVoter(boardId, user.getUid())).thenReturn(List.of(
+                new BoardCardVotesProjection(failureBoardCard.getId(), failureBoardCardVotes.getVotes())));
+
+        final List<BoardDetailsDto> boardDetailsDto =
+                boardService.getBoardDetailsById(boardId, TestUtils.buildPrincipal(user), 0L);
 
         //then
         assertEquals(BoardCardsColumn.SUCCESS.getColumnId(), boardDetailsDto.get(0).getId());
@@ -468,6 +500,99 @@ class BoardServiceTest {
         assertEquals(0, boardDetailsDto.get(2).getBoardCards().get(0).getUserVotes());
     }
 
+    @Test
+    @DisplayName("getBoardDetailsById should merge action rows of the same card into one card")
+    void getBoardDetailsByIdShouldMergeActionRowsIntoOneCard() {
+        //given
+        final int boardId = 1;
+        final String userEmail = "testemail@example.com";
+        final User user = new User("123", userEmail, "testDisplayName", false, Set.of(), Set.of());
+        final Board board = TestUtils.buildBoard(boardId, EnumStateDto.ACTIONS, user, Set.of(), 5);
+        final BoardCard failureBoardCard =
+                new BoardCard(4, board, "failure", BoardCardsColumn.FAILURES, user, List.of());
+
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+        when(boardCardsRepository.findAllWithVotesByBoard(board)).thenReturn(List.of(
+                TestUtils.buildBoardCardProjection(failureBoardCard, "first action", 3),
+                TestUtils.buildBoardCardProjection(failureBoardCard, "second action", 3)));
+        when(boardCardsVotesRepository.findAllByBoardAndVoter(boardId, user.getUid()))
+                .thenReturn(List.of(new BoardCardVotesProjection(failureBoardCard.getId(), 1)));
+
+        final List<BoardDetailsDto> boardDetailsDto =
+                boardService.getBoardDetailsById(boardId, TestUtils.buildPrincipal(user), 0L);
+
+        //then
+        assertTrue(boardDetailsDto.get(0).getBoardCards().isEmpty());
+        assertThat(boardDetailsDto.get(1).getBoardCards(), hasSize(1));
+        assertEquals(List.of("first action", "second action"),
+                boardDetailsDto.get(1).getBoardCards().get(0).getActionTexts());
+        assertEquals(3, boardDetailsDto.get(1).getBoardCards().get(0).getVotes());
+        assertEquals(1, boardDetailsDto.get(1).getBoardCards().get(0).getUserVotes());
+        assertTrue(boardDetailsDto.get(2).getBoardCards().isEmpty());
+    }
+
+    @Test
+    @DisplayName("getBoardDetailsById should serve cards from snapshot and merge user votes")
+    void getBoardDetailsByIdShouldServeCardsFromSnapshotWhenBoardVersionIsCached() {
+        //given
+        final int boardId = 1;
+        final long version = 7L;
+        final String userEmail = "testemail@example.com";
+        final User user = new User("123", userEmail, "testDisplayName", false, Set.of(), Set.of());
+        final User creator = new User("1234", "creator@example.com", "creator", false, Set.of(), Set.of());
+        final BoardCardDto boardCardDto =
+                new BoardCardDto(3, "success", BoardCardsColumn.SUCCESS.getColumnId(), creator.getEmail(),
+                        List.of(), 4, 0);
+        final Board board = TestUtils.buildBoard(boardId, EnumStateDto.VOTING, creator, Set.of(user), 5);
+        final BoardSnapshot snapshot = new BoardSnapshot(version,
+                new BoardDto(boardId, EnumStateDto.VOTING, "My first board.", 5),
+                List.of(UserDto.createFrom(user)),
+                List.of(BoardDetailsDto.createFrom(BoardCardsColumn.SUCCESS.getColumnId(), List.of(boardCardDto)),
+                        BoardDetailsDto.createFrom(BoardCardsColumn.FAILURES.getColumnId(), List.of()),
+                        BoardDetailsDto.createFrom(BoardCardsColumn.KUDOS.getColumnId(), List.of())));
+
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+        when(boardSnapshotCache.get(boardId, version)).thenReturn(Optional.of(snapshot));
+        when(boardCardsVotesRepository.findAllByBoardAndVoter(boardId, user.getUid()))
+                .thenReturn(List.of(new BoardCardVotesProjection(boardCardDto.getId(), 2)));
+
+        final List<BoardDetailsDto> boardDetailsDto =
+                boardService.getBoardDetailsById(boardId, TestUtils.buildPrincipal(user), version);
+
+        //then
+        assertEquals(4, boardDetailsDto.get(0).getBoardCards().get(0).getVotes());
+        assertEquals(2, boardDetailsDto.get(0).getBoardCards().get(0).getUserVotes());
+        assertEquals(0, snapshot.getColumns().get(0).getBoardCards().get(0).getUserVotes());
+        verify(boardRepository, never()).findById(anyInt());
+        verify(boardCardsRepository, never()).findAllWithVotesByBoard(any());
+    }
+
+    @Test
+    @DisplayName("getBoardDataById should put loaded snapshot into cache")
+    void getBoardDataByIdShouldPutSnapshotIntoCacheWhenBoardVersionIsNotCached() {
+        //given
+        final int boardId = 1;
+        final String email = "testemail@example.com";
+        final User user = new User("123", email, "testDisplayName", false, Set.of(), Set.of());
+        final Board board = TestUtils.buildBoard(boardId, EnumStateDto.CREATED, user, Set.of(), 5);
+        final ArgumentCaptor<BoardSnapshot> snapshotCaptor = ArgumentCaptor.forClass(BoardSnapshot.class);
+
+        //when
+        when(boardRepository.findBoardAccess(boardId, user.getUid()))
+                .thenReturn(Optional.of(TestUtils.buildBoardAccessProjection(user, board)));
+
+        boardService.getBoardDataById(boardId, TestUtils.buildPrincipal(user), 3L);
+
+        //then
+        verify(boardSnapshotCache).put(Mockito.eq(boardId), snapshotCaptor.capture());
+        assertEquals(3L, snapshotCaptor.getValue().getVersion());
+        assertEquals(BoardDto.fromModel(board), snapshotCaptor.getValue().getBoard());
+    }
+
     @Test
     void deleteBoardShouldReturnNotFoundWhenBoardNotExist() {
 
@@ -480,7 +605,7 @@ class BoardServiceTest {
 
         //then
         assertThrows(NotFoundException.class,
-                () -> boardService.delete(boardId, email));
+                () -> boardService.delete(boardId, new UserPrincipal("1234", email, false)));
     }
 
     @Test
@@ -499,11 +624,10 @@ class BoardServiceTest {
 
         //when
         when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(board.getCreator()));
 
         //then
         assertThrows(BadRequestException.class,
-                () -> boardService.delete(boardId, email));
+                () -> boardService.delete(boardId, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -527,7 +651,25 @@ class BoardServiceTest {
         //then
         assertEquals(emailOwner, board.getCreator().getEmail());
         assertThrows(BadRequestException.class,
-                () -> boardService.delete(boardId, email));
+                () -> boardService.delete(boardId, TestUtils.buildPrincipal(user)));
+    }
+
+    @Test
+    void deleteBoardShouldDeleteBoardWithOneStatementWhenUserIsOwner() {
+        // given
+        final var user = new User("uid101", "username@test.pl", "displayName", false, Set.of(), Set.of());
+        final var board = TestUtils.buildBoard(10, EnumStateDto.VOTING, user, Set.of(), 3);
+        when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
+
+        // when
+        boardService.delete(board.getId(), TestUtils.buildPrincipal(user));
+
+        // then
+        verify(boardRepository).deleteByIdIn(List.of(board.getId()));
+        verify(boardRepository).deleteVersionsByBoardIdIn(List.of(board.getId()));
+        verify(boardRepository, never()).deleteById(anyInt());
+        assertEquals(List.of(new BoardChangedEvent(board.getId(), BoardEventType.BOARD_DELETED, null)),
+                applicationEvents.stream(BoardChangedEvent.class).collect(Collectors.toList()));
     }
 
     @Test
@@ -540,7 +682,7 @@ class BoardServiceTest {
 
         // when & then
         assertThrows(NotFoundException.class,
-                () -> boardService.patchBoard(id, boardPatchDto, email));
+                () -> boardService.patchBoard(id, boardPatchDto, new UserPrincipal("uid101", email, false)));
     }
 
     @Test
@@ -556,7 +698,8 @@ class BoardServiceTest {
 
         // when & then
         assertThrows(BadRequestException.class,
-                () -> boardService.patchBoard(board.getId(), boardPatchDto, "some@test.pl"));
+                () -> boardService.patchBoard(board.getId(), boardPatchDto,
+                        new UserPrincipal("uid102", "some@test.pl", false)));
     }
 
     @Test
@@ -574,7 +717,8 @@ class BoardServiceTest {
         when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
 
         // then
-        final var boardDtoResult = boardService.patchBoard(board.getId(), boardPatchDto, email);
+        final var boardDtoResult =
+                boardService.patchBoard(board.getId(), boardPatchDto, TestUtils.buildPrincipal(userOwner));
 
         assertEquals(BoardDto.fromModel(board), boardDtoResult);
         verify(boardRepository).findById(board.getId());
@@ -595,28 +739,14 @@ class BoardServiceTest {
         when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
 
         // then
-        final var boardDtoResult = boardService.patchBoard(board.getId(), boardPatchDto, email);
+        final var boardDtoResult =
+                boardService.patchBoard(board.getId(), boardPatchDto, TestUtils.buildPrincipal(user));
 
         assertEquals(BoardDto.fromModel(board), boardDtoResult);
         verify(boardRepository).findById(board.getId());
         verify(boardRepository).save(any(Board.class));
     }
 
-    @Test
-    @DisplayName("assignUsersToBoard should throw 404 when user does not exist")
-    void assignUsersToBoardShouldThrowNotFoundWhenUserDoesNotExist() {
-        //given
-        final int boardId = 1;
-        final List<String> usersEmails = List.of();
-        final String email = "testemail@example.com";
-
-        //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.empty());
-
-        //then
-        assertThrows(NotFoundException.class, () -> boardService.assignUsersToBoard(boardId, usersEmails, email));
-    }
-
     @Test
     @DisplayName("assignUsersToBoard should throw 404 when user does not exist")
     void assignUsersToBoardShouldThrowNotFoundWhenBoardDoesNotExist() {
@@ -627,11 +757,11 @@ class BoardServiceTest {
         final User user = new User("123", email, "test name", false, Set.of(), Set.of());
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardRepository.findById(boardId)).thenReturn(Optional.empty());
 
         //then
-        assertThrows(NotFoundException.class, () -> boardService.assignUsersToBoard(boardId, usersEmails, email));
+        assertThrows(NotFoundException.class,
+                () -> boardService.assignUsersToBoard(boardId, usersEmails, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -645,12 +775,12 @@ class BoardServiceTest {
         final User boardOwner = new User("1234", "testemail1@example.com", "test name", false, Set.of(), Set.of());
 
         //when
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardRepository.findById(boardId))
                 .thenReturn(Optional.of(TestUtils.buildBoard(10, EnumStateDto.CREATED, boardOwner, Set.of(), 3)));
 
         //then
-        assertThrows(BadRequestException.class, () -> boardService.assignUsersToBoard(boardId, usersEmails, email));
+        assertThrows(BadRequestException.class,
+                () -> boardService.assignUsersToBoard(boardId, usersEmails, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -670,10 +800,10 @@ class BoardServiceTest {
         final Board board = TestUtils.buildBoard(10, EnumStateDto.CREATED, owner, boardUsers, 3);
 
         //when
-        when(userRepository.findUserByEmail(ownerEmail)).thenReturn(Optional.of(owner));
         when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
         when(userRepository.findAllNotDeactivatedByEmailIn(usersEmails)).thenReturn(existingUsers);
-        final JSONArray failedEmails = new JSONArray(boardService.assignUsersToBoard(boardId, usersEmails, ownerEmail));
+        final JSONArray failedEmails = new JSONArray(
+                boardService.assignUsersToBoard(boardId, usersEmails, TestUtils.buildPrincipal(owner)));
 
         //then
         final ArgumentCaptor<Board> usersCaptor = ArgumentCaptor.forClass(Board.class);
@@ -698,12 +828,11 @@ class BoardServiceTest {
         final var user = new User(uid, email, "john14", false, Set.of(), Set.of());
         final var board = TestUtils.buildBoard(10, EnumStateDto.VOTING, user, Set.of(), 3);
         final var boardPatchDto = new BoardPatchDto("testboard", 1500);
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
 
         // when & then
         assertThrows(BadRequestException.class,
-                () -> boardService.patchBoard(board.getId(), boardPatchDto, email));
+                () -> boardService.patchBoard(board.getId(), boardPatchDto, TestUtils.buildPrincipal(user)));
     }
 
     @Test
@@ -714,11 +843,11 @@ class BoardServiceTest {
         final var user = new User(uid, email, "john14", false, Set.of(), Set.of());
         final var board = TestUtils.buildBoard(10, EnumStateDto.CREATED, user, Set.of(), 3);
         final var boardPatchDto = new BoardPatchDto("testboard", 1500);
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
 
         // when & then
-        final var boardDtoResult = boardService.patchBoard(board.getId(), boardPatchDto, email);
+        final var boardDtoResult =
+                boardService.patchBoard(board.getId(), boardPatchDto, TestUtils.buildPrincipal(user));
 
         assertEquals(BoardDto.fromModel(board), boardDtoResult);
         verify(boardRepository).findById(board.getId());
@@ -726,25 +855,19 @@ class BoardServiceTest {
     }
 
     @Test
-    void getUserBoardsShouldReturnTwoBoardsIfUserCreatedOneAndIsAssignedToTheOtherOne() {
+    void getUserBoardsShouldReturnBoardsBeforeGivenBoardId() {
         // given
-        final var uid1 = "uid101";
-        final var email1 = "username@test.pl";
-        final var uid2 = "uid102";
-        final var email2 = "username2@test.pl";
-        final var user1 = new User(uid1, email1, "displayName1", false, Set.of(), Set.of());
-        final var user2 = new User(uid2, email2, "displayName2", false, Set.of(), Set.of());
-        final var boardCreated = TestUtils.buildBoard(10, EnumStateDto.CREATED, user1, Set.of(), 3);
-        final var boardAssigned = TestUtils.buildBoard(11, EnumStateDto.CREATED, user2, Collections.singleton(user1), 3);
-        when(userRepository.findUserByEmail(email1)).thenReturn(Optional.of(user1));
-        user1.setUserBoards(Collections.singleton(boardAssigned));
-        user1.setCreatedBoards(Collections.singleton(boardCreated));
+        final var email = "username@test.pl";
+        final var user = new User("uid101", email, "displayName1", false, Set.of(), Set.of());
+        final List<BoardDto> page = List.of(new BoardDto(9, EnumStateDto.VOTING, "board", 3));
+        when(userRepository.getById(user.getUid())).thenReturn(user);
+        when(boardRepository.findPageByCreatorOrAssignedUser(user, 10, PageRequest.of(0, 1))).thenReturn(page);
 
         //when
-        final List<BoardDto> boards = boardService.getUserBoards(email1);
+        final List<BoardDto> boards = boardService.getUserBoards(TestUtils.buildPrincipal(user), 10, 1);
 
         //then
-        assertThat(boards, hasSize(2));
+        assertEquals(page, boards);
     }
 
     @Test
@@ -763,8 +886,8 @@ class BoardServiceTest {
         when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
 
         // then
-        final NotFoundException exception = assertThrows(
-                NotFoundException.class, () -> boardService.removeUserAssignedToTheBoard(uid, boardId, email));
+        final NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> boardService.removeUserAssignedToTheBoard(uid, boardId, TestUtils.buildPrincipal(boardOwner)));
 
         assertEquals("User is not assigned to the Board.", exception.getMessage());
     }
@@ -785,8 +908,8 @@ class BoardServiceTest {
         when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
 
         // then
-        final NotFoundException exception = assertThrows(
-                NotFoundException.class, () -> boardService.removeUserAssignedToTheBoard(uid, boardId, email));
+        final NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> boardService.removeUserAssignedToTheBoard(uid, boardId, TestUtils.buildPrincipal(notAssignedUser)));
 
         assertEquals("User is not assigned to the Board.", exception.getMessage());
     }
@@ -803,8 +926,8 @@ class BoardServiceTest {
         when(userRepository.findById(uid)).thenReturn(Optional.empty());
 
         //then
-        final NotFoundException exception = assertThrows(
-                NotFoundException.class, () -> boardService.removeUserAssignedToTheBoard(uid, boardId, email));
+        final NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> boardService.removeUserAssignedToTheBoard(uid, boardId, new UserPrincipal("789", email, false)));
 
         assertEquals("User is not found", exception.getMessage());
     }
@@ -826,8 +949,8 @@ class BoardServiceTest {
         when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
 
         //then
-        final BadRequestException exception = assertThrows(
-                BadRequestException.class, () -> boardService.removeUserAssignedToTheBoard(uid, boardId, email));
+        final BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> boardService.removeUserAssignedToTheBoard(uid, boardId, new UserPrincipal("789", email, false)));
 
         assertEquals("Currently logged user is not board owner or user tries to delete other user",
                 exception.getMessage());
@@ -849,8 +972,8 @@ class BoardServiceTest {
         when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
 
         //then
-        final BadRequestException exception = assertThrows(
-                BadRequestException.class, () -> boardService.removeUserAssignedToTheBoard(uid, boardId, email));
+        final BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> boardService.removeUserAssignedToTheBoard(uid, boardId, TestUtils.buildPrincipal(boardOwner)));
 
         assertEquals("User is the board owner.", exception.getMessage());
     }
@@ -873,7 +996,7 @@ class BoardServiceTest {
         when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
 
         //then
-        boardService.removeUserAssignedToTheBoard(uid, boardId, email);
+        boardService.removeUserAssignedToTheBoard(uid, boardId, TestUtils.buildPrincipal(boardOwner));
 
         assertEquals(boardOwner, board.getCreator());
         assertFalse(board.getUsers().contains(userToRemove));
@@ -898,7 +1021,7 @@ class BoardServiceTest {
         when(boardRepository.findById(boardId)).thenReturn(Optional.of(board));
 
         //then
-        boardService.removeUserAssignedToTheBoard(uid, boardId, email);
+        boardService.removeUserAssignedToTheBoard(uid, boardId, TestUtils.buildPrincipal(currentlyLogged));
 
         assertNotEquals(currentlyLogged, board.getCreator());
         assertFalse(board.getUsers().contains(currentlyLogged));
@@ -915,15 +1038,17 @@ class BoardServiceTest {
         final var board = TestUtils.buildBoard(10, EnumStateDto.CREATED, user, Set.of(), 3);
         when(boardRepository.save(any(Board.class))).thenReturn(board);
         when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
 
         // when
-        final var boardDtoResult = boardService.setNextState(board.getId(), email);
+        final var boardDtoResult = boardService.setNextState(board.getId(), TestUtils.buildPrincipal(user));
 
         // then
         assertEquals(boardDtoResult.getBoard().getState(), EnumStateDto.VOTING);
         verify(boardRepository).findById(board.getId());
         verify(boardRepository).save(any(Board.class));
+        assertEquals(List.of(new BoardChangedEvent(board.getId(), BoardEventType.STATE_CHANGED,
+                        Map.of("state", EnumStateDto.VOTING))),
+                applicationEvents.stream(BoardChangedEvent.class).collect(Collectors.toList()));
     }
 
     @Test
@@ -936,11 +1061,10 @@ class BoardServiceTest {
         final var board = TestUtils.buildBoard(10, EnumStateDto.DONE, user, Set.of(), 3);
         when(boardRepository.save(any(Board.class))).thenReturn(board);
         when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
 
         // when
-        final NotAcceptableException exception = assertThrows(
-                NotAcceptableException.class, () -> boardService.setNextState(board.getId(), email));
+        final NotAcceptableException exception = assertThrows( NotAcceptableException.class,
+                () -> boardService.setNextState(board.getId(), TestUtils.buildPrincipal(user)));
 
         // then
         assertEquals("Already in last state", exception.getMessage());
@@ -954,12 +1078,11 @@ class BoardServiceTest {
         final var email = "username@test.pl";
         final var user = new User(uid, email, "displayName", false, Set.of(), Set.of());
         final var board_id = 1;
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
         when(boardRepository.findById(board_id)).thenReturn(Optional.empty());
 
         // when
         final NotFoundException exception = assertThrows(
-                NotFoundException.class, () -> boardService.setNextState(board_id,email));
+                NotFoundException.class, () -> boardService.setNextState(board_id, TestUtils.buildPrincipal(user)));
 
         // then
         assertEquals("Board not found", exception.getMessage());
@@ -977,11 +1100,10 @@ class BoardServiceTest {
         final var user = new User(uid2, email2, "displayName2", false, Set.of(), Set.of());
         final var board = TestUtils.buildBoard(10, EnumStateDto.CREATED, owner, Set.of(), 3);
         when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
-        when(userRepository.findUserByEmail(email2)).thenReturn(Optional.of(user));
 
         // when
-        final NotFoundException exception = assertThrows(
-                NotFoundException.class, () -> boardService.setNextState(board.getId(), email2));
+        final NotFoundException exception = assertThrows( NotFoundException.class,
+                () -> boardService.setNextState(board.getId(), TestUtils.buildPrincipal(user)));
 
         // then
         assertEquals("User is not the board owner.", exception.getMessage());
@@ -997,11 +1119,10 @@ class BoardServiceTest {
         final var board = TestUtils.buildBoard(10, EnumStateDto.CREATED, user, Set.of(), 0);
         when(boardRepository.save(any(Board.class))).thenReturn(board);
         when(boardRepository.findById(board.getId())).thenReturn(Optional.of(board));
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
 
         // when
-        final BadRequestException exception = assertThrows(
-                BadRequestException.class, () -> boardService.setNextState(board.getId(), email));
+        final BadRequestException exception = assertThrows( BadRequestException.class,
+                () -> boardService.setNextState(board.getId(), TestUtils.buildPrincipal(user)));
 
         // then
         assertEquals("Number of votes not set!", exception.getMessage());
@@ -0,0 +1,103 @@
+package com.intive.patronage22.szczecin.retroboard.service;
+
+import com.intive.patronage22.szczecin.retroboard.RetroboardApplication;
+import com.intive.patronage22.szczecin.retroboard.configuration.EmbeddedDatabase;
+import com.intive.patronage22.szczecin.retroboard.configuration.FirebaseTestConfiguration;
+import com.intive.patronage22.szczecin.retroboard.repository.ScheduledJobLockRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs two nodes against the scheduled job lock table of an embedded PostgreSQL.
+ */
+@SpringBootTest(classes = {RetroboardApplication.class, FirebaseTestConfiguration.class},
+                properties = "FIREBASE_API_KEY=test")
+class JobLeaseServiceTest {
+
+    @Autowired
+    private ScheduledJobLockRepository scheduledJobLockRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private SynchronizeWithFirebaseScheduler synchronizeWithFirebaseScheduler;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final String job = "job-" + UUID.randomUUID();
+
+    @DynamicPropertySource
+    static void properties(final DynamicPropertyRegistry registry) {
+        EmbeddedDatabase.register(registry);
+    }
+
+    @Test
+    void tryAcquireShouldGiveJobToOneNodeUntilItReleasesIt() {
+        // given
+        final JobLeaseService nodeA = node("node-a", Duration.ofMinutes(5));
+        final JobLeaseService nodeB = node("node-b", Duration.ofMinutes(5));
+
+        // when
+        final Optional<JobLease> leaseA = inTransaction(() -> nodeA.tryAcquire(job));
+        final Optional<JobLease> leaseB = inTransaction(() -> nodeB.tryAcquire(job));
+        inTransaction(() -> {
+            nodeA.release(leaseA.orElseThrow());
+            return null;
+        });
+        final Optional<JobLease> leaseAfterRelease = inTransaction(() -> nodeB.tryAcquire(job));
+
+        // then
+        assertEquals(1L, leaseA.orElseThrow().getFencingToken());
+        assertTrue(leaseB.isEmpty());
+        assertEquals(2L, leaseAfterRelease.orElseThrow().getFencingToken());
+        assertEquals(1, meterRegistry.get(JobLeaseService.METRIC_NAME)
+                .tags("job", job, "node", "node-b", "result", "skipped").counter().count());
+        assertEquals(1, meterRegistry.get(JobLeaseService.METRIC_NAME)
+                .tags("job", job, "node", "node-b", "result", "run").counter().count());
+    }
+
+    @Test
+    void renewShouldThrowWhenAnotherNodeTookTheExpiredLease() {
+        // given
+        final JobLeaseService nodeA = node("node-a", Duration.ZERO);
+        final JobLeaseService nodeB = node("node-b", Duration.ofMinutes(5));
+        final JobLease leaseA = inTransaction(() -> nodeA.tryAcquire(job)).orElseThrow();
+
+        // when
+        final JobLease leaseB = inTransaction(() -> nodeB.tryAcquire(job)).orElseThrow();
+
+        // then
+        assertTrue(leaseB.getFencingToken() > leaseA.getFencingToken());
+        assertThrows(IllegalStateException.class, () -> inTransaction(() -> {
+            nodeA.renew(leaseA);
+            return null;
+        }));
+        inTransaction(() -> {
+            nodeB.renew(leaseB);
+            return null;
+        });
+    }
+
+    private JobLeaseService node(final String name, final Duration leaseTime) {
+        return new JobLeaseService(scheduledJobLockRepository, meterRegistry, name, leaseTime);
+    }
+
+    private <T> T inTransaction(final Supplier<T> action) {
+        return transactionTemplate.execute(status -> action.get());
+    }
+}
@@ -0,0 +1,195 @@
+package com.intive.patronage22.szczecin.retroboard.service;
+
+import com.google.api.core.ApiFutures;
+import com.google.firebase.auth.AuthErrorCode;
+import com.google.firebase.auth.ExportedUserRecord;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.ListUsersPage;
+import com.intive.patronage22.szczecin.retroboard.RetroboardApplication;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseUserStatusCache;
+import com.intive.patronage22.szczecin.retroboard.cache.UserRevocationRelay;
+import com.intive.patronage22.szczecin.retroboard.configuration.EmbeddedDatabase;
+import com.intive.patronage22.szczecin.retroboard.configuration.FirebaseTestConfiguration;
+import com.intive.patronage22.szczecin.retroboard.model.User;
+import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import com.intive.patronage22.szczecin.retroboard.repository.FirebaseUserFingerprintRepository;
+import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
+import com.intive.patronage22.szczecin.retroboard.repository.UserSyncCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs whole synchronizations against an embedded PostgreSQL, with Firebase listing the given users. Every run
+ * removes the users it does not list, so the tests only assert on their own users.
+ */
+@SpringBootTest(classes = {RetroboardApplication.class, FirebaseTestConfiguration.class},
+                properties = "FIREBASE_API_KEY=test")
+class SynchronizeWithFirebaseSchedulerDatabaseTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BoardRepository boardRepository;
+
+    @Autowired
+    private FirebaseUserFingerprintRepository firebaseUserFingerprintRepository;
+
+    @Autowired
+    private UserSyncCheckpointRepository userSyncCheckpointRepository;
+
+    @Autowired
+    private FirebaseUserStatusCache firebaseUserStatusCache;
+
+    @Autowired
+    private UserRevocationRelay userRevocationRelay;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // the scheduled bean is replaced, so it cannot run on its own during the tests
+    @MockBean
+    private SynchronizeWithFirebaseScheduler scheduledSynchronization;
+
+    private final FirebaseAuth firebaseAuth = mock(FirebaseAuth.class);
+    private final String uid = UUID.randomUUID().toString();
+
+    private SynchronizeWithFirebaseScheduler synchronizeWithFirebaseScheduler;
+
+    @DynamicPropertySource
+    static void properties(final DynamicPropertyRegistry registry) {
+        EmbeddedDatabase.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        synchronizeWithFirebaseScheduler = new SynchronizeWithFirebaseScheduler(userRepository, boardRepository,
+                firebaseUserFingerprintRepository, userSyncCheckpointRepository, firebaseAuth,
+                firebaseUserStatusCache, userRevocationRelay, transactionTemplate, applicationEventPublisher,
+                jobLeaseService);
+    }
+
+    @Test
+    void synchronizeUsersShouldUpdateUserChangedSinceThePreviousRun() throws FirebaseAuthException {
+        // given
+        synchronize(firebaseUser(uid, uid + "@example.com", "before"));
+
+        // when
+        synchronize(firebaseUser(uid, uid + "@example.com", "after"));
+
+        // then
+        final User user = userRepository.findById(uid).orElseThrow();
+        assertEquals("after", user.getDisplayName());
+        assertEquals(SynchronizeWithFirebaseScheduler.fingerprint(firebaseUser(uid, uid + "@example.com", "after")),
+                firebaseUserFingerprintRepository.findById(uid).orElseThrow().getFingerprint());
+        assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                "SELECT completed FROM retro.user_sync_checkpoint WHERE id = ?", Boolean.class,
+                SynchronizeWithFirebaseScheduler.CHECKPOINT_ID));
+    }
+
+    @Test
+    void synchronizeUsersShouldKeepUserUnderNewUidWhenAccountWasRecreatedWithSameEmail()
+            throws FirebaseAuthException {
+        // given
+        final FirebaseAuthException userNotFound = userNotFound();
+        final String email = uid + "@example.com";
+        final String newUid = UUID.randomUUID().toString();
+        synchronize(firebaseUser(uid, email, "user"));
+        final Integer boardId = jdbcTemplate.queryForObject("INSERT INTO retro.board(name, state, creator_uid, "
+                + "maximum_number_of_votes) VALUES ('board', 'CREATED', ?, 10) RETURNING id", Integer.class, uid);
+        jdbcTemplate.update("INSERT INTO retro.users_boards(board_id, user_uid) VALUES (?, ?)", boardId, uid);
+
+        // when
+        when(firebaseAuth.getUser(uid)).thenThrow(userNotFound);
+        synchronize(firebaseUser(newUid, email, "user"));
+
+        // then
+        assertEquals(newUid, userRepository.findUserByEmail(email).orElseThrow().getUid());
+        assertFalse(userRepository.existsById(uid));
+        assertEquals(newUid, jdbcTemplate.queryForObject("SELECT creator_uid FROM retro.board WHERE id = ?",
+                String.class, boardId));
+        assertEquals(List.of(newUid), jdbcTemplate.queryForList(
+                "SELECT user_uid FROM retro.users_boards WHERE board_id = ?", String.class, boardId));
+    }
+
+    @Test
+    void synchronizeUsersShouldKeepBoardsWithUserWhoseEmailWasTakenByAnotherAccount() throws FirebaseAuthException {
+        // given
+        final String email = uid + "@example.com";
+        final String movedEmail = uid + "-moved@example.com";
+        final String newUid = UUID.randomUUID().toString();
+        synchronize(firebaseUser(uid, email, "user"));
+        final Integer boardId = jdbcTemplate.queryForObject("INSERT INTO retro.board(name, state, creator_uid, "
+                + "maximum_number_of_votes) VALUES ('board', 'CREATED', ?, 10) RETURNING id", Integer.class, uid);
+        final ExportedUserRecord movedUser = firebaseUser(uid, movedEmail, "user");
+        final ListUsersPage firstPage = mock(ListUsersPage.class);
+        final ListUsersPage secondPage = mock(ListUsersPage.class);
+        final List<ExportedUserRecord> firstPageUsers = List.of(firebaseUser(newUid, email, "other"));
+
+        // when
+        // the other account taking the email comes on an earlier page than the account that gave it up
+        when(firstPage.getValues()).thenReturn(firstPageUsers);
+        when(firstPage.hasNextPage()).thenReturn(true);
+        when(firstPage.getNextPageToken()).thenReturn("page2");
+        when(secondPage.getValues()).thenReturn(List.of(movedUser));
+        when(firebaseAuth.listUsers(null, SynchronizeWithFirebaseScheduler.MAX_PAGE_SIZE)).thenReturn(firstPage);
+        when(firebaseAuth.listUsersAsync("page2", SynchronizeWithFirebaseScheduler.MAX_PAGE_SIZE))
+                .thenReturn(ApiFutures.immediateFuture(secondPage));
+        when(firebaseAuth.getUser(uid)).thenReturn(movedUser);
+        synchronizeWithFirebaseScheduler.synchronizeUsers();
+
+        // then
+        assertEquals(movedEmail, userRepository.findById(uid).orElseThrow().getEmail());
+        assertEquals(email, userRepository.findById(newUid).orElseThrow().getEmail());
+        assertEquals(uid, jdbcTemplate.queryForObject("SELECT creator_uid FROM retro.board WHERE id = ?",
+                String.class, boardId));
+    }
+
+    private static FirebaseAuthException userNotFound() {
+        final FirebaseAuthException userNotFound = mock(FirebaseAuthException.class);
+        when(userNotFound.getAuthErrorCode()).thenReturn(AuthErrorCode.USER_NOT_FOUND);
+        return userNotFound;
+    }
+
+    private void synchronize(final ExportedUserRecord... firebaseUsers) throws FirebaseAuthException {
+        final ListUsersPage page = mock(ListUsersPage.class);
+        when(page.getValues()).thenReturn(List.of(firebaseUsers));
+        when(firebaseAuth.listUsers(null, SynchronizeWithFirebaseScheduler.MAX_PAGE_SIZE)).thenReturn(page);
+
+        synchronizeWithFirebaseScheduler.synchronizeUsers();
+    }
+
+    private ExportedUserRecord firebaseUser(final String uid, final String email, final String displayName) {
+        final ExportedUserRecord firebaseUser = mock(ExportedUserRecord.class);
+        when(firebaseUser.getUid()).thenReturn(uid);
+        when(firebaseUser.getEmail()).thenReturn(email);
+        when(firebaseUser.getDisplayName()).thenReturn(displayName);
+        return firebaseUser;
+    }
+}
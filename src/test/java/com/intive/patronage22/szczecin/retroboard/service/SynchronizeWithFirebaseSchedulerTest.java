@@ -1,314 +1,445 @@
 package com.intive.patronage22.szczecin.retroboard.service;
 
+import com.google.api.core.ApiFutures;
+import com.google.firebase.auth.AuthErrorCode;
 import com.google.firebase.auth.ExportedUserRecord;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.ListUsersPage;
-import com.google.firebase.auth.UserMetadata;
-import com.google.firebase.auth.UserRecord;
-import com.intive.patronage22.szczecin.retroboard.dto.EnumStateDto;
-import com.intive.patronage22.szczecin.retroboard.model.Board;
+import com.intive.patronage22.szczecin.retroboard.cache.FirebaseUserStatusCache;
+import com.intive.patronage22.szczecin.retroboard.cache.UserRevocationRelay;
+import com.intive.patronage22.szczecin.retroboard.event.BoardChangedEvent;
+import com.intive.patronage22.szczecin.retroboard.event.BoardEventType;
+import com.intive.patronage22.szczecin.retroboard.model.FirebaseUserFingerprint;
 import com.intive.patronage22.szczecin.retroboard.model.User;
+import com.intive.patronage22.szczecin.retroboard.model.UserSyncCheckpoint;
 import com.intive.patronage22.szczecin.retroboard.repository.BoardRepository;
+import com.intive.patronage22.szczecin.retroboard.repository.FirebaseUserFingerprintRepository;
 import com.intive.patronage22.szczecin.retroboard.repository.UserRepository;
+import com.intive.patronage22.szczecin.retroboard.repository.UserSyncCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.test.context.junit.jupiter.SpringExtension;
-import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(classes = {SynchronizeWithFirebaseScheduler.class})
+@RecordApplicationEvents
 class SynchronizeWithFirebaseSchedulerTest {
 
+    private static final int PAGE_SIZE = SynchronizeWithFirebaseScheduler.MAX_PAGE_SIZE;
+
     @Autowired
     private SynchronizeWithFirebaseScheduler synchronizeWithFirebaseScheduler;
 
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
     @MockBean
     private UserRepository userRepository;
 
     @MockBean
     private BoardRepository boardRepository;
 
+    @MockBean
+    private FirebaseUserFingerprintRepository firebaseUserFingerprintRepository;
+
+    @MockBean
+    private UserSyncCheckpointRepository userSyncCheckpointRepository;
+
     @MockBean
     private FirebaseAuth firebaseAuth;
 
+    @MockBean
+    private FirebaseUserStatusCache firebaseUserStatusCache;
+
+    @MockBean
+    private UserRevocationRelay userRevocationRelay;
+
+    @MockBean
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private JobLeaseService jobLeaseService;
+
+    private final JobLease lease = new JobLease(SynchronizeWithFirebaseScheduler.JOB_NAME, 7L);
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.getArgument(0, TransactionCallback.class).doInTransaction(null));
+        when(jobLeaseService.tryAcquire(SynchronizeWithFirebaseScheduler.JOB_NAME)).thenReturn(Optional.of(lease));
+    }
+
     @Test
-    void synchronizeUsersShouldNotPersistUserToTheDatabaseWhenThereAreNoUsersInFirebase() throws FirebaseAuthException {
+    void synchronizeUsersShouldDoNothingWhenAnotherNodeHoldsTheLease() throws FirebaseAuthException {
         // given
-        final ListUsersPage listUsersPage = mock(ListUsersPage.class);
-        final List<ExportedUserRecord> firebaseUsers = Collections.emptyList();
+        when(jobLeaseService.tryAcquire(SynchronizeWithFirebaseScheduler.JOB_NAME)).thenReturn(Optional.empty());
 
         // when
-        when(firebaseAuth.listUsers(null, 20)).thenReturn(listUsersPage);
-        when(listUsersPage.iterateAll()).thenReturn(firebaseUsers);
-        when(userRepository.findAllByEmailIn(any())).thenReturn(Collections.emptyList());
+        synchronizeWithFirebaseScheduler.synchronizeUsers();
 
         // then
-        synchronizeWithFirebaseScheduler.synchronizeUsers();
+        verify(firebaseAuth, never()).listUsers(any(), anyInt());
+        verify(userSyncCheckpointRepository, never()).save(any());
+        verify(jobLeaseService, never()).release(any());
+    }
 
-        @SuppressWarnings("unchecked") final ArgumentCaptor<List<User>> captor = ArgumentCaptor.forClass(List.class);
-        verify(userRepository, times(2)).saveAll(captor.capture());
+    @Test
+    void synchronizeUsersShouldRenewLeaseInEveryTransactionAndReleaseItAtTheEnd() throws FirebaseAuthException {
+        // given
+        final ListUsersPage firstPage = mockPage(List.of(mockUser("uid1", "test1@test.pl", "test1")), "page2");
+        final ListUsersPage secondPage = mockPage(List.of(mockUser("uid2", "test2@test.pl", "test2")), null);
 
-        final List<String> capturedEmails = captor.getValue().stream().map(User::getEmail).collect(Collectors.toList());
-        assertEquals(0, capturedEmails.size());
+        // when
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(firstPage);
+        when(firebaseAuth.listUsersAsync("page2", PAGE_SIZE)).thenReturn(ApiFutures.immediateFuture(secondPage));
+        when(userRepository.findAllNotSynchronizedIn(1L)).thenReturn(Collections.emptyList());
+        synchronizeWithFirebaseScheduler.synchronizeUsers();
+
+        // then
+        verify(jobLeaseService, times(4)).renew(lease);
+        verify(jobLeaseService).release(lease);
     }
 
     @Test
-    void synchronizeUsersShouldNotPersistToTheDatabaseWhenThereAreNoNewNotRegisteredUsers() throws FirebaseAuthException {
+    void synchronizeUsersShouldReleaseLeaseWhenItFails() throws FirebaseAuthException {
         // given
-        final ListUsersPage listUsersPage = mock(ListUsersPage.class);
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenThrow(new IllegalStateException("unavailable"));
 
-        final ExportedUserRecord mockUser1 = mockUser(0L, "uid1", "test1@test.pl", "test1");
-        final ExportedUserRecord mockUser2 = mockUser(657521L, "uid2", "test2@test.pl", "test2");
-        final ExportedUserRecord mockUser3 = mockUser(654654L, "uid3", "test3@test.pl", "test3");
-        final ExportedUserRecord mockUser4 = mockUser(165465465468L, "uid4", "test4@test.pl", "test4");
-        final List<ExportedUserRecord> mockUsers = List.of(mockUser1, mockUser2, mockUser3, mockUser4);
+        // when
+        assertThrows(IllegalStateException.class, () -> synchronizeWithFirebaseScheduler.synchronizeUsers());
 
-        final User userDb1 = createUser("uid1", "test1@test.pl", "test1");
-        final User userDb2 = createUser("uid2", "test2@test.pl", "test2");
-        final User userDb3 = createUser("uid3", "test3@test.pl", "test3");
-        final User userDb4 = createUser("uid4", "test4@test.pl", "test4");
-        final List<User> usersDb = List.of(userDb1, userDb2, userDb3, userDb4);
+        // then
+        verify(jobLeaseService).release(lease);
+    }
+
+    @Test
+    void synchronizeUsersShouldNotPersistUserToTheDatabaseWhenThereAreNoUsersInFirebase() throws FirebaseAuthException {
+        // given
+        final ListUsersPage listUsersPage = mockPage(Collections.emptyList(), null);
 
         // when
-        when(firebaseAuth.listUsers(null, 20)).thenReturn(listUsersPage);
-        when(listUsersPage.iterateAll()).thenReturn(mockUsers);
-        when(userRepository.findAllByEmailIn(any())).thenReturn(usersDb);
-        when(userRepository.findAllByEmailNotIn(any())).thenReturn(Collections.emptyList());
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(listUsersPage);
+        when(userRepository.findAllNotSynchronizedIn(1L)).thenReturn(Collections.emptyList());
 
         // then
         synchronizeWithFirebaseScheduler.synchronizeUsers();
 
-        @SuppressWarnings("unchecked") final ArgumentCaptor<List<User>> usersToSaveCaptor = ArgumentCaptor.forClass(List.class);
-        verify(userRepository, times(2)).saveAll(usersToSaveCaptor.capture());
+        verify(userRepository, never()).findAllById(any());
+        verify(firebaseUserFingerprintRepository, never()).markSynchronized(anyCollection(), anyLong());
+        verify(firebaseUserFingerprintRepository).deleteAllNotSynchronizedIn(1L);
 
-        final List<String> capturedEmails = usersToSaveCaptor.getValue().stream().map(User::getEmail).collect(Collectors.toList());
-        assertEquals(0, capturedEmails.size());
+        final UserSyncCheckpoint checkpoint = savedCheckpoint();
+        assertEquals(1L, checkpoint.getSyncRun());
+        assertTrue(checkpoint.isCompleted());
     }
 
     @Test
-    @DisplayName("synchronize should persist new registered Users in Firebase to the database - those who have not " +
-            "logged in yet and those who have already logged in but don't exist in the database")
-    void synchronizeUsersShouldPersistToTheDatabaseNewRegisteredUsers() throws FirebaseAuthException {
+    void synchronizeUsersShouldOnlyMarkUnchangedUsersAsSynchronized() throws FirebaseAuthException {
         // given
-        final ListUsersPage listUsersPage = mock(ListUsersPage.class);
-
-        final ExportedUserRecord mockUser1 = mockUser(0L, "uid1", "test1@test.pl", "test1");
-        final ExportedUserRecord mockUser2 = mockUser(0L, "uid2", "test2@test.pl", "test2");
-        final ExportedUserRecord mockUser3 = mockUser(0L, "uid3", "test3@test.pl", "test3");
-        final ExportedUserRecord mockUser4 = mockUser(165465465468L, "uid3", "test4@test.pl", "test4");
-        final List<ExportedUserRecord> mockUsers = List.of(mockUser1, mockUser2, mockUser3, mockUser4);
+        final ExportedUserRecord mockUser1 = mockUser("uid1", "test1@test.pl", "test1");
+        final ExportedUserRecord mockUser2 = mockUser("uid2", "test2@test.pl", "test2");
+        final List<ExportedUserRecord> mockUsers = List.of(mockUser1, mockUser2);
+        final ListUsersPage listUsersPage = mockPage(mockUsers, null);
+        final List<FirebaseUserFingerprint> fingerprints =
+                List.of(fingerprintOf(mockUser1, 4L), fingerprintOf(mockUser2, 4L));
 
         // when
-        when(firebaseAuth.listUsers(null, 20)).thenReturn(listUsersPage);
-        when(listUsersPage.iterateAll()).thenReturn(mockUsers);
-        when(userRepository.findAllByEmailIn(any())).thenReturn(Collections.emptyList());
-        when(userRepository.findAllByEmailNotIn(any())).thenReturn(Collections.emptyList());
+        when(userSyncCheckpointRepository.findById(SynchronizeWithFirebaseScheduler.CHECKPOINT_ID))
+                .thenReturn(Optional.of(new UserSyncCheckpoint(SynchronizeWithFirebaseScheduler.CHECKPOINT_ID,
+                        4L, null, true)));
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(listUsersPage);
+        when(firebaseUserFingerprintRepository.findAllByUidIn(List.of("uid1", "uid2")))
+                .thenReturn(fingerprints);
+        when(userRepository.findAllNotSynchronizedIn(5L)).thenReturn(Collections.emptyList());
 
         // then
         synchronizeWithFirebaseScheduler.synchronizeUsers();
 
-        @SuppressWarnings("unchecked") final ArgumentCaptor<List<User>> captor = ArgumentCaptor.forClass(List.class);
-        verify(userRepository, times(2)).saveAll(captor.capture());
-        final List<String> capturedEmails = captor.getAllValues()
-                .stream()
-                .flatMap(Collection::stream)
-                .map(User::getEmail)
-                .collect(Collectors.toList());
-
-        final List<String> firebaseUsersEmails = firebaseUsersEmails(mockUsers);
-        assertEquals(firebaseUsersEmails, capturedEmails);
-        assertEquals(4, capturedEmails.size());
-        assertTrue(capturedEmails.contains("test1@test.pl"));
-        assertTrue(capturedEmails.contains("test2@test.pl"));
-        assertTrue(capturedEmails.contains("test3@test.pl"));
-        assertTrue(capturedEmails.contains("test4@test.pl"));
+        verify(firebaseUserStatusCache).refresh(mockUsers);
+        verify(firebaseUserFingerprintRepository).markSynchronized(List.of("uid1", "uid2"), 5L);
+        verify(userRepository, never()).findAllById(any());
+        verify(firebaseUserFingerprintRepository, never()).saveAll(any());
+        verify(firebaseUserFingerprintRepository).deleteAllNotSynchronizedIn(5L);
     }
 
     @Test
-    @DisplayName("synchronize should remove User when he is neither a Board creator nor assigned to the Boards " +
-            "and ignore the one that has Boards assigned")
+    @DisplayName("synchronize should persist new registered Users in Firebase and update the changed ones")
     @SuppressWarnings("unchecked")
-    void synchronizeShouldRemoveUserWhenHeIsNeitherABoardCreatorNorAssignedToTheBoards() throws FirebaseAuthException {
+    void synchronizeUsersShouldPersistNewAndChangedUsers() throws FirebaseAuthException {
         // given
-        final ListUsersPage listUsersPage = mock(ListUsersPage.class);
-        final ExportedUserRecord firebaseUser = mockUser(0L, "uid1", "test1@test.pl", "test1");
-        final List<ExportedUserRecord> firebaseUsers = List.of(firebaseUser);
-        final List<String> firebaseUsersEmails = firebaseUsersEmails(firebaseUsers);
+        final ExportedUserRecord mockUser1 = mockUser("uid1", "test1@test.pl", "test1");
+        final ExportedUserRecord mockUser2 = mockUser("uid2", "changed@test.pl", "changed");
+        final ListUsersPage listUsersPage = mockPage(List.of(mockUser1, mockUser2), null);
 
-        final User userExistingInFirebase = createUser("uid1", "test1@test.pl", "test1");
-        final User userDeletedInFirebase = createUser("uid2", "test2@test.pl", "test2");
-        final List<User> usersDb = List.of(userExistingInFirebase);
+        final User userDb2 = createUser("uid2", "test2@test.pl", "test2");
+        final FirebaseUserFingerprint fingerprintDb2 = new FirebaseUserFingerprint("uid2", "outdated", 0L);
 
         // when
-        when(firebaseAuth.listUsers(null, 20)).thenReturn(listUsersPage);
-        when(listUsersPage.iterateAll()).thenReturn(firebaseUsers);
-        when(userRepository.findAllByEmailIn(firebaseUsersEmails)).thenReturn(usersDb);
-        when(userRepository.findAllByEmailNotIn(firebaseUsersEmails)).thenReturn(List.of(userDeletedInFirebase));
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(listUsersPage);
+        when(firebaseUserFingerprintRepository.findAllByUidIn(any())).thenReturn(List.of(fingerprintDb2));
+        when(userRepository.findAllById(List.of("uid1", "uid2"))).thenReturn(List.of(userDb2));
+        when(userRepository.findAllNotSynchronizedIn(1L)).thenReturn(Collections.emptyList());
 
-        //then
+        // then
         synchronizeWithFirebaseScheduler.synchronizeUsers();
 
         final ArgumentCaptor<List<User>> usersCaptor = ArgumentCaptor.forClass(List.class);
-        verify(userRepository, times(2)).saveAll(usersCaptor.capture());
+        verify(userRepository).saveAll(usersCaptor.capture());
         final List<User> savedUsers = usersCaptor.getValue();
-        assertEquals(0, savedUsers.size());
 
-        verify(userRepository).deleteAll(usersCaptor.capture());
-        final List<User> deletedUsers = usersCaptor.getValue();
-        assertEquals(1, deletedUsers.size());
-        assertTrue(deletedUsers.contains(userDeletedInFirebase));
+        assertEquals(2, savedUsers.size());
+        assertEquals("test1@test.pl", savedUsers.get(0).getEmail());
+        assertFalse(savedUsers.get(0).isDeleted());
+        assertEquals(userDb2, savedUsers.get(1));
+        assertEquals("changed@test.pl", userDb2.getEmail());
+        assertEquals("changed", userDb2.getDisplayName());
+
+        final ArgumentCaptor<List<FirebaseUserFingerprint>> fingerprintsCaptor =
+                ArgumentCaptor.forClass(List.class);
+        verify(firebaseUserFingerprintRepository).saveAll(fingerprintsCaptor.capture());
+        final List<FirebaseUserFingerprint> fingerprints = fingerprintsCaptor.getValue();
+
+        assertEquals(2, fingerprints.size());
+        assertEquals("uid1", fingerprints.get(0).getUid());
+        assertSame(fingerprintDb2, fingerprints.get(1));
+        assertEquals(SynchronizeWithFirebaseScheduler.fingerprint(mockUser2), fingerprints.get(1).getFingerprint());
+        assertEquals(1L, fingerprints.get(1).getSyncRun());
+    }
 
-        final ArgumentCaptor<List<Board>> boardCaptor = ArgumentCaptor.forClass(List.class);
-        verify(boardRepository, times(2)).deleteAll(boardCaptor.capture());
-        final List<Board> deletedBoards = boardCaptor.getAllValues()
-                .stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toList());
+    @Test
+    void synchronizeUsersShouldReassignUserWhenAccountWasRecreatedWithSameEmail() throws FirebaseAuthException {
+        // given
+        final FirebaseAuthException userNotFound = userNotFound();
+        final ExportedUserRecord mockUser = mockUser("newUid", "test1@test.pl", "test1");
+        final ListUsersPage listUsersPage = mockPage(List.of(mockUser), null);
+        final User userDb = createUser("oldUid", "test1@test.pl", "test1");
+        final User reassignedUserDb = createUser("newUid", "test1@test.pl", "test1");
+
+        // when
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(listUsersPage);
+        when(userRepository.findAllByEmailInAndUidNotIn(new HashSet<>(List.of("test1@test.pl")),
+                List.of("newUid"))).thenReturn(List.of(userDb));
+        when(firebaseAuth.getUser("oldUid")).thenThrow(userNotFound);
+        when(userRepository.findAllById(new HashSet<>(List.of("newUid")))).thenReturn(List.of(reassignedUserDb));
+        when(userRepository.findAllNotSynchronizedIn(1L)).thenReturn(Collections.emptyList());
+        synchronizeWithFirebaseScheduler.synchronizeUsers();
 
-        assertEquals(0, deletedBoards.size());
+        // then
+        verify(userRepository).reassignUid("oldUid", "newUid");
+        verify(userRepository).saveAll(List.of(reassignedUserDb));
+        verify(userRevocationRelay).revokeChanged(List.of("test1@test.pl"));
+    }
+
+    @Test
+    void synchronizeUsersShouldNotReassignUserWhoseAccountStillExistsUnderAnotherEmail() throws FirebaseAuthException {
+        // given
+        final ExportedUserRecord mockUser = mockUser("newUid", "test1@test.pl", "test1");
+        final ListUsersPage listUsersPage = mockPage(List.of(mockUser), null);
+        final ExportedUserRecord movedUser = mockUser("oldUid", "moved@test.pl", "test1");
+        final User userDb = createUser("oldUid", "test1@test.pl", "test1");
+        final ArgumentCaptor<List<User>> usersCaptor = ArgumentCaptor.forClass(List.class);
+
+        // when
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(listUsersPage);
+        when(userRepository.findAllByEmailInAndUidNotIn(new HashSet<>(List.of("test1@test.pl")),
+                List.of("newUid"))).thenReturn(List.of(userDb));
+        when(firebaseAuth.getUser("oldUid")).thenReturn(movedUser);
+        when(userRepository.findAllNotSynchronizedIn(1L)).thenReturn(Collections.emptyList());
+        synchronizeWithFirebaseScheduler.synchronizeUsers();
+
+        // then
+        verify(userRepository, never()).reassignUid(any(), any());
+        verify(userRepository).saveAll(usersCaptor.capture());
+        assertEquals(1, usersCaptor.getValue().size());
+        assertEquals("newUid", usersCaptor.getValue().get(0).getUid());
+        assertEquals("oldUid", userDb.getUid());
+        verify(userRevocationRelay, never()).revokeChanged(any());
+    }
+
+    @Test
+    void synchronizeUsersShouldRevokeChangedUsersDisabledInFirebase() throws FirebaseAuthException {
+        // given
+        final ExportedUserRecord activeUser = mockUser("uid1", "test1@test.pl", "test1");
+        final ExportedUserRecord disabledUser = mockUser("uid2", "test2@test.pl", "test2");
+        final ListUsersPage listUsersPage = mockPage(List.of(activeUser, disabledUser), null);
+
+        // when
+        when(disabledUser.isDisabled()).thenReturn(true);
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(listUsersPage);
+        when(userRepository.findAllNotSynchronizedIn(1L)).thenReturn(Collections.emptyList());
+        synchronizeWithFirebaseScheduler.synchronizeUsers();
+
+        // then
+        verify(userRevocationRelay).revokeChanged(List.of("test2@test.pl"));
+    }
+
+    @Test
+    void synchronizeUsersShouldProcessAllPagesAndSaveCheckpointAfterEachOfThem() throws FirebaseAuthException {
+        // given
+        final ExportedUserRecord mockUser1 = mockUser("uid1", "test1@test.pl", "test1");
+        final ExportedUserRecord mockUser2 = mockUser("uid2", "test2@test.pl", "test2");
+        final ListUsersPage firstPage = mockPage(List.of(mockUser1), "page2");
+        final ListUsersPage secondPage = mockPage(List.of(mockUser2), null);
+        final List<String> pageTokens = new ArrayList<>();
+
+        // when
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(firstPage);
+        when(firebaseAuth.listUsersAsync("page2", PAGE_SIZE)).thenReturn(ApiFutures.immediateFuture(secondPage));
+        when(userRepository.findAllNotSynchronizedIn(1L)).thenReturn(Collections.emptyList());
+        when(userSyncCheckpointRepository.save(any())).thenAnswer(invocation -> {
+            pageTokens.add(invocation.getArgument(0, UserSyncCheckpoint.class).getPageToken());
+            return invocation.getArgument(0);
+        });
+
+        // then
+        synchronizeWithFirebaseScheduler.synchronizeUsers();
+
+        verify(firebaseUserStatusCache).refresh(List.of(mockUser1));
+        verify(firebaseUserStatusCache).refresh(List.of(mockUser2));
+        verify(userRepository).findAllById(List.of("uid1"));
+        verify(userRepository).findAllById(List.of("uid2"));
+        assertEquals(Arrays.asList(null, "page2", null, null), pageTokens);
+    }
+
+    @Test
+    void synchronizeUsersShouldResumeInterruptedRunFromSavedPageToken() throws FirebaseAuthException {
+        // given
+        final ListUsersPage listUsersPage = mockPage(Collections.emptyList(), null);
+
+        // when
+        when(userSyncCheckpointRepository.findById(SynchronizeWithFirebaseScheduler.CHECKPOINT_ID))
+                .thenReturn(Optional.of(new UserSyncCheckpoint(SynchronizeWithFirebaseScheduler.CHECKPOINT_ID,
+                        3L, "page7", false)));
+        when(firebaseAuth.listUsers("page7", PAGE_SIZE)).thenReturn(listUsersPage);
+        when(userRepository.findAllNotSynchronizedIn(3L)).thenReturn(Collections.emptyList());
+
+        // then
+        synchronizeWithFirebaseScheduler.synchronizeUsers();
+
+        verify(firebaseAuth, never()).listUsers(null, PAGE_SIZE);
+        verify(firebaseUserFingerprintRepository).deleteAllNotSynchronizedIn(3L);
+
+        final UserSyncCheckpoint checkpoint = savedCheckpoint();
+        assertEquals(3L, checkpoint.getSyncRun());
+        assertNull(checkpoint.getPageToken());
+        assertTrue(checkpoint.isCompleted());
     }
 
     @Test
     @DisplayName("synchronize should remove Users and Boards they have created when they have no Boards assigned")
-    @SuppressWarnings("unchecked")
     void synchronizeShouldRemoveUserAndBoardHeCreated() throws FirebaseAuthException {
         // given
-        final ListUsersPage listUsersPage = mock(ListUsersPage.class);
-        final ExportedUserRecord firebaseUser1 = mockUser(0L, "uid1", "test1@test.pl", "test1");
-        final ExportedUserRecord firebaseUser2 = mockUser(0L, "uid3", "test3@test.pl", "test3");
-        final List<ExportedUserRecord> firebaseUsers = List.of(firebaseUser1, firebaseUser2);
-        final List<String> firebaseUsersEmails = firebaseUsersEmails(firebaseUsers);
-
-        final User userExistingInFirebase1 = createUser("uid1", "test1@test.pl", "test1");
-        final User userExistingInFirebase2 = createUser("uid3", "test3@test.pl", "test3");
-        final List<User> usersDb = List.of(userExistingInFirebase1, userExistingInFirebase2);
+        final ListUsersPage listUsersPage = mockPage(Collections.emptyList(), null);
 
         final User userDeletedInFirebase1 = createUser("uid2", "test2@test.pl", "test2");
         final User userDeletedInFirebase2 = createUser("uid4", "test4@test.pl", "test4");
-        final Board board1 = TestUtils.buildBoard(1, EnumStateDto.CREATED, userDeletedInFirebase1, new HashSet<>(), 3);
-        final Board board2 = TestUtils.buildBoard(2, EnumStateDto.CREATED, userDeletedInFirebase2, new HashSet<>(), 3);
-        userDeletedInFirebase1.getCreatedBoards().add(board1);
-        userDeletedInFirebase2.getCreatedBoards().add(board2);
 
         // when
-        when(firebaseAuth.listUsers(null, 20)).thenReturn(listUsersPage);
-        when(listUsersPage.iterateAll()).thenReturn(firebaseUsers);
-        when(userRepository.findAllByEmailIn(firebaseUsersEmails)).thenReturn(usersDb);
-        when(userRepository.findAllByEmailNotIn(firebaseUsersEmails))
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(listUsersPage);
+        when(userRepository.findAllNotSynchronizedIn(1L))
                 .thenReturn(List.of(userDeletedInFirebase1, userDeletedInFirebase2));
+        when(boardRepository.findMemberUidsIn(List.of("uid2", "uid4"))).thenReturn(Collections.emptyList());
+        when(boardRepository.findIdsByCreatorUidIn(List.of("uid2", "uid4"))).thenReturn(List.of(1, 2));
 
         //then
         synchronizeWithFirebaseScheduler.synchronizeUsers();
 
-        final ArgumentCaptor<List<User>> usersCaptor = ArgumentCaptor.forClass(List.class);
-        verify(userRepository, times(2)).saveAll(usersCaptor.capture());
-        final List<User> capturedUsers = usersCaptor.getValue();
-        assertEquals(0, capturedUsers.size());
-
-        verify(userRepository).deleteAll(usersCaptor.capture());
-        final List<User> deletedUsers = usersCaptor.getValue();
-        assertEquals(2, deletedUsers.size());
-        assertTrue(deletedUsers.contains(userDeletedInFirebase1));
-
-        final ArgumentCaptor<List<Board>> boardCaptor = ArgumentCaptor.forClass(List.class);
-        verify(boardRepository, times(2)).deleteAll(boardCaptor.capture());
-        final List<Board> deletedBoards = boardCaptor.getAllValues()
-                .stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toList());
-
-        assertEquals(2, deletedBoards.size());
-        assertTrue(deletedBoards.contains(board1));
-        assertTrue(deletedBoards.contains(board2));
+        verify(userRepository).deleteAllByUidIn(List.of("uid2", "uid4"));
+        verify(userRepository, never()).deactivateAllByUidIn(any());
+        verify(userRepository, never()).saveAll(any());
+        verify(boardRepository).deleteByIdIn(List.of(1, 2));
+        verify(boardRepository).deleteVersionsByBoardIdIn(List.of(1, 2));
+        verify(boardRepository, never()).deleteAll(any());
+
+        assertEquals(List.of(new BoardChangedEvent(1, BoardEventType.BOARD_DELETED, null),
+                        new BoardChangedEvent(2, BoardEventType.BOARD_DELETED, null)),
+                applicationEvents.stream(BoardChangedEvent.class).collect(Collectors.toList()));
+
+        verify(userRevocationRelay).revokeRemoved(List.of("test2@test.pl", "test4@test.pl"));
     }
 
     @Test
     @DisplayName("synchronize should deactivate User when he is assigned to the Board and delete the Boards he created")
-    @SuppressWarnings("unchecked")
     void synchronizeShouldDeactivateUserAndDeleteBoard() throws FirebaseAuthException {
         // given
-        final ListUsersPage listUsersPage = mock(ListUsersPage.class);
-        final ExportedUserRecord firebaseUser1 = mockUser(0L, "uid1", "test1@test.pl", "test1");
-        final ExportedUserRecord firebaseUser2 = mockUser(0L, "uid3", "test3@test.pl", "test3");
-        final List<ExportedUserRecord> firebaseUsers = List.of(firebaseUser1, firebaseUser2);
-        final List<String> firebaseUsersEmails = firebaseUsersEmails(firebaseUsers);
-
-        final User userExistingInFirebase1 = createUser("uid1", "test1@test.pl", "test1");
-        final User userExistingInFirebase2 = createUser("uid3", "test3@test.pl", "test3");
-        final List<User> usersDb = List.of(userExistingInFirebase1, userExistingInFirebase2);
+        final ListUsersPage listUsersPage = mockPage(Collections.emptyList(), null);
 
         final User userDeletedInFirebase1 = createUser("uid2", "test2@test.pl", "test2");
-        final User boardOwner = createUser("uid4", "test4@test.pl", "test4");
-        final Board board1 = TestUtils.buildBoard(1, EnumStateDto.CREATED, boardOwner, new HashSet<>(), 3);
-        final Board board2 = TestUtils.buildBoard(2, EnumStateDto.CREATED, userDeletedInFirebase1, new HashSet<>(), 3);
-        userDeletedInFirebase1.getUserBoards().add(board1);
-        userDeletedInFirebase1.getCreatedBoards().add(board2);
+        final User userDeletedInFirebase2 = createUser("uid3", "test3@test.pl", "test3");
 
         // when
-        when(firebaseAuth.listUsers(null, 20)).thenReturn(listUsersPage);
-        when(listUsersPage.iterateAll()).thenReturn(firebaseUsers);
-        when(userRepository.findAllByEmailIn(firebaseUsersEmails)).thenReturn(usersDb);
-        when(userRepository.findAllByEmailNotIn(firebaseUsersEmails)).thenReturn(List.of(userDeletedInFirebase1));
+        when(firebaseAuth.listUsers(null, PAGE_SIZE)).thenReturn(listUsersPage);
+        when(userRepository.findAllNotSynchronizedIn(1L))
+                .thenReturn(List.of(userDeletedInFirebase1, userDeletedInFirebase2));
+        when(boardRepository.findMemberUidsIn(List.of("uid2", "uid3"))).thenReturn(List.of("uid2"));
+        when(boardRepository.findIdsByCreatorUidIn(List.of("uid2", "uid3"))).thenReturn(List.of(2));
 
         //then
         synchronizeWithFirebaseScheduler.synchronizeUsers();
 
-        final ArgumentCaptor<List<User>> usersCaptor = ArgumentCaptor.forClass(List.class);
-        verify(userRepository, times(2)).saveAll(usersCaptor.capture());
-        final List<User> updatedUsers = usersCaptor.getAllValues()
-                .stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toList());
-
-        assertEquals(1, updatedUsers.size());
-        assertTrue(updatedUsers.get(0).isDeleted());
-
-        verify(userRepository).deleteAll(usersCaptor.capture());
-        final List<User> deletedUsers = usersCaptor.getValue();
-        assertEquals(0, deletedUsers.size());
-        assertFalse(deletedUsers.contains(userDeletedInFirebase1));
-
-        final ArgumentCaptor<List<Board>> boardCaptor = ArgumentCaptor.forClass(List.class);
-        verify(boardRepository, times(2)).deleteAll(boardCaptor.capture());
-        final List<Board> deletedBoards = boardCaptor.getAllValues()
-                .stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toList());
-
-        assertEquals(1, deletedBoards.size());
-        assertTrue(deletedBoards.contains(board2));
-        assertFalse(deletedBoards.contains(board1));
+        verify(userRepository).deactivateAllByUidIn(List.of("uid2"));
+        verify(userRepository).deleteAllByUidIn(List.of("uid3"));
+        verify(boardRepository).deleteByIdIn(List.of(2));
+
+        assertEquals(List.of(new BoardChangedEvent(2, BoardEventType.BOARD_DELETED, null)),
+                applicationEvents.stream(BoardChangedEvent.class).collect(Collectors.toList()));
+
+        verify(userRevocationRelay).revokeRemoved(List.of("test2@test.pl"));
+        verify(userRevocationRelay).revokeRemoved(List.of("test3@test.pl"));
     }
 
-    private ExportedUserRecord mockUser(final long lastSignInTimestamp, final String uid, final String email,
-                                        final String displayName) {
+    private UserSyncCheckpoint savedCheckpoint() {
+        final ArgumentCaptor<UserSyncCheckpoint> captor = ArgumentCaptor.forClass(UserSyncCheckpoint.class);
+        verify(userSyncCheckpointRepository, atLeastOnce()).save(captor.capture());
+        return captor.getValue();
+    }
 
-        final ExportedUserRecord exportedUserRecord = mock(ExportedUserRecord.class);
+    private ListUsersPage mockPage(final List<ExportedUserRecord> users, final String nextPageToken) {
+        final ListUsersPage listUsersPage = mock(ListUsersPage.class);
+
+        when(listUsersPage.getValues()).thenReturn(users);
+        when(listUsersPage.hasNextPage()).thenReturn(nextPageToken != null);
+        when(listUsersPage.getNextPageToken()).thenReturn(nextPageToken);
 
-        final UserMetadata userMetadata = mock(UserMetadata.class);
-        when(userMetadata.getLastSignInTimestamp()).thenReturn(lastSignInTimestamp);
+        return listUsersPage;
+    }
+
+    private ExportedUserRecord mockUser(final String uid, final String email, final String displayName) {
+        final ExportedUserRecord exportedUserRecord = mock(ExportedUserRecord.class);
 
-        when(exportedUserRecord.getUserMetadata()).thenReturn(userMetadata);
         when(exportedUserRecord.getUid()).thenReturn(uid);
         when(exportedUserRecord.getEmail()).thenReturn(email);
         when(exportedUserRecord.getDisplayName()).thenReturn(displayName);
@@ -316,6 +447,11 @@ class SynchronizeWithFirebaseSchedulerTest {
         return exportedUserRecord;
     }
 
+    private FirebaseUserFingerprint fingerprintOf(final ExportedUserRecord firebaseUser, final Long syncRun) {
+        return new FirebaseUserFingerprint(firebaseUser.getUid(), SynchronizeWithFirebaseScheduler.fingerprint(
+                firebaseUser), syncRun);
+    }
+
     private User createUser(final String uid, final String email, final String displayName) {
         return User.builder()
                 .uid(uid)
@@ -327,7 +463,9 @@ class SynchronizeWithFirebaseSchedulerTest {
                 .build();
     }
 
-    private List<String> firebaseUsersEmails(final List<ExportedUserRecord> fbUsers) {
-        return fbUsers.stream().map(UserRecord::getEmail).collect(Collectors.toList());
+    private static FirebaseAuthException userNotFound() {
+        final FirebaseAuthException userNotFound = mock(FirebaseAuthException.class);
+        when(userNotFound.getAuthErrorCode()).thenReturn(AuthErrorCode.USER_NOT_FOUND);
+        return userNotFound;
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,12 @@
 package com.intive.patronage22.szczecin.retroboard.service;
 
+import com.intive.patronage22.szczecin.retroboard.dto.BoardAccessProjection;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardCardProjection;
+import com.intive.patronage22.szczecin.retroboard.dto.BoardVersionAccessProjection;
 import com.intive.patronage22.szczecin.retroboard.dto.EnumStateDto;
+import com.intive.patronage22.szczecin.retroboard.dto.UserPrincipal;
 import com.intive.patronage22.szczecin.retroboard.model.Board;
+import com.intive.patronage22.szczecin.retroboard.model.BoardCard;
 import com.intive.patronage22.szczecin.retroboard.model.User;
 
 import java.util.Set;
@@ -18,4 +23,59 @@ public class TestUtils {
                 .maximumNumberOfVotes(maximumNumberOfVotes)
                 .build();
     }
-}
\ No newline at end of file
+
+    public static UserPrincipal buildPrincipal(final User user) {
+        return new UserPrincipal(user.getUid(), user.getEmail(), user.isDeleted());
+    }
+
+    public static BoardCardProjection buildBoardCardProjection(final BoardCard boardCard, final String actionText,
+                                                               final long votes) {
+        return new BoardCardProjection(boardCard.getId(), boardCard.getText(), boardCard.getColumn(),
+                boardCard.getCreator().getEmail(), actionText, votes);
+    }
+
+    public static BoardAccessProjection buildBoardAccessProjection(final User user, final Board board) {
+        final String role = board == null || !board.getCreator().equals(user) && !board.getUsers().contains(user)
+                ? "NONE"
+                : board.getCreator().equals(user) ? "CREATOR" : "MEMBER";
+
+        return new BoardAccessProjection() {
+            @Override
+            public User getUser() {
+                return user;
+            }
+
+            @Override
+            public Board getBoard() {
+                return board;
+            }
+
+            @Override
+            public String getRole() {
+                return role;
+            }
+        };
+    }
+
+    public static BoardVersionAccessProjection buildBoardVersionAccessProjection(final User user, final Board board,
+                                                                                 final long version) {
+        final String role = buildBoardAccessProjection(user, board).getRole();
+
+        return new BoardVersionAccessProjection() {
+            @Override
+            public Integer getBoardId() {
+                return board == null ? null : board.getId();
+            }
+
+            @Override
+            public String getRole() {
+                return role;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+}
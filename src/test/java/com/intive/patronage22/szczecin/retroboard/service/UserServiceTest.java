@@ -11,6 +11,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -87,11 +88,25 @@ class UserServiceTest {
         final List<String> emails = List.of("test12@plo.com", "sodttest2@tyk.pl", "sodniktest@sok.com");
 
         // when
-        when(userRepository.searchByEmailLike(providedEmail)).thenReturn(emails);
-        final List<String> search = userService.search(providedEmail);
+        when(userRepository.searchByEmail(providedEmail, PageRequest.of(0, 10))).thenReturn(emails);
+        final List<String> search = userService.search(providedEmail, 10);
 
         // then
         assertEquals(3, emails.size());
         assertEquals(List.of("test12@plo.com", "sodttest2@tyk.pl", "sodniktest@sok.com"), search);
     }
+
+    @Test
+    void searchShouldEscapeLikeWildcardsInEmail() {
+        // given
+        final String providedEmail = "a_b%c\\d";
+
+        // when
+        when(userRepository.searchByEmail("a\\_b\\%c\\\\d", PageRequest.of(0, 5)))
+                .thenReturn(List.of("a_b%c\\d@x.pl"));
+        final List<String> search = userService.search(providedEmail, 5);
+
+        // then
+        assertEquals(List.of("a_b%c\\d@x.pl"), search);
+    }
 }